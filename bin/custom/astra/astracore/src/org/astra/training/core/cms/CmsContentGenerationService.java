@@ -0,0 +1,19 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.core.cms;
+
+/**
+ * Tracks changes of the CMS content, for caches of values derived from pages, slots, components and their actions. The
+ * same implementation observing products, categories and prices tracks changes of the product catalog content.
+ */
+public interface CmsContentGenerationService
+{
+	/**
+	 * Returns the generation of the content. It changes whenever an observed item is saved or removed on any cluster
+	 * node, and whenever a catalog synchronization finishes. Other nodes see the change once its cluster event arrived.
+	 *
+	 * @return the current generation
+	 */
+	long getGeneration();
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.core.cms.event;
+
+import de.hybris.platform.servicelayer.event.ClusterAwareEvent;
+import de.hybris.platform.servicelayer.event.PublishEventContext;
+import de.hybris.platform.servicelayer.event.events.AbstractEvent;
+
+
+/**
+ * Tells all cluster nodes, the sending one included, that content tracked by a content generation service changed.
+ */
+public class CmsContentChangedEvent extends AbstractEvent implements ClusterAwareEvent
+{
+	private final String content;
+
+	/**
+	 * @param content
+	 * 		name of the changed content, <tt>null</tt> if all content may have changed, as after a catalog synchronization
+	 */
+	public CmsContentChangedEvent(final String content)
+	{
+		super();
+		this.content = content;
+	}
+
+	@Override
+	public boolean canPublish(final PublishEventContext publishEventContext)
+	{
+		return true;
+	}
+
+	public String getContent()
+	{
+		return content;
+	}
+
+	public boolean isAllContent()
+	{
+		return content == null;
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.core.cms.impl;
+
+import de.hybris.platform.core.model.type.ComposedTypeModel;
+import de.hybris.platform.jalo.type.ComposedType;
+import de.hybris.platform.servicelayer.event.EventService;
+import de.hybris.platform.servicelayer.event.impl.AbstractEventListener;
+import de.hybris.platform.servicelayer.exceptions.UnknownIdentifierException;
+import de.hybris.platform.servicelayer.model.ModelService;
+import de.hybris.platform.servicelayer.type.TypeService;
+import de.hybris.platform.tx.AfterSaveEvent;
+import de.hybris.platform.tx.AfterSaveListener;
+import org.astra.training.core.cms.CmsContentGenerationService;
+import org.astra.training.core.cms.event.CmsContentChangedEvent;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Required;
+
+
+/**
+ * Default implementation of {@link CmsContentGenerationService}. Saves are observed through {@link AfterSaveEvent}s,
+ * which only carry the deployment type code of the saved item, so the observed types are resolved to the deployment
+ * type codes of themselves and all their subtypes. These events are only delivered on the node that saved the item, so
+ * that node moves the generation on at once and publishes a {@link CmsContentChangedEvent} for its content, at most one
+ * per committed transaction, which moves the generation on all cluster nodes. Finished catalog synchronizations are
+ * published for all content by the {@link SyncFinishedContentChangeListener}.
+ */
+public class DefaultCmsContentGenerationService extends AbstractEventListener<CmsContentChangedEvent>
+		implements CmsContentGenerationService, AfterSaveListener
+{
+	private static final Logger LOG = Logger.getLogger(DefaultCmsContentGenerationService.class);
+
+	private final AtomicLong generation = new AtomicLong();
+
+	private String content;
+	private Set<String> observedTypes;
+	private EventService eventService;
+	private ModelService modelService;
+	private TypeService typeService;
+
+	private volatile Set<Integer> observedTypeCodes;
+
+	@Override
+	public long getGeneration()
+	{
+		return generation.get();
+	}
+
+	@Override
+	public void afterSave(final Collection<AfterSaveEvent> events)
+	{
+		final Set<Integer> typeCodes = getObservedTypeCodes();
+		for (final AfterSaveEvent event : events)
+		{
+			if (typeCodes.contains(Integer.valueOf(event.getPk().getTypeCode())))
+			{
+				// cluster events arrive asynchronously, the saving node must not render outdated content meanwhile
+				generation.incrementAndGet();
+				getEventService().publishEvent(new CmsContentChangedEvent(getContent()));
+				return;
+			}
+		}
+	}
+
+	@Override
+	protected void onEvent(final CmsContentChangedEvent event)
+	{
+		if (event.isAllContent() || getContent().equals(event.getContent()))
+		{
+			generation.incrementAndGet();
+		}
+	}
+
+	protected Set<Integer> getObservedTypeCodes()
+	{
+		if (observedTypeCodes == null)
+		{
+			final Set<Integer> typeCodes = new HashSet<>();
+			for (final String observedType : getObservedTypes())
+			{
+				try
+				{
+					final ComposedTypeModel type = getTypeService().getComposedTypeForCode(observedType);
+					typeCodes.add(getDeploymentTypeCode(type));
+					for (final ComposedTypeModel subType : type.getAllSubTypes())
+					{
+						typeCodes.add(getDeploymentTypeCode(subType));
+					}
+				}
+				catch (final UnknownIdentifierException e)
+				{
+					LOG.warn("Type " + observedType + " does not exist, its items are not observed");
+				}
+			}
+			observedTypeCodes = typeCodes;
+		}
+		return observedTypeCodes;
+	}
+
+	protected Integer getDeploymentTypeCode(final ComposedTypeModel type)
+	{
+		return Integer.valueOf(((ComposedType) getModelService().getSource(type)).getItemTypeCode());
+	}
+
+	protected String getContent()
+	{
+		return content;
+	}
+
+	/**
+	 * @param content
+	 * 		name of the tracked content, telling the {@link CmsContentChangedEvent}s of this service apart from those of
+	 * 		other content
+	 */
+	@Required
+	public void setContent(final String content)
+	{
+		this.content = content;
+	}
+
+	protected Set<String> getObservedTypes()
+	{
+		return observedTypes;
+	}
+
+	@Required
+	public void setObservedTypes(final Set<String> observedTypes)
+	{
+		this.observedTypes = observedTypes;
+	}
+
+	protected EventService getEventService()
+	{
+		return eventService;
+	}
+
+	@Required
+	public void setEventService(final EventService eventService)
+	{
+		this.eventService = eventService;
+	}
+
+	protected ModelService getModelService()
+	{
+		return modelService;
+	}
+
+	@Required
+	public void setModelService(final ModelService modelService)
+	{
+		this.modelService = modelService;
+	}
+
+	protected TypeService getTypeService()
+	{
+		return typeService;
+	}
+
+	@Required
+	public void setTypeService(final TypeService typeService)
+	{
+		this.typeService = typeService;
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.core.cms.impl;
+
+import de.hybris.platform.catalog.model.SyncItemCronJobModel;
+import de.hybris.platform.servicelayer.event.EventService;
+import de.hybris.platform.servicelayer.event.events.AfterCronJobFinishedEvent;
+import de.hybris.platform.servicelayer.event.impl.AbstractEventListener;
+import de.hybris.platform.servicelayer.type.TypeService;
+import org.astra.training.core.cms.event.CmsContentChangedEvent;
+
+import org.springframework.beans.factory.annotation.Required;
+
+
+/**
+ * Publishes a {@link CmsContentChangedEvent} for all content whenever a catalog synchronization finishes, so the content
+ * generations move on on all cluster nodes.
+ */
+public class SyncFinishedContentChangeListener extends AbstractEventListener<AfterCronJobFinishedEvent>
+{
+	private EventService eventService;
+	private TypeService typeService;
+
+	@Override
+	protected void onEvent(final AfterCronJobFinishedEvent event)
+	{
+		if (event.getCronJobType() != null
+				&& getTypeService().isAssignableFrom(SyncItemCronJobModel._TYPECODE, event.getCronJobType()))
+		{
+			getEventService().publishEvent(new CmsContentChangedEvent(null));
+		}
+	}
+
+	protected EventService getEventService()
+	{
+		return eventService;
+	}
+
+	@Required
+	public void setEventService(final EventService eventService)
+	{
+		this.eventService = eventService;
+	}
+
+	protected TypeService getTypeService()
+	{
+		return typeService;
+	}
+
+	@Required
+	public void setTypeService(final TypeService typeService)
+	{
+		this.typeService = typeService;
+	}
+}
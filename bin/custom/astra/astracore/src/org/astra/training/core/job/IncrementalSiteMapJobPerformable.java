@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.core.job;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.astra.training.core.sitemap.IncrementalSiteMapService;
+import org.springframework.beans.factory.annotation.Required;
+
+import de.hybris.platform.acceleratorservices.model.SiteMapMediaCronJobModel;
+import de.hybris.platform.cms2.exceptions.CMSItemNotFoundException;
+import de.hybris.platform.cms2.model.site.CMSSiteModel;
+import de.hybris.platform.cms2.servicelayer.services.CMSSiteService;
+import de.hybris.platform.cronjob.enums.CronJobResult;
+import de.hybris.platform.cronjob.enums.CronJobStatus;
+import de.hybris.platform.servicelayer.config.ConfigurationService;
+import de.hybris.platform.servicelayer.cronjob.AbstractJobPerformable;
+import de.hybris.platform.servicelayer.cronjob.PerformResult;
+
+
+/**
+ * The job writes the sitemap of the content site of the cron job with the {@link IncrementalSiteMapService}. Only the
+ * shards with pages changed since the last run are written, unless the last full generation is older than
+ * {@link IncrementalSiteMapJobPerformable#FULL_GENERATION_HOURS}, which also drops removed pages from all shards. The
+ * URL limit per file of the cron job is the shard size. The job is aborted unless the folder shared by the storefront
+ * nodes is configured, see {@link IncrementalSiteMapService#isEnabled()}.
+ */
+public class IncrementalSiteMapJobPerformable extends AbstractJobPerformable<SiteMapMediaCronJobModel>
+{
+	private static final Logger LOG = Logger.getLogger(IncrementalSiteMapJobPerformable.class);
+
+	protected static final String FULL_GENERATION_HOURS = "astracore.sitemap.fullGenerationHours";
+
+	protected static final int DEFAULT_FULL_GENERATION_HOURS = 24;
+
+	protected static final int DEFAULT_URL_LIMIT_PER_FILE = 50000;
+
+	private CMSSiteService cmsSiteService;
+
+	private IncrementalSiteMapService incrementalSiteMapService;
+
+	private ConfigurationService configurationService;
+
+	@Override
+	public PerformResult perform(final SiteMapMediaCronJobModel cronJob)
+	{
+		final CMSSiteModel site = cronJob.getContentSite();
+		if (!getIncrementalSiteMapService().isEnabled())
+		{
+			LOG.error("Could not write the sitemap of site " + site.getUid()
+					+ ", the folder shared by the storefront nodes is not configured");
+			return new PerformResult(CronJobResult.ERROR, CronJobStatus.ABORTED);
+		}
+		try
+		{
+			getCmsSiteService().setCurrentSiteAndCatalogVersions(site, true);
+		}
+		catch (final CMSItemNotFoundException e)
+		{
+			LOG.error("Could not set the catalog versions of site " + site.getUid(), e);
+			return new PerformResult(CronJobResult.ERROR, CronJobStatus.ABORTED);
+		}
+
+		final int shardSize = cronJob.getSiteMapUrlLimitPerFile() == null ? DEFAULT_URL_LIMIT_PER_FILE
+				: cronJob.getSiteMapUrlLimitPerFile().intValue();
+		if (isFullGenerationDue(site))
+		{
+			getIncrementalSiteMapService().generateFull(site, shardSize);
+		}
+		else
+		{
+			getIncrementalSiteMapService().generateIncremental(site, shardSize);
+		}
+		return new PerformResult(CronJobResult.SUCCESS, CronJobStatus.FINISHED);
+	}
+
+	protected boolean isFullGenerationDue(final CMSSiteModel site)
+	{
+		final Date lastFullGeneration = getIncrementalSiteMapService().getLastFullGeneration(site);
+		final int hours = getConfigurationService().getConfiguration().getInt(FULL_GENERATION_HOURS,
+				DEFAULT_FULL_GENERATION_HOURS);
+		return lastFullGeneration == null
+				|| System.currentTimeMillis() - lastFullGeneration.getTime() >= TimeUnit.HOURS.toMillis(hours);
+	}
+
+	protected CMSSiteService getCmsSiteService()
+	{
+		return cmsSiteService;
+	}
+
+	@Required
+	public void setCmsSiteService(final CMSSiteService cmsSiteService)
+	{
+		this.cmsSiteService = cmsSiteService;
+	}
+
+	protected IncrementalSiteMapService getIncrementalSiteMapService()
+	{
+		return incrementalSiteMapService;
+	}
+
+	@Required
+	public void setIncrementalSiteMapService(final IncrementalSiteMapService incrementalSiteMapService)
+	{
+		this.incrementalSiteMapService = incrementalSiteMapService;
+	}
+
+	protected ConfigurationService getConfigurationService()
+	{
+		return configurationService;
+	}
+
+	@Required
+	public void setConfigurationService(final ConfigurationService configurationService)
+	{
+		this.configurationService = configurationService;
+	}
+}
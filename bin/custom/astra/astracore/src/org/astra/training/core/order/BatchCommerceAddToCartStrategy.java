@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.core.order;
+
+import de.hybris.platform.commerceservices.order.CommerceCartModification;
+import de.hybris.platform.commerceservices.service.data.CommerceCartParameter;
+import de.hybris.platform.core.model.order.CartModel;
+import de.hybris.platform.core.model.product.ProductModel;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Strategy to add many entries to a cart at once, as done by the order grid and the quick order. Products and stock
+ * levels of all entries are resolved in bulk and the cart is calculated once for all entries.
+ */
+public interface BatchCommerceAddToCartStrategy
+{
+	/**
+	 * Status code of the modification of an entry that could not be added because of an error.
+	 */
+	String ERROR = "error";
+
+	/**
+	 * Resolves the products of the entries with one lookup.
+	 *
+	 * @param codes
+	 *           the product codes
+	 * @return the products found by code; codes without a product are missing
+	 */
+	Map<String, ProductModel> getProductsForCodes(Collection<String> codes);
+
+	/**
+	 * Adds all entries to their cart and calculates the cart once.
+	 *
+	 * @param parameters
+	 *           the entries to add, all for the same cart
+	 * @return one modification per entry in the order of the parameters; entries that could not be added have the status
+	 *         {@link #ERROR}
+	 */
+	List<CommerceCartModification> addToCart(List<CommerceCartParameter> parameters);
+
+	/**
+	 * Adds all entries to their cart without calculating it, for imports that add their entries in several chunks. The
+	 * cart has to be calculated with {@link #calculateCart(CartModel)} after the last chunk.
+	 *
+	 * @param parameters
+	 *           the entries to add, all for the same cart
+	 * @return one modification per entry in the order of the parameters; entries that could not be added have the status
+	 *         {@link #ERROR}
+	 */
+	List<CommerceCartModification> addToCartWithoutCalculation(List<CommerceCartParameter> parameters);
+
+	/**
+	 * Calculates a cart that entries were added to without calculation.
+	 *
+	 * @param cart
+	 *           the cart
+	 */
+	void calculateCart(CartModel cart);
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.core.order;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
+
+
+/**
+ * Reads the cart entries of a CSV file with the columns SKU and quantity chunk by chunk, so only one chunk of lines is
+ * held in memory at a time. A first line without a numeric quantity is taken as header; blank lines are skipped.
+ */
+public class CsvCartEntryReader implements Closeable
+{
+	/**
+	 * Reason of a line without product code.
+	 */
+	public static final String INVALID_PRODUCT_CODE = "invalidProductCode";
+	/**
+	 * Reason of a line without a positive integer quantity.
+	 */
+	public static final String INVALID_QUANTITY = "invalidQuantity";
+
+	private static final char SEPARATOR = ',';
+	private static final char QUOTE = '"';
+
+	private final BufferedReader reader;
+	private int lineNumber;
+
+	public CsvCartEntryReader(final Reader reader)
+	{
+		this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+	}
+
+	/**
+	 * @param chunkSize
+	 *           the maximum number of entries to read
+	 * @return the next entries, empty at the end of the file
+	 */
+	public List<CsvCartEntry> read(final int chunkSize) throws IOException
+	{
+		final List<CsvCartEntry> entries = new ArrayList<>(chunkSize);
+		for (String line = null; entries.size() < chunkSize && (line = reader.readLine()) != null;)
+		{
+			lineNumber++;
+			if (StringUtils.isNotBlank(line))
+			{
+				final CsvCartEntry entry = parse(line);
+				if (lineNumber > 1 || !INVALID_QUANTITY.equals(entry.getError()))
+				{
+					entries.add(entry);
+				}
+			}
+		}
+		return entries;
+	}
+
+	protected CsvCartEntry parse(final String line)
+	{
+		final int separator = line.indexOf(SEPARATOR);
+		final String productCode = unquote(separator < 0 ? line : line.substring(0, separator));
+		final String quantity = separator < 0 ? StringUtils.EMPTY : unquote(line.substring(separator + 1));
+
+		final long qty = NumberUtils.isDigits(quantity) && quantity.length() < 10 ? Long.parseLong(quantity) : 0L;
+		if (qty < 1L)
+		{
+			return new CsvCartEntry(lineNumber, productCode, 0L, INVALID_QUANTITY);
+		}
+		if (StringUtils.isEmpty(productCode))
+		{
+			return new CsvCartEntry(lineNumber, productCode, qty, INVALID_PRODUCT_CODE);
+		}
+		return new CsvCartEntry(lineNumber, productCode, qty, null);
+	}
+
+	protected String unquote(final String value)
+	{
+		final String trimmed = StringUtils.trimToEmpty(value);
+		if (trimmed.length() > 1 && trimmed.charAt(0) == QUOTE && trimmed.charAt(trimmed.length() - 1) == QUOTE)
+		{
+			return StringUtils.trim(trimmed.substring(1, trimmed.length() - 1));
+		}
+		return trimmed;
+	}
+
+	/**
+	 * @return the number of lines read so far, including blank lines and the header
+	 */
+	public int getLineNumber()
+	{
+		return lineNumber;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		reader.close();
+	}
+
+	/**
+	 * A line of the file.
+	 */
+	public static class CsvCartEntry
+	{
+		private final int lineNumber;
+		private final String productCode;
+		private final long quantity;
+		private final String error;
+
+		public CsvCartEntry(final int lineNumber, final String productCode, final long quantity, final String error)
+		{
+			this.lineNumber = lineNumber;
+			this.productCode = productCode;
+			this.quantity = quantity;
+			this.error = error;
+		}
+
+		public int getLineNumber()
+		{
+			return lineNumber;
+		}
+
+		public String getProductCode()
+		{
+			return productCode;
+		}
+
+		public long getQuantity()
+		{
+			return quantity;
+		}
+
+		/**
+		 * @return the reason the line is invalid, null for a valid line
+		 */
+		public String getError()
+		{
+			return error;
+		}
+	}
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.core.order.dao;
+
+import de.hybris.platform.core.model.product.ProductModel;
+import de.hybris.platform.ordersplitting.model.StockLevelModel;
+import de.hybris.platform.ordersplitting.model.WarehouseModel;
+import de.hybris.platform.servicelayer.internal.dao.Dao;
+
+import java.util.Collection;
+import java.util.List;
+
+
+/**
+ * Dao to retrieve the products and stock levels of all entries added to a cart at once.
+ */
+public interface BatchAddToCartDao extends Dao
+{
+	/**
+	 * Returns the products with the given codes in the catalog versions of the session.
+	 *
+	 * @param codes
+	 *           the product codes
+	 * @return the products found, in no particular order
+	 */
+	List<ProductModel> findProductsByCodes(Collection<String> codes);
+
+	/**
+	 * Returns the stock levels of the given products in the given warehouses.
+	 *
+	 * @param productCodes
+	 *           the product codes
+	 * @param warehouses
+	 *           the warehouses
+	 * @return the stock levels found, in no particular order
+	 */
+	List<StockLevelModel> findStockLevels(Collection<String> productCodes, Collection<WarehouseModel> warehouses);
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.core.order.dao.impl;
+
+import de.hybris.platform.core.model.product.ProductModel;
+import de.hybris.platform.ordersplitting.model.StockLevelModel;
+import de.hybris.platform.ordersplitting.model.WarehouseModel;
+import de.hybris.platform.servicelayer.internal.dao.AbstractItemDao;
+import de.hybris.platform.servicelayer.search.FlexibleSearchQuery;
+import de.hybris.platform.servicelayer.search.SearchResult;
+import org.astra.training.core.order.dao.BatchAddToCartDao;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.collections.CollectionUtils;
+
+
+/**
+ * Default implementation of {@link BatchAddToCartDao}.
+ *
+ * Finds the products and stock levels of all entries with one query each instead of one query per entry.
+ */
+public class DefaultBatchAddToCartDao extends AbstractItemDao implements BatchAddToCartDao
+{
+	private static final String QUERY_PARAM_CODES = "codes";
+	private static final String QUERY_PARAM_WAREHOUSES = "warehouses";
+
+	private static final String PRODUCTS_QUERY = "SELECT {p.PK} FROM {Product AS p} WHERE {p.code} IN (?codes)";
+
+	private static final String STOCK_LEVELS_QUERY = "SELECT {s.PK} FROM {StockLevel AS s}"
+			+ " WHERE {s.productCode} IN (?codes) AND {s.warehouse} IN (?warehouses)";
+
+	@Override
+	public List<ProductModel> findProductsByCodes(final Collection<String> codes)
+	{
+		if (CollectionUtils.isEmpty(codes))
+		{
+			return Collections.emptyList();
+		}
+
+		final FlexibleSearchQuery query = new FlexibleSearchQuery(PRODUCTS_QUERY);
+		query.addQueryParameter(QUERY_PARAM_CODES, codes);
+		query.setNeedTotal(false);
+
+		final SearchResult<ProductModel> result = getFlexibleSearchService().search(query);
+		return result.getResult();
+	}
+
+	@Override
+	public List<StockLevelModel> findStockLevels(final Collection<String> productCodes,
+			final Collection<WarehouseModel> warehouses)
+	{
+		if (CollectionUtils.isEmpty(productCodes) || CollectionUtils.isEmpty(warehouses))
+		{
+			return Collections.emptyList();
+		}
+
+		final FlexibleSearchQuery query = new FlexibleSearchQuery(STOCK_LEVELS_QUERY);
+		query.addQueryParameter(QUERY_PARAM_CODES, productCodes);
+		query.addQueryParameter(QUERY_PARAM_WAREHOUSES, warehouses);
+		query.setNeedTotal(false);
+
+		final SearchResult<StockLevelModel> result = getFlexibleSearchService().search(query);
+		return result.getResult();
+	}
+}
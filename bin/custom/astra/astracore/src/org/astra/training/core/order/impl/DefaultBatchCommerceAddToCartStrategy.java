@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.core.order.impl;
+
+import de.hybris.platform.commerceservices.order.CommerceCartModification;
+import de.hybris.platform.commerceservices.order.CommerceCartModificationException;
+import de.hybris.platform.commerceservices.order.impl.DefaultCommerceAddToCartStrategy;
+import de.hybris.platform.commerceservices.service.data.CommerceCartParameter;
+import de.hybris.platform.commerceservices.stock.strategies.CommerceAvailabilityCalculationStrategy;
+import de.hybris.platform.commerceservices.stock.strategies.WarehouseSelectionStrategy;
+import de.hybris.platform.core.model.order.CartModel;
+import de.hybris.platform.core.model.product.ProductModel;
+import de.hybris.platform.ordersplitting.model.StockLevelModel;
+import de.hybris.platform.servicelayer.session.SessionExecutionBody;
+import de.hybris.platform.servicelayer.session.SessionService;
+import de.hybris.platform.storelocator.model.PointOfServiceModel;
+import de.hybris.platform.store.BaseStoreModel;
+import org.astra.training.core.order.BatchCommerceAddToCartStrategy;
+import org.astra.training.core.order.dao.BatchAddToCartDao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Required;
+
+
+/**
+ * Default implementation of {@link BatchCommerceAddToCartStrategy}.
+ *
+ * Adds every entry like {@link DefaultCommerceAddToCartStrategy} does, but the availability of all products is read
+ * with one stock level query up front, and the cart calculation including the promotion evaluation runs once after all
+ * entries were added instead of once per entry.
+ */
+public class DefaultBatchCommerceAddToCartStrategy extends DefaultCommerceAddToCartStrategy
+		implements BatchCommerceAddToCartStrategy
+{
+	private static final Logger LOG = Logger.getLogger(DefaultBatchCommerceAddToCartStrategy.class);
+
+	private static final String AVAILABILITY_ATTRIBUTE = DefaultBatchCommerceAddToCartStrategy.class.getName()
+			+ ".availability";
+
+	private BatchAddToCartDao batchAddToCartDao;
+	private WarehouseSelectionStrategy warehouseSelectionStrategy;
+	private CommerceAvailabilityCalculationStrategy commerceStockLevelCalculationStrategy;
+	private SessionService sessionService;
+
+	@Override
+	public Map<String, ProductModel> getProductsForCodes(final Collection<String> codes)
+	{
+		final Map<String, ProductModel> products = new HashMap<>();
+		for (final ProductModel product : getBatchAddToCartDao().findProductsByCodes(new HashSet<>(codes)))
+		{
+			products.put(product.getCode(), product);
+		}
+		return products;
+	}
+
+	@Override
+	public List<CommerceCartModification> addToCart(final List<CommerceCartParameter> parameters)
+	{
+		return addAllToCart(parameters, true);
+	}
+
+	@Override
+	public List<CommerceCartModification> addToCartWithoutCalculation(final List<CommerceCartParameter> parameters)
+	{
+		return addAllToCart(parameters, false);
+	}
+
+	@Override
+	public void calculateCart(final CartModel cart)
+	{
+		final CommerceCartParameter calculationParameter = new CommerceCartParameter();
+		calculationParameter.setEnableHooks(true);
+		calculationParameter.setCart(cart);
+		getCommerceCartCalculationStrategy().calculateCart(calculationParameter);
+	}
+
+	protected List<CommerceCartModification> addAllToCart(final List<CommerceCartParameter> parameters, final boolean calculate)
+	{
+		if (CollectionUtils.isEmpty(parameters))
+		{
+			return Collections.emptyList();
+		}
+
+		final Map<String, Long> availability = getAvailability(parameters);
+		return (List<CommerceCartModification>) getSessionService().executeInLocalView(new SessionExecutionBody()
+		{
+			@Override
+			public Object execute()
+			{
+				getSessionService().setAttribute(AVAILABILITY_ATTRIBUTE, availability);
+				return doAddAllToCart(parameters, calculate);
+			}
+		});
+	}
+
+	protected List<CommerceCartModification> doAddAllToCart(final List<CommerceCartParameter> parameters,
+			final boolean calculate)
+	{
+		final List<CommerceCartModification> modifications = new ArrayList<>(parameters.size());
+		try
+		{
+			for (final CommerceCartParameter parameter : parameters)
+			{
+				try
+				{
+					modifications.add(doAddToCart(parameter));
+				}
+				catch (final CommerceCartModificationException e)
+				{
+					modifications.add(createErrorModification(parameter, e));
+				}
+			}
+		}
+		finally
+		{
+			// entries added before an unexpected failure are saved already, so the cart totals must follow them
+			if (calculate)
+			{
+				calculateCart(parameters.get(0).getCart());
+			}
+		}
+
+		for (int i = 0; i < parameters.size(); i++)
+		{
+			final CommerceCartParameter parameter = parameters.get(i);
+			final CommerceCartModification modification = modifications.get(i);
+			if (!ERROR.equals(modification.getStatusCode()))
+			{
+				try
+				{
+					afterAddToCart(parameter, modification);
+					// the entries are fully populated now, so similar ones can be found and merged
+					mergeEntry(modification, parameter);
+				}
+				catch (final CommerceCartModificationException e)
+				{
+					modifications.set(i, createErrorModification(parameter, e));
+				}
+			}
+		}
+		return modifications;
+	}
+
+	protected CommerceCartModification createErrorModification(final CommerceCartParameter parameter,
+			final CommerceCartModificationException e)
+	{
+		if (LOG.isDebugEnabled())
+		{
+			LOG.debug("Entry could not be added to cart - " + e.getMessage(), e);
+		}
+		return createAddToCartResp(parameter, ERROR, createEmptyCartEntry(parameter), 0);
+	}
+
+	/**
+	 * Calculates the availability in the warehouses of the current base store for the products of all entries that are
+	 * not picked up in store.
+	 *
+	 * @return the availability by product code, null values for products that are forced in stock
+	 */
+	protected Map<String, Long> getAvailability(final List<CommerceCartParameter> parameters)
+	{
+		final BaseStoreModel baseStore = getBaseStoreService().getCurrentBaseStore();
+		if (baseStore == null || !getCommerceStockService().isStockSystemEnabled(baseStore))
+		{
+			return Collections.emptyMap();
+		}
+
+		final Set<String> productCodes = new HashSet<>();
+		for (final CommerceCartParameter parameter : parameters)
+		{
+			if (parameter.getPointOfService() == null && parameter.getProduct() != null)
+			{
+				productCodes.add(parameter.getProduct().getCode());
+			}
+		}
+
+		final Map<String, Collection<StockLevelModel>> stockLevels = new HashMap<>();
+		for (final String productCode : productCodes)
+		{
+			stockLevels.put(productCode, new ArrayList<>());
+		}
+		for (final StockLevelModel stockLevel : getBatchAddToCartDao().findStockLevels(productCodes,
+				getWarehouseSelectionStrategy().getWarehousesForBaseStore(baseStore)))
+		{
+			stockLevels.computeIfAbsent(stockLevel.getProductCode(), code -> new ArrayList<>()).add(stockLevel);
+		}
+
+		final Map<String, Long> availability = new HashMap<>();
+		for (final Map.Entry<String, Collection<StockLevelModel>> entry : stockLevels.entrySet())
+		{
+			availability.put(entry.getKey(), getCommerceStockLevelCalculationStrategy().calculateAvailability(entry.getValue()));
+		}
+		return availability;
+	}
+
+	@Override
+	protected long getAvailableStockLevel(final ProductModel productModel, final PointOfServiceModel pointOfServiceModel)
+	{
+		final Map<String, Long> availability = getSessionService().getAttribute(AVAILABILITY_ATTRIBUTE);
+		if (pointOfServiceModel == null && availability != null && availability.containsKey(productModel.getCode()))
+		{
+			final Long availableStockLevel = availability.get(productModel.getCode());
+			return availableStockLevel == null ? getForceInStockMaxQuantity() : availableStockLevel.longValue();
+		}
+		return super.getAvailableStockLevel(productModel, pointOfServiceModel);
+	}
+
+	protected BatchAddToCartDao getBatchAddToCartDao()
+	{
+		return batchAddToCartDao;
+	}
+
+	@Required
+	public void setBatchAddToCartDao(final BatchAddToCartDao batchAddToCartDao)
+	{
+		this.batchAddToCartDao = batchAddToCartDao;
+	}
+
+	protected WarehouseSelectionStrategy getWarehouseSelectionStrategy()
+	{
+		return warehouseSelectionStrategy;
+	}
+
+	@Required
+	public void setWarehouseSelectionStrategy(final WarehouseSelectionStrategy warehouseSelectionStrategy)
+	{
+		this.warehouseSelectionStrategy = warehouseSelectionStrategy;
+	}
+
+	protected CommerceAvailabilityCalculationStrategy getCommerceStockLevelCalculationStrategy()
+	{
+		return commerceStockLevelCalculationStrategy;
+	}
+
+	@Required
+	public void setCommerceStockLevelCalculationStrategy(
+			final CommerceAvailabilityCalculationStrategy commerceStockLevelCalculationStrategy)
+	{
+		this.commerceStockLevelCalculationStrategy = commerceStockLevelCalculationStrategy;
+	}
+
+	protected SessionService getSessionService()
+	{
+		return sessionService;
+	}
+
+	@Required
+	public void setSessionService(final SessionService sessionService)
+	{
+		this.sessionService = sessionService;
+	}
+}
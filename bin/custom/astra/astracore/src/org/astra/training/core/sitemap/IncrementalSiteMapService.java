@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.core.sitemap;
+
+import de.hybris.platform.cms2.model.site.CMSSiteModel;
+
+import java.io.File;
+import java.util.Date;
+
+
+/**
+ * Writes the sitemap of a site as gzip compressed shard files and a sitemap index. Every page is assigned to a shard by
+ * a stable hash of its key, so a change only requires the shard holding the changed page to be written again.
+ */
+public interface IncrementalSiteMapService
+{
+	/**
+	 * @return whether the folder shared by the storefront nodes to write the sitemaps to is configured; without it no
+	 *         sitemap is generated or served
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Assigns all pages of the site to shards and writes all shards and the index.
+	 *
+	 * @param site
+	 *           the site
+	 * @param shardSize
+	 *           the maximum number of URLs of a shard
+	 * @return the number of shards written
+	 * @throws IllegalStateException
+	 *            if the service is not {@link #isEnabled() enabled}
+	 */
+	int generateFull(CMSSiteModel site, int shardSize);
+
+	/**
+	 * Writes the shards holding pages that changed since the last generation and updates the index. Falls back to
+	 * {@link #generateFull(CMSSiteModel, int)} if there was no generation with this shard size yet, or if a shard
+	 * would grow beyond the shard size.
+	 *
+	 * @param site
+	 *           the site
+	 * @param shardSize
+	 *           the maximum number of URLs of a shard
+	 * @return the number of shards written
+	 * @throws IllegalStateException
+	 *            if the service is not {@link #isEnabled() enabled}
+	 */
+	int generateIncremental(CMSSiteModel site, int shardSize);
+
+	/**
+	 * @param site
+	 *           the site
+	 * @return the time of the last full generation, null if there was none
+	 */
+	Date getLastFullGeneration(CMSSiteModel site);
+
+	/**
+	 * @param site
+	 *           the site
+	 * @return the sitemap index of the site, null if it was not generated yet or the service is not enabled
+	 */
+	File getIndexFile(CMSSiteModel site);
+
+	/**
+	 * @param site
+	 *           the site
+	 * @param fileName
+	 *           the name of the shard file
+	 * @return the shard file, null if there is no shard file with this name
+	 */
+	File getShardFile(CMSSiteModel site, String fileName);
+}
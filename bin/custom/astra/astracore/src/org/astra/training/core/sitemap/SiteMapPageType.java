@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.core.sitemap;
+
+import de.hybris.platform.category.model.CategoryModel;
+import de.hybris.platform.cms2.model.pages.ContentPageModel;
+import de.hybris.platform.core.model.product.ProductModel;
+import de.hybris.platform.storelocator.model.PointOfServiceModel;
+
+
+/**
+ * The item types listed in the sitemap. The key of a page is the prefix of its type followed by the code, uid or name of
+ * its item.
+ */
+public enum SiteMapPageType
+{
+	PRODUCT("p:", ProductModel._TYPECODE, ProductModel.CODE, ProductModel.CATALOGVERSION, "{approvalStatus} = ?approved"),
+	CATEGORY("c:", CategoryModel._TYPECODE + "!", CategoryModel.CODE, CategoryModel.CATALOGVERSION, null),
+	CONTENT_PAGE("cp:", ContentPageModel._TYPECODE, ContentPageModel.UID, ContentPageModel.CATALOGVERSION,
+			"{label} LIKE '/%'"),
+	STORE("s:", PointOfServiceModel._TYPECODE, PointOfServiceModel.NAME, PointOfServiceModel.BASESTORE,
+			"{type} = ?storeType");
+
+	private final String prefix;
+	private final String typeCode;
+	private final String keyAttribute;
+	private final String scopeAttribute;
+	private final String condition;
+
+	SiteMapPageType(final String prefix, final String typeCode, final String keyAttribute, final String scopeAttribute,
+			final String condition)
+	{
+		this.prefix = prefix;
+		this.typeCode = typeCode;
+		this.keyAttribute = keyAttribute;
+		this.scopeAttribute = scopeAttribute;
+		this.condition = condition;
+	}
+
+	/**
+	 * @param key
+	 *           a page key
+	 * @return the type of the page, null if the key has no known prefix
+	 */
+	public static SiteMapPageType forKey(final String key)
+	{
+		for (final SiteMapPageType type : values())
+		{
+			if (key.startsWith(type.getPrefix()))
+			{
+				return type;
+			}
+		}
+		return null;
+	}
+
+	public String getKey(final String code)
+	{
+		return prefix + code;
+	}
+
+	public String getCode(final String key)
+	{
+		return key.substring(prefix.length());
+	}
+
+	public String getPrefix()
+	{
+		return prefix;
+	}
+
+	/**
+	 * @return the type to search, with a trailing exclamation mark if subtypes are excluded
+	 */
+	public String getTypeCode()
+	{
+		return typeCode;
+	}
+
+	public String getKeyAttribute()
+	{
+		return keyAttribute;
+	}
+
+	/**
+	 * @return the attribute holding the catalog version or the base store the item belongs to
+	 */
+	public String getScopeAttribute()
+	{
+		return scopeAttribute;
+	}
+
+	/**
+	 * @return the flexible search condition an item has to meet to be listed, null if all items are listed
+	 */
+	public String getCondition()
+	{
+		return condition;
+	}
+}
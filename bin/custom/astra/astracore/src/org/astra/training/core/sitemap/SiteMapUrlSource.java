@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.core.sitemap;
+
+import de.hybris.platform.cms2.model.site.CMSSiteModel;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+
+/**
+ * Source of the pages listed in the sitemap of a site. Every page is identified by a stable key derived from its item,
+ * so the key of a page stays the same while its URL changes. A page has a URL per language and currency of the sitemap
+ * configuration of the site.
+ */
+public interface SiteMapUrlSource
+{
+	/**
+	 * @param site
+	 *           the site
+	 * @return the number of pages of the site
+	 */
+	int countKeys(CMSSiteModel site);
+
+	/**
+	 * Passes the keys of all pages of the site to the consumer, reading them page by page.
+	 *
+	 * @param site
+	 *           the site
+	 * @param consumer
+	 *           receives every key
+	 */
+	void forEachKey(CMSSiteModel site, Consumer<String> consumer);
+
+	/**
+	 * @param site
+	 *           the site
+	 * @param since
+	 *           the time of the last generation
+	 * @return the keys of the pages whose items were created or modified after the given time
+	 */
+	Collection<String> getKeysModifiedSince(CMSSiteModel site, Date since);
+
+	/**
+	 * @param site
+	 *           the site
+	 * @param keys
+	 *           the keys
+	 * @return the absolute URLs per key, one per language and currency unless they are the same; keys whose item was
+	 *         removed or no longer belongs in the sitemap are missing
+	 */
+	Map<String, List<String>> getUrls(CMSSiteModel site, Collection<String> keys);
+
+	/**
+	 * @param site
+	 *           the site
+	 * @return the largest number of URLs of a page
+	 */
+	int getUrlsPerKey(CMSSiteModel site);
+
+	/**
+	 * @param site
+	 *           the site
+	 * @param fileName
+	 *           the name of a sitemap file
+	 * @return the absolute URL the storefront serves the file at
+	 */
+	String getSiteMapFileUrl(CMSSiteModel site, String fileName);
+}
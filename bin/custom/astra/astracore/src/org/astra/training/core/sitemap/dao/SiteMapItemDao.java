@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.core.sitemap.dao;
+
+import de.hybris.platform.core.model.ItemModel;
+import de.hybris.platform.servicelayer.internal.dao.Dao;
+import org.astra.training.core.sitemap.SiteMapPageType;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+
+/**
+ * Finds the items listed in the sitemap by their codes, without loading more than one page of items at a time. The
+ * scopes are the catalog versions or base stores the items belong to, see {@link SiteMapPageType#getScopeAttribute()}.
+ */
+public interface SiteMapItemDao extends Dao
+{
+	/**
+	 * @return the number of listed items of the type in the scopes
+	 */
+	int countItems(SiteMapPageType type, Collection<? extends ItemModel> scopes);
+
+	/**
+	 * Passes the codes of all listed items of the type in the scopes to the consumer, reading them in pages of the given
+	 * size.
+	 */
+	void forEachCode(SiteMapPageType type, Collection<? extends ItemModel> scopes, int pageSize, Consumer<String> consumer);
+
+	/**
+	 * @return the codes of the items of the type in the scopes modified after the given time, whether they are listed or
+	 *         not
+	 */
+	List<String> findCodesModifiedSince(SiteMapPageType type, Collection<? extends ItemModel> scopes, Date since);
+
+	/**
+	 * @return the listed items of the type in the scopes with the given codes
+	 */
+	<T extends ItemModel> List<T> findItems(SiteMapPageType type, Collection<? extends ItemModel> scopes,
+			Collection<String> codes);
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.core.sitemap.dao.impl;
+
+import de.hybris.platform.catalog.enums.ArticleApprovalStatus;
+import de.hybris.platform.core.model.ItemModel;
+import de.hybris.platform.servicelayer.internal.dao.AbstractItemDao;
+import de.hybris.platform.servicelayer.search.FlexibleSearchQuery;
+import de.hybris.platform.servicelayer.search.SearchResult;
+import de.hybris.platform.storelocator.enums.PointOfServiceTypeEnum;
+import org.astra.training.core.sitemap.SiteMapPageType;
+import org.astra.training.core.sitemap.dao.SiteMapItemDao;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang.StringUtils;
+
+
+/**
+ * Default implementation of {@link SiteMapItemDao}.
+ *
+ * Pages through the items by primary key instead of by offset, so reading the last page costs as much as reading the
+ * first one.
+ */
+public class DefaultSiteMapItemDao extends AbstractItemDao implements SiteMapItemDao
+{
+	private static final String QUERY_PARAM_SCOPES = "scopes";
+	private static final String QUERY_PARAM_APPROVED = "approved";
+	private static final String QUERY_PARAM_STORE_TYPE = "storeType";
+	private static final String QUERY_PARAM_LAST_PK = "lastPk";
+	private static final String QUERY_PARAM_SINCE = "since";
+	private static final String QUERY_PARAM_CODES = "codes";
+
+	@Override
+	public int countItems(final SiteMapPageType type, final Collection<? extends ItemModel> scopes)
+	{
+		if (CollectionUtils.isEmpty(scopes))
+		{
+			return 0;
+		}
+
+		final FlexibleSearchQuery query = createQuery(type, "SELECT COUNT({PK})", true, null, scopes);
+		query.setResultClassList(Collections.singletonList(Integer.class));
+
+		final SearchResult<Integer> result = getFlexibleSearchService().search(query);
+		return result.getResult().isEmpty() ? 0 : result.getResult().get(0).intValue();
+	}
+
+	@Override
+	public void forEachCode(final SiteMapPageType type, final Collection<? extends ItemModel> scopes,
+			final int pageSize, final Consumer<String> consumer)
+	{
+		if (CollectionUtils.isEmpty(scopes))
+		{
+			return;
+		}
+
+		Long lastPk = Long.valueOf(0L);
+		for (List<List<Object>> page = null; page == null || page.size() == pageSize;)
+		{
+			final FlexibleSearchQuery query = createQuery(type, "SELECT {PK}, {" + type.getKeyAttribute() + "}", true,
+					"{PK} > ?lastPk ORDER BY {PK}", scopes);
+			query.addQueryParameter(QUERY_PARAM_LAST_PK, lastPk);
+			query.setResultClassList(Arrays.asList(Long.class, String.class));
+			query.setCount(pageSize);
+
+			final SearchResult<List<Object>> result = getFlexibleSearchService().search(query);
+			page = result.getResult();
+			for (final List<Object> row : page)
+			{
+				consumer.accept((String) row.get(1));
+			}
+			if (!page.isEmpty())
+			{
+				lastPk = (Long) page.get(page.size() - 1).get(0);
+			}
+		}
+	}
+
+	@Override
+	public List<String> findCodesModifiedSince(final SiteMapPageType type,
+			final Collection<? extends ItemModel> scopes, final Date since)
+	{
+		if (CollectionUtils.isEmpty(scopes))
+		{
+			return Collections.emptyList();
+		}
+
+		final FlexibleSearchQuery query = createQuery(type, "SELECT {" + type.getKeyAttribute() + "}", false,
+				"{" + ItemModel.MODIFIEDTIME + "} > ?since", scopes);
+		query.addQueryParameter(QUERY_PARAM_SINCE, since);
+		query.setResultClassList(Collections.singletonList(String.class));
+
+		final SearchResult<String> result = getFlexibleSearchService().search(query);
+		return result.getResult();
+	}
+
+	@Override
+	public <T extends ItemModel> List<T> findItems(final SiteMapPageType type,
+			final Collection<? extends ItemModel> scopes, final Collection<String> codes)
+	{
+		if (CollectionUtils.isEmpty(scopes) || CollectionUtils.isEmpty(codes))
+		{
+			return Collections.emptyList();
+		}
+
+		final FlexibleSearchQuery query = createQuery(type, "SELECT {PK}", true,
+				"{" + type.getKeyAttribute() + "} IN (?codes)", scopes);
+		query.addQueryParameter(QUERY_PARAM_CODES, codes);
+
+		final SearchResult<T> result = getFlexibleSearchService().search(query);
+		return result.getResult();
+	}
+
+	/**
+	 * @param listedOnly
+	 *           whether to restrict the query to the items meeting the condition of the type
+	 * @param condition
+	 *           further condition, may be followed by an order by clause, or null
+	 */
+	protected FlexibleSearchQuery createQuery(final SiteMapPageType type, final String select, final boolean listedOnly,
+			final String condition, final Collection<? extends ItemModel> scopes)
+	{
+		final StringBuilder queryString = new StringBuilder(select).append(" FROM {").append(type.getTypeCode())
+				.append("} WHERE {").append(type.getScopeAttribute()).append("} IN (?scopes)");
+		final boolean typeCondition = listedOnly && type.getCondition() != null;
+		if (typeCondition)
+		{
+			queryString.append(" AND ").append(type.getCondition());
+		}
+		if (condition != null)
+		{
+			queryString.append(" AND ").append(condition);
+		}
+
+		final FlexibleSearchQuery query = new FlexibleSearchQuery(queryString.toString());
+		query.addQueryParameter(QUERY_PARAM_SCOPES, scopes);
+		if (typeCondition && StringUtils.contains(type.getCondition(), "?" + QUERY_PARAM_APPROVED))
+		{
+			query.addQueryParameter(QUERY_PARAM_APPROVED, ArticleApprovalStatus.APPROVED);
+		}
+		if (typeCondition && StringUtils.contains(type.getCondition(), "?" + QUERY_PARAM_STORE_TYPE))
+		{
+			query.addQueryParameter(QUERY_PARAM_STORE_TYPE, PointOfServiceTypeEnum.STORE);
+		}
+		query.setNeedTotal(false);
+		return query;
+	}
+}
@@ -0,0 +1,570 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.core.sitemap.impl;
+
+import de.hybris.platform.cms2.model.site.CMSSiteModel;
+import de.hybris.platform.servicelayer.config.ConfigurationService;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.astra.training.core.sitemap.IncrementalSiteMapService;
+import org.astra.training.core.sitemap.SiteMapUrlSource;
+import org.springframework.beans.factory.annotation.Required;
+
+
+/**
+ * Keeps the sitemap of every site in a folder of its own below {@value #DIRECTORY}, which has to be shared by the node
+ * running the job and all storefront nodes, as they serve the files. Next to every gzip compressed shard
+ * the keys of its pages are kept, so a shard can be written again for the pages that changed without reading all other
+ * pages of the site. Shards, key lists, the index and the generation state are written to a temporary file first and
+ * moved into place, so the storefront never serves a partly written file.
+ * <p>
+ * A page whose item was removed drops out of its shard the next time the shard is written; shards without changes keep
+ * such pages until the next full generation. A shard holds as many pages as fit with all their URLs into the shard size.
+ */
+public class DefaultIncrementalSiteMapService implements IncrementalSiteMapService
+{
+	private static final Logger LOG = Logger.getLogger(DefaultIncrementalSiteMapService.class);
+
+	protected static final String DIRECTORY = "astracore.sitemap.directory";
+	protected static final String RESOLVE_BATCH_SIZE = "astracore.sitemap.resolveBatchSize";
+	protected static final int DEFAULT_RESOLVE_BATCH_SIZE = 1000;
+	/**
+	 * A full generation fills shards up to this share of the shard size, so they can grow until the next one.
+	 */
+	protected static final int SHARD_FILL_PERCENT = 50;
+	/**
+	 * Changes are read from this long before the last generation, to include modifications committed while it ran.
+	 */
+	protected static final long CHANGE_OVERLAP_MILLIS = 60_000L;
+
+	protected static final String INDEX_FILE = "sitemap-index.xml";
+	protected static final String STATE_FILE = "sitemap.properties";
+	private static final Pattern SHARD_FILE = Pattern.compile("sitemap-(\\d{4})\\.xml\\.gz");
+	private static final String SHARD_FILE_FORMAT = "sitemap-%04d.xml.gz";
+	private static final String KEY_FILE_FORMAT = "sitemap-%04d.keys";
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private static final String URLSET_START = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n";
+	private static final String URLSET_END = "</urlset>\n";
+	private static final String INDEX_START = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n";
+	private static final String INDEX_END = "</sitemapindex>\n";
+
+	private ConfigurationService configurationService;
+	private SiteMapUrlSource siteMapUrlSource;
+
+	@Override
+	public boolean isEnabled()
+	{
+		return StringUtils.isNotBlank(getConfigurationService().getConfiguration().getString(DIRECTORY));
+	}
+
+	@Override
+	public int generateFull(final CMSSiteModel site, final int shardSize)
+	{
+		final long started = System.currentTimeMillis();
+		final Path directory = getSiteDirectory(site);
+		final int keysPerShard = getKeysPerShard(site, shardSize);
+		final int shardCount = getShardCount(getSiteMapUrlSource().countKeys(site), keysPerShard);
+		try
+		{
+			Files.createDirectories(directory);
+			final Path work = Files.createTempDirectory(directory, "full");
+			try
+			{
+				distributeKeys(site, work, shardCount);
+
+				final SiteMapState state = new SiteMapState(keysPerShard, shardCount);
+				state.setFullGenerated(started);
+				state.setGenerated(started);
+				for (int shard = 0; shard < shardCount; shard++)
+				{
+					final List<String> keys = readKeys(work.resolve(getKeyFileName(shard)));
+					state.setShard(shard, writeShard(site, directory, shard, keys), started);
+				}
+				writeIndex(site, directory, state);
+				writeState(directory, state);
+				deleteShardsFrom(directory, shardCount);
+			}
+			finally
+			{
+				FileUtils.deleteQuietly(work.toFile());
+			}
+		}
+		catch (final IOException e)
+		{
+			throw new UncheckedIOException("Could not write the sitemap of site " + site.getUid(), e);
+		}
+		LOG.info("Wrote the full sitemap of site " + site.getUid() + " to " + shardCount + " shards in "
+				+ (System.currentTimeMillis() - started) + " ms");
+		return shardCount;
+	}
+
+	@Override
+	public int generateIncremental(final CMSSiteModel site, final int shardSize)
+	{
+		final long started = System.currentTimeMillis();
+		final Path directory = getSiteDirectory(site);
+		final SiteMapState state = readState(directory);
+		final int keysPerShard = getKeysPerShard(site, shardSize);
+		if (state == null || state.getShardSize() != keysPerShard)
+		{
+			return generateFull(site, shardSize);
+		}
+
+		final Collection<String> changedKeys = getSiteMapUrlSource().getKeysModifiedSince(site,
+				new Date(state.getGenerated() - CHANGE_OVERLAP_MILLIS));
+		final Map<Integer, Set<String>> changedKeysByShard = new TreeMap<>();
+		for (final String key : changedKeys)
+		{
+			changedKeysByShard.computeIfAbsent(Integer.valueOf(getShard(key, state.getShardCount())), shard -> new HashSet<>())
+					.add(key);
+		}
+
+		try
+		{
+			for (final Map.Entry<Integer, Set<String>> changed : changedKeysByShard.entrySet())
+			{
+				final int shard = changed.getKey().intValue();
+				final Set<String> keys = new LinkedHashSet<>(readKeys(directory.resolve(getKeyFileName(shard))));
+				keys.addAll(changed.getValue());
+				if (keys.size() > keysPerShard)
+				{
+					LOG.info("Shard " + shard + " of site " + site.getUid() + " outgrew " + keysPerShard + " pages, resharding");
+					return generateFull(site, shardSize);
+				}
+				state.setShard(shard, writeShard(site, directory, shard, keys), started);
+			}
+			state.setGenerated(started);
+			if (!changedKeysByShard.isEmpty())
+			{
+				writeIndex(site, directory, state);
+			}
+			writeState(directory, state);
+		}
+		catch (final IOException e)
+		{
+			throw new UncheckedIOException("Could not write the sitemap of site " + site.getUid(), e);
+		}
+		LOG.info("Wrote " + changedKeysByShard.size() + " of " + state.getShardCount() + " sitemap shards of site "
+				+ site.getUid() + " for " + changedKeys.size() + " changed pages in " + (System.currentTimeMillis() - started)
+				+ " ms");
+		return changedKeysByShard.size();
+	}
+
+	@Override
+	public Date getLastFullGeneration(final CMSSiteModel site)
+	{
+		if (!isEnabled())
+		{
+			return null;
+		}
+		final SiteMapState state = readState(getSiteDirectory(site));
+		return state == null ? null : new Date(state.getFullGenerated());
+	}
+
+	@Override
+	public File getIndexFile(final CMSSiteModel site)
+	{
+		if (!isEnabled())
+		{
+			return null;
+		}
+		final Path index = getSiteDirectory(site).resolve(INDEX_FILE);
+		return Files.isRegularFile(index) ? index.toFile() : null;
+	}
+
+	@Override
+	public File getShardFile(final CMSSiteModel site, final String fileName)
+	{
+		if (!isEnabled() || fileName == null || !SHARD_FILE.matcher(fileName).matches())
+		{
+			return null;
+		}
+		final Path shard = getSiteDirectory(site).resolve(fileName);
+		return Files.isRegularFile(shard) ? shard.toFile() : null;
+	}
+
+	protected void distributeKeys(final CMSSiteModel site, final Path work, final int shardCount) throws IOException
+	{
+		final BufferedWriter[] writers = new BufferedWriter[shardCount];
+		try
+		{
+			for (int shard = 0; shard < shardCount; shard++)
+			{
+				writers[shard] = Files.newBufferedWriter(work.resolve(getKeyFileName(shard)), StandardCharsets.UTF_8);
+			}
+			getSiteMapUrlSource().forEachKey(site, key -> {
+				try
+				{
+					final BufferedWriter writer = writers[getShard(key, shardCount)];
+					writer.write(key);
+					writer.newLine();
+				}
+				catch (final IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+		catch (final UncheckedIOException e)
+		{
+			throw e.getCause();
+		}
+		finally
+		{
+			for (final BufferedWriter writer : writers)
+			{
+				if (writer != null)
+				{
+					writer.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Resolves the URLs of the keys batch by batch and streams them into the shard file, then replaces the key list of
+	 * the shard with the keys that still have a URL.
+	 *
+	 * @return the number of URLs written
+	 */
+	protected int writeShard(final CMSSiteModel site, final Path directory, final int shard, final Collection<String> keys)
+			throws IOException
+	{
+		final int batchSize = getConfigurationService().getConfiguration().getInt(RESOLVE_BATCH_SIZE,
+				DEFAULT_RESOLVE_BATCH_SIZE);
+		final Path shardTemp = Files.createTempFile(directory, getShardFileName(shard), TEMP_SUFFIX);
+		final Path keyTemp = Files.createTempFile(directory, getKeyFileName(shard), TEMP_SUFFIX);
+		int written = 0;
+		try
+		{
+			try (Writer out = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(shardTemp), 64 * 1024),
+					StandardCharsets.UTF_8); BufferedWriter keyOut = Files.newBufferedWriter(keyTemp, StandardCharsets.UTF_8))
+			{
+				out.write(URLSET_START);
+				final List<String> batch = new ArrayList<>(batchSize);
+				for (final Iterator<String> iterator = keys.iterator(); iterator.hasNext();)
+				{
+					batch.add(iterator.next());
+					if (batch.size() == batchSize || !iterator.hasNext())
+					{
+						final Map<String, List<String>> urls = getSiteMapUrlSource().getUrls(site, batch);
+						for (final String key : batch)
+						{
+							final List<String> keyUrls = urls.get(key);
+							if (keyUrls != null && !keyUrls.isEmpty())
+							{
+								for (final String url : keyUrls)
+								{
+									out.write("<url><loc>" + StringEscapeUtils.escapeXml(url) + "</loc></url>\n");
+								}
+								keyOut.write(key);
+								keyOut.newLine();
+								written += keyUrls.size();
+							}
+						}
+						batch.clear();
+					}
+				}
+				out.write(URLSET_END);
+			}
+			move(keyTemp, directory.resolve(getKeyFileName(shard)));
+			move(shardTemp, directory.resolve(getShardFileName(shard)));
+		}
+		finally
+		{
+			Files.deleteIfExists(shardTemp);
+			Files.deleteIfExists(keyTemp);
+		}
+		return written;
+	}
+
+	protected void writeIndex(final CMSSiteModel site, final Path directory, final SiteMapState state) throws IOException
+	{
+		final Path temp = Files.createTempFile(directory, INDEX_FILE, TEMP_SUFFIX);
+		try
+		{
+			try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8))
+			{
+				out.write(INDEX_START);
+				for (int shard = 0; shard < state.getShardCount(); shard++)
+				{
+					if (state.getShardUrls(shard) > 0)
+					{
+						out.write("<sitemap><loc>"
+								+ StringEscapeUtils.escapeXml(getSiteMapUrlSource().getSiteMapFileUrl(site, getShardFileName(shard)))
+								+ "</loc><lastmod>" + DateTimeFormatter.ISO_INSTANT.format(Instant.ofEpochMilli(state.getShardModified(shard)))
+								+ "</lastmod></sitemap>\n");
+					}
+				}
+				out.write(INDEX_END);
+			}
+			move(temp, directory.resolve(INDEX_FILE));
+		}
+		finally
+		{
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	protected SiteMapState readState(final Path directory)
+	{
+		final Path file = directory.resolve(STATE_FILE);
+		if (!Files.isRegularFile(file))
+		{
+			return null;
+		}
+		try (InputStream in = Files.newInputStream(file))
+		{
+			final Properties properties = new Properties();
+			properties.load(in);
+			return new SiteMapState(properties);
+		}
+		catch (final IOException | IllegalArgumentException e)
+		{
+			LOG.warn("Could not read the sitemap state " + file + ", generating the full sitemap", e);
+			return null;
+		}
+	}
+
+	protected void writeState(final Path directory, final SiteMapState state) throws IOException
+	{
+		final Path temp = Files.createTempFile(directory, STATE_FILE, TEMP_SUFFIX);
+		try
+		{
+			try (OutputStream out = Files.newOutputStream(temp))
+			{
+				state.getProperties().store(out, null);
+			}
+			move(temp, directory.resolve(STATE_FILE));
+		}
+		finally
+		{
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Removes the shards of a previous generation that had more shards.
+	 */
+	protected void deleteShardsFrom(final Path directory, final int shardCount) throws IOException
+	{
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory))
+		{
+			for (final Path file : files)
+			{
+				final Matcher matcher = SHARD_FILE.matcher(file.getFileName().toString());
+				if (matcher.matches() && Integer.parseInt(matcher.group(1)) >= shardCount)
+				{
+					Files.deleteIfExists(file);
+					Files.deleteIfExists(directory.resolve(getKeyFileName(Integer.parseInt(matcher.group(1)))));
+				}
+			}
+		}
+	}
+
+	protected List<String> readKeys(final Path keyFile) throws IOException
+	{
+		return Files.isRegularFile(keyFile) ? Files.readAllLines(keyFile, StandardCharsets.UTF_8) : Collections.emptyList();
+	}
+
+	protected void move(final Path source, final Path target) throws IOException
+	{
+		try
+		{
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (final AtomicMoveNotSupportedException e)
+		{
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * @return the shard of the key, stable for as long as the number of shards does not change
+	 */
+	protected int getShard(final String key, final int shardCount)
+	{
+		final CRC32 crc = new CRC32();
+		crc.update(key.getBytes(StandardCharsets.UTF_8));
+		return (int) (crc.getValue() % shardCount);
+	}
+
+	/**
+	 * @return the number of pages a shard holds at most, so that all their URLs stay within the shard size
+	 */
+	protected int getKeysPerShard(final CMSSiteModel site, final int shardSize)
+	{
+		return Math.max(1, shardSize / getSiteMapUrlSource().getUrlsPerKey(site));
+	}
+
+	protected int getShardCount(final int keyCount, final int keysPerShard)
+	{
+		final long fill = Math.max(1L, (long) keysPerShard * SHARD_FILL_PERCENT / 100);
+		return (int) Math.max(1L, (keyCount + fill - 1) / fill);
+	}
+
+	protected Path getSiteDirectory(final CMSSiteModel site)
+	{
+		if (!isEnabled())
+		{
+			throw new IllegalStateException("Set " + DIRECTORY + " to a folder shared by all storefront nodes");
+		}
+		return Paths.get(getConfigurationService().getConfiguration().getString(DIRECTORY), site.getUid());
+	}
+
+	protected String getShardFileName(final int shard)
+	{
+		return String.format(SHARD_FILE_FORMAT, Integer.valueOf(shard));
+	}
+
+	protected String getKeyFileName(final int shard)
+	{
+		return String.format(KEY_FILE_FORMAT, Integer.valueOf(shard));
+	}
+
+	protected ConfigurationService getConfigurationService()
+	{
+		return configurationService;
+	}
+
+	@Required
+	public void setConfigurationService(final ConfigurationService configurationService)
+	{
+		this.configurationService = configurationService;
+	}
+
+	protected SiteMapUrlSource getSiteMapUrlSource()
+	{
+		return siteMapUrlSource;
+	}
+
+	@Required
+	public void setSiteMapUrlSource(final SiteMapUrlSource siteMapUrlSource)
+	{
+		this.siteMapUrlSource = siteMapUrlSource;
+	}
+
+	/**
+	 * The number of pages per shard, the shard count of the site and the time and number of URLs of every shard, as of
+	 * the last generation.
+	 */
+	protected static class SiteMapState
+	{
+		private static final String SHARD_SIZE = "shardSize";
+		private static final String SHARD_COUNT = "shardCount";
+		private static final String FULL_GENERATED = "fullGenerated";
+		private static final String GENERATED = "generated";
+		private static final String SHARD_URLS = "shard.%d.urls";
+		private static final String SHARD_MODIFIED = "shard.%d.modified";
+
+		private final Properties properties;
+
+		protected SiteMapState(final int shardSize, final int shardCount)
+		{
+			properties = new Properties();
+			properties.setProperty(SHARD_SIZE, String.valueOf(shardSize));
+			properties.setProperty(SHARD_COUNT, String.valueOf(shardCount));
+		}
+
+		protected SiteMapState(final Properties properties)
+		{
+			this.properties = properties;
+			if (getShardCount() < 1 || getShardSize() < 1 || getGenerated() == 0L)
+			{
+				throw new IllegalArgumentException("Incomplete sitemap state " + properties);
+			}
+		}
+
+		public int getShardSize()
+		{
+			return Integer.parseInt(properties.getProperty(SHARD_SIZE, "0"));
+		}
+
+		public int getShardCount()
+		{
+			return Integer.parseInt(properties.getProperty(SHARD_COUNT, "0"));
+		}
+
+		public long getFullGenerated()
+		{
+			return Long.parseLong(properties.getProperty(FULL_GENERATED, "0"));
+		}
+
+		public void setFullGenerated(final long time)
+		{
+			properties.setProperty(FULL_GENERATED, String.valueOf(time));
+		}
+
+		public long getGenerated()
+		{
+			return Long.parseLong(properties.getProperty(GENERATED, "0"));
+		}
+
+		public void setGenerated(final long time)
+		{
+			properties.setProperty(GENERATED, String.valueOf(time));
+		}
+
+		public int getShardUrls(final int shard)
+		{
+			return Integer.parseInt(properties.getProperty(String.format(SHARD_URLS, Integer.valueOf(shard)), "0"));
+		}
+
+		public long getShardModified(final int shard)
+		{
+			return Long.parseLong(properties.getProperty(String.format(SHARD_MODIFIED, Integer.valueOf(shard)), "0"));
+		}
+
+		public void setShard(final int shard, final int urls, final long modified)
+		{
+			properties.setProperty(String.format(SHARD_URLS, Integer.valueOf(shard)), String.valueOf(urls));
+			properties.setProperty(String.format(SHARD_MODIFIED, Integer.valueOf(shard)), String.valueOf(modified));
+		}
+
+		protected Properties getProperties()
+		{
+			return properties;
+		}
+	}
+}
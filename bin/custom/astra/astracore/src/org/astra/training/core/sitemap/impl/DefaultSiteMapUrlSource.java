@@ -0,0 +1,394 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.core.sitemap.impl;
+
+import de.hybris.platform.acceleratorservices.model.SiteMapConfigModel;
+import de.hybris.platform.acceleratorservices.model.SiteMapLanguageCurrencyModel;
+import de.hybris.platform.acceleratorservices.urlencoder.UrlEncoderService;
+import de.hybris.platform.acceleratorservices.urlresolver.SiteBaseUrlResolutionService;
+import de.hybris.platform.catalog.CatalogVersionService;
+import de.hybris.platform.category.model.CategoryModel;
+import de.hybris.platform.cms2.model.pages.ContentPageModel;
+import de.hybris.platform.cms2.model.site.CMSSiteModel;
+import de.hybris.platform.commerceservices.url.UrlResolver;
+import de.hybris.platform.core.model.ItemModel;
+import de.hybris.platform.core.model.c2l.CurrencyModel;
+import de.hybris.platform.core.model.c2l.LanguageModel;
+import de.hybris.platform.core.model.product.ProductModel;
+import de.hybris.platform.servicelayer.config.ConfigurationService;
+import de.hybris.platform.servicelayer.i18n.CommonI18NService;
+import de.hybris.platform.storelocator.model.PointOfServiceModel;
+import org.astra.training.core.sitemap.SiteMapPageType;
+import org.astra.training.core.sitemap.SiteMapUrlSource;
+import org.astra.training.core.sitemap.dao.SiteMapItemDao;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.springframework.beans.factory.annotation.Required;
+
+
+/**
+ * Lists the approved products, the categories and the content pages with a URL label of the session catalog versions,
+ * which have to be the catalog versions of the site, the stores of the base stores of the site, the homepage and the
+ * custom URLs of the sitemap configuration of the site.
+ * <p>
+ * The URLs of a page are resolved for every language and currency of the sitemap configuration, with the URL encoding
+ * attributes of the site, as the sitemap medias did.
+ */
+public class DefaultSiteMapUrlSource implements SiteMapUrlSource
+{
+	protected static final String PAGE_SIZE = "astracore.sitemap.pageSize";
+	protected static final int DEFAULT_PAGE_SIZE = 1000;
+	protected static final String SITEMAP_PATH = "/sitemap/";
+	protected static final String STORE_PATH = "/store/";
+	protected static final String HOMEPAGE_PATH = "/";
+	/**
+	 * Prefix of the keys of the homepage and the custom URLs, followed by their path.
+	 */
+	protected static final String CUSTOM_URL_PREFIX = "u:";
+
+	private CatalogVersionService catalogVersionService;
+	private SiteMapItemDao siteMapItemDao;
+	private UrlResolver<ProductModel> productModelUrlResolver;
+	private UrlResolver<CategoryModel> categoryModelUrlResolver;
+	private SiteBaseUrlResolutionService siteBaseUrlResolutionService;
+	private ConfigurationService configurationService;
+	private CommonI18NService commonI18NService;
+	private UrlEncoderService urlEncoderService;
+
+	@Override
+	public int countKeys(final CMSSiteModel site)
+	{
+		int count = getCustomPaths(site).size();
+		for (final SiteMapPageType type : SiteMapPageType.values())
+		{
+			count += getSiteMapItemDao().countItems(type, getScopes(site, type));
+		}
+		return count;
+	}
+
+	@Override
+	public void forEachKey(final CMSSiteModel site, final Consumer<String> consumer)
+	{
+		for (final String path : getCustomPaths(site))
+		{
+			consumer.accept(CUSTOM_URL_PREFIX + path);
+		}
+		final int pageSize = getConfigurationService().getConfiguration().getInt(PAGE_SIZE, DEFAULT_PAGE_SIZE);
+		for (final SiteMapPageType type : SiteMapPageType.values())
+		{
+			getSiteMapItemDao().forEachCode(type, getScopes(site, type), pageSize, code -> consumer.accept(type.getKey(code)));
+		}
+	}
+
+	@Override
+	public Collection<String> getKeysModifiedSince(final CMSSiteModel site, final Date since)
+	{
+		final List<String> keys = new ArrayList<>();
+		final SiteMapConfigModel siteMapConfig = site.getSiteMapConfig();
+		if (siteMapConfig != null && siteMapConfig.getModifiedtime() != null && siteMapConfig.getModifiedtime().after(since))
+		{
+			for (final String path : getCustomPaths(site))
+			{
+				keys.add(CUSTOM_URL_PREFIX + path);
+			}
+		}
+		for (final SiteMapPageType type : SiteMapPageType.values())
+		{
+			for (final String code : getSiteMapItemDao().findCodesModifiedSince(type, getScopes(site, type), since))
+			{
+				keys.add(type.getKey(code));
+			}
+		}
+		return keys;
+	}
+
+	@Override
+	public Map<String, List<String>> getUrls(final CMSSiteModel site, final Collection<String> keys)
+	{
+		final Set<String> customPaths = getCustomPaths(site);
+		final Map<String, String> paths = new LinkedHashMap<>();
+		final Map<SiteMapPageType, List<String>> codesByType = new EnumMap<>(SiteMapPageType.class);
+		for (final String key : keys)
+		{
+			final SiteMapPageType type = SiteMapPageType.forKey(key);
+			if (type != null)
+			{
+				codesByType.computeIfAbsent(type, t -> new ArrayList<>()).add(type.getCode(key));
+			}
+			else if (key.startsWith(CUSTOM_URL_PREFIX) && customPaths.contains(key.substring(CUSTOM_URL_PREFIX.length())))
+			{
+				paths.put(key, key.substring(CUSTOM_URL_PREFIX.length()));
+			}
+		}
+
+		final Map<SiteMapPageType, List<ItemModel>> items = new EnumMap<>(SiteMapPageType.class);
+		for (final Map.Entry<SiteMapPageType, List<String>> codes : codesByType.entrySet())
+		{
+			items.put(codes.getKey(), getSiteMapItemDao().findItems(codes.getKey(), getScopes(site, codes.getKey()),
+					codes.getValue()));
+		}
+
+		final Map<String, Set<String>> urls = new HashMap<>(keys.size() * 2);
+		final List<SiteMapLanguageCurrencyModel> languageCurrencies = getLanguageCurrencies(site);
+		if (languageCurrencies.isEmpty())
+		{
+			addUrls(site, items, paths, urls);
+		}
+		else
+		{
+			final LanguageModel language = getCommonI18NService().getCurrentLanguage();
+			final CurrencyModel currency = getCommonI18NService().getCurrentCurrency();
+			try
+			{
+				for (final SiteMapLanguageCurrencyModel languageCurrency : languageCurrencies)
+				{
+					getCommonI18NService().setCurrentLanguage(languageCurrency.getLanguage());
+					getCommonI18NService().setCurrentCurrency(languageCurrency.getCurrency());
+					addUrls(site, items, paths, urls);
+				}
+			}
+			finally
+			{
+				getCommonI18NService().setCurrentLanguage(language);
+				getCommonI18NService().setCurrentCurrency(currency);
+			}
+		}
+
+		final Map<String, List<String>> result = new HashMap<>(urls.size() * 2);
+		urls.forEach((key, keyUrls) -> result.put(key, new ArrayList<>(keyUrls)));
+		return result;
+	}
+
+	@Override
+	public int getUrlsPerKey(final CMSSiteModel site)
+	{
+		return Math.max(1, getLanguageCurrencies(site).size());
+	}
+
+	@Override
+	public String getSiteMapFileUrl(final CMSSiteModel site, final String fileName)
+	{
+		return getSiteBaseUrlResolutionService().getWebsiteUrlForSite(site, true, SITEMAP_PATH + fileName);
+	}
+
+	/**
+	 * Adds the URLs of the items and the custom paths in the session language and currency.
+	 */
+	protected void addUrls(final CMSSiteModel site, final Map<SiteMapPageType, List<ItemModel>> items,
+			final Map<String, String> paths, final Map<String, Set<String>> urls)
+	{
+		final String encodingAttributes = getUrlEncoderService().getUrlEncodingPattern();
+		for (final Map.Entry<SiteMapPageType, List<ItemModel>> typeItems : items.entrySet())
+		{
+			for (final ItemModel item : typeItems.getValue())
+			{
+				final String path = resolvePath(item);
+				if (path != null)
+				{
+					urls.computeIfAbsent(typeItems.getKey().getKey(getCode(item)), key -> new LinkedHashSet<>())
+							.add(getSiteBaseUrlResolutionService().getWebsiteUrlForSite(site, encodingAttributes, true, path));
+				}
+			}
+		}
+		for (final Map.Entry<String, String> path : paths.entrySet())
+		{
+			urls.computeIfAbsent(path.getKey(), key -> new LinkedHashSet<>())
+					.add(getSiteBaseUrlResolutionService().getWebsiteUrlForSite(site, encodingAttributes, true, path.getValue()));
+		}
+	}
+
+	/**
+	 * @return the catalog versions or base stores the items of the type have to belong to
+	 */
+	protected Collection<? extends ItemModel> getScopes(final CMSSiteModel site, final SiteMapPageType type)
+	{
+		if (type == SiteMapPageType.STORE)
+		{
+			return site.getStores();
+		}
+		return getCatalogVersionService().getSessionCatalogVersions();
+	}
+
+	/**
+	 * @return the path of the homepage followed by the custom URLs of the sitemap configuration of the site
+	 */
+	protected Set<String> getCustomPaths(final CMSSiteModel site)
+	{
+		final Set<String> paths = new LinkedHashSet<>();
+		paths.add(HOMEPAGE_PATH);
+		final SiteMapConfigModel siteMapConfig = site.getSiteMapConfig();
+		if (siteMapConfig != null && siteMapConfig.getCustomUrls() != null)
+		{
+			paths.addAll(siteMapConfig.getCustomUrls());
+		}
+		return paths;
+	}
+
+	protected List<SiteMapLanguageCurrencyModel> getLanguageCurrencies(final CMSSiteModel site)
+	{
+		final SiteMapConfigModel siteMapConfig = site.getSiteMapConfig();
+		if (siteMapConfig == null || CollectionUtils.isEmpty(siteMapConfig.getSiteMapLanguageCurrencies()))
+		{
+			return Collections.emptyList();
+		}
+		return new ArrayList<>(siteMapConfig.getSiteMapLanguageCurrencies());
+	}
+
+	protected String resolvePath(final ItemModel item)
+	{
+		if (item instanceof ProductModel)
+		{
+			return getProductModelUrlResolver().resolve((ProductModel) item);
+		}
+		if (item instanceof CategoryModel)
+		{
+			return getCategoryModelUrlResolver().resolve((CategoryModel) item);
+		}
+		if (item instanceof ContentPageModel)
+		{
+			return ((ContentPageModel) item).getLabel();
+		}
+		if (item instanceof PointOfServiceModel)
+		{
+			return getStorePath((PointOfServiceModel) item);
+		}
+		return null;
+	}
+
+	/**
+	 * @return the path of the store page of the storefront
+	 */
+	protected String getStorePath(final PointOfServiceModel pointOfService)
+	{
+		try
+		{
+			return STORE_PATH + URLEncoder.encode(pointOfService.getName(), StandardCharsets.UTF_8.name()).replace("+", "%20");
+		}
+		catch (final UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	protected String getCode(final ItemModel item)
+	{
+		if (item instanceof ProductModel)
+		{
+			return ((ProductModel) item).getCode();
+		}
+		if (item instanceof CategoryModel)
+		{
+			return ((CategoryModel) item).getCode();
+		}
+		if (item instanceof PointOfServiceModel)
+		{
+			return ((PointOfServiceModel) item).getName();
+		}
+		return ((ContentPageModel) item).getUid();
+	}
+
+	protected CatalogVersionService getCatalogVersionService()
+	{
+		return catalogVersionService;
+	}
+
+	@Required
+	public void setCatalogVersionService(final CatalogVersionService catalogVersionService)
+	{
+		this.catalogVersionService = catalogVersionService;
+	}
+
+	protected SiteMapItemDao getSiteMapItemDao()
+	{
+		return siteMapItemDao;
+	}
+
+	@Required
+	public void setSiteMapItemDao(final SiteMapItemDao siteMapItemDao)
+	{
+		this.siteMapItemDao = siteMapItemDao;
+	}
+
+	protected UrlResolver<ProductModel> getProductModelUrlResolver()
+	{
+		return productModelUrlResolver;
+	}
+
+	@Required
+	public void setProductModelUrlResolver(final UrlResolver<ProductModel> productModelUrlResolver)
+	{
+		this.productModelUrlResolver = productModelUrlResolver;
+	}
+
+	protected UrlResolver<CategoryModel> getCategoryModelUrlResolver()
+	{
+		return categoryModelUrlResolver;
+	}
+
+	@Required
+	public void setCategoryModelUrlResolver(final UrlResolver<CategoryModel> categoryModelUrlResolver)
+	{
+		this.categoryModelUrlResolver = categoryModelUrlResolver;
+	}
+
+	protected SiteBaseUrlResolutionService getSiteBaseUrlResolutionService()
+	{
+		return siteBaseUrlResolutionService;
+	}
+
+	@Required
+	public void setSiteBaseUrlResolutionService(final SiteBaseUrlResolutionService siteBaseUrlResolutionService)
+	{
+		this.siteBaseUrlResolutionService = siteBaseUrlResolutionService;
+	}
+
+	protected ConfigurationService getConfigurationService()
+	{
+		return configurationService;
+	}
+
+	@Required
+	public void setConfigurationService(final ConfigurationService configurationService)
+	{
+		this.configurationService = configurationService;
+	}
+
+	protected CommonI18NService getCommonI18NService()
+	{
+		return commonI18NService;
+	}
+
+	@Required
+	public void setCommonI18NService(final CommonI18NService commonI18NService)
+	{
+		this.commonI18NService = commonI18NService;
+	}
+
+	protected UrlEncoderService getUrlEncoderService()
+	{
+		return urlEncoderService;
+	}
+
+	@Required
+	public void setUrlEncoderService(final UrlEncoderService urlEncoderService)
+	{
+		this.urlEncoderService = urlEncoderService;
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.core.cms.impl;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.core.PK;
+import de.hybris.platform.servicelayer.event.EventService;
+import de.hybris.platform.tx.AfterSaveEvent;
+import org.astra.training.core.cms.event.CmsContentChangedEvent;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+
+/**
+ * Unit test for {@link DefaultCmsContentGenerationService}.
+ */
+@UnitTest
+public class DefaultCmsContentGenerationServiceTest
+{
+	private static final PK OBSERVED_PK = PK.fromLong(1234L);
+
+	@Mock
+	private EventService eventService;
+
+	private DefaultCmsContentGenerationService service;
+
+	@Before
+	public void setUp()
+	{
+		MockitoAnnotations.initMocks(this);
+		service = new DefaultCmsContentGenerationService()
+		{
+			@Override
+			protected Set<Integer> getObservedTypeCodes()
+			{
+				return Collections.singleton(Integer.valueOf(OBSERVED_PK.getTypeCode()));
+			}
+		};
+		service.setContent("cms");
+		service.setEventService(eventService);
+	}
+
+	@Test
+	public void shouldMoveOnAtOnceAndPublishObservedSave()
+	{
+		service.afterSave(Arrays.asList(new AfterSaveEvent(OBSERVED_PK, AfterSaveEvent.UPDATE),
+				new AfterSaveEvent(OBSERVED_PK, AfterSaveEvent.REMOVE)));
+
+		Assert.assertEquals(1L, service.getGeneration());
+		final ArgumentCaptor<CmsContentChangedEvent> captor = ArgumentCaptor.forClass(CmsContentChangedEvent.class);
+		verify(eventService).publishEvent(captor.capture());
+		Assert.assertEquals("cms", captor.getValue().getContent());
+	}
+
+	@Test
+	public void shouldIgnoreOtherSaves()
+	{
+		service.afterSave(Collections.singletonList(
+				new AfterSaveEvent(PK.createFixedUUIDPK(OBSERVED_PK.getTypeCode() + 1, 1L), AfterSaveEvent.UPDATE)));
+
+		Assert.assertEquals(0L, service.getGeneration());
+		verify(eventService, never()).publishEvent(any(CmsContentChangedEvent.class));
+	}
+
+	@Test
+	public void shouldMoveOnForChangesOfOwnOrAllContentFromAnyNode()
+	{
+		service.onEvent(new CmsContentChangedEvent("cms"));
+		service.onEvent(new CmsContentChangedEvent("catalog"));
+		service.onEvent(new CmsContentChangedEvent(null));
+
+		Assert.assertEquals(2L, service.getGeneration());
+	}
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.core.order.impl;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.commerceservices.order.CommerceCartCalculationStrategy;
+import de.hybris.platform.commerceservices.order.CommerceCartModification;
+import de.hybris.platform.commerceservices.order.CommerceCartModificationException;
+import de.hybris.platform.commerceservices.order.CommerceCartModificationStatus;
+import de.hybris.platform.commerceservices.service.data.CommerceCartParameter;
+import de.hybris.platform.commerceservices.stock.CommerceStockService;
+import de.hybris.platform.commerceservices.stock.strategies.CommerceAvailabilityCalculationStrategy;
+import de.hybris.platform.commerceservices.stock.strategies.WarehouseSelectionStrategy;
+import de.hybris.platform.core.model.order.CartEntryModel;
+import de.hybris.platform.core.model.order.CartModel;
+import de.hybris.platform.core.model.product.ProductModel;
+import de.hybris.platform.ordersplitting.model.StockLevelModel;
+import de.hybris.platform.ordersplitting.model.WarehouseModel;
+import de.hybris.platform.servicelayer.session.SessionExecutionBody;
+import de.hybris.platform.servicelayer.session.SessionService;
+import de.hybris.platform.store.BaseStoreModel;
+import de.hybris.platform.store.services.BaseStoreService;
+import org.astra.training.core.order.BatchCommerceAddToCartStrategy;
+import org.astra.training.core.order.dao.BatchAddToCartDao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.apache.log4j.Logger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+
+/**
+ * Unit test for {@link DefaultBatchCommerceAddToCartStrategy}.
+ */
+@UnitTest
+public class DefaultBatchCommerceAddToCartStrategyTest
+{
+	private static final Logger LOG = Logger.getLogger(DefaultBatchCommerceAddToCartStrategyTest.class);
+
+	private static final String BROKEN_PRODUCT = "broken";
+	private static final String FAILING_PRODUCT = "failing";
+	private static final int GRID_CELLS = 60;
+
+	@Mock
+	private BatchAddToCartDao batchAddToCartDao;
+	@Mock
+	private WarehouseSelectionStrategy warehouseSelectionStrategy;
+	@Mock
+	private CommerceAvailabilityCalculationStrategy commerceStockLevelCalculationStrategy;
+	@Mock
+	private CommerceStockService commerceStockService;
+	@Mock
+	private BaseStoreService baseStoreService;
+	@Mock
+	private SessionService sessionService;
+	@Mock
+	private CommerceCartCalculationStrategy commerceCartCalculationStrategy;
+	@Mock
+	private BaseStoreModel baseStore;
+	@Mock
+	private CartModel cart;
+
+	private final AtomicInteger calculations = new AtomicInteger();
+	private final List<CommerceCartModification> completedModifications = new ArrayList<>();
+	private DefaultBatchCommerceAddToCartStrategy strategy;
+
+	@Before
+	public void setUp()
+	{
+		MockitoAnnotations.initMocks(this);
+		given(baseStoreService.getCurrentBaseStore()).willReturn(baseStore);
+		given(sessionService.executeInLocalView(any(SessionExecutionBody.class)))
+				.willAnswer(invocation -> ((SessionExecutionBody) invocation.getArguments()[0]).execute());
+
+		strategy = new DefaultBatchCommerceAddToCartStrategy()
+		{
+			@Override
+			protected CommerceCartModification doAddToCart(final CommerceCartParameter parameter)
+					throws CommerceCartModificationException
+			{
+				if (BROKEN_PRODUCT.equals(parameter.getProduct().getCode()))
+				{
+					throw new CommerceCartModificationException("Product is not sellable");
+				}
+				if (FAILING_PRODUCT.equals(parameter.getProduct().getCode()))
+				{
+					throw new IllegalStateException("Entry could not be saved");
+				}
+				final CommerceCartModification modification = new CommerceCartModification();
+				modification.setStatusCode(CommerceCartModificationStatus.SUCCESS);
+				modification.setQuantityAdded(parameter.getQuantity());
+				return modification;
+			}
+
+			@Override
+			protected void afterAddToCart(final CommerceCartParameter parameter, final CommerceCartModification modification)
+			{
+				completedModifications.add(modification);
+			}
+
+			@Override
+			protected void mergeEntry(final CommerceCartModification modification, final CommerceCartParameter parameter)
+			{
+				// no similar entries in this cart
+			}
+
+			@Override
+			protected CartEntryModel createEmptyCartEntry(final CommerceCartParameter parameter)
+			{
+				return mock(CartEntryModel.class);
+			}
+		};
+		strategy.setBatchAddToCartDao(batchAddToCartDao);
+		strategy.setWarehouseSelectionStrategy(warehouseSelectionStrategy);
+		strategy.setCommerceStockLevelCalculationStrategy(commerceStockLevelCalculationStrategy);
+		strategy.setCommerceStockService(commerceStockService);
+		strategy.setBaseStoreService(baseStoreService);
+		strategy.setSessionService(sessionService);
+		strategy.setCommerceCartCalculationStrategy(commerceCartCalculationStrategy);
+		given(commerceCartCalculationStrategy.calculateCart(any(CommerceCartParameter.class))).willAnswer(invocation -> {
+			calculations.incrementAndGet();
+			simulateCalculation();
+			return Boolean.TRUE;
+		});
+	}
+
+	@Test
+	public void shouldCalculateCartOnceForAllEntries()
+	{
+		final List<CommerceCartModification> modifications = strategy
+				.addToCart(Arrays.asList(parameter("1978440", 2), parameter(BROKEN_PRODUCT, 1), parameter("1934793", 1)));
+
+		Assert.assertEquals(1, calculations.get());
+		Assert.assertEquals(3, modifications.size());
+		Assert.assertEquals(2, modifications.get(0).getQuantityAdded());
+		Assert.assertEquals(BatchCommerceAddToCartStrategy.ERROR, modifications.get(1).getStatusCode());
+		Assert.assertEquals(0, modifications.get(1).getQuantityAdded());
+		Assert.assertEquals(CommerceCartModificationStatus.SUCCESS, modifications.get(2).getStatusCode());
+		Assert.assertEquals(Arrays.asList(modifications.get(0), modifications.get(2)), completedModifications);
+	}
+
+	@Test
+	public void shouldCalculateCartAfterUnexpectedFailure()
+	{
+		try
+		{
+			strategy.addToCart(Arrays.asList(parameter("1978440", 2), parameter(FAILING_PRODUCT, 1), parameter("1934793", 1)));
+			Assert.fail("Expected the failure to be passed on");
+		}
+		catch (final IllegalStateException e)
+		{
+			Assert.assertEquals(1, calculations.get());
+			Assert.assertTrue(completedModifications.isEmpty());
+		}
+	}
+
+	@Test
+	public void shouldReadAvailabilityOfAllProductsWithOneQuery()
+	{
+		final List<WarehouseModel> warehouses = Collections.singletonList(mock(WarehouseModel.class));
+		final StockLevelModel stockLevel = mock(StockLevelModel.class);
+		given(stockLevel.getProductCode()).willReturn("1978440");
+		given(commerceStockService.isStockSystemEnabled(baseStore)).willReturn(Boolean.TRUE);
+		given(warehouseSelectionStrategy.getWarehousesForBaseStore(baseStore)).willReturn(warehouses);
+		given(batchAddToCartDao.findStockLevels(new HashSet<>(Arrays.asList("1978440", "1934793")), warehouses))
+				.willReturn(Collections.singletonList(stockLevel));
+		given(commerceStockLevelCalculationStrategy.calculateAvailability(Collections.singletonList(stockLevel)))
+				.willReturn(Long.valueOf(7L));
+		given(commerceStockLevelCalculationStrategy.calculateAvailability(Collections.emptyList())).willReturn(Long.valueOf(0L));
+
+		final Map<String, Long> availability = strategy
+				.getAvailability(Arrays.asList(parameter("1978440", 2), parameter("1934793", 1), parameter("1978440", 1)));
+
+		verify(batchAddToCartDao, times(1)).findStockLevels(any(Collection.class), any(Collection.class));
+		Assert.assertEquals(Long.valueOf(7L), availability.get("1978440"));
+		Assert.assertEquals(Long.valueOf(0L), availability.get("1934793"));
+	}
+
+	@Test
+	public void shouldNotReadStockLevelsWithoutStockSystem()
+	{
+		given(commerceStockService.isStockSystemEnabled(baseStore)).willReturn(Boolean.FALSE);
+
+		Assert.assertTrue(strategy.getAvailability(Collections.singletonList(parameter("1978440", 1))).isEmpty());
+		verify(batchAddToCartDao, never()).findStockLevels(any(Collection.class), any(Collection.class));
+	}
+
+	@Test
+	public void shouldReportCalculationsAndTimeOfGrid() throws CommerceCartModificationException
+	{
+		final List<CommerceCartParameter> parameters = new ArrayList<>();
+		for (int i = 0; i < GRID_CELLS; i++)
+		{
+			parameters.add(parameter(String.valueOf(300000 + i), 1));
+		}
+
+		long start = System.nanoTime();
+		for (final CommerceCartParameter parameter : parameters)
+		{
+			strategy.addToCart(parameter);
+		}
+		final long singleNanos = System.nanoTime() - start;
+		final int singleCalculations = calculations.getAndSet(0);
+
+		start = System.nanoTime();
+		strategy.addToCart(parameters);
+		final long batchNanos = System.nanoTime() - start;
+
+		LOG.info("Adding " + GRID_CELLS + " grid cells one by one: " + singleCalculations + " cart calculations in "
+				+ singleNanos / 1000000 + " ms, as one batch: " + calculations.get() + " cart calculation in " + batchNanos / 1000000
+				+ " ms");
+		Assert.assertEquals(GRID_CELLS, singleCalculations);
+		Assert.assertEquals(1, calculations.get());
+	}
+
+	protected CommerceCartParameter parameter(final String productCode, final long quantity)
+	{
+		final ProductModel product = mock(ProductModel.class);
+		given(product.getCode()).willReturn(productCode);
+		final CommerceCartParameter parameter = new CommerceCartParameter();
+		parameter.setCart(cart);
+		parameter.setProduct(product);
+		parameter.setQuantity(quantity);
+		return parameter;
+	}
+
+	protected static void simulateCalculation()
+	{
+		// a cart calculation with promotion evaluation takes milliseconds
+		try
+		{
+			Thread.sleep(2);
+		}
+		catch (final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
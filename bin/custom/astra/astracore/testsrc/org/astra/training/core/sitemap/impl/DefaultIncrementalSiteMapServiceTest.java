@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.core.sitemap.impl;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.cms2.model.site.CMSSiteModel;
+import de.hybris.platform.servicelayer.config.ConfigurationService;
+import org.astra.training.core.sitemap.SiteMapUrlSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.Assert;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+
+/**
+ * Unit test for {@link DefaultIncrementalSiteMapService}.
+ */
+@UnitTest
+public class DefaultIncrementalSiteMapServiceTest
+{
+	private static final Logger LOG = Logger.getLogger(DefaultIncrementalSiteMapServiceTest.class);
+
+	private static final String SITE_UID = "electronics";
+	private static final int SHARD_SIZE = 100;
+	private static final int CHANGES = 10;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Mock
+	private ConfigurationService configurationService;
+	@Mock
+	private Configuration configuration;
+	@Mock
+	private CMSSiteModel site;
+
+	private InMemorySiteMapUrlSource source;
+	private DefaultIncrementalSiteMapService service;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		MockitoAnnotations.initMocks(this);
+		given(configurationService.getConfiguration()).willReturn(configuration);
+		given(configuration.getString(DefaultIncrementalSiteMapService.DIRECTORY))
+				.willReturn(folder.newFolder("sitemap").getAbsolutePath());
+		given(configuration.getInt(anyString(), anyInt())).willAnswer(invocation -> invocation.getArguments()[1]);
+		given(site.getUid()).willReturn(SITE_UID);
+
+		source = new InMemorySiteMapUrlSource();
+		service = new DefaultIncrementalSiteMapService();
+		service.setConfigurationService(configurationService);
+		service.setSiteMapUrlSource(source);
+	}
+
+	@Test
+	public void shouldWriteAllPagesToShardsAndIndex() throws IOException
+	{
+		source.addPages(1000, 0L);
+
+		final int shards = service.generateFull(site, SHARD_SIZE);
+
+		Assert.assertEquals(20, shards);
+		Assert.assertEquals(1000, readAllUrls(shards).size());
+		final String index = new String(Files.readAllBytes(service.getIndexFile(site).toPath()), StandardCharsets.UTF_8);
+		Assert.assertEquals(shards, StringUtils.countMatches(index, "<sitemap>"));
+		Assert.assertTrue(index.contains("<loc>https://www.example.com/sitemap/sitemap-0000.xml.gz</loc>"));
+		Assert.assertNotNull(service.getLastFullGeneration(site));
+	}
+
+	@Test
+	public void shouldRewriteOnlyShardsWithChangedPages() throws IOException
+	{
+		source.addPages(1000, 0L);
+		final int shards = service.generateFull(site, SHARD_SIZE);
+		final Map<String, byte[]> before = readShardBytes(shards);
+		source.resetResolved();
+
+		source.changePage("p:00042", "https://www.example.com/p/renamed-00042");
+		source.unlistPage(samePageShardNeighbour("p:00042", shards));
+
+		Assert.assertEquals(1, service.generateIncremental(site, SHARD_SIZE));
+
+		final int changedShard = service.getShard("p:00042", shards);
+		final Map<String, byte[]> after = readShardBytes(shards);
+		for (int shard = 0; shard < shards; shard++)
+		{
+			final String name = service.getShardFileName(shard);
+			Assert.assertEquals(name, shard != changedShard, Arrays.equals(before.get(name), after.get(name)));
+		}
+		final List<String> urls = readAllUrls(shards);
+		Assert.assertTrue(urls.contains("https://www.example.com/p/renamed-00042"));
+		Assert.assertFalse(urls.contains("https://www.example.com/p/00042"));
+		Assert.assertEquals(999, urls.size());
+		Assert.assertTrue(source.getResolvedCount() <= SHARD_SIZE);
+	}
+
+	@Test
+	public void shouldFallBackToFullGenerationWithoutState() throws IOException
+	{
+		source.addPages(300, 0L);
+
+		Assert.assertEquals(6, service.generateIncremental(site, SHARD_SIZE));
+		Assert.assertEquals(300, readAllUrls(6).size());
+	}
+
+	@Test
+	public void shouldWriteUrlsOfAllLanguagesWithinShardSize() throws IOException
+	{
+		source.addPages(1000, 0L);
+		source.setLanguages("en", "de");
+
+		final int shards = service.generateFull(site, SHARD_SIZE);
+
+		// 50 pages with two URLs each fill a shard, a full generation fills half of it
+		Assert.assertEquals(40, shards);
+		final List<String> urls = readAllUrls(shards);
+		Assert.assertEquals(2000, urls.size());
+		Assert.assertTrue(urls.contains("https://www.example.com/de/p/00042"));
+		Assert.assertTrue(urls.contains("https://www.example.com/en/p/00042"));
+
+		// another language changes the number of pages per shard
+		source.setLanguages("en");
+		Assert.assertEquals(20, service.generateIncremental(site, SHARD_SIZE));
+	}
+
+	@Test
+	public void shouldNotGenerateOrServeWithoutSharedDirectory()
+	{
+		given(configuration.getString(DefaultIncrementalSiteMapService.DIRECTORY)).willReturn("");
+
+		Assert.assertFalse(service.isEnabled());
+		Assert.assertNull(service.getIndexFile(site));
+		Assert.assertNull(service.getShardFile(site, "sitemap-0000.xml.gz"));
+		Assert.assertNull(service.getLastFullGeneration(site));
+		try
+		{
+			service.generateFull(site, SHARD_SIZE);
+			Assert.fail("Expected the sitemap not to be written to a folder of this node");
+		}
+		catch (final IllegalStateException e)
+		{
+			Assert.assertTrue(e.getMessage().contains(DefaultIncrementalSiteMapService.DIRECTORY));
+		}
+	}
+
+	@Test
+	public void shouldNotServeOtherFiles() throws IOException
+	{
+		source.addPages(10, 0L);
+		service.generateFull(site, SHARD_SIZE);
+
+		Assert.assertNotNull(service.getShardFile(site, "sitemap-0000.xml.gz"));
+		Assert.assertNull(service.getShardFile(site, "sitemap-0000.keys"));
+		Assert.assertNull(service.getShardFile(site, "../" + SITE_UID + "/" + DefaultIncrementalSiteMapService.STATE_FILE));
+	}
+
+	@Test
+	public void shouldReportFullAndIncrementalGenerationTime() throws IOException
+	{
+		final int pages = 200000;
+		final int shardSize = 10000;
+		source.addPages(pages, 0L);
+
+		long start = System.nanoTime();
+		final int shards = service.generateFull(site, shardSize);
+		final long fullMillis = (System.nanoTime() - start) / 1000000L;
+		final long fullResolved = source.getResolvedCount();
+
+		source.resetResolved();
+		for (int i = 0; i < CHANGES; i++)
+		{
+			source.changePage(source.getKey(i * 997), "https://www.example.com/p/changed-" + i);
+		}
+		start = System.nanoTime();
+		final int written = service.generateIncremental(site, shardSize);
+		final long incrementalMillis = (System.nanoTime() - start) / 1000000L;
+
+		LOG.info("Sitemap of " + pages + " pages: full generation wrote " + shards + " shards and resolved " + fullResolved
+				+ " URLs in " + fullMillis + " ms, incremental generation for " + CHANGES + " changes wrote " + written
+				+ " shards and resolved " + source.getResolvedCount() + " URLs in " + incrementalMillis + " ms");
+		Assert.assertTrue(written <= CHANGES);
+		Assert.assertTrue(source.getResolvedCount() < fullResolved);
+	}
+
+	/**
+	 * @return another page in the same shard as the given one
+	 */
+	protected String samePageShardNeighbour(final String key, final int shards)
+	{
+		final int shard = service.getShard(key, shards);
+		return source.pages.keySet().stream().filter(k -> !k.equals(key) && service.getShard(k, shards) == shard).findFirst()
+				.orElse(null);
+	}
+
+	protected Map<String, byte[]> readShardBytes(final int shards) throws IOException
+	{
+		final Map<String, byte[]> bytes = new HashMap<>();
+		for (int shard = 0; shard < shards; shard++)
+		{
+			final String name = service.getShardFileName(shard);
+			bytes.put(name, Files.readAllBytes(service.getShardFile(site, name).toPath()));
+		}
+		return bytes;
+	}
+
+	protected List<String> readAllUrls(final int shards) throws IOException
+	{
+		final StringBuilder xml = new StringBuilder();
+		for (int shard = 0; shard < shards; shard++)
+		{
+			final File file = service.getShardFile(site, service.getShardFileName(shard));
+			try (InputStream in = new GZIPInputStream(Files.newInputStream(file.toPath())))
+			{
+				xml.append(IOUtils.toString(in, StandardCharsets.UTF_8));
+			}
+		}
+		return Arrays.stream(StringUtils.substringsBetween(xml.toString(), "<loc>", "</loc>"))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Pages held in memory, counting the URLs resolved. With languages, every page has a URL per language.
+	 */
+	protected static class InMemorySiteMapUrlSource implements SiteMapUrlSource
+	{
+		private final Map<String, String> pages = new ConcurrentHashMap<>();
+		private final Map<String, Long> modified = new ConcurrentHashMap<>();
+		private List<String> languages = new ArrayList<>();
+		private long resolved;
+
+		public void setLanguages(final String... languages)
+		{
+			this.languages = Arrays.asList(languages);
+		}
+
+		public void addPages(final int count, final long modifiedTime)
+		{
+			for (int i = 0; i < count; i++)
+			{
+				pages.put(getKey(i), "https://www.example.com/p/" + String.format("%05d", Integer.valueOf(i)));
+				modified.put(getKey(i), Long.valueOf(modifiedTime));
+			}
+		}
+
+		public String getKey(final int i)
+		{
+			return "p:" + String.format("%05d", Integer.valueOf(i));
+		}
+
+		public void changePage(final String key, final String url)
+		{
+			pages.put(key, url);
+			modified.put(key, Long.valueOf(System.currentTimeMillis()));
+		}
+
+		/**
+		 * Keeps the page modified, but without URL, like a product that is no longer approved.
+		 */
+		public void unlistPage(final String key)
+		{
+			if (key != null)
+			{
+				pages.remove(key);
+				modified.put(key, Long.valueOf(System.currentTimeMillis()));
+			}
+		}
+
+		public long getResolvedCount()
+		{
+			return resolved;
+		}
+
+		public void resetResolved()
+		{
+			resolved = 0L;
+		}
+
+		@Override
+		public int countKeys(final CMSSiteModel site)
+		{
+			return pages.size();
+		}
+
+		@Override
+		public void forEachKey(final CMSSiteModel site, final Consumer<String> consumer)
+		{
+			pages.keySet().stream().sorted().forEach(consumer);
+		}
+
+		@Override
+		public Collection<String> getKeysModifiedSince(final CMSSiteModel site, final Date since)
+		{
+			return modified.entrySet().stream().filter(entry -> entry.getValue().longValue() > since.getTime())
+					.map(Map.Entry::getKey).collect(Collectors.toList());
+		}
+
+		@Override
+		public Map<String, List<String>> getUrls(final CMSSiteModel site, final Collection<String> keys)
+		{
+			resolved += keys.size();
+			final Map<String, List<String>> urls = new HashMap<>();
+			for (final String key : keys)
+			{
+				final String url = pages.get(key);
+				if (url != null)
+				{
+					urls.put(key, languages.isEmpty() ? Arrays.asList(url)
+							: languages.stream().map(language -> url.replace(".com/", ".com/" + language + "/"))
+									.collect(Collectors.toList()));
+				}
+			}
+			return urls;
+		}
+
+		@Override
+		public int getUrlsPerKey(final CMSSiteModel site)
+		{
+			return Math.max(1, languages.size());
+		}
+
+		@Override
+		public String getSiteMapFileUrl(final CMSSiteModel site, final String fileName)
+		{
+			return "https://www.example.com/sitemap/" + fileName;
+		}
+	}
+}
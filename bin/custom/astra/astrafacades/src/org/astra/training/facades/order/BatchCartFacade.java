@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.facades.order;
+
+import de.hybris.platform.commercefacades.order.data.CartModificationData;
+import de.hybris.platform.commercefacades.order.data.OrderEntryData;
+import org.astra.training.core.order.BatchCommerceAddToCartStrategy;
+
+import java.util.List;
+
+
+/**
+ * Facade to add many entries to the session cart at once, as done by the order grid and the quick order.
+ */
+public interface BatchCartFacade
+{
+	/**
+	 * Status code of the modification of an entry that was not added because of an error, because its product is
+	 * unknown or because it exceeds the capacity of a batch.
+	 */
+	String ERROR = BatchCommerceAddToCartStrategy.ERROR;
+
+	/**
+	 * Adds the entries to the session cart, resolving all products and stock levels at once and calculating the cart
+	 * once.
+	 *
+	 * @param cartEntries
+	 *           the entries with product code and quantity
+	 * @return one modification per entry in the order of the entries
+	 */
+	List<CartModificationData> addToCart(List<OrderEntryData> cartEntries);
+
+	/**
+	 * @return the number of entries a batch can hold, entries beyond it are not added
+	 */
+	int getMaxEntries();
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.facades.order;
+
+import org.astra.training.facades.order.data.SavedCartImportProgressData;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+
+/**
+ * Facade to create a saved cart of the current user from a CSV file with the columns SKU and quantity.
+ */
+public interface SavedCartImportFacade
+{
+	/**
+	 * Starts the import of the file in the background for the current user, see
+	 * {@link #importSavedCart(InputStream, String, Consumer)}.
+	 *
+	 * @param csvStream
+	 *           the content of the file, read before this method returns
+	 * @param fileName
+	 *           the name of the file, used as name of the saved cart
+	 * @return the id to read the progress of the import with
+	 * @throws IOException
+	 *            if the file could not be stored for the import
+	 */
+	String startImport(InputStream csvStream, String fileName) throws IOException;
+
+	/**
+	 * @param importId
+	 *           the id returned by {@link #startImport(InputStream, String)}
+	 * @return the last progress of the import, null if the import is unknown or was started by another user
+	 */
+	SavedCartImportProgressData getProgress(String importId);
+
+	/**
+	 * Reads the file chunk by chunk, adds the entries of every chunk to a new cart at once, calculates the cart once at
+	 * the end and saves it.
+	 *
+	 * @param csvStream
+	 *           the content of the file
+	 * @param fileName
+	 *           the name of the file, used as name of the saved cart
+	 * @param progressListener
+	 *           receives a new progress after every chunk and at the end
+	 * @return the final progress, failed if the file could not be read or the cart could not be saved
+	 */
+	SavedCartImportProgressData importSavedCart(InputStream csvStream, String fileName,
+			Consumer<SavedCartImportProgressData> progressListener);
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.facades.order.impl;
+
+import de.hybris.platform.commercefacades.order.data.CartModificationData;
+import de.hybris.platform.commercefacades.order.data.OrderEntryData;
+import de.hybris.platform.commercefacades.product.data.ProductData;
+import de.hybris.platform.commerceservices.order.CommerceCartModification;
+import de.hybris.platform.commerceservices.service.data.CommerceCartParameter;
+import de.hybris.platform.core.model.order.CartModel;
+import de.hybris.platform.core.model.product.ProductModel;
+import de.hybris.platform.order.CartService;
+import de.hybris.platform.servicelayer.config.ConfigurationService;
+import de.hybris.platform.servicelayer.dto.converter.Converter;
+import org.astra.training.core.order.BatchCommerceAddToCartStrategy;
+import org.astra.training.facades.order.BatchCartFacade;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Required;
+
+
+/**
+ * Default implementation of {@link BatchCartFacade}.
+ */
+public class DefaultBatchCartFacade implements BatchCartFacade
+{
+	private static final String MAX_ENTRIES = "astrafacades.cart.batch.maxEntries";
+	private static final int DEFAULT_MAX_ENTRIES = 100;
+
+	private CartService cartService;
+	private BatchCommerceAddToCartStrategy batchCommerceAddToCartStrategy;
+	private Converter<CommerceCartModification, CartModificationData> cartModificationConverter;
+	private ConfigurationService configurationService;
+
+	@Override
+	public List<CartModificationData> addToCart(final List<OrderEntryData> cartEntries)
+	{
+		final List<OrderEntryData> entries = cartEntries.subList(0, Math.min(cartEntries.size(), getMaxEntries()));
+
+		final Set<String> productCodes = new HashSet<>();
+		for (final OrderEntryData entry : entries)
+		{
+			productCodes.add(entry.getProduct().getCode());
+		}
+		final Map<String, ProductModel> products = getBatchCommerceAddToCartStrategy().getProductsForCodes(productCodes);
+
+		final CartModel cart = getCartService().getSessionCart();
+		final List<CommerceCartParameter> parameters = new ArrayList<>(entries.size());
+		for (final OrderEntryData entry : entries)
+		{
+			final ProductModel product = products.get(entry.getProduct().getCode());
+			if (product != null)
+			{
+				parameters.add(createParameter(cart, product, entry.getQuantity().longValue()));
+			}
+		}
+		final Iterator<CommerceCartModification> modifications = getBatchCommerceAddToCartStrategy().addToCart(parameters)
+				.iterator();
+
+		final List<CartModificationData> result = new ArrayList<>(cartEntries.size());
+		for (int i = 0; i < cartEntries.size(); i++)
+		{
+			final OrderEntryData entry = cartEntries.get(i);
+			if (i < entries.size() && products.containsKey(entry.getProduct().getCode()))
+			{
+				result.add(getCartModificationConverter().convert(modifications.next()));
+			}
+			else
+			{
+				result.add(createErrorModification(cart, entry));
+			}
+		}
+		return result;
+	}
+
+	protected CommerceCartParameter createParameter(final CartModel cart, final ProductModel product, final long quantity)
+	{
+		final CommerceCartParameter parameter = new CommerceCartParameter();
+		parameter.setEnableHooks(true);
+		parameter.setCart(cart);
+		parameter.setProduct(product);
+		parameter.setUnit(product.getUnit());
+		parameter.setQuantity(quantity);
+		parameter.setCreateNewEntry(false);
+		return parameter;
+	}
+
+	protected CartModificationData createErrorModification(final CartModel cart, final OrderEntryData entry)
+	{
+		final ProductData product = new ProductData();
+		product.setCode(entry.getProduct().getCode());
+		final OrderEntryData errorEntry = new OrderEntryData();
+		errorEntry.setProduct(product);
+		errorEntry.setQuantity(Long.valueOf(0L));
+
+		final CartModificationData modification = new CartModificationData();
+		modification.setCartCode(cart.getCode());
+		modification.setEntry(errorEntry);
+		modification.setQuantity(0L);
+		modification.setQuantityAdded(0L);
+		modification.setStatusCode(ERROR);
+		return modification;
+	}
+
+	@Override
+	public int getMaxEntries()
+	{
+		return getConfigurationService().getConfiguration().getInt(MAX_ENTRIES, DEFAULT_MAX_ENTRIES);
+	}
+
+	protected CartService getCartService()
+	{
+		return cartService;
+	}
+
+	@Required
+	public void setCartService(final CartService cartService)
+	{
+		this.cartService = cartService;
+	}
+
+	protected BatchCommerceAddToCartStrategy getBatchCommerceAddToCartStrategy()
+	{
+		return batchCommerceAddToCartStrategy;
+	}
+
+	@Required
+	public void setBatchCommerceAddToCartStrategy(final BatchCommerceAddToCartStrategy batchCommerceAddToCartStrategy)
+	{
+		this.batchCommerceAddToCartStrategy = batchCommerceAddToCartStrategy;
+	}
+
+	protected Converter<CommerceCartModification, CartModificationData> getCartModificationConverter()
+	{
+		return cartModificationConverter;
+	}
+
+	@Required
+	public void setCartModificationConverter(
+			final Converter<CommerceCartModification, CartModificationData> cartModificationConverter)
+	{
+		this.cartModificationConverter = cartModificationConverter;
+	}
+
+	protected ConfigurationService getConfigurationService()
+	{
+		return configurationService;
+	}
+
+	@Required
+	public void setConfigurationService(final ConfigurationService configurationService)
+	{
+		this.configurationService = configurationService;
+	}
+}
@@ -0,0 +1,577 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.facades.order.impl;
+
+import de.hybris.platform.basecommerce.model.site.BaseSiteModel;
+import de.hybris.platform.commerceservices.order.CommerceCartModification;
+import de.hybris.platform.commerceservices.order.CommerceSaveCartException;
+import de.hybris.platform.commerceservices.order.CommerceSaveCartService;
+import de.hybris.platform.commerceservices.service.data.CommerceCartParameter;
+import de.hybris.platform.commerceservices.service.data.CommerceSaveCartParameter;
+import de.hybris.platform.core.PK;
+import de.hybris.platform.core.Registry;
+import de.hybris.platform.core.model.order.CartModel;
+import de.hybris.platform.core.model.product.ProductModel;
+import de.hybris.platform.order.CartFactory;
+import de.hybris.platform.servicelayer.config.ConfigurationService;
+import de.hybris.platform.servicelayer.i18n.CommonI18NService;
+import de.hybris.platform.servicelayer.model.ModelService;
+import de.hybris.platform.servicelayer.session.Session;
+import de.hybris.platform.servicelayer.session.SessionService;
+import de.hybris.platform.servicelayer.user.UserService;
+import de.hybris.platform.site.BaseSiteService;
+import org.astra.training.core.order.BatchCommerceAddToCartStrategy;
+import org.astra.training.core.order.CsvCartEntryReader;
+import org.astra.training.core.order.CsvCartEntryReader.CsvCartEntry;
+import org.astra.training.facades.order.SavedCartImportFacade;
+import org.astra.training.facades.order.data.SavedCartImportErrorData;
+import org.astra.training.facades.order.data.SavedCartImportProgressData;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Required;
+
+
+/**
+ * Default implementation of {@link SavedCartImportFacade}.
+ *
+ * Memory is bounded by the chunk size: the products of a chunk are resolved with one lookup, its entries are added
+ * without calculating the cart, and only the first errors are kept for the progress. Prices and promotions are resolved
+ * by the single calculation after the last chunk.
+ *
+ * Started imports run on a small pool of workers in a session of their own, with the user, language, currency and site
+ * of the uploading session. Their progress is kept per import id on this node until an hour after they finished.
+ */
+public class DefaultSavedCartImportFacade implements SavedCartImportFacade, InitializingBean, DisposableBean
+{
+	private static final Logger LOG = Logger.getLogger(DefaultSavedCartImportFacade.class);
+
+	/**
+	 * Reason of a line whose product does not exist.
+	 */
+	public static final String UNKNOWN_PRODUCT = "unknownProduct";
+
+	private static final String CHUNK_SIZE = "astrafacades.cart.import.chunkSize";
+	private static final int DEFAULT_CHUNK_SIZE = 200;
+	private static final int MAX_REPORTED_ERRORS = 100;
+	private static final String THREADS = "astrafacades.cart.import.threads";
+	private static final int DEFAULT_THREADS = 2;
+	private static final long FINISHED_IMPORT_RETENTION_MILLIS = 60L * 60L * 1000L;
+
+	private CartFactory cartFactory;
+	private BatchCommerceAddToCartStrategy batchCommerceAddToCartStrategy;
+	private CommerceSaveCartService commerceSaveCartService;
+	private ModelService modelService;
+	private ConfigurationService configurationService;
+	private SessionService sessionService;
+	private UserService userService;
+	private CommonI18NService commonI18NService;
+	private BaseSiteService baseSiteService;
+
+	private final ConcurrentMap<String, ImportRecord> imports = new ConcurrentHashMap<>();
+	private ExecutorService importer;
+
+	@Override
+	public void afterPropertiesSet()
+	{
+		final AtomicInteger threadNumber = new AtomicInteger();
+		importer = Executors.newFixedThreadPool(getConfigurationService().getConfiguration().getInt(THREADS, DEFAULT_THREADS),
+				runnable -> {
+					final Thread thread = new Thread(runnable, "SavedCartImport-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	@Override
+	public void destroy()
+	{
+		importer.shutdownNow();
+	}
+
+	@Override
+	public String startImport(final InputStream csvStream, final String fileName) throws IOException
+	{
+		removeFinishedImports();
+
+		// the upload is only readable during the request, the worker reads a copy
+		final Path file = Files.createTempFile("savedcart-import-", ".csv");
+		try
+		{
+			Files.copy(csvStream, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (final IOException e)
+		{
+			Files.deleteIfExists(file);
+			throw e;
+		}
+
+		final String importId = UUID.randomUUID().toString();
+		final ImportRecord record = new ImportRecord(getUserService().getCurrentUser().getUid(), new ImportState(fileName));
+		imports.put(importId, record);
+
+		final ImportContext context = captureContext();
+		try
+		{
+			submit(() -> runImport(context, file, fileName, record));
+		}
+		catch (final RejectedExecutionException e)
+		{
+			imports.remove(importId);
+			Files.deleteIfExists(file);
+			throw new IOException("Saved cart import is shut down", e);
+		}
+		return importId;
+	}
+
+	@Override
+	public SavedCartImportProgressData getProgress(final String importId)
+	{
+		final ImportRecord record = importId == null ? null : imports.get(importId);
+		if (record == null || !record.userUid.equals(getUserService().getCurrentUser().getUid()))
+		{
+			return null;
+		}
+		return record.progress;
+	}
+
+	protected void submit(final Runnable task)
+	{
+		importer.execute(task);
+	}
+
+	protected void removeFinishedImports()
+	{
+		final long removeBefore = System.currentTimeMillis() - FINISHED_IMPORT_RETENTION_MILLIS;
+		imports.values().removeIf(record -> record.finishedAt > 0L && record.finishedAt < removeBefore);
+	}
+
+	protected ImportContext captureContext()
+	{
+		final BaseSiteModel site = getBaseSiteService().getCurrentBaseSite();
+		return new ImportContext(Registry.getCurrentTenant().getTenantID(), getUserService().getCurrentUser().getPk(),
+				getCommonI18NService().getCurrentLanguage().getPk(), getCommonI18NService().getCurrentCurrency().getPk(),
+				site == null ? null : site.getPk());
+	}
+
+	/**
+	 * Runs an import on a worker thread, which has neither the tenant nor the session of the uploading request.
+	 */
+	protected void runImport(final ImportContext context, final Path file, final String fileName, final ImportRecord record)
+	{
+		try
+		{
+			Registry.setCurrentTenant(Registry.getTenantByID(context.tenantId));
+			try
+			{
+				final Session session = getSessionService().createNewSession();
+				try
+				{
+					getUserService().setCurrentUser(getModelService().get(context.userPk));
+					getCommonI18NService().setCurrentLanguage(getModelService().get(context.languagePk));
+					getCommonI18NService().setCurrentCurrency(getModelService().get(context.currencyPk));
+					if (context.sitePk != null)
+					{
+						getBaseSiteService().setCurrentBaseSite((BaseSiteModel) getModelService().get(context.sitePk), true);
+					}
+					importFile(file, fileName, record);
+				}
+				finally
+				{
+					getSessionService().closeSession(session);
+				}
+			}
+			finally
+			{
+				Registry.unsetCurrentTenant();
+			}
+		}
+		catch (final RuntimeException e)
+		{
+			LOG.error("Saved cart could not be imported from file " + fileName, e);
+			markFailed(record);
+		}
+		finally
+		{
+			record.finishedAt = System.currentTimeMillis();
+			deleteFile(file);
+		}
+	}
+
+	protected void importFile(final Path file, final String fileName, final ImportRecord record)
+	{
+		try (InputStream csvStream = Files.newInputStream(file))
+		{
+			importSavedCart(csvStream, fileName, progress -> record.progress = progress);
+		}
+		catch (final IOException e)
+		{
+			LOG.warn("Saved cart could not be imported from file " + fileName, e);
+			markFailed(record);
+		}
+	}
+
+	/**
+	 * Ends an import that failed outside of the import itself, the progress is replaced as readers may hold the last one.
+	 */
+	protected void markFailed(final ImportRecord record)
+	{
+		final SavedCartImportProgressData last = record.progress;
+		if (last.isDone())
+		{
+			return;
+		}
+		final SavedCartImportProgressData progress = new SavedCartImportProgressData();
+		progress.setFileName(last.getFileName());
+		progress.setLinesRead(last.getLinesRead());
+		progress.setEntriesAdded(last.getEntriesAdded());
+		progress.setErrorCount(last.getErrorCount());
+		progress.setErrors(last.getErrors());
+		progress.setDone(true);
+		progress.setFailed(true);
+		record.progress = progress;
+	}
+
+	protected void deleteFile(final Path file)
+	{
+		try
+		{
+			Files.deleteIfExists(file);
+		}
+		catch (final IOException e)
+		{
+			LOG.warn("Could not delete the uploaded file " + file, e);
+		}
+	}
+
+	@Override
+	public SavedCartImportProgressData importSavedCart(final InputStream csvStream, final String fileName,
+			final Consumer<SavedCartImportProgressData> progressListener)
+	{
+		final ImportState state = new ImportState(fileName);
+		progressListener.accept(state.toProgress());
+
+		final CartModel cart = getCartFactory().createCart();
+		boolean saved = false;
+		try (CsvCartEntryReader reader = new CsvCartEntryReader(new InputStreamReader(csvStream, StandardCharsets.UTF_8)))
+		{
+			final int chunkSize = getConfigurationService().getConfiguration().getInt(CHUNK_SIZE, DEFAULT_CHUNK_SIZE);
+			for (List<CsvCartEntry> chunk = reader.read(chunkSize); !chunk.isEmpty(); chunk = reader.read(chunkSize))
+			{
+				importChunk(cart, chunk, state);
+				state.linesRead = reader.getLineNumber();
+				progressListener.accept(state.toProgress());
+			}
+			state.linesRead = reader.getLineNumber();
+
+			getBatchCommerceAddToCartStrategy().calculateCart(cart);
+			state.savedCartCode = saveCart(cart, fileName).getCode();
+			saved = true;
+		}
+		catch (final IOException | CommerceSaveCartException e)
+		{
+			LOG.warn("Saved cart could not be imported from file " + fileName, e);
+		}
+		finally
+		{
+			// also reached by unexpected exceptions, which must neither leave the cart behind nor an import that never ends
+			if (!saved)
+			{
+				state.failed = true;
+				removeCart(cart);
+			}
+			state.done = true;
+			progressListener.accept(state.toProgress());
+		}
+		return state.toProgress();
+	}
+
+	protected void removeCart(final CartModel cart)
+	{
+		try
+		{
+			getModelService().remove(cart);
+		}
+		catch (final RuntimeException e)
+		{
+			LOG.warn("Cart of a failed import could not be removed", e);
+		}
+	}
+
+	protected void importChunk(final CartModel cart, final List<CsvCartEntry> chunk, final ImportState state)
+	{
+		final Set<String> productCodes = new HashSet<>();
+		for (final CsvCartEntry entry : chunk)
+		{
+			if (entry.getError() == null)
+			{
+				productCodes.add(entry.getProductCode());
+			}
+		}
+		final Map<String, ProductModel> products = getBatchCommerceAddToCartStrategy().getProductsForCodes(productCodes);
+
+		final List<CsvCartEntry> validEntries = new ArrayList<>(chunk.size());
+		final List<CommerceCartParameter> parameters = new ArrayList<>(chunk.size());
+		for (final CsvCartEntry entry : chunk)
+		{
+			if (entry.getError() != null)
+			{
+				state.addError(entry, entry.getError());
+			}
+			else if (!products.containsKey(entry.getProductCode()))
+			{
+				state.addError(entry, UNKNOWN_PRODUCT);
+			}
+			else
+			{
+				validEntries.add(entry);
+				parameters.add(createParameter(cart, products.get(entry.getProductCode()), entry.getQuantity()));
+			}
+		}
+
+		final Iterator<CsvCartEntry> entries = validEntries.iterator();
+		for (final CommerceCartModification modification : getBatchCommerceAddToCartStrategy()
+				.addToCartWithoutCalculation(parameters))
+		{
+			final CsvCartEntry entry = entries.next();
+			if (modification.getQuantityAdded() > 0L)
+			{
+				state.entriesAdded++;
+			}
+			if (modification.getQuantityAdded() < entry.getQuantity())
+			{
+				state.addError(entry, modification.getStatusCode());
+			}
+		}
+	}
+
+	protected CommerceCartParameter createParameter(final CartModel cart, final ProductModel product, final long quantity)
+	{
+		final CommerceCartParameter parameter = new CommerceCartParameter();
+		parameter.setEnableHooks(true);
+		parameter.setCart(cart);
+		parameter.setProduct(product);
+		parameter.setUnit(product.getUnit());
+		parameter.setQuantity(quantity);
+		parameter.setCreateNewEntry(false);
+		return parameter;
+	}
+
+	protected CartModel saveCart(final CartModel cart, final String fileName) throws CommerceSaveCartException
+	{
+		final CommerceSaveCartParameter parameter = new CommerceSaveCartParameter();
+		parameter.setCart(cart);
+		parameter.setName(fileName);
+		parameter.setDescription(fileName);
+		parameter.setEnableHooks(true);
+		return getCommerceSaveCartService().saveCart(parameter).getSavedCart();
+	}
+
+	protected CartFactory getCartFactory()
+	{
+		return cartFactory;
+	}
+
+	@Required
+	public void setCartFactory(final CartFactory cartFactory)
+	{
+		this.cartFactory = cartFactory;
+	}
+
+	protected BatchCommerceAddToCartStrategy getBatchCommerceAddToCartStrategy()
+	{
+		return batchCommerceAddToCartStrategy;
+	}
+
+	@Required
+	public void setBatchCommerceAddToCartStrategy(final BatchCommerceAddToCartStrategy batchCommerceAddToCartStrategy)
+	{
+		this.batchCommerceAddToCartStrategy = batchCommerceAddToCartStrategy;
+	}
+
+	protected CommerceSaveCartService getCommerceSaveCartService()
+	{
+		return commerceSaveCartService;
+	}
+
+	@Required
+	public void setCommerceSaveCartService(final CommerceSaveCartService commerceSaveCartService)
+	{
+		this.commerceSaveCartService = commerceSaveCartService;
+	}
+
+	protected ModelService getModelService()
+	{
+		return modelService;
+	}
+
+	@Required
+	public void setModelService(final ModelService modelService)
+	{
+		this.modelService = modelService;
+	}
+
+	protected ConfigurationService getConfigurationService()
+	{
+		return configurationService;
+	}
+
+	@Required
+	public void setConfigurationService(final ConfigurationService configurationService)
+	{
+		this.configurationService = configurationService;
+	}
+
+	protected SessionService getSessionService()
+	{
+		return sessionService;
+	}
+
+	@Required
+	public void setSessionService(final SessionService sessionService)
+	{
+		this.sessionService = sessionService;
+	}
+
+	protected UserService getUserService()
+	{
+		return userService;
+	}
+
+	@Required
+	public void setUserService(final UserService userService)
+	{
+		this.userService = userService;
+	}
+
+	protected CommonI18NService getCommonI18NService()
+	{
+		return commonI18NService;
+	}
+
+	@Required
+	public void setCommonI18NService(final CommonI18NService commonI18NService)
+	{
+		this.commonI18NService = commonI18NService;
+	}
+
+	protected BaseSiteService getBaseSiteService()
+	{
+		return baseSiteService;
+	}
+
+	@Required
+	public void setBaseSiteService(final BaseSiteService baseSiteService)
+	{
+		this.baseSiteService = baseSiteService;
+	}
+
+	/**
+	 * The session values of the uploading request, as primary keys to be loaded by the worker.
+	 */
+	protected static class ImportContext
+	{
+		private final String tenantId;
+		private final PK userPk;
+		private final PK languagePk;
+		private final PK currencyPk;
+		private final PK sitePk;
+
+		protected ImportContext(final String tenantId, final PK userPk, final PK languagePk, final PK currencyPk,
+				final PK sitePk)
+		{
+			this.tenantId = tenantId;
+			this.userPk = userPk;
+			this.languagePk = languagePk;
+			this.currencyPk = currencyPk;
+			this.sitePk = sitePk;
+		}
+	}
+
+	/**
+	 * A started import, readable by the user who started it.
+	 */
+	protected static class ImportRecord
+	{
+		private final String userUid;
+		private volatile SavedCartImportProgressData progress;
+		private volatile long finishedAt;
+
+		protected ImportRecord(final String userUid, final ImportState state)
+		{
+			this.userUid = userUid;
+			this.progress = state.toProgress();
+		}
+	}
+
+	/**
+	 * The counters of one import.
+	 */
+	protected static class ImportState
+	{
+		private final String fileName;
+		private final List<SavedCartImportErrorData> errors = new ArrayList<>();
+		private int linesRead;
+		private int entriesAdded;
+		private int errorCount;
+		private String savedCartCode;
+		private boolean done;
+		private boolean failed;
+
+		protected ImportState(final String fileName)
+		{
+			this.fileName = fileName;
+		}
+
+		protected void addError(final CsvCartEntry entry, final String reason)
+		{
+			errorCount++;
+			if (errors.size() < MAX_REPORTED_ERRORS)
+			{
+				final SavedCartImportErrorData error = new SavedCartImportErrorData();
+				error.setLineNumber(entry.getLineNumber());
+				error.setProductCode(entry.getProductCode());
+				error.setReason(reason);
+				errors.add(error);
+			}
+		}
+
+		protected SavedCartImportProgressData toProgress()
+		{
+			final SavedCartImportProgressData progress = new SavedCartImportProgressData();
+			progress.setFileName(fileName);
+			progress.setLinesRead(linesRead);
+			progress.setEntriesAdded(entriesAdded);
+			progress.setErrorCount(errorCount);
+			progress.setErrors(new ArrayList<>(errors));
+			progress.setSavedCartCode(savedCartCode);
+			progress.setDone(done);
+			progress.setFailed(failed);
+			return progress;
+		}
+	}
+}
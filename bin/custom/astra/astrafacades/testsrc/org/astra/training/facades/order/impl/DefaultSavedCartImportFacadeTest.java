@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.facades.order.impl;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.commerceservices.order.CommerceCartModification;
+import de.hybris.platform.commerceservices.order.CommerceCartModificationStatus;
+import de.hybris.platform.commerceservices.order.CommerceSaveCartService;
+import de.hybris.platform.commerceservices.service.data.CommerceCartParameter;
+import de.hybris.platform.commerceservices.service.data.CommerceSaveCartParameter;
+import de.hybris.platform.commerceservices.service.data.CommerceSaveCartResult;
+import de.hybris.platform.core.model.order.CartModel;
+import de.hybris.platform.core.model.product.ProductModel;
+import de.hybris.platform.core.model.user.UserModel;
+import de.hybris.platform.order.CartFactory;
+import de.hybris.platform.servicelayer.config.ConfigurationService;
+import de.hybris.platform.servicelayer.model.ModelService;
+import de.hybris.platform.servicelayer.user.UserService;
+import org.astra.training.core.order.BatchCommerceAddToCartStrategy;
+import org.astra.training.core.order.CsvCartEntryReader;
+import org.astra.training.facades.order.data.SavedCartImportProgressData;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.log4j.Logger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+
+/**
+ * Unit test for {@link DefaultSavedCartImportFacade}.
+ */
+@UnitTest
+public class DefaultSavedCartImportFacadeTest
+{
+	private static final Logger LOG = Logger.getLogger(DefaultSavedCartImportFacadeTest.class);
+
+	private static final String UNKNOWN_PRODUCT = "0000000";
+	private static final int CHUNK_SIZE = 200;
+	private static final int BENCHMARK_LINES = 10000;
+
+	@Mock
+	private CartFactory cartFactory;
+	@Mock
+	private BatchCommerceAddToCartStrategy batchCommerceAddToCartStrategy;
+	@Mock
+	private CommerceSaveCartService commerceSaveCartService;
+	@Mock
+	private ModelService modelService;
+	@Mock
+	private ConfigurationService configurationService;
+	@Mock
+	private Configuration configuration;
+	@Mock
+	private CartModel cart;
+	@Mock
+	private ProductModel product;
+	@Mock
+	private UserService userService;
+	@Mock
+	private UserModel customer;
+	@Mock
+	private UserModel otherCustomer;
+
+	private final List<SavedCartImportProgressData> progresses = new ArrayList<>();
+	private int largestChunk;
+	private Path importedFile;
+	private DefaultSavedCartImportFacade facade;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		MockitoAnnotations.initMocks(this);
+		given(cartFactory.createCart()).willReturn(cart);
+		given(cart.getCode()).willReturn("00001000");
+		given(configurationService.getConfiguration()).willReturn(configuration);
+		given(configuration.getInt(anyString(), anyInt())).willReturn(Integer.valueOf(CHUNK_SIZE));
+
+		given(batchCommerceAddToCartStrategy.getProductsForCodes(any(Collection.class))).willAnswer(invocation -> {
+			final Map<String, ProductModel> products = new HashMap<>();
+			for (final String code : (Collection<String>) invocation.getArguments()[0])
+			{
+				if (!UNKNOWN_PRODUCT.equals(code))
+				{
+					products.put(code, product);
+				}
+			}
+			return products;
+		});
+		given(batchCommerceAddToCartStrategy.addToCartWithoutCalculation(any(List.class))).willAnswer(invocation -> {
+			final List<CommerceCartParameter> parameters = (List<CommerceCartParameter>) invocation.getArguments()[0];
+			largestChunk = Math.max(largestChunk, parameters.size());
+			final List<CommerceCartModification> modifications = new ArrayList<>();
+			for (final CommerceCartParameter parameter : parameters)
+			{
+				final CommerceCartModification modification = new CommerceCartModification();
+				// at most 10 pieces in stock
+				modification.setQuantityAdded(Math.min(parameter.getQuantity(), 10L));
+				modification.setStatusCode(
+						parameter.getQuantity() > 10L ? CommerceCartModificationStatus.LOW_STOCK : CommerceCartModificationStatus.SUCCESS);
+				modifications.add(modification);
+			}
+			return modifications;
+		});
+		final CommerceSaveCartResult saveCartResult = new CommerceSaveCartResult();
+		saveCartResult.setSavedCart(cart);
+		given(commerceSaveCartService.saveCart(any(CommerceSaveCartParameter.class))).willReturn(saveCartResult);
+
+		given(customer.getUid()).willReturn("customer@astra.com");
+		given(otherCustomer.getUid()).willReturn("other@astra.com");
+		given(userService.getCurrentUser()).willReturn(customer);
+
+		facade = new DefaultSavedCartImportFacade()
+		{
+			@Override
+			protected void submit(final Runnable task)
+			{
+				task.run();
+			}
+
+			@Override
+			protected ImportContext captureContext()
+			{
+				return null;
+			}
+
+			@Override
+			protected void runImport(final ImportContext context, final Path file, final String fileName,
+					final ImportRecord record)
+			{
+				// without tenant and session in a unit test
+				importedFile = file;
+				importFile(file, fileName, record);
+				deleteFile(file);
+			}
+		};
+		facade.setCartFactory(cartFactory);
+		facade.setBatchCommerceAddToCartStrategy(batchCommerceAddToCartStrategy);
+		facade.setCommerceSaveCartService(commerceSaveCartService);
+		facade.setModelService(modelService);
+		facade.setConfigurationService(configurationService);
+		facade.setUserService(userService);
+	}
+
+	@Test
+	public void shouldReportInvalidLines()
+	{
+		final SavedCartImportProgressData progress = importFile(
+				"SKU,Quantity\n1978440,2\n\n,3\n1934793,abc\n" + UNKNOWN_PRODUCT + ",1\n\"1687508\", \"12\"\n");
+
+		Assert.assertTrue(progress.isDone());
+		Assert.assertFalse(progress.isFailed());
+		Assert.assertEquals("00001000", progress.getSavedCartCode());
+		Assert.assertEquals(7, progress.getLinesRead());
+		Assert.assertEquals(2, progress.getEntriesAdded());
+		Assert.assertEquals(4, progress.getErrorCount());
+		Assert.assertEquals(4, progress.getErrors().get(0).getLineNumber());
+		Assert.assertEquals(CsvCartEntryReader.INVALID_PRODUCT_CODE, progress.getErrors().get(0).getReason());
+		Assert.assertEquals(CsvCartEntryReader.INVALID_QUANTITY, progress.getErrors().get(1).getReason());
+		Assert.assertEquals(DefaultSavedCartImportFacade.UNKNOWN_PRODUCT, progress.getErrors().get(2).getReason());
+		Assert.assertEquals("1687508", progress.getErrors().get(3).getProductCode());
+		Assert.assertEquals(CommerceCartModificationStatus.LOW_STOCK, progress.getErrors().get(3).getReason());
+		verify(batchCommerceAddToCartStrategy, times(1)).calculateCart(cart);
+		verify(modelService, never()).remove(cart);
+	}
+
+	@Test
+	public void shouldImportLargeFileInChunksWithOneCalculation()
+	{
+		final StringBuilder csv = new StringBuilder("SKU,Quantity\n");
+		for (int i = 1; i <= BENCHMARK_LINES; i++)
+		{
+			csv.append(i % 1000 == 0 ? UNKNOWN_PRODUCT : String.valueOf(1000000 + i)).append(',').append(i % 7 + 1).append('\n');
+		}
+
+		final Runtime runtime = Runtime.getRuntime();
+		runtime.gc();
+		final long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+		final long start = System.nanoTime();
+		final SavedCartImportProgressData progress = importFile(csv.toString());
+		final long elapsedNanos = System.nanoTime() - start;
+		final long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+
+		LOG.info("Imported " + BENCHMARK_LINES + " lines in " + elapsedNanos / 1000000 + " ms, " + progresses.size()
+				+ " progress updates, largest chunk " + largestChunk + " entries, heap grew by " + (heapAfter - heapBefore) / 1024
+				+ " KB without the cart calculation");
+		Assert.assertEquals(BENCHMARK_LINES + 1, progress.getLinesRead());
+		Assert.assertEquals(BENCHMARK_LINES - BENCHMARK_LINES / 1000, progress.getEntriesAdded());
+		Assert.assertEquals(BENCHMARK_LINES / 1000, progress.getErrorCount());
+		Assert.assertEquals(CHUNK_SIZE, largestChunk);
+		Assert.assertEquals(BENCHMARK_LINES / CHUNK_SIZE + 2, progresses.size());
+		verify(batchCommerceAddToCartStrategy, times(BENCHMARK_LINES / CHUNK_SIZE)).addToCartWithoutCalculation(any(List.class));
+		verify(batchCommerceAddToCartStrategy, times(1)).calculateCart(cart);
+	}
+
+	@Test
+	public void shouldRemoveCartAndEndImportOnUnexpectedFailure()
+	{
+		given(batchCommerceAddToCartStrategy.addToCartWithoutCalculation(any(List.class)))
+				.willThrow(new IllegalStateException("deadlock"));
+
+		try
+		{
+			importFile("SKU,Quantity\n1978440,2\n");
+			Assert.fail("Expected the unexpected failure to end the import");
+		}
+		catch (final IllegalStateException e)
+		{
+			final SavedCartImportProgressData progress = progresses.get(progresses.size() - 1);
+			Assert.assertTrue(progress.isDone());
+			Assert.assertTrue(progress.isFailed());
+			verify(modelService).remove(cart);
+			verify(commerceSaveCartService, never()).saveCart(any(CommerceSaveCartParameter.class));
+		}
+	}
+
+	@Test
+	public void shouldKeepProgressPerImportForItsUser() throws Exception
+	{
+		final String importId = facade.startImport(
+				new ByteArrayInputStream("SKU,Quantity\n1978440,2\n".getBytes(StandardCharsets.UTF_8)), "order.csv");
+
+		final SavedCartImportProgressData progress = facade.getProgress(importId);
+		Assert.assertTrue(progress.isDone());
+		Assert.assertEquals("00001000", progress.getSavedCartCode());
+		Assert.assertEquals(1, progress.getEntriesAdded());
+		Assert.assertFalse(Files.exists(importedFile));
+		Assert.assertNull(facade.getProgress("unknown"));
+
+		given(userService.getCurrentUser()).willReturn(otherCustomer);
+		Assert.assertNull(facade.getProgress(importId));
+	}
+
+	protected SavedCartImportProgressData importFile(final String content)
+	{
+		return facade.importSavedCart(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), "order.csv",
+				progresses::add);
+	}
+}
@@ -3,19 +3,45 @@
  */
 package org.astra.training.storefront.controllers.cms;
 
+import de.hybris.platform.acceleratorcms.services.CMSPageContextService;
 import de.hybris.platform.acceleratorstorefrontcommons.controllers.cms.AbstractCMSComponentController;
 import de.hybris.platform.cms2.model.contents.components.AbstractCMSComponentModel;
 import org.astra.training.storefront.controllers.ControllerConstants;
+import org.astra.training.storefront.web.view.ViewFragmentRenderer;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+
+import javax.annotation.Resource;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.springframework.ui.Model;
 
 
 /**
- * Abstract accelerator CMS component controller providing a common implementation for the getView method.
+ * Abstract accelerator CMS component controller providing a common implementation for the getView method. The markup
+ * of components the controller marks as cacheable is kept in the {@link CmsComponentRenderCache}, unless the page is
+ * previewed or the component or one of its nested components is restricted.
  */
 public abstract class AbstractAcceleratorCMSComponentController<T extends AbstractCMSComponentModel> extends
 		AbstractCMSComponentController<T>
 {
+	private static final Logger LOG = Logger.getLogger(AbstractAcceleratorCMSComponentController.class);
+
+	@Resource(name = "cmsComponentRenderCache")
+	private CmsComponentRenderCache cmsComponentRenderCache;
+
+	@Resource(name = "viewFragmentRenderer")
+	private ViewFragmentRenderer viewFragmentRenderer;
+
+	@Resource(name = "cmsPageContextService")
+	private CMSPageContextService cmsPageContextService;
+
 	@Override
 	protected String getView(final T component)
 	{
@@ -23,4 +49,86 @@ public abstract class AbstractAcceleratorCMSComponentController<T extends Abstra
 		return ControllerConstants.Views.Cms.ComponentPrefix + StringUtils.lowerCase(getTypeCode(component));
 	}
 
+	@Override
+	protected String handleComponent(final HttpServletRequest request, final HttpServletResponse response, final Model model,
+			final T component)
+	{
+		if (!isCacheable(component) || !getCmsComponentRenderCache().isEnabled() || isPreview(request)
+				|| getCmsComponentRenderCache().isRestricted(component, () -> getNestedComponents(component)))
+		{
+			return super.handleComponent(request, response, model, component);
+		}
+
+		try
+		{
+			final String markup = getCmsComponentRenderCache().get(request, component, getCacheContext(request, component),
+					() -> getViewFragmentRenderer().render(super.handleComponent(request, response, model, component),
+							model.asMap(), request, response));
+			response.getWriter().write(markup);
+			return null;
+		}
+		catch (final ServletException | IOException e)
+		{
+			LOG.warn("Could not render component " + component.getUid() + " into the render cache, rendering it uncached", e);
+			return super.handleComponent(request, response, model, component);
+		}
+	}
+
+	/**
+	 * @param component
+	 * 		the component
+	 * @return whether the markup of the component only depends on the component, the session context and the
+	 * {@link #getCacheContext(HttpServletRequest, AbstractCMSComponentModel)} and may be kept for other requests
+	 */
+	protected boolean isCacheable(final T component)
+	{
+		return false;
+	}
+
+	/**
+	 * @param request
+	 * 		the current request
+	 * @param component
+	 * 		the component
+	 * @return what else than the component and the session context the markup of a cacheable component depends on, null
+	 * if nothing
+	 */
+	protected String getCacheContext(final HttpServletRequest request, final T component)
+	{
+		return null;
+	}
+
+	/**
+	 * @param component
+	 * 		the component
+	 * @return the components rendered as part of the markup of the component, whose restrictions decide about the
+	 * markup as well
+	 */
+	protected Collection<? extends AbstractCMSComponentModel> getNestedComponents(final T component)
+	{
+		return Collections.emptyList();
+	}
+
+	/**
+	 * @return whether the page is previewed, showing content of the staged catalog versions, a chosen time or user
+	 */
+	protected boolean isPreview(final HttpServletRequest request)
+	{
+		return getCmsPageContextService().getCmsPageRequestContextData(request).getPreviewData() != null;
+	}
+
+	protected CmsComponentRenderCache getCmsComponentRenderCache()
+	{
+		return cmsComponentRenderCache;
+	}
+
+	protected ViewFragmentRenderer getViewFragmentRenderer()
+	{
+		return viewFragmentRenderer;
+	}
+
+	protected CMSPageContextService getCmsPageContextService()
+	{
+		return cmsPageContextService;
+	}
 }
@@ -27,6 +27,12 @@ public class CategoryFeatureComponentController extends AbstractAcceleratorCMSCo
 	@Resource(name = "categoryUrlConverter")
 	private Converter<CategoryModel, CategoryData> categoryUrlConverter;
 
+	@Override
+	protected boolean isCacheable(final CategoryFeatureComponentModel component)
+	{
+		return true;
+	}
+
 	@Override
 	protected void fillModel(final HttpServletRequest request, final Model model, final CategoryFeatureComponentModel component)
 	{
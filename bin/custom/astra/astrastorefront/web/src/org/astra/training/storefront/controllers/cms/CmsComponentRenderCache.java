@@ -0,0 +1,378 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.storefront.controllers.cms;
+
+import de.hybris.platform.acceleratorservices.uiexperience.UiExperienceService;
+import de.hybris.platform.cms2.model.contents.components.AbstractCMSComponentModel;
+import de.hybris.platform.cms2.model.site.CMSSiteModel;
+import de.hybris.platform.cms2.servicelayer.services.CMSSiteService;
+import de.hybris.platform.core.Registry;
+import de.hybris.platform.core.model.user.UserGroupModel;
+import de.hybris.platform.core.model.user.UserModel;
+import de.hybris.platform.servicelayer.i18n.CommonI18NService;
+import de.hybris.platform.servicelayer.user.UserService;
+import org.astra.training.core.cms.CmsContentGenerationService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang.StringUtils;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.export.naming.SelfNaming;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+
+/**
+ * Cache of the rendered markup of CMS components whose controllers mark them as cacheable. Entries are keyed by the
+ * component UID and catalog version, the site, the session language and currency, the UI experience and the restriction
+ * signature of the session user, made up of the user groups and the user price group, which decide about restricted
+ * nested components and prices. They are keyed by the generations of the CMS and the catalog content as well, so
+ * saves of CMS items, products, categories and prices and finished synchronizations are seen at once on the saving node
+ * and on the other cluster nodes once the change event arrived; entries expire after a while in case an event is lost.
+ * <p>
+ * Components which are restricted themselves or render restricted nested components, for instance navigation links
+ * with user, category or time restrictions, are not kept, since their restrictions are evaluated against more than the
+ * key holds. Personalization replaces whole components of a container by others for the segments of the user, so the
+ * component rendered, and with it the key, is already personalized.
+ */
+@ManagedResource(description = "Rendered markup of cacheable CMS components")
+public class CmsComponentRenderCache implements InitializingBean, SelfNaming
+{
+	private static final String SIGNATURE_ATTRIBUTE = CmsComponentRenderCache.class.getName() + ".signature";
+	private static final char KEY_SEPARATOR = '|';
+
+	private final Map<String, ComponentStatistics> statistics = new ConcurrentHashMap<>();
+
+	private CmsContentGenerationService cmsContentGenerationService;
+	private CmsContentGenerationService catalogContentGenerationService;
+	private CMSSiteService cmsSiteService;
+	private CommonI18NService commonI18NService;
+	private UiExperienceService uiExperienceService;
+	private UserService userService;
+	private boolean enabled = true;
+	private long maximumSize = 5000;
+	private long timeToLiveSeconds = 300;
+
+	private Cache<String, String> fragments;
+	private Cache<String, Boolean> restrictedComponents;
+
+	@Override
+	public void afterPropertiesSet()
+	{
+		fragments = CacheBuilder.newBuilder().maximumSize(getMaximumSize())
+				.expireAfterWrite(getTimeToLiveSeconds(), TimeUnit.SECONDS).build();
+		restrictedComponents = CacheBuilder.newBuilder().maximumSize(getMaximumSize())
+				.expireAfterWrite(getTimeToLiveSeconds(), TimeUnit.SECONDS).build();
+	}
+
+	/**
+	 * Tells whether the component or one of its nested components carries restrictions, in which case its markup must
+	 * not be kept. The answer is remembered per component until the CMS content changes.
+	 *
+	 * @param component
+	 * 		the component
+	 * @param nestedComponents
+	 * 		supplies the components rendered as part of the component
+	 * @return whether the markup of the component depends on restrictions
+	 */
+	public boolean isRestricted(final AbstractCMSComponentModel component,
+			final Supplier<Collection<? extends AbstractCMSComponentModel>> nestedComponents)
+	{
+		final String key = component.getUid() + KEY_SEPARATOR
+				+ (component.getCatalogVersion() == null ? null : component.getCatalogVersion().getPk()) + KEY_SEPARATOR
+				+ getCmsContentGenerationService().getGeneration();
+		Boolean restricted = restrictedComponents.getIfPresent(key);
+		if (restricted == null)
+		{
+			restricted = Boolean.valueOf(hasRestrictions(component) || hasRestrictions(nestedComponents.get()));
+			restrictedComponents.put(key, restricted);
+		}
+		return restricted.booleanValue();
+	}
+
+	protected boolean hasRestrictions(final Collection<? extends AbstractCMSComponentModel> components)
+	{
+		for (final AbstractCMSComponentModel component : components)
+		{
+			if (hasRestrictions(component))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	protected boolean hasRestrictions(final AbstractCMSComponentModel component)
+	{
+		return CollectionUtils.isNotEmpty(component.getRestrictions());
+	}
+
+	/**
+	 * Returns the markup of the component, rendered by the renderer if there is none for the current key.
+	 *
+	 * @param request
+	 * 		the current request
+	 * @param component
+	 * 		the component
+	 * @param context
+	 * 		what else the markup depends on, for instance the category of the page, may be null
+	 * @param renderer
+	 * 		renders the component
+	 * @return the markup
+	 */
+	public String get(final HttpServletRequest request, final AbstractCMSComponentModel component, final String context,
+			final ComponentRenderer renderer) throws ServletException, IOException
+	{
+		// read the generations before rendering, so that changes made meanwhile lead to a new render on the next request
+		final String key = getKey(request, component, context);
+		final ComponentStatistics componentStatistics = statistics.computeIfAbsent(component.getItemtype(),
+				typeCode -> new ComponentStatistics());
+		final String cached = fragments.getIfPresent(key);
+		if (cached != null)
+		{
+			componentStatistics.getHits().increment();
+			return cached;
+		}
+
+		componentStatistics.getMisses().increment();
+		final long start = System.nanoTime();
+		final String markup = renderer.render();
+		componentStatistics.getRenderNanos().add(System.nanoTime() - start);
+		if (markup != null)
+		{
+			fragments.put(key, markup);
+		}
+		return markup;
+	}
+
+	protected String getKey(final HttpServletRequest request, final AbstractCMSComponentModel component,
+			final String context)
+	{
+		final CMSSiteModel site = getCmsSiteService().getCurrentSite();
+		return new StringBuilder(component.getUid()).append(KEY_SEPARATOR)
+				.append(component.getCatalogVersion() == null ? null : component.getCatalogVersion().getPk()).append(KEY_SEPARATOR)
+				.append(site == null ? null : site.getUid()).append(KEY_SEPARATOR)
+				.append(getCommonI18NService().getCurrentLanguage().getIsocode()).append(KEY_SEPARATOR)
+				.append(getCommonI18NService().getCurrentCurrency().getIsocode()).append(KEY_SEPARATOR)
+				.append(getUiExperienceService().getUiExperienceLevel()).append(KEY_SEPARATOR)
+				.append(getRestrictionSignature(request)).append(KEY_SEPARATOR)
+				.append(getCmsContentGenerationService().getGeneration()).append(KEY_SEPARATOR)
+				.append(getCatalogContentGenerationService().getGeneration()).append(KEY_SEPARATOR)
+				.append(StringUtils.defaultString(context)).toString();
+	}
+
+	/**
+	 * @return the user groups and the user price group of the session user, computed once per request
+	 */
+	protected String getRestrictionSignature(final HttpServletRequest request)
+	{
+		String signature = (String) request.getAttribute(SIGNATURE_ATTRIBUTE);
+		if (signature == null)
+		{
+			final UserModel user = getUserService().getCurrentUser();
+			final TreeSet<String> groups = new TreeSet<>();
+			for (final UserGroupModel group : getUserService().getAllUserGroupsForUser(user))
+			{
+				groups.add(group.getUid());
+			}
+			signature = StringUtils.join(groups, ',') + ';'
+					+ (user.getEurope1PriceFactory_UPG() == null ? "" : user.getEurope1PriceFactory_UPG().getCode());
+			request.setAttribute(SIGNATURE_ATTRIBUTE, signature);
+		}
+		return signature;
+	}
+
+	@ManagedOperation(description = "Removes all rendered components")
+	public void clear()
+	{
+		fragments.invalidateAll();
+		restrictedComponents.invalidateAll();
+	}
+
+	@ManagedAttribute(description = "Number of rendered components kept")
+	public long getSize()
+	{
+		return fragments.size();
+	}
+
+	@ManagedAttribute(description = "Hits, misses and average render time in microseconds per component type")
+	public String[] getComponentStatistics()
+	{
+		final List<String> lines = new ArrayList<>();
+		for (final Map.Entry<String, ComponentStatistics> entry : new TreeMap<>(statistics).entrySet())
+		{
+			final long misses = entry.getValue().getMisses().sum();
+			lines.add(entry.getKey() + ": " + entry.getValue().getHits().sum() + " hits, " + misses + " misses, "
+					+ (misses == 0 ? 0d : entry.getValue().getRenderNanos().sum() / 1000d / misses) + " us average render");
+		}
+		return lines.toArray(new String[lines.size()]);
+	}
+
+	/**
+	 * @return the statistics of the component type, null if no component of the type was asked for yet
+	 */
+	public ComponentStatistics getComponentStatistics(final String typeCode)
+	{
+		return statistics.get(typeCode);
+	}
+
+	@ManagedAttribute(description = "Whether cacheable components are rendered once and kept")
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	@ManagedAttribute
+	public void setEnabled(final boolean enabled)
+	{
+		this.enabled = enabled;
+	}
+
+	protected CmsContentGenerationService getCmsContentGenerationService()
+	{
+		return cmsContentGenerationService;
+	}
+
+	@Required
+	public void setCmsContentGenerationService(final CmsContentGenerationService cmsContentGenerationService)
+	{
+		this.cmsContentGenerationService = cmsContentGenerationService;
+	}
+
+	protected CmsContentGenerationService getCatalogContentGenerationService()
+	{
+		return catalogContentGenerationService;
+	}
+
+	@Required
+	public void setCatalogContentGenerationService(final CmsContentGenerationService catalogContentGenerationService)
+	{
+		this.catalogContentGenerationService = catalogContentGenerationService;
+	}
+
+	protected CMSSiteService getCmsSiteService()
+	{
+		return cmsSiteService;
+	}
+
+	@Required
+	public void setCmsSiteService(final CMSSiteService cmsSiteService)
+	{
+		this.cmsSiteService = cmsSiteService;
+	}
+
+	protected CommonI18NService getCommonI18NService()
+	{
+		return commonI18NService;
+	}
+
+	@Required
+	public void setCommonI18NService(final CommonI18NService commonI18NService)
+	{
+		this.commonI18NService = commonI18NService;
+	}
+
+	protected UiExperienceService getUiExperienceService()
+	{
+		return uiExperienceService;
+	}
+
+	@Required
+	public void setUiExperienceService(final UiExperienceService uiExperienceService)
+	{
+		this.uiExperienceService = uiExperienceService;
+	}
+
+	protected UserService getUserService()
+	{
+		return userService;
+	}
+
+	@Required
+	public void setUserService(final UserService userService)
+	{
+		this.userService = userService;
+	}
+
+	protected long getMaximumSize()
+	{
+		return maximumSize;
+	}
+
+	public void setMaximumSize(final long maximumSize)
+	{
+		this.maximumSize = maximumSize;
+	}
+
+	protected long getTimeToLiveSeconds()
+	{
+		return timeToLiveSeconds;
+	}
+
+	public void setTimeToLiveSeconds(final long timeToLiveSeconds)
+	{
+		this.timeToLiveSeconds = timeToLiveSeconds;
+	}
+
+	@Override
+	public ObjectName getObjectName() throws MalformedObjectNameException
+	{
+		return new ObjectName("astrastorefront:type=CmsComponentRenderCache,tenant="
+				+ ObjectName.quote(Registry.getCurrentTenant().getTenantID()));
+	}
+
+	/**
+	 * Renders the markup of a component.
+	 */
+	public interface ComponentRenderer
+	{
+		String render() throws ServletException, IOException;
+	}
+
+	/**
+	 * Hits, misses and render time of a component type.
+	 */
+	public static class ComponentStatistics
+	{
+		private final LongAdder hits = new LongAdder();
+		private final LongAdder misses = new LongAdder();
+		private final LongAdder renderNanos = new LongAdder();
+
+		public LongAdder getHits()
+		{
+			return hits;
+		}
+
+		public LongAdder getMisses()
+		{
+			return misses;
+		}
+
+		public LongAdder getRenderNanos()
+		{
+			return renderNanos;
+		}
+	}
+}
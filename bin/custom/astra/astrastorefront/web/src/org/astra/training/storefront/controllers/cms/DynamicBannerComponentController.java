@@ -41,6 +41,19 @@ public class DynamicBannerComponentController extends AbstractAcceleratorCMSComp
 	private CatalogVersionService catalogVersionService;
 
 
+	@Override
+	protected boolean isCacheable(final DynamicBannerComponentModel component)
+	{
+		return true;
+	}
+
+	@Override
+	protected String getCacheContext(final HttpServletRequest request, final DynamicBannerComponentModel component)
+	{
+		final CategoryModel categoryModel = getRequestContextData(request).getCategory();
+		return categoryModel == null ? null : categoryModel.getCode();
+	}
+
 	@Override
 	protected void fillModel(final HttpServletRequest request, final Model model, final DynamicBannerComponentModel component)
 	{
@@ -5,8 +5,15 @@ package org.astra.training.storefront.controllers.cms;
 
 import de.hybris.platform.acceleratorcms.enums.NavigationBarMenuLayout;
 import de.hybris.platform.acceleratorcms.model.components.NavigationBarComponentModel;
+import de.hybris.platform.cms2.model.contents.components.AbstractCMSComponentModel;
+import de.hybris.platform.cms2.model.navigation.CMSNavigationEntryModel;
+import de.hybris.platform.cms2.model.navigation.CMSNavigationNodeModel;
 import org.astra.training.storefront.controllers.ControllerConstants;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 import javax.servlet.http.HttpServletRequest;
 
 import org.springframework.stereotype.Controller;
@@ -21,6 +28,50 @@ import org.springframework.web.bind.annotation.RequestMapping;
 @RequestMapping(value = ControllerConstants.Actions.Cms.NavigationBarComponent)
 public class NavigationBarComponentController extends AbstractAcceleratorCMSComponentController<NavigationBarComponentModel>
 {
+	@Override
+	protected boolean isCacheable(final NavigationBarComponentModel component)
+	{
+		return true;
+	}
+
+	@Override
+	protected Collection<? extends AbstractCMSComponentModel> getNestedComponents(final NavigationBarComponentModel component)
+	{
+		// the links of the bar and of its navigation nodes may be restricted to user groups, categories or times
+		final List<AbstractCMSComponentModel> nested = new ArrayList<>();
+		if (component.getLink() != null)
+		{
+			nested.add(component.getLink());
+		}
+		addNavigationComponents(component.getNavigationNode(), nested);
+		return nested;
+	}
+
+	protected void addNavigationComponents(final CMSNavigationNodeModel node, final List<AbstractCMSComponentModel> nested)
+	{
+		if (node == null)
+		{
+			return;
+		}
+		if (node.getEntries() != null)
+		{
+			for (final CMSNavigationEntryModel entry : node.getEntries())
+			{
+				if (entry.getItem() instanceof AbstractCMSComponentModel)
+				{
+					nested.add((AbstractCMSComponentModel) entry.getItem());
+				}
+			}
+		}
+		if (node.getChildren() != null)
+		{
+			for (final CMSNavigationNodeModel child : node.getChildren())
+			{
+				addNavigationComponents(child, nested);
+			}
+		}
+	}
+
 	@Override
 	protected void fillModel(final HttpServletRequest request, final Model model, final NavigationBarComponentModel component)
 	{
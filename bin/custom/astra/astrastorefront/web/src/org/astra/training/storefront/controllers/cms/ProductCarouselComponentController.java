@@ -41,6 +41,12 @@ public class ProductCarouselComponentController extends AbstractAcceleratorCMSCo
 	@Resource(name = "productCarouselFacade")
 	private ProductCarouselFacade productCarouselFacade;
 
+	@Override
+	protected boolean isCacheable(final ProductCarouselComponentModel component)
+	{
+		return true;
+	}
+
 	@Override
 	protected void fillModel(final HttpServletRequest request, final Model model, final ProductCarouselComponentModel component)
 	{
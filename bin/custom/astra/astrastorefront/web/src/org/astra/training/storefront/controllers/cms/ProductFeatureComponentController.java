@@ -34,6 +34,12 @@ public class ProductFeatureComponentController extends AbstractAcceleratorCMSCom
 	@Resource(name = "productVariantFacade")
 	private ProductFacade productFacade;
 
+	@Override
+	protected boolean isCacheable(final ProductFeatureComponentModel component)
+	{
+		return true;
+	}
+
 	@Override
 	protected void fillModel(final HttpServletRequest request, final Model model, final ProductFeatureComponentModel component)
 	{
@@ -16,6 +16,7 @@ import org.astra.training.storefront.controllers.ControllerConstants;
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
 
+import org.apache.commons.lang.StringUtils;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -34,6 +35,21 @@ public class SubCategoryListComponentController extends AbstractAcceleratorCMSCo
 	@Resource(name = "categoryConverter")
 	private Converter<CategoryModel, CategoryData> categoryConverter;
 
+	@Override
+	protected boolean isCacheable(final SubCategoryListComponentModel component)
+	{
+		return true;
+	}
+
+	@Override
+	protected String getCacheContext(final HttpServletRequest request, final SubCategoryListComponentModel component)
+	{
+		// the sub categories of a search depend on its query, those of a category page on the category
+		final CategoryModel category = getRequestContextData(request).getCategory();
+		return (category == null ? "" : category.getCode()) + ';' + StringUtils.defaultString(request.getParameter("q")) + ';'
+				+ StringUtils.defaultString(request.getParameter("text"));
+	}
+
 	@Override
 	protected void fillModel(final HttpServletRequest request, final Model model, final SubCategoryListComponentModel component)
 	{
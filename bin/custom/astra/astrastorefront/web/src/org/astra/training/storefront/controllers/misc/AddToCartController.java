@@ -19,6 +19,7 @@ import de.hybris.platform.commercefacades.product.data.ProductData;
 import de.hybris.platform.commerceservices.order.CommerceCartModificationException;
 import de.hybris.platform.servicelayer.exceptions.UnknownIdentifierException;
 import de.hybris.platform.util.Config;
+import org.astra.training.facades.order.BatchCartFacade;
 import org.astra.training.storefront.controllers.ControllerConstants;
 
 import java.util.ArrayList;
@@ -62,6 +63,9 @@ public class AddToCartController extends AbstractController
 	@Resource(name = "cartFacade")
 	private CartFacade cartFacade;
 
+	@Resource(name = "batchCartFacade")
+	private BatchCartFacade batchCartFacade;
+
 	@Resource(name = "productVariantFacade")
 	private ProductFacade productFacade;
 
@@ -150,6 +154,7 @@ public class AddToCartController extends AbstractController
 	{
 		final Set<String> multidErrorMsgs = new HashSet<String>();
 		final List<CartModificationData> modificationDataList = new ArrayList<CartModificationData>();
+		final List<OrderEntryData> validEntries = new ArrayList<OrderEntryData>();
 
 		for (final OrderEntryData cartEntry : form.getCartEntries())
 		{
@@ -163,12 +168,15 @@ public class AddToCartController extends AbstractController
 			}
 			else
 			{
-				final String errorMsg = addEntryToCart(modificationDataList, cartEntry, true);
-				if (StringUtils.isNotEmpty(errorMsg))
-				{
-					multidErrorMsgs.add(errorMsg);
-				}
+				validEntries.add(cartEntry);
+			}
+		}
 
+		for (final String errorMsg : addEntriesToCart(modificationDataList, validEntries, true))
+		{
+			if (StringUtils.isNotEmpty(errorMsg))
+			{
+				multidErrorMsgs.add(errorMsg);
 			}
 		}
 
@@ -195,29 +203,33 @@ public class AddToCartController extends AbstractController
 	{
 		final List<CartModificationData> modificationDataList = new ArrayList();
 		final List<ProductWrapperData> productWrapperDataList = new ArrayList();
+		final List<OrderEntryData> validEntries = new ArrayList();
 		final int maxQuickOrderEntries = Config.getInt("astrastorefront.quick.order.rows.max", 25);
 		final int sizeOfCartEntries = CollectionUtils.size(form.getCartEntries());
 		form.getCartEntries().stream().limit(Math.min(sizeOfCartEntries, maxQuickOrderEntries)).forEach(cartEntry -> {
-			String errorMsg = StringUtils.EMPTY;
 			final String sku = !isValidProductEntry(cartEntry) ? StringUtils.EMPTY : cartEntry.getProduct().getCode();
 			if (StringUtils.isEmpty(sku))
 			{
-				errorMsg = "text.quickOrder.product.code.invalid";
+				productWrapperDataList.add(createProductWrapperData(sku, "text.quickOrder.product.code.invalid"));
 			}
 			else if (!isValidQuantity(cartEntry))
 			{
-				errorMsg = "text.quickOrder.product.quantity.invalid";
+				productWrapperDataList.add(createProductWrapperData(sku, "text.quickOrder.product.quantity.invalid"));
 			}
 			else
 			{
-				errorMsg = addEntryToCart(modificationDataList, cartEntry, false);
+				validEntries.add(cartEntry);
 			}
+		});
 
-			if (StringUtils.isNotEmpty(errorMsg))
+		final List<String> errorMsgs = addEntriesToCart(modificationDataList, validEntries, false);
+		for (int i = 0; i < validEntries.size(); i++)
+		{
+			if (StringUtils.isNotEmpty(errorMsgs.get(i)))
 			{
-				productWrapperDataList.add(createProductWrapperData(sku, errorMsg));
+				productWrapperDataList.add(createProductWrapperData(validEntries.get(i).getProduct().getCode(), errorMsgs.get(i)));
 			}
-		});
+		}
 
 		if (CollectionUtils.isNotEmpty(productWrapperDataList))
 		{
@@ -294,32 +306,46 @@ public class AddToCartController extends AbstractController
 		}
 	}
 
-	protected String addEntryToCart(final List<CartModificationData> modificationDataList, final OrderEntryData cartEntry,
-			final boolean isReducedQtyError)
+	/**
+	 * Adds all entries to the cart at once.
+	 *
+	 * @return the error message of each entry, empty for entries added as requested
+	 */
+	protected List<String> addEntriesToCart(final List<CartModificationData> modificationDataList,
+			final List<OrderEntryData> cartEntries, final boolean isReducedQtyError)
 	{
-		String errorMsg = StringUtils.EMPTY;
-		try
+		if (cartEntries.isEmpty())
 		{
-			final long qty = cartEntry.getQuantity().longValue();
-			final CartModificationData cartModificationData = cartFacade.addToCart(cartEntry.getProduct().getCode(), qty);
-			if (cartModificationData.getQuantityAdded() == 0L)
+			return Collections.emptyList();
+		}
+
+		final List<CartModificationData> cartModifications = batchCartFacade.addToCart(cartEntries);
+		final List<String> errorMsgs = new ArrayList<String>(cartEntries.size());
+		for (int i = 0; i < cartEntries.size(); i++)
+		{
+			final long qty = cartEntries.get(i).getQuantity().longValue();
+			final CartModificationData cartModificationData = cartModifications.get(i);
+			String errorMsg = StringUtils.EMPTY;
+			if (BatchCartFacade.ERROR.equals(cartModificationData.getStatusCode()))
 			{
-				errorMsg = "basket.information.quantity.noItemsAdded." + cartModificationData.getStatusCode();
+				errorMsg = "basket.error.occurred";
 			}
-			else if (cartModificationData.getQuantityAdded() < qty && isReducedQtyError)
+			else
 			{
-				errorMsg = "basket.information.quantity.reducedNumberOfItemsAdded." + cartModificationData.getStatusCode();
-			}
-
-			modificationDataList.add(cartModificationData);
+				if (cartModificationData.getQuantityAdded() == 0L)
+				{
+					errorMsg = "basket.information.quantity.noItemsAdded." + cartModificationData.getStatusCode();
+				}
+				else if (cartModificationData.getQuantityAdded() < qty && isReducedQtyError)
+				{
+					errorMsg = "basket.information.quantity.reducedNumberOfItemsAdded." + cartModificationData.getStatusCode();
+				}
 
+				modificationDataList.add(cartModificationData);
+			}
+			errorMsgs.add(errorMsg);
 		}
-		catch (final CommerceCartModificationException ex)
-		{
-			errorMsg = "basket.error.occurred";
-			logDebugException(ex);
-		}
-		return errorMsg;
+		return errorMsgs;
 	}
 
 	protected boolean isValidProductEntry(final OrderEntryData cartEntry)
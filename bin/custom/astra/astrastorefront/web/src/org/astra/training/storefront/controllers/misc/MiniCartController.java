@@ -7,15 +7,24 @@ import de.hybris.platform.acceleratorcms.model.components.MiniCartComponentModel
 import de.hybris.platform.acceleratorstorefrontcommons.controllers.AbstractController;
 import de.hybris.platform.cms2.exceptions.CMSItemNotFoundException;
 import de.hybris.platform.cms2.servicelayer.services.CMSComponentService;
-import de.hybris.platform.commercefacades.order.CartFacade;
 import de.hybris.platform.commercefacades.order.data.CartData;
+import de.hybris.platform.commercefacades.order.data.OrderEntryData;
+import de.hybris.platform.commercefacades.product.PriceDataFactory;
 import de.hybris.platform.commercefacades.product.data.PriceData;
+import de.hybris.platform.commercefacades.product.data.PriceDataType;
+import org.astra.training.core.cms.CmsContentGenerationService;
 import org.astra.training.storefront.controllers.ControllerConstants;
+import org.astra.training.storefront.util.MiniCartFragmentCache;
+import org.astra.training.storefront.web.view.ViewFragmentRenderer;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.springframework.stereotype.Controller;
@@ -26,7 +35,8 @@ import org.springframework.web.bind.annotation.RequestMethod;
 
 
 /**
- * Controller for MiniCart functionality which is not specific to a page.
+ * Controller for MiniCart functionality which is not specific to a page. The header asks for the mini cart on every page
+ * view, so the fragments are kept in the session per cart version by the {@link MiniCartFragmentCache}.
  */
 @Controller
 public class MiniCartController extends AbstractController
@@ -40,22 +50,60 @@ public class MiniCartController extends AbstractController
 	private static final String COMPONENT_UID_PATH_VARIABLE_PATTERN = "{componentUid:.*}";
 
 
-	@Resource(name = "cartFacade")
-	private CartFacade cartFacade;
+	@Resource(name = "miniCartFragmentCache")
+	private MiniCartFragmentCache miniCartFragmentCache;
+
+	@Resource(name = "viewFragmentRenderer")
+	private ViewFragmentRenderer viewFragmentRenderer;
+
+	@Resource(name = "priceDataFactory")
+	private PriceDataFactory priceDataFactory;
 
 	@Resource(name = "cmsComponentService")
 	private CMSComponentService cmsComponentService;
 
+	@Resource(name = "cmsContentGenerationService")
+	private CmsContentGenerationService cmsContentGenerationService;
+
 	@RequestMapping(value = "/cart/miniCart/" + TOTAL_DISPLAY_PATH_VARIABLE_PATTERN, method = RequestMethod.GET)
-	public String getMiniCart(@PathVariable final String totalDisplay, final Model model)
+	public String getMiniCart(@PathVariable final String totalDisplay, final Model model, final HttpServletRequest request,
+			final HttpServletResponse response) throws Exception
+	{
+		final String fragment = miniCartFragmentCache.getFragment(request, "miniCart/" + totalDisplay, () -> {
+			populateMiniCart(miniCartFragmentCache.getMiniCart(request), totalDisplay, model);
+			return viewFragmentRenderer.render(ControllerConstants.Views.Fragments.Cart.MiniCartPanel, model.asMap(), request,
+					response);
+		});
+		writeFragment(fragment, "application/json", response);
+		return null;
+	}
+
+	@RequestMapping(value = "/cart/rollover/" + COMPONENT_UID_PATH_VARIABLE_PATTERN, method = RequestMethod.GET)
+	public String rolloverMiniCartPopup(@PathVariable final String componentUid, final Model model,
+			final HttpServletRequest request, final HttpServletResponse response) throws Exception
+	{
+		// the popup also shows the component and its lightbox banner, which change with the CMS content
+		final String name = "rollover/" + componentUid + "/" + cmsContentGenerationService.getGeneration();
+		final String fragment = miniCartFragmentCache.getFragment(request, name, () -> {
+			populateCartPopup(miniCartFragmentCache.getSessionCart(request), componentUid, model);
+			return viewFragmentRenderer.render(ControllerConstants.Views.Fragments.Cart.CartPopup, model.asMap(), request,
+					response);
+		});
+		writeFragment(fragment, "text/html", response);
+		return null;
+	}
+
+	protected void populateMiniCart(final CartData cartData, final String totalDisplay, final Model model)
 	{
-		final CartData cartData = cartFacade.getMiniCart();
 		model.addAttribute("totalPrice", cartData.getTotalPrice());
 		model.addAttribute("subTotal", cartData.getSubTotal());
 		if (cartData.getDeliveryCost() != null)
 		{
-			final PriceData withoutDelivery = cartData.getDeliveryCost();
-			withoutDelivery.setValue(cartData.getTotalPrice().getValue().subtract(cartData.getDeliveryCost().getValue()));
+			// a new price, the cart data is kept for later requests
+			final PriceData deliveryCost = cartData.getDeliveryCost();
+			final PriceData withoutDelivery = priceDataFactory.create(
+					deliveryCost.getPriceType() == null ? PriceDataType.BUY : deliveryCost.getPriceType(),
+					cartData.getTotalPrice().getValue().subtract(deliveryCost.getValue()), deliveryCost.getCurrencyIso());
 			model.addAttribute("totalNoDelivery", withoutDelivery);
 		}
 		else
@@ -64,21 +112,19 @@ public class MiniCartController extends AbstractController
 		}
 		model.addAttribute("totalItems", cartData.getTotalUnitCount());
 		model.addAttribute("totalDisplay", totalDisplay);
-		return ControllerConstants.Views.Fragments.Cart.MiniCartPanel;
 	}
 
-	@RequestMapping(value = "/cart/rollover/" + COMPONENT_UID_PATH_VARIABLE_PATTERN, method = RequestMethod.GET)
-	public String rolloverMiniCartPopup(@PathVariable final String componentUid, final Model model)
+	protected void populateCartPopup(final CartData cartData, final String componentUid, final Model model)
 			throws CMSItemNotFoundException
 	{
-		final CartData cartData = cartFacade.getSessionCart();
 		model.addAttribute("cartData", cartData);
 
 		final MiniCartComponentModel component = (MiniCartComponentModel) cmsComponentService.getSimpleCMSComponent(componentUid);
 
-		final List entries = cartData.getEntries();
-		if (entries != null)
+		if (cartData.getEntries() != null)
 		{
+			// reversed in a copy, the cart data is kept for later requests
+			final List<OrderEntryData> entries = new ArrayList<>(cartData.getEntries());
 			Collections.reverse(entries);
 			model.addAttribute("entries", entries);
 
@@ -94,7 +140,13 @@ public class MiniCartController extends AbstractController
 			}
 		}
 		model.addAttribute("lightboxBannerComponent", component.getLightboxBannerComponent());
+	}
 
-		return ControllerConstants.Views.Fragments.Cart.CartPopup;
+	protected void writeFragment(final String fragment, final String contentType, final HttpServletResponse response)
+			throws IOException
+	{
+		response.setContentType(contentType + ";charset=UTF-8");
+		response.setHeader("Cache-Control", "private, no-cache");
+		response.getWriter().write(fragment);
 	}
 }
@@ -8,8 +8,15 @@ import de.hybris.platform.acceleratorstorefrontcommons.controllers.AbstractContr
 import de.hybris.platform.cms2.model.site.CMSSiteModel;
 import de.hybris.platform.cms2.servicelayer.services.CMSSiteService;
 import de.hybris.platform.core.model.media.MediaModel;
+import org.astra.training.core.sitemap.IncrementalSiteMapService;
 import org.astra.training.storefront.controllers.ControllerConstants;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -19,6 +26,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 
@@ -32,11 +40,22 @@ public class SiteMapController extends AbstractController
 	@Resource(name = "siteBaseUrlResolutionService")
 	private SiteBaseUrlResolutionService siteBaseUrlResolutionService;
 
+	@Resource(name = "incrementalSiteMapService")
+	private IncrementalSiteMapService incrementalSiteMapService;
+
 	@RequestMapping(value = "/sitemap.xml", method = RequestMethod.GET, produces = "application/xml")
-	public String getSitemapXml(final Model model, final HttpServletResponse response)
+	public String getSitemapXml(final Model model, final HttpServletResponse response) throws IOException
 	{
 		final CMSSiteModel currentSite = cmsSiteService.getCurrentSite();
 
+		// the index of the incremental sitemap, once the job has written it
+		final File index = incrementalSiteMapService.getIndexFile(currentSite);
+		if (index != null)
+		{
+			writeFile(index, "application/xml", response);
+			return null;
+		}
+
 		final String mediaUrlForSite = siteBaseUrlResolutionService.getMediaUrlForSite(currentSite, false, "");
 
 		final List<String> siteMapUrls = new ArrayList<>();
@@ -50,4 +69,34 @@ public class SiteMapController extends AbstractController
 
 		return ControllerConstants.Views.Pages.Misc.MiscSiteMapPage;
 	}
+
+	@RequestMapping(value = "/sitemap/{fileName:.+}", method = RequestMethod.GET)
+	public void getSitemapShard(@PathVariable("fileName") final String fileName, final HttpServletResponse response)
+			throws IOException
+	{
+		final File shard = incrementalSiteMapService.getShardFile(cmsSiteService.getCurrentSite(), fileName);
+		if (shard == null)
+		{
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		writeFile(shard, "application/x-gzip", response);
+	}
+
+	protected void writeFile(final File file, final String contentType, final HttpServletResponse response)
+			throws IOException
+	{
+		// the opened file stays readable while the job moves its next version into place
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			response.setContentType(contentType);
+			response.setContentLengthLong(channel.size());
+			response.setDateHeader("Last-Modified", file.lastModified());
+			final WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+			for (long position = 0L; position < channel.size();)
+			{
+				position += channel.transferTo(position, channel.size() - position, out);
+			}
+		}
+	}
 }
@@ -3,7 +3,6 @@
  */
 package org.astra.training.storefront.controllers.pages;
 
-import de.hybris.platform.acceleratorfacades.cartfileupload.SavedCartFileUploadFacade;
 import de.hybris.platform.acceleratorstorefrontcommons.annotations.RequireHardLogIn;
 import de.hybris.platform.acceleratorstorefrontcommons.breadcrumb.ResourceBreadcrumbBuilder;
 import de.hybris.platform.acceleratorstorefrontcommons.constants.WebConstants;
@@ -13,6 +12,8 @@ import de.hybris.platform.acceleratorstorefrontcommons.forms.ImportCSVSavedCartF
 import de.hybris.platform.acceleratorstorefrontcommons.forms.validation.ImportCSVSavedCartFormValidator;
 import de.hybris.platform.cms2.exceptions.CMSItemNotFoundException;
 import de.hybris.platform.cms2.model.pages.ContentPageModel;
+import org.astra.training.facades.order.SavedCartImportFacade;
+import org.astra.training.facades.order.data.SavedCartImportProgressData;
 import org.astra.training.storefront.controllers.ControllerConstants;
 
 import java.io.IOException;
@@ -27,6 +28,7 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
@@ -52,8 +54,8 @@ public class ImportCSVPageController extends AbstractPageController
 	@Resource(name = "importCSVSavedCartFormValidator")
 	private ImportCSVSavedCartFormValidator importCSVSavedCartFormValidator;
 
-	@Resource(name = "savedCartFileUploadFacade")
-	private SavedCartFileUploadFacade savedCartFileUploadFacade;
+	@Resource(name = "savedCartImportFacade")
+	private SavedCartImportFacade savedCartImportFacade;
 
 	@RequestMapping(value = SAVED_CART_PATH_SEGMENT, method = RequestMethod.GET)
 	@RequireHardLogIn
@@ -86,12 +88,12 @@ public class ImportCSVPageController extends AbstractPageController
 		}
 		else
 		{
+			// the import runs in the background, the page polls its progress with the returned id
 			try (final InputStream inputStream = importCSVSavedCartForm.getCsvFile().getInputStream())
 			{
-				savedCartFileUploadFacade.createCartFromFileUpload(inputStream,
-						importCSVSavedCartForm.getCsvFile().getOriginalFilename(),
-						importCSVSavedCartForm.getCsvFile().getContentType());
-				return new ResponseEntity<String>(HttpStatus.OK);
+				final String importId = savedCartImportFacade.startImport(inputStream,
+						importCSVSavedCartForm.getCsvFile().getOriginalFilename());
+				return new ResponseEntity<String>(importId, HttpStatus.OK);
 			}
 			catch (final IOException e)
 			{
@@ -105,4 +107,15 @@ public class ImportCSVPageController extends AbstractPageController
 
 		}
 	}
+
+	@ResponseBody
+	@RequestMapping(value = SAVED_CART_PATH_SEGMENT + "/progress/{importId}", method = RequestMethod.GET,
+			produces = "application/json")
+	@RequireHardLogIn
+	public ResponseEntity<SavedCartImportProgressData> getSavedCartImportProgress(@PathVariable("importId") final String importId)
+	{
+		final SavedCartImportProgressData progress = savedCartImportFacade.getProgress(importId);
+		return progress == null ? new ResponseEntity<SavedCartImportProgressData>(HttpStatus.NOT_FOUND)
+				: new ResponseEntity<SavedCartImportProgressData>(progress, HttpStatus.OK);
+	}
 }
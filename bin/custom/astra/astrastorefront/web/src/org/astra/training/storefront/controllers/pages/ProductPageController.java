@@ -33,6 +33,7 @@ import de.hybris.platform.product.ProductService;
 import de.hybris.platform.servicelayer.exceptions.UnknownIdentifierException;
 import de.hybris.platform.util.Config;
 import org.astra.training.storefront.controllers.ControllerConstants;
+import org.astra.training.storefront.util.RequestProductDataAssembler;
 
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
@@ -111,6 +112,9 @@ public class ProductPageController extends AbstractPageController
 	@Resource(name = "futureStockFacade")
 	private FutureStockFacade futureStockFacade;
 
+	@Resource(name = "requestProductDataAssembler")
+	private RequestProductDataAssembler requestProductDataAssembler;
+
 	@RequestMapping(value = PRODUCT_CODE_PATH_VARIABLE_PATTERN, method = RequestMethod.GET)
 	public String productDetail(@PathVariable("productCode") final String productCode, final Model model,
 			final HttpServletRequest request, final HttpServletResponse response)
@@ -119,7 +123,7 @@ public class ProductPageController extends AbstractPageController
 		final List<ProductOption> extraOptions = Arrays.asList(ProductOption.VARIANT_MATRIX_BASE, ProductOption.VARIANT_MATRIX_URL,
 				ProductOption.VARIANT_MATRIX_MEDIA);
 
-		final ProductData productData = productFacade.getProductForCodeAndOptions(productCode, extraOptions);
+		final ProductData productData = requestProductDataAssembler.getProductData(request, productCode, extraOptions);
 
 		final String redirection = checkRequestUrl(request, response, productDataUrlResolver.resolve(productData));
 		if (StringUtils.isNotEmpty(redirection))
@@ -150,7 +154,7 @@ public class ProductPageController extends AbstractPageController
 				ProductOption.VARIANT_MATRIX_PRICE, ProductOption.VARIANT_MATRIX_MEDIA, ProductOption.VARIANT_MATRIX_STOCK,
 				ProductOption.URL);
 
-		final ProductData productData = productFacade.getProductForCodeAndOptions(productCode, extraOptions);
+		final ProductData productData = requestProductDataAssembler.getProductData(request, productCode, extraOptions);
 		updatePageTitle(productCode, model);
 
 		populateProductDetailForDisplay(productCode, model, request, extraOptions);
@@ -214,7 +218,7 @@ public class ProductPageController extends AbstractPageController
 	{
 		getReviewValidator().validate(form, result);
 
-		final ProductData productData = productFacade.getProductForCodeAndOptions(productCode, null);
+		final ProductData productData = requestProductDataAssembler.getProductData(request, productCode, null);
 		if (result.hasErrors())
 		{
 			updatePageTitle(productCode, model);
@@ -266,22 +270,24 @@ public class ProductPageController extends AbstractPageController
 	}
 
 	@RequestMapping(value = PRODUCT_CODE_PATH_VARIABLE_PATTERN + "/writeReview", method = RequestMethod.GET)
-	public String writeReview(@PathVariable("productCode") final String productCode, final Model model)
-			throws CMSItemNotFoundException
+	public String writeReview(@PathVariable("productCode") final String productCode, final Model model,
+			final HttpServletRequest request) throws CMSItemNotFoundException
 	{
 		model.addAttribute(new ReviewForm());
-		setUpReviewPage(model, productCode);
+		setUpReviewPage(model, request, productCode);
 		return ControllerConstants.Views.Pages.Product.WriteReview;
 	}
 
-	protected void setUpReviewPage(final Model model, final String productCode) throws CMSItemNotFoundException
+	protected void setUpReviewPage(final Model model, final HttpServletRequest request, final String productCode)
+			throws CMSItemNotFoundException
 	{
-		final ProductData productData = productFacade.getProductForCodeAndOptions(productCode, null);
+		final ProductData productData = requestProductDataAssembler.getProductData(request, productCode,
+				Arrays.asList(ProductOption.BASIC));
 		final String metaKeywords = MetaSanitizerUtil.sanitizeKeywords(productData.getKeywords());
 		final String metaDescription = MetaSanitizerUtil.sanitizeDescription(productData.getDescription());
 		setUpMetaData(model, metaKeywords, metaDescription);
 		storeCmsPageInModel(model, getPageForProduct(productCode));
-		model.addAttribute("product", productFacade.getProductForCodeAndOptions(productCode, Arrays.asList(ProductOption.BASIC)));
+		model.addAttribute("product", productData);
 		updatePageTitle(productCode, model);
 	}
 
@@ -292,13 +298,13 @@ public class ProductPageController extends AbstractPageController
 	{
 		getReviewValidator().validate(form, result);
 
-		final ProductData productData = productFacade.getProductForCodeAndOptions(productCode, null);
+		final ProductData productData = requestProductDataAssembler.getProductData(request, productCode, null);
 
 		if (result.hasErrors())
 		{
 			GlobalMessages.addErrorMessage(model, "review.general.error");
 			populateProductDetailForDisplay(productCode, model, request, Collections.emptyList());
-			setUpReviewPage(model, productCode);
+			setUpReviewPage(model, request, productCode);
 			return ControllerConstants.Views.Pages.Product.WriteReview;
 		}
 
@@ -390,7 +396,7 @@ public class ProductPageController extends AbstractPageController
 	protected void populateProductDetailForDisplay(final String productCode, final Model model, final HttpServletRequest request,
 			final List<ProductOption> extraOptions) throws CMSItemNotFoundException
 	{
-		final ProductModel productModel = productService.getProductForCode(productCode);
+		final ProductModel productModel = requestProductDataAssembler.getProductModel(request, productCode);
 
 		getRequestContextData(request).setProduct(productModel);
 
@@ -402,7 +408,8 @@ public class ProductPageController extends AbstractPageController
 
 		options.addAll(extraOptions);
 
-		final ProductData productData = productFacade.getProductForCodeAndOptions(productCode, options);
+		// the product data of the request, the populators of options requested before do not run again
+		final ProductData productData = requestProductDataAssembler.getProductData(request, productCode, options);
 
 		sortVariantOptionData(productData);
 		storeCmsPageInModel(model, getPageForProduct(productCode));
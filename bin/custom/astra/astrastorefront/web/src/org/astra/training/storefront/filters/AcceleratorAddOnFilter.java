@@ -4,26 +4,30 @@
 package org.astra.training.storefront.filters;
 
 import de.hybris.bootstrap.config.ExtensionInfo;
+import de.hybris.platform.acceleratorservices.addonsupport.RequiredAddOnsNameProvider;
 import de.hybris.platform.acceleratorservices.util.PathTraversalResourceUtils;
 import de.hybris.platform.servicelayer.config.ConfigurationService;
 import de.hybris.platform.util.Utilities;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collection;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.FilenameUtils;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Required;
 import org.springframework.web.filter.GenericFilterBean;
@@ -31,195 +35,167 @@ import org.springframework.web.filter.GenericFilterBean;
 import com.google.common.base.Preconditions;
 
 
+/**
+ * Development filter keeping the resources of the add-ons required by the storefront in sync with their sources. When
+ * {@value #ADDON_FILTER_ACTIVE_PROPERTY} is set, all add-on resources newer than their storefront copy are copied once at
+ * startup, and with {@value #ADDON_FILTER_WATCH_PROPERTY} set as well, changes are copied as they happen by an
+ * {@link AddOnResourceWatcher}. Requests pass the filter without touching the file system.
+ */
 public class AcceleratorAddOnFilter extends GenericFilterBean
 {
 	private static final Logger LOG = Logger.getLogger(AcceleratorAddOnFilter.class);
 
-	private static final String DEFAULT_PLAIN_RESOURCE_PATTERN = "(.+)(/_ui/addons/)(.+)";
-	private static final String DEFAULT_EXECUTABLE_RESOURCE_PATTERN = "((.+/)(.+)/addons/)(.+)";
 	private static final String ADDON_FOLDER = "acceleratoraddon";
+	private static final String ADDON_WEBROOT = ADDON_FOLDER + "/web/webroot";
+	private static final String PLAIN_RESOURCE_FOLDER = "_ui";
+	private static final String EXECUTABLE_RESOURCE_FOLDER = "WEB-INF";
+	private static final String ADDONS_FOLDER = "addons";
 
 	public static final String ADDON_FILTER_ACTIVE_PROPERTY = "addonfilter.active";
+	public static final String ADDON_FILTER_WATCH_PROPERTY = "addonfilter.watch";
 
 	private ConfigurationService configurationService;
+	private RequiredAddOnsNameProvider requiredAddOnsNameProvider;
 	private ExtensionAccessor extensionAccessor;
+	private AddOnResourceWatcher watcher;
 
 	public AcceleratorAddOnFilter()
 	{
 		extensionAccessor = new DefaultExtensionAccessor();
 	}
 
-	protected Collection<ResourceAddOnResolver> getAddOnResolvers()
-	{
-		return Arrays.asList(new PlainResourceAddOnResolver(), new ExecutableResourceAddOnResolver());
-	}
-
 	@Override
-	public void doFilter(final ServletRequest req, final ServletResponse res, final FilterChain chain) throws IOException,
-			ServletException
+	protected void initFilterBean() throws ServletException
 	{
-		final HttpServletRequest request = (HttpServletRequest) req;
-		final HttpServletResponse response = (HttpServletResponse) res;
+		if (!isActive())
+		{
+			return;
+		}
 
-		if (LOG.isDebugEnabled())
+		final Map<Path, Path> targetsBySource = getResourceFolders();
+		int copied = 0;
+		for (final Map.Entry<Path, Path> entry : targetsBySource.entrySet())
 		{
-			LOG.debug("Hit by URI  [" + request.getRequestURI() + "]");
+			copied += synchronizeFolder(entry.getKey(), entry.getValue());
 		}
-		if (isActive())
+		LOG.info("Copied " + copied + " changed resources of " + targetsBySource.size() + " add-on resource folders");
+
+		if (isWatching())
 		{
-			for (final ResourceAddOnResolver resolver : getAddOnResolvers())
+			try
 			{
-				if (resolver.supports(request))
-				{
-					final String sourceAddOnResource = resolver.getAddOnFullPathName(request);
-					final String targetAddOnResource = resolver.getStorefrontFullPathName(request);
-					copyFileInternalIfNeeded(sourceAddOnResource, targetAddOnResource);
-					break;
-				}
+				watcher = new AddOnResourceWatcher(targetsBySource, this::copyFileInternalIfNeeded);
+				watcher.start();
+			}
+			catch (final IOException e)
+			{
+				LOG.warn("Could not watch add-on resources, changes are copied on restart only", e);
 			}
-
 		}
-
-		chain.doFilter(request, response);
 	}
 
-
-	public abstract class ResourceAddOnResolver
+	@Override
+	public void destroy()
 	{
-		private static final int PATH_PAYLOAD = 1;
-		private static final int EXTENSION_NAME = 0;
-
-		private final Pattern pattern;
-
-		protected Matcher patternMatcher;
-
-		ResourceAddOnResolver(final String patternString)
+		if (watcher != null)
 		{
-			this.pattern = Pattern.compile(patternString);
+			watcher.stop();
 		}
+	}
+
+	@Override
+	public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain chain)
+			throws IOException, ServletException
+	{
+		chain.doFilter(request, response);
+	}
 
-		public boolean supports(final HttpServletRequest request)
+	/**
+	 * Returns the storefront folder to copy into per add-on resource folder. The plain resources of an add-on go to
+	 * <code>_ui/addons/&lt;addon&gt;</code>, each folder below its <code>WEB-INF</code> to
+	 * <code>WEB-INF/&lt;folder&gt;/addons/&lt;addon&gt;</code>.
+	 */
+	protected Map<Path, Path> getResourceFolders()
+	{
+		final Path webRoot = Paths.get(getAppContextFullPathName());
+		final Map<Path, Path> targetsBySource = new LinkedHashMap<>();
+		for (final String addOn : getAddOnNames())
 		{
-			final String includeServletPath = (String) request.getAttribute("javax.servlet.include.servlet_path");
-			if (includeServletPath != null)
+			final Path addOnWebRoot = getExtensionAccessor().getExtensionDir(addOn).toPath().resolve(ADDON_WEBROOT);
+			final Path plainResources = addOnWebRoot.resolve(PLAIN_RESOURCE_FOLDER);
+			if (Files.isDirectory(plainResources))
 			{
-				patternMatcher = pattern.matcher(includeServletPath);
-				if (patternMatcher.matches())
+				targetsBySource.put(plainResources, webRoot.resolve(PLAIN_RESOURCE_FOLDER).resolve(ADDONS_FOLDER).resolve(addOn));
+			}
+			final Path executableResources = addOnWebRoot.resolve(EXECUTABLE_RESOURCE_FOLDER);
+			if (Files.isDirectory(executableResources))
+			{
+				try (DirectoryStream<Path> folders = Files.newDirectoryStream(executableResources, Files::isDirectory))
+				{
+					for (final Path folder : folders)
+					{
+						targetsBySource.put(folder, webRoot.resolve(EXECUTABLE_RESOURCE_FOLDER).resolve(folder.getFileName())
+								.resolve(ADDONS_FOLDER).resolve(addOn));
+					}
+				}
+				catch (final IOException e)
 				{
-					return true;
+					LOG.warn("Could not list the resources of add-on " + addOn, e);
 				}
 			}
-			patternMatcher = pattern.matcher(request.getRequestURI());
-			return patternMatcher.matches();
-		}
-
-		protected abstract String[] getAddOnExtensionInfo();
-
-		protected final String getAddOnExtensionInfoName()
-		{
-			return getAddOnExtensionInfo()[EXTENSION_NAME];
-		}
-
-		protected final String getAddOnExtensionInfoPayload()
-		{
-			return getAddOnExtensionInfo()[PATH_PAYLOAD];
-		}
-
-		abstract String getAddOnFullPathName(HttpServletRequest request);
-
-		abstract String getStorefrontFullPathName(HttpServletRequest request);
-
-		protected String getExtensionPath()
-		{
-			final String addOnExtension = getAddOnExtensionInfoName();
-			return getExtensionAccessor().getExtensionDir(addOnExtension).getAbsolutePath();
 		}
+		return targetsBySource;
 	}
 
-	public class PlainResourceAddOnResolver extends ResourceAddOnResolver
+	protected List<String> getAddOnNames()
 	{
-		private static final int EXTENSION_INFO_GROUP = 3;
-
-		public PlainResourceAddOnResolver()
-		{
-			super(DEFAULT_PLAIN_RESOURCE_PATTERN);
-		}
-
-		@Override
-		protected String[] getAddOnExtensionInfo()
-		{
-			return patternMatcher.group(EXTENSION_INFO_GROUP).split("/", 2); //first from whole request path
-		}
-
-		@Override
-		public String getAddOnFullPathName(final HttpServletRequest request)
-		{
-			final String sourceAddOnResource = getExtensionPath();
-			return sourceAddOnResource + "/" + ADDON_FOLDER + "/web/webroot/_ui/" + getAddOnExtensionInfoPayload();
-		}
-
-		@Override
-		public String getStorefrontFullPathName(final HttpServletRequest request)
-		{
-			return getFullPathNameFromRequest(request);
-		}
+		return getRequiredAddOnsNameProvider().getAddOns(getServletContext().getServletContextName());
 	}
 
-
-	public class ExecutableResourceAddOnResolver extends ResourceAddOnResolver
+	protected String getAppContextFullPathName()
 	{
-		private static final int EXTENSION_INFO_GROUP = 4;
-		private static final int ADDON_ROOT_FOLDER_GROUP = 3;
-
-		public ExecutableResourceAddOnResolver()
-		{
-			super(DEFAULT_EXECUTABLE_RESOURCE_PATTERN);
-		}
+		return getServletContext().getRealPath("/");
+	}
 
-		@Override
-		protected String[] getAddOnExtensionInfo()
+	/**
+	 * Copies all files below the source folder which are missing or older below the target folder.
+	 *
+	 * @return the number of copied files
+	 */
+	protected int synchronizeFolder(final Path source, final Path target)
+	{
+		final List<Path> files;
+		try (Stream<Path> walk = Files.walk(source))
 		{
-			final String resourcePath = patternMatcher.group(EXTENSION_INFO_GROUP); //first from whole request path
-			return resourcePath.split("/", 2);
+			files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
 		}
-
-		@Override
-		public String getAddOnFullPathName(final HttpServletRequest request)
+		catch (final IOException e)
 		{
-			final String sourceAddOnResource = getExtensionPath();
-			final String addOnFolder = patternMatcher.group(ADDON_ROOT_FOLDER_GROUP);
-
-			return sourceAddOnResource + "/" + ADDON_FOLDER + "/web/webroot/WEB-INF/" + addOnFolder + "/"
-					+ getAddOnExtensionInfoPayload();
+			LOG.warn("Could not list add-on resources below " + source, e);
+			return 0;
 		}
 
-		@Override
-		public String getStorefrontFullPathName(final HttpServletRequest request)
+		int copied = 0;
+		for (final Path file : files)
 		{
-			//
-			final String ctxRootDir = getAppContextFullPathNameFromRequest(request);
-			final String addOnDir = patternMatcher.group(ADDON_ROOT_FOLDER_GROUP);
-			final String resourcePath = patternMatcher.group(EXTENSION_INFO_GROUP);
-			return ctxRootDir + "WEB-INF/" + addOnDir + "/addons/" + resourcePath;
+			try
+			{
+				if (copyFileInternalIfNeeded(file, target.resolve(source.relativize(file))))
+				{
+					copied++;
+				}
+			}
+			catch (final IOException e)
+			{
+				LOG.warn("Could not copy add-on resource " + file, e);
+			}
 		}
+		return copied;
 	}
 
-	protected String getAppContextFullPathNameFromRequest(final HttpServletRequest request)
+	protected boolean copyFileInternalIfNeeded(final Path source, final Path target) throws IOException
 	{
-		return request.getServletContext().getRealPath("/");
-	}
-
-	protected String getFullPathNameFromRequest(final HttpServletRequest request)
-	{
-		final String ctxPath = request.getContextPath();
-		String requestUri = request.getRequestURI();
-
-		if (requestUri.startsWith(ctxPath))
-		{
-			requestUri = requestUri.substring(ctxPath.length());
-		}
-
-		return FilenameUtils.normalize(request.getServletContext().getRealPath(requestUri), true);
+		return copyFileInternalIfNeeded(source.toString(), target.toString());
 	}
 
 	/**
@@ -228,9 +204,10 @@ public class AcceleratorAddOnFilter extends GenericFilterBean
 	 *
 	 * @param sourceAddOnFileName
 	 * @param targetWebAddOnFileName
+	 * @return whether the file was copied
 	 * @throws IOException
 	 */
-	protected void copyFileInternalIfNeeded(final String sourceAddOnFileName, final String targetWebAddOnFileName)
+	protected boolean copyFileInternalIfNeeded(final String sourceAddOnFileName, final String targetWebAddOnFileName)
 			throws IOException
 	{
 		PathTraversalResourceUtils.assertPathSegmentIsSecure(sourceAddOnFileName);
@@ -242,7 +219,7 @@ public class AcceleratorAddOnFilter extends GenericFilterBean
 		if (!sourceAddOnFile.exists())
 		{
 			LOG.warn("Add-on source file [" + sourceAddOnFileName + "] should exists ");
-			return;
+			return false;
 		}
 		if (!targetAddOnFile.exists())
 		{
@@ -260,15 +237,18 @@ public class AcceleratorAddOnFilter extends GenericFilterBean
 				}
 			}
 			FileUtils.copyFile(sourceAddOnFile, targetAddOnFile);
+			return true;
 		}
-		else
+		if (FileUtils.isFileOlder(targetAddOnFile, sourceAddOnFile))
 		{
-			if (FileUtils.isFileOlder(targetAddOnFile, sourceAddOnFile))
+			if (LOG.isDebugEnabled())
 			{
-				LOG.info("Copying <<" + sourceAddOnFile.getAbsolutePath() + ">> to <<" + targetAddOnFile.getAbsolutePath() + ">>.");
-				FileUtils.copyFile(sourceAddOnFile, targetAddOnFile);
+				LOG.debug("Copying <<" + sourceAddOnFile.getAbsolutePath() + ">> to <<" + targetAddOnFile.getAbsolutePath() + ">>.");
 			}
+			FileUtils.copyFile(sourceAddOnFile, targetAddOnFile);
+			return true;
 		}
+		return false;
 	}
 
 
@@ -282,16 +262,32 @@ public class AcceleratorAddOnFilter extends GenericFilterBean
 		return getConfigurationService().getConfiguration().getBoolean(ADDON_FILTER_ACTIVE_PROPERTY, false);
 	}
 
+	protected boolean isWatching()
+	{
+		return getConfigurationService().getConfiguration().getBoolean(ADDON_FILTER_WATCH_PROPERTY, false);
+	}
+
 	@Required
 	public void setConfigurationService(final ConfigurationService configurationService)
 	{
 		this.configurationService = configurationService;
 		if (isActive())
 		{
-			LOG.info(" *** ATTENTION: AcceleratorAddOnFilter is enabled, and will have a significant impact on performance on a production system. ***");
+			LOG.info(" *** ATTENTION: AcceleratorAddOnFilter is enabled, and copies add-on resources into the storefront on startup. ***");
 		}
 	}
 
+	protected RequiredAddOnsNameProvider getRequiredAddOnsNameProvider()
+	{
+		return requiredAddOnsNameProvider;
+	}
+
+	@Required
+	public void setRequiredAddOnsNameProvider(final RequiredAddOnsNameProvider requiredAddOnsNameProvider)
+	{
+		this.requiredAddOnsNameProvider = requiredAddOnsNameProvider;
+	}
+
 	//Utilities abstraction
 
 	protected ExtensionAccessor getExtensionAccessor()
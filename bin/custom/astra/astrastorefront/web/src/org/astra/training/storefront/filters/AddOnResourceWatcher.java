@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.storefront.filters;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.apache.log4j.Logger;
+
+
+/**
+ * Watches the resource folders of add-ons and hands every created or modified file to a {@link Copier}, for development
+ * systems where add-on resources are edited while the server runs. Folders created later are watched as well. The
+ * watcher runs on a daemon thread until it is stopped.
+ */
+public class AddOnResourceWatcher implements Runnable
+{
+	private static final Logger LOG = Logger.getLogger(AddOnResourceWatcher.class);
+
+	private final Map<Path, Path> targetsBySource;
+	private final Copier copier;
+	private final Map<WatchKey, Path> watchedFolders = new ConcurrentHashMap<>();
+	private WatchService watchService;
+	private Thread thread;
+
+	/**
+	 * @param targetsBySource
+	 * 		storefront folders to copy into per add-on folder to watch
+	 * @param copier
+	 * 		copies a changed file
+	 */
+	public AddOnResourceWatcher(final Map<Path, Path> targetsBySource, final Copier copier)
+	{
+		this.targetsBySource = targetsBySource;
+		this.copier = copier;
+	}
+
+	public synchronized void start() throws IOException
+	{
+		if (thread != null)
+		{
+			return;
+		}
+		watchService = FileSystems.getDefault().newWatchService();
+		for (final Path source : targetsBySource.keySet())
+		{
+			if (Files.isDirectory(source))
+			{
+				registerAll(source);
+			}
+		}
+		thread = new Thread(this, "addon-resource-watcher");
+		thread.setDaemon(true);
+		thread.start();
+		LOG.info("Watching " + watchedFolders.size() + " add-on resource folders for changes");
+	}
+
+	public synchronized void stop()
+	{
+		if (thread == null)
+		{
+			return;
+		}
+		try
+		{
+			watchService.close();
+		}
+		catch (final IOException e)
+		{
+			LOG.warn("Could not stop watching add-on resources", e);
+		}
+		thread = null;
+	}
+
+	@Override
+	public void run()
+	{
+		try
+		{
+			while (!Thread.currentThread().isInterrupted())
+			{
+				final WatchKey key = watchService.take();
+				final Path folder = watchedFolders.get(key);
+				if (folder != null)
+				{
+					for (final WatchEvent<?> event : key.pollEvents())
+					{
+						if (event.kind() != StandardWatchEventKinds.OVERFLOW)
+						{
+							handle(folder.resolve((Path) event.context()));
+						}
+					}
+				}
+				if (!key.reset())
+				{
+					watchedFolders.remove(key);
+				}
+			}
+		}
+		catch (final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (final ClosedWatchServiceException e)
+		{
+			// stopped
+		}
+	}
+
+	protected void handle(final Path changed)
+	{
+		try
+		{
+			if (Files.isDirectory(changed))
+			{
+				// files may have been created before the folder was registered
+				registerAll(changed);
+				try (Stream<Path> files = Files.walk(changed))
+				{
+					files.filter(Files::isRegularFile).forEach(this::copy);
+				}
+			}
+			else if (Files.isRegularFile(changed))
+			{
+				copy(changed);
+			}
+		}
+		catch (final IOException e)
+		{
+			LOG.warn("Could not handle change of add-on resource " + changed, e);
+		}
+	}
+
+	protected void copy(final Path source)
+	{
+		for (final Map.Entry<Path, Path> entry : targetsBySource.entrySet())
+		{
+			if (source.startsWith(entry.getKey()))
+			{
+				final Path target = entry.getValue().resolve(entry.getKey().relativize(source));
+				try
+				{
+					copier.copy(source, target);
+				}
+				catch (final IOException e)
+				{
+					LOG.warn("Could not copy add-on resource " + source + " to " + target, e);
+				}
+				return;
+			}
+		}
+	}
+
+	protected void registerAll(final Path root) throws IOException
+	{
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult preVisitDirectory(final Path folder, final BasicFileAttributes attributes) throws IOException
+			{
+				watchedFolders.put(folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_MODIFY), folder);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Copies a changed add-on resource into the storefront.
+	 */
+	public interface Copier
+	{
+		void copy(Path source, Path target) throws IOException;
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.storefront.filters;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+import org.springframework.util.PathMatcher;
+
+
+/**
+ * A set of ant style path patterns compiled for matching request paths without walking the patterns one by one.
+ * Literal paths, <code>/prefix/**</code> and <code>/**&#47;suffix</code> patterns are answered with string comparisons
+ * on segment boundaries; all other patterns are handed to the {@link PathMatcher}.
+ */
+public class RequestPathPatterns
+{
+	private static final String ANY_PATH = "/**";
+	private static final String WILDCARDS = "*?{";
+
+	private final Set<String> paths = new HashSet<>();
+	private final List<String> prefixes = new ArrayList<>();
+	private final List<String> suffixes = new ArrayList<>();
+	private final List<String> patterns = new ArrayList<>();
+	private final PathMatcher pathMatcher;
+	private boolean matchingAll;
+
+	public RequestPathPatterns(final Collection<String> patterns, final PathMatcher pathMatcher)
+	{
+		this.pathMatcher = pathMatcher;
+		if (patterns != null)
+		{
+			for (final String pattern : patterns)
+			{
+				add(pattern);
+			}
+		}
+	}
+
+	protected void add(final String pattern)
+	{
+		if (ANY_PATH.equals(pattern) || "**".equals(pattern))
+		{
+			matchingAll = true;
+		}
+		else if (!StringUtils.containsAny(pattern, WILDCARDS))
+		{
+			paths.add(pattern);
+		}
+		else if (pattern.endsWith(ANY_PATH) && isLiteral(pattern, 0, pattern.length() - ANY_PATH.length()))
+		{
+			// "/a/**" matches "/a" and everything below it
+			prefixes.add(pattern.substring(0, pattern.length() - ANY_PATH.length()));
+		}
+		else if (pattern.startsWith(ANY_PATH + "/") && isLiteral(pattern, ANY_PATH.length(), pattern.length()))
+		{
+			// "/**/a/b" matches "/a/b" at any depth
+			suffixes.add(pattern.substring(ANY_PATH.length()));
+		}
+		else
+		{
+			patterns.add(pattern);
+		}
+	}
+
+	protected boolean isLiteral(final String pattern, final int start, final int end)
+	{
+		return !StringUtils.containsAny(pattern.substring(start, end), WILDCARDS);
+	}
+
+	/**
+	 * @param path
+	 * 		the request path, relative to the context
+	 * @return true if any of the patterns matches the path
+	 */
+	public boolean matches(final String path)
+	{
+		if (matchingAll)
+		{
+			return true;
+		}
+		final String requestPath = StringUtils.defaultString(path);
+		if (paths.contains(requestPath))
+		{
+			return true;
+		}
+		for (final String prefix : prefixes)
+		{
+			if (requestPath.startsWith(prefix)
+					&& (requestPath.length() == prefix.length() || requestPath.charAt(prefix.length()) == '/'))
+			{
+				return true;
+			}
+		}
+		// like the path matcher, a trailing slash of the path does not prevent a suffix match
+		final int end = requestPath.endsWith("/") ? requestPath.length() - 1 : requestPath.length();
+		for (final String suffix : suffixes)
+		{
+			if (requestPath.startsWith(suffix, end - suffix.length()))
+			{
+				return true;
+			}
+		}
+		for (final String pattern : patterns)
+		{
+			if (pathMatcher.match(pattern, requestPath))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+}
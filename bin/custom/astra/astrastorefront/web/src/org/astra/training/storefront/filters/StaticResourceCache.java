@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.storefront.filters;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+
+
+/**
+ * Heap cache of the static resources below a folder. On startup every file is hashed; the hash of a file is its entity
+ * tag, and the hash of all paths and file hashes is the fingerprint of the folder, which changes whenever any resource
+ * changes. Resources are kept with a gzip variant for compressible content types, as long as they fit into the byte
+ * budget. Resources created after the startup are loaded when they are first requested. With revalidation switched on,
+ * the modification time and size of the file are checked on every access, and a changed file is read again; the
+ * fingerprint stays the one of the startup.
+ */
+public class StaticResourceCache
+{
+	private static final Logger LOG = Logger.getLogger(StaticResourceCache.class);
+
+	private static final String[] COMPRESSIBLE_TYPES = { "text/", "application/javascript", "application/x-javascript",
+			"application/json", "application/xml", "image/svg+xml", "application/vnd.ms-fontobject", "font/ttf",
+			"application/x-font-ttf" };
+	private static final int FINGERPRINT_LENGTH = 12;
+
+	private final Path root;
+	private final Function<String, String> contentTypes;
+	private final long maxFileBytes;
+	private final long maxTotalBytes;
+	private final Map<String, StaticResource> resources = new ConcurrentHashMap<>();
+	private final AtomicLong totalBytes = new AtomicLong();
+	private String fingerprint;
+	private boolean revalidate;
+
+	/**
+	 * @param root
+	 * 		the folder of the resources
+	 * @param contentTypes
+	 * 		gives the content type for a file name, or null if it is unknown
+	 * @param maxFileBytes
+	 * 		size above which a resource is not cached
+	 * @param maxTotalBytes
+	 * 		size of all cached resources, including their gzip variants
+	 */
+	public StaticResourceCache(final Path root, final Function<String, String> contentTypes, final long maxFileBytes,
+			final long maxTotalBytes)
+	{
+		this.root = root.toAbsolutePath().normalize();
+		this.contentTypes = contentTypes;
+		this.maxFileBytes = maxFileBytes;
+		this.maxTotalBytes = maxTotalBytes;
+	}
+
+	/**
+	 * Hashes and caches all resources and computes the fingerprint.
+	 */
+	public void load() throws IOException
+	{
+		final SortedMap<String, String> hashes = new TreeMap<>();
+		if (Files.isDirectory(root))
+		{
+			try (Stream<Path> files = Files.walk(root))
+			{
+				for (final Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator)
+				{
+					final StaticResource resource = read(file);
+					hashes.put(toResourcePath(file), resource.getEtag());
+					cache(toResourcePath(file), resource);
+				}
+			}
+		}
+
+		final MessageDigest digest = newDigest();
+		for (final Map.Entry<String, String> hash : hashes.entrySet())
+		{
+			digest.update((hash.getKey() + '=' + hash.getValue() + '\n').getBytes(StandardCharsets.UTF_8));
+		}
+		fingerprint = encode(digest.digest()).substring(0, FINGERPRINT_LENGTH);
+		LOG.info("Hashed " + hashes.size() + " static resources, " + resources.size() + " of them cached in " + totalBytes.get()
+				+ " bytes, fingerprint " + fingerprint);
+	}
+
+	/**
+	 * @return the fingerprint of all resources found by {@link #load()}
+	 */
+	public String getFingerprint()
+	{
+		return fingerprint;
+	}
+
+	/**
+	 * @param path
+	 * 		path of the resource relative to the root, starting with a slash
+	 * @return the cached resource, or null if there is no such file or it is too large to be cached
+	 */
+	public StaticResource get(final String path)
+	{
+		final StaticResource resource = resources.get(path);
+		if (resource != null && (!isRevalidate() || isCurrent(path, resource)))
+		{
+			return resource;
+		}
+
+		final Path file = resolve(path);
+		if (file == null || !Files.isRegularFile(file))
+		{
+			return null;
+		}
+		try
+		{
+			final StaticResource loaded = read(file);
+			return cache(path, loaded) ? loaded : null;
+		}
+		catch (final IOException e)
+		{
+			LOG.warn("Could not read static resource " + file, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Checks whether the file of a cached resource is unchanged, and evicts the resource if not.
+	 */
+	protected boolean isCurrent(final String path, final StaticResource resource)
+	{
+		final Path file = resolve(path);
+		try
+		{
+			if (file != null && Files.isRegularFile(file)
+					&& Files.getLastModifiedTime(file).toMillis() == resource.getLastModified()
+					&& Files.size(file) == resource.getContent().length)
+			{
+				return true;
+			}
+		}
+		catch (final IOException e)
+		{
+			LOG.debug("Could not check static resource " + file, e);
+		}
+		if (resources.remove(path, resource))
+		{
+			totalBytes.addAndGet(-resource.getSize());
+		}
+		return false;
+	}
+
+	protected Path resolve(final String path)
+	{
+		if (StringUtils.isEmpty(path))
+		{
+			return null;
+		}
+		final Path file = root.resolve(StringUtils.removeStart(path, "/")).normalize();
+		return file.startsWith(root) ? file : null;
+	}
+
+	protected boolean cache(final String path, final StaticResource resource)
+	{
+		if (resource.getContent() == null)
+		{
+			return false;
+		}
+		final long size = resource.getSize();
+		if (totalBytes.addAndGet(size) > maxTotalBytes)
+		{
+			totalBytes.addAndGet(-size);
+			return false;
+		}
+		if (resources.putIfAbsent(path, resource) != null)
+		{
+			totalBytes.addAndGet(-size);
+		}
+		return true;
+	}
+
+	protected StaticResource read(final Path file) throws IOException
+	{
+		final long size = Files.size(file);
+		final String contentType = contentTypes.apply(file.getFileName().toString());
+		final long lastModified = Files.getLastModifiedTime(file).toMillis();
+		if (size > maxFileBytes)
+		{
+			// only hashed for the fingerprint, served by the container
+			final MessageDigest digest = newDigest();
+			try (InputStream in = Files.newInputStream(file))
+			{
+				final byte[] buffer = new byte[8192];
+				for (int read = in.read(buffer); read >= 0; read = in.read(buffer))
+				{
+					digest.update(buffer, 0, read);
+				}
+			}
+			return new StaticResource(null, null, '"' + encode(digest.digest()) + '"', contentType, lastModified);
+		}
+
+		final byte[] content = Files.readAllBytes(file);
+		final byte[] gzipContent = isCompressible(contentType) ? gzip(content) : null;
+		return new StaticResource(content, gzipContent != null && gzipContent.length < content.length ? gzipContent : null,
+				'"' + encode(newDigest().digest(content)) + '"', contentType, lastModified);
+	}
+
+	/**
+	 * @return whether the files of cached resources are checked for changes on every access
+	 */
+	public boolean isRevalidate()
+	{
+		return revalidate;
+	}
+
+	public void setRevalidate(final boolean revalidate)
+	{
+		this.revalidate = revalidate;
+	}
+
+	protected boolean isCompressible(final String contentType)
+	{
+		return contentType != null && StringUtils.startsWithAny(contentType, COMPRESSIBLE_TYPES);
+	}
+
+	protected byte[] gzip(final byte[] content) throws IOException
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length / 3 + 64);
+		try (GZIPOutputStream out = new GZIPOutputStream(bytes))
+		{
+			out.write(content);
+		}
+		return bytes.toByteArray();
+	}
+
+	protected String toResourcePath(final Path file)
+	{
+		return "/" + root.relativize(file).toString().replace('\\', '/');
+	}
+
+	protected MessageDigest newDigest()
+	{
+		try
+		{
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (final NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	protected String encode(final byte[] hash)
+	{
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+	}
+
+	/**
+	 * A cached static resource. The content is null for resources that are too large to be cached.
+	 */
+	public static class StaticResource
+	{
+		private final byte[] content;
+		private final byte[] gzipContent;
+		private final String etag;
+		private final String contentType;
+		private final long lastModified;
+
+		public StaticResource(final byte[] content, final byte[] gzipContent, final String etag, final String contentType,
+				final long lastModified)
+		{
+			this.content = content;
+			this.gzipContent = gzipContent;
+			this.etag = etag;
+			this.contentType = contentType;
+			this.lastModified = lastModified;
+		}
+
+		public byte[] getContent()
+		{
+			return content;
+		}
+
+		/**
+		 * @return the gzip compressed content, or null if compressing does not pay off
+		 */
+		public byte[] getGzipContent()
+		{
+			return gzipContent;
+		}
+
+		/**
+		 * @return the quoted entity tag
+		 */
+		public String getEtag()
+		{
+			return etag;
+		}
+
+		public String getContentType()
+		{
+			return contentType;
+		}
+
+		public long getLastModified()
+		{
+			return lastModified;
+		}
+
+		protected long getSize()
+		{
+			return (content == null ? 0 : content.length) + (gzipContent == null ? 0 : gzipContent.length);
+		}
+	}
+}
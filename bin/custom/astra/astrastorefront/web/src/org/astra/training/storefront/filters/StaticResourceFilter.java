@@ -8,8 +8,10 @@ import de.hybris.platform.util.config.ConfigIntf;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.file.Paths;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -19,17 +21,36 @@ import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
+import org.apache.log4j.Logger;
+
 
 /**
  * Filter which allows us to bypass all of the spring filters for requests to a given path.
  * This is a simple servlet filter. It is intended to be used to serve static resources from the
  * web application. I can be used early in the filter chain to bypass any spring setup or hybris
  * session setup for the static resources.
+ * <p>
+ * With the cache enabled, the resources below <code>/_ui</code> are hashed on startup and served from a
+ * {@link StaticResourceCache} with entity tags and gzip variants. The fingerprint of all resources is published as the
+ * servlet context attribute {@link #FINGERPRINT_ATTRIBUTE}; resource paths starting with it never change their content
+ * and are served with a long-lived immutable cache control header. When the files may change while the server runs,
+ * as with the add-on resource watcher, the cache revalidates them and serves no path as immutable.
+ * <p>
+ * The resource path is taken from the decoded servlet path and path info, never from the raw request URI. Paths outside
+ * <code>/_ui</code>, with dot segments, backslashes or encoded separators are answered with <code>404 Not Found</code>
+ * before anything is served or dispatched.
  */
 public class StaticResourceFilter implements Filter
 {
+	public static final String FINGERPRINT_ATTRIBUTE = StaticResourceFilter.class.getName() + ".fingerprint";
+
+	private static final Logger LOG = Logger.getLogger(StaticResourceFilter.class);
+
 	private static final String COMMON_DEFAULT_SERVLET_NAME = "default";
 	private static final String GAE_DEFAULT_SERVLET_NAME = "_ah_default";
 	private static final String RESIN_DEFAULT_SERVLET_NAME = "resin-file";
@@ -37,6 +58,17 @@ public class StaticResourceFilter implements Filter
 	private static final String WEBSPHERE_DEFAULT_SERVLET_NAME = "SimpleFileServlet";
 
 	private static final String HEADER_PROPERTIES_PREFIX = "storefront.staticResourceFilter.response.header.";
+	private static final String CACHE_ENABLED_PROPERTY = "storefront.staticResourceFilter.cache.enabled";
+	private static final String CACHE_MAX_FILE_BYTES_PROPERTY = "storefront.staticResourceFilter.cache.maxFileBytes";
+	private static final String CACHE_MAX_TOTAL_BYTES_PROPERTY = "storefront.staticResourceFilter.cache.maxTotalBytes";
+	private static final String CACHE_REVALIDATE_PROPERTY = "storefront.staticResourceFilter.cache.revalidate";
+
+	private static final String RESOURCE_ROOT = "/_ui";
+	private static final String FINGERPRINT_PREFIX = "v-";
+	private static final String IMMUTABLE_CACHE_CONTROL = "public,max-age=31536000,immutable";
+	private static final String GZIP = "gzip";
+	private static final Pattern UNSAFE_PATH = Pattern.compile("(^|/)\\.\\.?(/|$)|[\\\\%\\x00]");
+	private static final Pattern ENCODED_SEPARATOR = Pattern.compile("%(2e|2f|5c|25|00)", Pattern.CASE_INSENSITIVE);
 
 	/**
 	 * Lazy loaded map which contains the http header parameters defined in the *.properties. The String
@@ -48,6 +80,10 @@ public class StaticResourceFilter implements Filter
 
 	private RequestDispatcher defaultRequestDispatcher;
 
+	private ServletContext servletContext;
+
+	private StaticResourceCache staticResourceCache;
+
 	protected RequestDispatcher getDefaultRequestDispatcher()
 	{
 		return defaultRequestDispatcher;
@@ -56,7 +92,7 @@ public class StaticResourceFilter implements Filter
 	@Override
 	public void init(final FilterConfig filterConfig) throws ServletException
 	{
-		final ServletContext servletContext = filterConfig.getServletContext();
+		servletContext = filterConfig.getServletContext();
 
 		// Try and work out the default RequestDispatcher for common servlet containers
 		if (servletContext.getNamedDispatcher(COMMON_DEFAULT_SERVLET_NAME) != null)
@@ -84,6 +120,43 @@ public class StaticResourceFilter implements Filter
 			throw new IllegalStateException(
 					"Unable to locate the default servlet for serving static content.");
 		}
+
+		initStaticResourceCache();
+	}
+
+	protected void initStaticResourceCache()
+	{
+		final ConfigIntf config = Registry.getMasterTenant().getConfig();
+		final String resourceRoot = servletContext.getRealPath(RESOURCE_ROOT);
+		if (!Boolean.parseBoolean(config.getParameter(CACHE_ENABLED_PROPERTY)) || resourceRoot == null)
+		{
+			return;
+		}
+
+		final StaticResourceCache cache = new StaticResourceCache(Paths.get(resourceRoot), servletContext::getMimeType,
+				NumberUtils.toLong(config.getParameter(CACHE_MAX_FILE_BYTES_PROPERTY), 1024L * 1024L),
+				NumberUtils.toLong(config.getParameter(CACHE_MAX_TOTAL_BYTES_PROPERTY), 64L * 1024L * 1024L));
+		cache.setRevalidate(Boolean.parseBoolean(config.getParameter(CACHE_REVALIDATE_PROPERTY)));
+		loadStaticResourceCache(cache);
+	}
+
+	protected void loadStaticResourceCache(final StaticResourceCache cache)
+	{
+		try
+		{
+			cache.load();
+			staticResourceCache = cache;
+			servletContext.setAttribute(FINGERPRINT_ATTRIBUTE, FINGERPRINT_PREFIX + cache.getFingerprint());
+		}
+		catch (final IOException e)
+		{
+			LOG.warn("Could not hash the static resources, they are served without fingerprints", e);
+		}
+	}
+
+	protected StaticResourceCache getStaticResourceCache()
+	{
+		return staticResourceCache;
 	}
 
 	@Override
@@ -100,11 +173,141 @@ public class StaticResourceFilter implements Filter
 	public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain chain)
 			throws IOException, ServletException
 	{
+		final HttpServletRequest httpRequest = (HttpServletRequest) request;
+		final HttpServletResponse httpResponse = (HttpServletResponse) response;
+
 		// Add any configured response headers
-		readConfiguredHeaderParamsAndWriteToResponse((HttpServletResponse) response);
+		readConfiguredHeaderParamsAndWriteToResponse(httpResponse);
+
+		final String path = StringUtils.defaultString(httpRequest.getServletPath())
+				+ StringUtils.defaultString(httpRequest.getPathInfo());
+		if (!isSafePath(httpRequest, path))
+		{
+			httpResponse.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		final String requestPath = path.substring(RESOURCE_ROOT.length());
+		final String fingerprint = getFingerprint(requestPath);
+		final String resourcePath = fingerprint == null ? requestPath : requestPath.substring(fingerprint.length() + 1);
+
+		final StaticResourceCache cache = getStaticResourceCache();
+		if (cache != null && isGetOrHead(httpRequest))
+		{
+			final StaticResourceCache.StaticResource resource = cache.get(resourcePath);
+			if (resource != null)
+			{
+				// a stale fingerprint from before a deployment still gets the current content, but not for long
+				serve(httpRequest, httpResponse, resource, !cache.isRevalidate() && fingerprint != null
+						&& fingerprint.equals(servletContext.getAttribute(FINGERPRINT_ATTRIBUTE)));
+				return;
+			}
+		}
 
 		// Forward to the default dispatcher for efficient file serving
-		getDefaultRequestDispatcher().forward(request, response);
+		if (fingerprint == null)
+		{
+			getDefaultRequestDispatcher().forward(request, response);
+		}
+		else
+		{
+			servletContext.getRequestDispatcher(RESOURCE_ROOT + resourcePath).forward(request, response);
+		}
+	}
+
+	/**
+	 * @return true if the path lies below the resource root and neither it nor the raw request URI holds dot segments,
+	 *         backslashes or encoded separators
+	 */
+	protected boolean isSafePath(final HttpServletRequest request, final String path)
+	{
+		return path.startsWith(RESOURCE_ROOT + "/") && !UNSAFE_PATH.matcher(path).find()
+				&& !ENCODED_SEPARATOR.matcher(StringUtils.defaultString(request.getRequestURI())).find()
+				&& !StringUtils.contains(request.getRequestURI(), "..");
+	}
+
+	/**
+	 * @return the fingerprint segment the path starts with, without slashes, or null if there is none
+	 */
+	protected String getFingerprint(final String path)
+	{
+		if (!path.startsWith("/" + FINGERPRINT_PREFIX))
+		{
+			return null;
+		}
+		final int end = path.indexOf('/', 1);
+		return end < 0 ? null : path.substring(1, end);
+	}
+
+	protected boolean isGetOrHead(final HttpServletRequest request)
+	{
+		return "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+	}
+
+	protected void serve(final HttpServletRequest request, final HttpServletResponse response,
+			final StaticResourceCache.StaticResource resource, final boolean immutable) throws IOException
+	{
+		final boolean gzip = resource.getGzipContent() != null && acceptsGzip(request);
+		// the variants have their own entity tags, so caches do not mix them up
+		final String etag = gzip ? StringUtils.removeEnd(resource.getEtag(), "\"") + "-" + GZIP + "\"" : resource.getEtag();
+
+		if (immutable)
+		{
+			response.setHeader("Cache-Control", IMMUTABLE_CACHE_CONTROL);
+		}
+		if (resource.getGzipContent() != null)
+		{
+			response.setHeader("Vary", "Accept-Encoding");
+		}
+		response.setHeader("ETag", etag);
+		response.setDateHeader("Last-Modified", resource.getLastModified());
+
+		if (isNotModified(request, etag, resource.getLastModified()))
+		{
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		final byte[] body = gzip ? resource.getGzipContent() : resource.getContent();
+		if (resource.getContentType() != null)
+		{
+			response.setContentType(resource.getContentType());
+		}
+		if (gzip)
+		{
+			response.setHeader("Content-Encoding", GZIP);
+		}
+		response.setContentLength(body.length);
+		if (!"HEAD".equals(request.getMethod()))
+		{
+			response.getOutputStream().write(body);
+		}
+	}
+
+	protected boolean acceptsGzip(final HttpServletRequest request)
+	{
+		final String acceptEncoding = request.getHeader("Accept-Encoding");
+		return StringUtils.contains(acceptEncoding, GZIP)
+				&& !StringUtils.contains(StringUtils.deleteWhitespace(acceptEncoding), GZIP + ";q=0");
+	}
+
+	protected boolean isNotModified(final HttpServletRequest request, final String etag, final long lastModified)
+	{
+		final String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null)
+		{
+			for (final String candidate : ifNoneMatch.split(","))
+			{
+				final String tag = StringUtils.removeStart(candidate.trim(), "W/");
+				if ("*".equals(tag) || etag.equals(tag))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+		final long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+		return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
 	}
 
 	/**
@@ -39,11 +39,15 @@ public class StorefrontFilter extends OncePerRequestFilter
 	private Set<String> refererExcludeUrlSet;
 	private PathMatcher pathMatcher;
 	private CommerceCommonI18NService commerceCommonI18NService;
+	private StorefrontFilterMetrics storefrontFilterMetrics = new StorefrontFilterMetrics();
+
+	private volatile RequestPathPatterns refererExcludePatterns;
 
 	@Override
 	public void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
 			final FilterChain filterChain) throws IOException, ServletException
 	{
+		final long start = System.nanoTime();
 		final HttpSession session = request.getSession();
 		final String queryString = request.getQueryString();
 
@@ -56,19 +60,37 @@ public class StorefrontFilter extends OncePerRequestFilter
 
 		if (isGetMethod(request))
 		{
-			if (StringUtils.isBlank(request.getHeader(AJAX_REQUEST_HEADER_NAME)) && !isRequestPathExcluded(request))
+			if (StringUtils.isBlank(request.getHeader(AJAX_REQUEST_HEADER_NAME)))
 			{
-				final String requestURL = request.getRequestURL().toString();
-				session.setAttribute(ORIGINAL_REFERER, StringUtils.isNotBlank(queryString) ? requestURL + "?" + queryString
-						: requestURL);	// NOSONAR
+				if (!isRequestPathExcluded(request))
+				{
+					final String requestURL = request.getRequestURL().toString();
+					updateOriginalReferer(session, StringUtils.isNotBlank(queryString) ? requestURL + "?" + queryString
+							: requestURL);
+				}
+
+				// the history only records navigation; it skips the url if it is the newest entry already
+				getBrowseHistory().addBrowseHistoryEntry(new BrowseHistoryEntry(request.getRequestURI(), null));
 			}
-
-			getBrowseHistory().addBrowseHistoryEntry(new BrowseHistoryEntry(request.getRequestURI(), null));
 		}
 
+		getStorefrontFilterMetrics().recordRequest(System.nanoTime() - start);
 		filterChain.doFilter(request, response);
 	}
 
+	/**
+	 * Stores the referer in the session unless it is stored already, since every write makes a replicated session dirty.
+	 */
+	protected void updateOriginalReferer(final HttpSession session, final String referer)
+	{
+		final boolean changed = !referer.equals(session.getAttribute(ORIGINAL_REFERER));
+		if (changed)
+		{
+			session.setAttribute(ORIGINAL_REFERER, referer); // NOSONAR
+		}
+		getStorefrontFilterMetrics().recordRefererWrite(changed);
+	}
+
 	protected boolean isGetMethod(final HttpServletRequest httpRequest)
 	{
 		return "GET".equalsIgnoreCase(httpRequest.getMethod());
@@ -129,18 +151,16 @@ public class StorefrontFilter extends OncePerRequestFilter
 
 	protected boolean isRequestPathExcluded(final HttpServletRequest request)
 	{
-		final Set<String> inputSet = getRefererExcludeUrlSet();
-		final String servletPath = request.getServletPath();
+		return getRefererExcludePatterns().matches(request.getServletPath());
+	}
 
-		for (final String input : inputSet)
+	protected RequestPathPatterns getRefererExcludePatterns()
+	{
+		if (refererExcludePatterns == null)
 		{
-			if (getPathMatcher().match(input, servletPath))
-			{
-				return true;
-			}
+			refererExcludePatterns = new RequestPathPatterns(getRefererExcludeUrlSet(), getPathMatcher());
 		}
-
-		return false;
+		return refererExcludePatterns;
 	}
 
 	protected Set<String> getRefererExcludeUrlSet()
@@ -152,6 +172,7 @@ public class StorefrontFilter extends OncePerRequestFilter
 	public void setRefererExcludeUrlSet(final Set<String> refererExcludeUrlSet)
 	{
 		this.refererExcludeUrlSet = refererExcludeUrlSet;
+		this.refererExcludePatterns = null;
 	}
 
 	protected PathMatcher getPathMatcher()
@@ -163,10 +184,21 @@ public class StorefrontFilter extends OncePerRequestFilter
 	public void setPathMatcher(final PathMatcher pathMatcher)
 	{
 		this.pathMatcher = pathMatcher;
+		this.refererExcludePatterns = null;
 	}
 
 	public void setCommerceCommonI18NService(final CommerceCommonI18NService commerceCommonI18NService)
 	{
 		this.commerceCommonI18NService = commerceCommonI18NService;
 	}
+
+	protected StorefrontFilterMetrics getStorefrontFilterMetrics()
+	{
+		return storefrontFilterMetrics;
+	}
+
+	public void setStorefrontFilterMetrics(final StorefrontFilterMetrics storefrontFilterMetrics)
+	{
+		this.storefrontFilterMetrics = storefrontFilterMetrics;
+	}
 }
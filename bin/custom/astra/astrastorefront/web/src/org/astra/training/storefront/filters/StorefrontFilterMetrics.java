@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.storefront.filters;
+
+import de.hybris.platform.acceleratorstorefrontcommons.history.BrowseHistory;
+import de.hybris.platform.core.Registry;
+import org.astra.training.storefront.history.impl.DefaultBrowseHistory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.export.naming.SelfNaming;
+
+
+/**
+ * Counts the session writes of the {@link StorefrontFilter} and the time it spends before handing the request on, and
+ * exposes them over JMX, one MBean per tenant. Every session write makes a replicated session dirty, so the writes per
+ * request are the figure to watch.
+ */
+@ManagedResource(description = "Session writes and time of the storefront filter")
+public class StorefrontFilterMetrics implements SelfNaming
+{
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder filterNanos = new LongAdder();
+	private final AtomicLong maxFilterNanos = new AtomicLong();
+	private final LongAdder refererWrites = new LongAdder();
+	private final LongAdder skippedRefererWrites = new LongAdder();
+
+	private BrowseHistory browseHistory;
+
+	public void recordRequest(final long nanos)
+	{
+		requests.increment();
+		filterNanos.add(nanos);
+		maxFilterNanos.accumulateAndGet(nanos, Math::max);
+	}
+
+	public void recordRefererWrite(final boolean written)
+	{
+		(written ? refererWrites : skippedRefererWrites).increment();
+	}
+
+	@ManagedAttribute(description = "Number of requests passing the storefront filter")
+	public long getRequestCount()
+	{
+		return requests.sum();
+	}
+
+	@ManagedAttribute(description = "Average time spent in the storefront filter, without the rest of the chain, in microseconds")
+	public double getAverageFilterMicros()
+	{
+		final long count = getRequestCount();
+		return count == 0 ? 0 : filterNanos.sum() / 1000d / count;
+	}
+
+	@ManagedAttribute(description = "Maximum time spent in the storefront filter, without the rest of the chain, in microseconds")
+	public long getMaxFilterMicros()
+	{
+		return TimeUnit.NANOSECONDS.toMicros(maxFilterNanos.get());
+	}
+
+	@ManagedAttribute(description = "Number of original referer session writes")
+	public long getRefererWriteCount()
+	{
+		return refererWrites.sum();
+	}
+
+	@ManagedAttribute(description = "Number of original referer session writes skipped because the value did not change")
+	public long getSkippedRefererWriteCount()
+	{
+		return skippedRefererWrites.sum();
+	}
+
+	@ManagedAttribute(description = "Number of browse history session writes")
+	public long getBrowseHistoryWriteCount()
+	{
+		return getBrowseHistory() instanceof DefaultBrowseHistory ? ((DefaultBrowseHistory) getBrowseHistory()).getEntriesAdded()
+				: 0;
+	}
+
+	@ManagedAttribute(description = "Number of browse history session writes skipped because the url did not change")
+	public long getSkippedBrowseHistoryWriteCount()
+	{
+		return getBrowseHistory() instanceof DefaultBrowseHistory ? ((DefaultBrowseHistory) getBrowseHistory()).getEntriesSkipped()
+				: 0;
+	}
+
+	@ManagedAttribute(description = "Average number of session writes per request")
+	public double getSessionWritesPerRequest()
+	{
+		final long count = getRequestCount();
+		return count == 0 ? 0 : (double) (getRefererWriteCount() + getBrowseHistoryWriteCount()) / count;
+	}
+
+	protected BrowseHistory getBrowseHistory()
+	{
+		return browseHistory;
+	}
+
+	/**
+	 * @param browseHistory
+	 * 		the browse history of the storefront; its writes are only counted if it is a {@link DefaultBrowseHistory}
+	 */
+	public void setBrowseHistory(final BrowseHistory browseHistory)
+	{
+		this.browseHistory = browseHistory;
+	}
+
+	@Override
+	public ObjectName getObjectName() throws MalformedObjectNameException
+	{
+		return new ObjectName("astrastorefront:type=StorefrontFilterMetrics,tenant="
+				+ ObjectName.quote(Registry.getCurrentTenant().getTenantID()));
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.storefront.history.impl;
+
+import de.hybris.platform.acceleratorstorefrontcommons.history.BrowseHistory;
+import de.hybris.platform.acceleratorstorefrontcommons.history.BrowseHistoryEntry;
+import de.hybris.platform.cms2.model.site.CMSSiteModel;
+import de.hybris.platform.cms2.servicelayer.services.CMSSiteService;
+import de.hybris.platform.servicelayer.session.SessionService;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Required;
+
+
+/**
+ * Keeps the browse history of the session in a fixed size ring buffer. An entry for the url that is already the newest
+ * entry is not added again, so reloads and requests repeating the last url leave the session untouched. Replaces the
+ * list based implementation of the accelerator storefront commons, which wrote the session on every entry.
+ */
+public class DefaultBrowseHistory implements BrowseHistory
+{
+	private static final String SESSION_USER_BROWSE_HISTORY_KEY = "sessionUserBrowseHistoryRing";
+
+	private SessionService sessionService;
+	private CMSSiteService cmsSiteService;
+	private int capacity = 10;
+
+	private final LongAdder entriesAdded = new LongAdder();
+	private final LongAdder entriesSkipped = new LongAdder();
+
+
+	protected SessionService getSessionService()
+	{
+		return sessionService;
+	}
+
+	@Required
+	public void setSessionService(final SessionService sessionService)
+	{
+		this.sessionService = sessionService;
+	}
+
+	protected CMSSiteService getCmsSiteService()
+	{
+		return cmsSiteService;
+	}
+
+	@Required
+	public void setCmsSiteService(final CMSSiteService cmsSiteService)
+	{
+		this.cmsSiteService = cmsSiteService;
+	}
+
+	protected int getCapacity()
+	{
+		return capacity;
+	}
+
+	@Required
+	public void setCapacity(final int capacity)
+	{
+		this.capacity = capacity;
+	}
+
+	/**
+	 * @return the number of entries added to browse histories
+	 */
+	public long getEntriesAdded()
+	{
+		return entriesAdded.sum();
+	}
+
+	/**
+	 * @return the number of entries not added because their url was already the newest entry
+	 */
+	public long getEntriesSkipped()
+	{
+		return entriesSkipped.sum();
+	}
+
+
+	@Override
+	public void addBrowseHistoryEntry(final BrowseHistoryEntry browseHistoryEntry)
+	{
+		// Get the actual history entry ring stored in the session
+		final EntryRing browseHistoryEntries = getBrowseHistoryEntries();
+
+		if (browseHistoryEntries != null)
+		{
+			// Lock on the entries to ensure that we modify it atomically
+			final boolean added;
+			synchronized (browseHistoryEntries)
+			{
+				added = browseHistoryEntries.add(browseHistoryEntry);
+			}
+			(added ? entriesAdded : entriesSkipped).increment();
+		}
+	}
+
+	protected EntryRing getBrowseHistoryEntries()
+	{
+		final CMSSiteModel currentSite = getCmsSiteService().getCurrentSite();
+
+		if (currentSite != null)
+		{
+			final String sessionKey = SESSION_USER_BROWSE_HISTORY_KEY + "-" + currentSite.getUid();
+
+			// Get the ring of BrowseHistoryEntries from the session
+			return getSessionService().getOrLoadAttribute(sessionKey, () -> new EntryRing(getCapacity()));
+		}
+		// Null is returned as a result of current site not available which should not happen - caller methods
+		// may treat null differently than an empty collection thus fix could break existing functionality
+		return null; // NOSONAR
+	}
+
+	@Override
+	public BrowseHistoryEntry findEntryMatchUrlEndsWith(final String match)
+	{
+		final EntryRing browseHistoryEntries = getBrowseHistoryEntries();
+
+		if (browseHistoryEntries != null)
+		{
+			final String suffix = "/" + match;
+			// Lock on the entries to ensure that we don't modify it while iterating
+			synchronized (browseHistoryEntries)
+			{
+				for (int i = 0; i < browseHistoryEntries.size(); i++)
+				{
+					final BrowseHistoryEntry entry = browseHistoryEntries.get(i);
+					if (entry.getUrl().endsWith(suffix))
+					{
+						return entry;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Fixed size ring of browse history entries, newest first. Adding to a full ring overwrites the oldest entry. It is
+	 * not a collection, so the session service stores it as it is.
+	 */
+	public static class EntryRing implements Serializable
+	{
+		private final BrowseHistoryEntry[] entries;
+		private int newest = -1;
+		private int size;
+
+		public EntryRing(final int capacity)
+		{
+			entries = new BrowseHistoryEntry[Math.max(1, capacity)];
+		}
+
+		/**
+		 * @param entry
+		 * 		the entry to add as the newest one
+		 * @return false if the newest entry already has the url of the entry, and nothing was added
+		 */
+		public boolean add(final BrowseHistoryEntry entry)
+		{
+			if (size > 0 && entries[newest].getUrl() != null && entries[newest].getUrl().equals(entry.getUrl()))
+			{
+				return false;
+			}
+			newest = (newest + 1) % entries.length;
+			entries[newest] = entry;
+			size = Math.min(size + 1, entries.length);
+			return true;
+		}
+
+		/**
+		 * @param index
+		 * 		position counted from the newest entry, which is at 0
+		 * @return the entry at the position
+		 */
+		public BrowseHistoryEntry get(final int index)
+		{
+			if (index < 0 || index >= size)
+			{
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			return entries[(newest - index + entries.length) % entries.length];
+		}
+
+		public int size()
+		{
+			return size;
+		}
+	}
+
+}
@@ -33,7 +33,10 @@ import org.astra.training.storefront.filters.cms.CMSSiteFilter;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
@@ -46,7 +49,8 @@ import org.springframework.web.servlet.ModelAndView;
 
 
 /**
- * Filter to load the appropriate Cms page slots into the model
+ * Filter to load the appropriate Cms page slots into the model. The CSS classes and action scripts of a page only change
+ * with its CMS content, so they are taken from the {@link CmsPageManifestCache} unless the page is previewed.
  */
 public class CmsPageBeforeViewHandler implements BeforeViewHandler
 {
@@ -56,6 +60,7 @@ public class CmsPageBeforeViewHandler implements BeforeViewHandler
 	private static final String CSS_LABEL_PREFIX = "pageLabel-";
 	private static final String CSS_TYPE_PREFIX = "pageType-";
 	private static final String CSS_TEMPLATE_PREFIX = "template-";
+	private static final Pattern CSS_INVALID_CHARACTERS = Pattern.compile("[^a-zA-Z0-9-]");
 
 	@Resource(name = "cmsSiteService")
 	private CMSSiteService cmsSiteService;
@@ -81,6 +86,12 @@ public class CmsPageBeforeViewHandler implements BeforeViewHandler
 	@Resource(name = "reqAddOnsNameProvider")
 	private RequiredAddOnsNameProvider requiredAddOnsNameProvider;
 
+	@Resource(name = "cmsPageManifestCache")
+	private CmsPageManifestCache cmsPageManifestCache;
+
+	// the type system does not change at runtime
+	private final Map<String, String> extensionsByItemType = new ConcurrentHashMap<>();
+
 
 	@Override
 	public void beforeView(final HttpServletRequest request, final HttpServletResponse response, final ModelAndView modelAndView)
@@ -90,24 +101,7 @@ public class CmsPageBeforeViewHandler implements BeforeViewHandler
 		// Look for the page in the model
 		final AbstractPageModel page = updateCmsPageInModelAndView(request, modelAndView);
 
-		modelAndView.addObject("pageBodyCssClasses", buildCssClasses(page));
-		if (page != null)
-		{
-			final List<String> dependantAddOns = requiredAddOnsNameProvider
-					.getAddOns(request.getServletContext().getServletContextName());
-
-			final Set<String> actionJsFiles = new HashSet();
-
-			final Collection<ContentSlotData> contentSlotsForPage = cmsPageService.getContentSlotsForPage(page,
-					cmsPreviewService.getPagePreviewCriteria());
-			for (final ContentSlotData contentSlotData : contentSlotsForPage)
-			{
-				final ContentSlotModel contentSlot = contentSlotData.getContentSlot();
-				final List<AbstractCMSComponentModel> cmsComponents = contentSlot.getCmsComponents();
-				addCmsComponentActions(actionJsFiles, cmsComponents, dependantAddOns);
-			}
-			modelAndView.addObject("cmsActionsJsFiles", actionJsFiles);
-		}
+		addCmsPageManifest(request, modelAndView, page);
 
 		// Create the restriction data
 		final RequestContextData requestContextData = SpringHelper.getSpringBean(request, "requestContextData",
@@ -123,9 +117,55 @@ public class CmsPageBeforeViewHandler implements BeforeViewHandler
 		sessionService.setAttribute(AbstractItemModel.LANGUAGE_FALLBACK_ENABLED_SERVICE_LAYER, Boolean.TRUE);
 	}
 
+	protected void addCmsPageManifest(final HttpServletRequest request, final ModelAndView modelAndView,
+			final AbstractPageModel page)
+	{
+		if (page == null)
+		{
+			modelAndView.addObject("pageBodyCssClasses", buildCssClasses(null));
+			return;
+		}
+
+		final CmsPageManifest manifest = isPreviewDataModelValid(request) ? buildCmsPageManifest(request, page)
+				: cmsPageManifestCache.get(page, cmsPage -> buildCmsPageManifest(request, cmsPage));
+		modelAndView.addObject("pageBodyCssClasses", manifest.getCssClasses());
+		modelAndView.addObject("cmsActionsJsFiles", manifest.getActionJsFiles());
+	}
+
+	protected CmsPageManifest buildCmsPageManifest(final HttpServletRequest request, final AbstractPageModel page)
+	{
+		final List<String> dependantAddOns = requiredAddOnsNameProvider
+				.getAddOns(request.getServletContext().getServletContextName());
+
+		final Set<String> actionJsFiles = new HashSet();
+
+		final Collection<ContentSlotData> contentSlotsForPage = cmsPageService.getContentSlotsForPage(page,
+				cmsPreviewService.getPagePreviewCriteria());
+		for (final ContentSlotData contentSlotData : contentSlotsForPage)
+		{
+			final ContentSlotModel contentSlot = contentSlotData.getContentSlot();
+			final List<AbstractCMSComponentModel> cmsComponents = contentSlot.getCmsComponents();
+			addCmsComponentActions(actionJsFiles, cmsComponents, dependantAddOns);
+		}
+		return new CmsPageManifest(buildCssClasses(page), actionJsFiles);
+	}
+
+	/**
+	 * Checks whether there is a preview data setup for the current request
+	 *
+	 * @param request
+	 *           current request
+	 * @return true whether is valid otherwise false
+	 */
+	protected boolean isPreviewDataModelValid(final HttpServletRequest request)
+	{
+		return cmsPageContextService.getCmsPageRequestContextData(request).getPreviewData() != null;
+	}
+
 	protected String getNameOfComponentExtension(final AbstractCMSComponentModel component)
 	{
-		return typeService.getComposedTypeForCode(component.getItemtype()).getExtensionName();
+		return extensionsByItemType.computeIfAbsent(component.getItemtype(),
+				itemType -> StringUtils.defaultString(typeService.getComposedTypeForCode(itemType).getExtensionName()));
 	}
 
 	protected void addCmsComponentActions(final Set<String> actonJsFiles, final List<AbstractCMSComponentModel> cmsComponents,
@@ -202,13 +242,12 @@ public class CmsPageBeforeViewHandler implements BeforeViewHandler
 			return "";
 		}
 
-		final String regEx = "[^a-zA-Z0-9-]";
 		final StringBuilder cssClasses = new StringBuilder();
-		cssClasses.append(CSS_CODE_PREFIX).append(page.getUid().replaceAll(regEx, "-"));
+		cssClasses.append(CSS_CODE_PREFIX).append(toCssClass(page.getUid()));
 		cssClasses.append(' ');
-		cssClasses.append(CSS_TYPE_PREFIX).append(page.getItemtype().replaceAll(regEx, "-"));
+		cssClasses.append(CSS_TYPE_PREFIX).append(toCssClass(page.getItemtype()));
 		cssClasses.append(' ');
-		cssClasses.append(CSS_TEMPLATE_PREFIX).append(getViewForPage(page).replaceAll(regEx, "-"));
+		cssClasses.append(CSS_TEMPLATE_PREFIX).append(toCssClass(getViewForPage(page)));
 		cssClasses.append(' ');
 
 		if (ContentPageModel.class.equals(page.getClass()))
@@ -216,13 +255,18 @@ public class CmsPageBeforeViewHandler implements BeforeViewHandler
 			final ContentPageModel contentPage = (ContentPageModel) page;
 			if (contentPage.getLabel() != null)
 			{
-				cssClasses.append(CSS_LABEL_PREFIX).append(contentPage.getLabel().replaceAll(regEx, "-"));
+				cssClasses.append(CSS_LABEL_PREFIX).append(toCssClass(contentPage.getLabel()));
 			}
 		}
 
 		return cssClasses.toString();
 	}
 
+	protected String toCssClass(final String value)
+	{
+		return CSS_INVALID_CHARACTERS.matcher(value).replaceAll("-");
+	}
+
 	/**
 	 * Retrieves a preview ticket, if available and retrieves the preview page from the {@link PreviewData}
 	 *
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.storefront.interceptors.beforeview;
+
+import java.util.Collections;
+import java.util.Set;
+
+
+/**
+ * The values {@link CmsPageBeforeViewHandler} derives from the CMS content of a page: the CSS classes of the page body
+ * and the script files of the actions of its components.
+ */
+public class CmsPageManifest
+{
+	private final String cssClasses;
+	private final Set<String> actionJsFiles;
+
+	public CmsPageManifest(final String cssClasses, final Set<String> actionJsFiles)
+	{
+		this.cssClasses = cssClasses;
+		this.actionJsFiles = Collections.unmodifiableSet(actionJsFiles);
+	}
+
+	public String getCssClasses()
+	{
+		return cssClasses;
+	}
+
+	public Set<String> getActionJsFiles()
+	{
+		return actionJsFiles;
+	}
+}
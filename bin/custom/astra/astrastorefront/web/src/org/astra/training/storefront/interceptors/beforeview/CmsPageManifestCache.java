@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.storefront.interceptors.beforeview;
+
+import de.hybris.platform.cms2.model.pages.AbstractPageModel;
+import de.hybris.platform.core.PK;
+import org.astra.training.core.cms.CmsContentGenerationService;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Required;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+
+/**
+ * Cache of {@link CmsPageManifest}s per page. A page item belongs to exactly one catalog version, so its PK stands for
+ * the page in that catalog version. Entries are keyed by the generation of the CMS content as well and are not used
+ * any more once CMS content is saved or synchronized on any cluster node; they expire after a while in case a change
+ * event is lost.
+ */
+public class CmsPageManifestCache implements InitializingBean
+{
+	private CmsContentGenerationService cmsContentGenerationService;
+	private long maximumSize = 1000;
+	private long timeToLiveSeconds = 300;
+
+	private Cache<Key, CmsPageManifest> manifests;
+
+	@Override
+	public void afterPropertiesSet()
+	{
+		manifests = CacheBuilder.newBuilder().maximumSize(getMaximumSize())
+				.expireAfterWrite(getTimeToLiveSeconds(), TimeUnit.SECONDS).build();
+	}
+
+	/**
+	 * Returns the manifest of the page, built by the loader if there is none for the current CMS content.
+	 *
+	 * @param page
+	 * 		the page
+	 * @param loader
+	 * 		builds the manifest of the page
+	 * @return the manifest
+	 */
+	public CmsPageManifest get(final AbstractPageModel page, final Function<AbstractPageModel, CmsPageManifest> loader)
+	{
+		if (page.getPk() == null)
+		{
+			return loader.apply(page);
+		}
+
+		// read the generation before building, so that changes made meanwhile lead to a new build on the next request
+		final Key key = new Key(page.getPk(), getCmsContentGenerationService().getGeneration());
+		final CmsPageManifest cached = manifests.getIfPresent(key);
+		if (cached != null)
+		{
+			return cached;
+		}
+		final CmsPageManifest manifest = loader.apply(page);
+		manifests.put(key, manifest);
+		return manifest;
+	}
+
+	public void clear()
+	{
+		manifests.invalidateAll();
+	}
+
+	protected CmsContentGenerationService getCmsContentGenerationService()
+	{
+		return cmsContentGenerationService;
+	}
+
+	@Required
+	public void setCmsContentGenerationService(final CmsContentGenerationService cmsContentGenerationService)
+	{
+		this.cmsContentGenerationService = cmsContentGenerationService;
+	}
+
+	protected long getMaximumSize()
+	{
+		return maximumSize;
+	}
+
+	public void setMaximumSize(final long maximumSize)
+	{
+		this.maximumSize = maximumSize;
+	}
+
+	protected long getTimeToLiveSeconds()
+	{
+		return timeToLiveSeconds;
+	}
+
+	public void setTimeToLiveSeconds(final long timeToLiveSeconds)
+	{
+		this.timeToLiveSeconds = timeToLiveSeconds;
+	}
+
+	protected static class Key
+	{
+		private final PK page;
+		private final long generation;
+
+		protected Key(final PK page, final long generation)
+		{
+			this.page = page;
+			this.generation = generation;
+		}
+
+		@Override
+		public boolean equals(final Object other)
+		{
+			if (this == other)
+			{
+				return true;
+			}
+			if (!(other instanceof Key))
+			{
+				return false;
+			}
+			final Key key = (Key) other;
+			return generation == key.generation && page.equals(key.page);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(page, Long.valueOf(generation));
+		}
+	}
+}
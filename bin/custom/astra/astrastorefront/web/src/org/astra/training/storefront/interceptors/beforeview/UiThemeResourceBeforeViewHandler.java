@@ -12,6 +12,7 @@ import de.hybris.platform.cms2.servicelayer.services.CMSSiteService;
 import de.hybris.platform.commerceservices.enums.UiExperienceLevel;
 import de.hybris.platform.commerceservices.i18n.CommerceCommonI18NService;
 import de.hybris.platform.core.model.c2l.LanguageModel;
+import org.astra.training.storefront.filters.StaticResourceFilter;
 import org.astra.training.storefront.util.UiThemeUtils;
 
 import javax.annotation.Resource;
@@ -62,8 +63,9 @@ public class UiThemeResourceBeforeViewHandler implements BeforeViewHandler
 
 		final String contextPath = uiThemeUtils.getContextPathFromRequest(request);
 
-		final String siteRootUrl = contextPath + "/_ui/" + uiExperienceCodeLower;
-		final String sharedResourcePath = contextPath + "/_ui/" + SHARED;
+		final String resourceRootUrl = contextPath + "/_ui/" + getFingerprintPath(request);
+		final String siteRootUrl = resourceRootUrl + uiExperienceCodeLower;
+		final String sharedResourcePath = resourceRootUrl + SHARED;
 		final String siteResourcePath = siteRootUrl + "/site-" + siteName;
 		final String themeResourcePath = siteRootUrl + "/theme-" + themeName;
 		final String commonResourcePath = siteRootUrl + "/" + COMMON;
@@ -102,4 +104,17 @@ public class UiThemeResourceBeforeViewHandler implements BeforeViewHandler
 		modelAndView.addObject("addOnThemeCssPaths", uiThemeUtils.getAddOnThemeCSSPaths(request));
 		modelAndView.addObject("addOnJavaScriptPaths", uiThemeUtils.getAddOnJSPaths(request));
 	}
+
+	/**
+	 * Returns the path segment with the fingerprint of the static resources, so the resources get new urls whenever
+	 * their content changes and can be cached for good. The add-on resource paths come from the properties and stay
+	 * without fingerprint.
+	 *
+	 * @return the fingerprint followed by a slash, or an empty string if the resources are served without fingerprint
+	 */
+	protected String getFingerprintPath(final HttpServletRequest request)
+	{
+		final Object fingerprint = request.getServletContext().getAttribute(StaticResourceFilter.FINGERPRINT_ATTRIBUTE);
+		return fingerprint == null ? "" : fingerprint + "/";
+	}
 }
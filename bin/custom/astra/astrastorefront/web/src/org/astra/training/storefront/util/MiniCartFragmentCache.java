@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.storefront.util;
+
+import de.hybris.platform.acceleratorservices.uiexperience.UiExperienceService;
+import de.hybris.platform.commercefacades.order.CartFacade;
+import de.hybris.platform.commercefacades.order.data.CartData;
+import de.hybris.platform.core.Registry;
+import de.hybris.platform.core.model.order.AbstractOrderEntryModel;
+import de.hybris.platform.core.model.order.CartModel;
+import de.hybris.platform.order.CartService;
+import de.hybris.platform.servicelayer.i18n.CommonI18NService;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.export.naming.SelfNaming;
+
+
+/**
+ * Keeps the mini cart data and the rendered mini cart fragments of a session in the session. They are kept for one
+ * version of the session cart, made up of its PK, its modification time and a hash of its totals and entries, the
+ * session currency and language and the UI experience. The hash tells apart modifications saved within the resolution
+ * of the modification time. A session without cart gets the empty mini cart, without a cart being created for it.
+ */
+@ManagedResource(description = "Mini cart fragments kept per session cart version")
+public class MiniCartFragmentCache implements SelfNaming
+{
+	protected static final String SESSION_ATTRIBUTE = MiniCartFragmentCache.class.getName() + ".entry";
+	private static final String VERSION_ATTRIBUTE = MiniCartFragmentCache.class.getName() + ".version";
+	private static final String NO_CART = "none";
+	private static final char VERSION_SEPARATOR = '|';
+	private static final int MAX_FRAGMENTS = 16;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder cartConversions = new LongAdder();
+	private final LongAdder renderNanos = new LongAdder();
+
+	private CartFacade cartFacade;
+	private CartService cartService;
+	private CommonI18NService commonI18NService;
+	private UiExperienceService uiExperienceService;
+
+	/**
+	 * @param request
+	 *           the current request
+	 * @return the mini cart data of the current cart version
+	 */
+	public CartData getMiniCart(final HttpServletRequest request)
+	{
+		final CachedMiniCart entry = getEntry(request);
+		if (entry.getMiniCart() == null)
+		{
+			// without a session cart both facade methods return a new empty cart data
+			entry.setMiniCart(getCartFacade().getMiniCart());
+			cartConversions.increment();
+		}
+		return entry.getMiniCart();
+	}
+
+	/**
+	 * @param request
+	 *           the current request
+	 * @return the cart data with entries of the current cart version, the empty mini cart if the session has no cart
+	 */
+	public CartData getSessionCart(final HttpServletRequest request)
+	{
+		final CachedMiniCart entry = getEntry(request);
+		if (entry.getVersion().startsWith(NO_CART + VERSION_SEPARATOR))
+		{
+			return getMiniCart(request);
+		}
+		if (entry.getSessionCart() == null)
+		{
+			entry.setSessionCart(getCartFacade().getSessionCart());
+			cartConversions.increment();
+		}
+		return entry.getSessionCart();
+	}
+
+	/**
+	 * @param request
+	 *           the current request
+	 * @param name
+	 *           the name of the fragment, including everything its markup depends on besides the cart
+	 * @param renderer
+	 *           renders the fragment if it was not rendered for the current cart version yet
+	 * @return the markup of the fragment
+	 */
+	public String getFragment(final HttpServletRequest request, final String name, final Callable<String> renderer)
+			throws Exception
+	{
+		final CachedMiniCart entry = getEntry(request);
+		final String cached = entry.getFragments().get(name);
+		if (cached != null)
+		{
+			hits.increment();
+			return cached;
+		}
+
+		misses.increment();
+		final long start = System.nanoTime();
+		final String fragment = renderer.call();
+		renderNanos.add(System.nanoTime() - start);
+		if (fragment != null && entry.getFragments().size() < MAX_FRAGMENTS)
+		{
+			entry.getFragments().put(name, fragment);
+		}
+		return fragment;
+	}
+
+	protected CachedMiniCart getEntry(final HttpServletRequest request)
+	{
+		final String version = getVersion(request);
+		final Object cached = request.getSession().getAttribute(SESSION_ATTRIBUTE);
+		if (cached instanceof CachedMiniCart && version.equals(((CachedMiniCart) cached).getVersion()))
+		{
+			return (CachedMiniCart) cached;
+		}
+		final CachedMiniCart entry = new CachedMiniCart(version);
+		request.getSession().setAttribute(SESSION_ATTRIBUTE, entry);
+		return entry;
+	}
+
+	/**
+	 * @return the version of the current request, computed once per request
+	 */
+	protected String getVersion(final HttpServletRequest request)
+	{
+		String version = (String) request.getAttribute(VERSION_ATTRIBUTE);
+		if (version == null)
+		{
+			version = getCartVersion() + VERSION_SEPARATOR + getCommonI18NService().getCurrentCurrency().getIsocode()
+					+ VERSION_SEPARATOR + getCommonI18NService().getCurrentLanguage().getIsocode() + VERSION_SEPARATOR
+					+ getUiExperienceService().getUiExperienceLevel();
+			request.setAttribute(VERSION_ATTRIBUTE, version);
+		}
+		return version;
+	}
+
+	protected String getCartVersion()
+	{
+		if (!getCartFacade().hasSessionCart())
+		{
+			return NO_CART;
+		}
+		final CartModel cart = getCartService().getSessionCart();
+		return cart.getPk() + ":" + (cart.getModifiedtime() == null ? 0L : cart.getModifiedtime().getTime()) + ":"
+				+ Integer.toHexString(getContentHash(cart));
+	}
+
+	/**
+	 * @return a hash of everything the mini cart fragments show of the cart: its totals and the quantity and total of
+	 *         every entry
+	 */
+	protected int getContentHash(final CartModel cart)
+	{
+		int hash = Objects.hash(cart.getTotalPrice(), cart.getSubtotal(), cart.getDeliveryCost(), cart.getTotalDiscounts(),
+				cart.getCurrency() == null ? null : cart.getCurrency().getIsocode());
+		if (cart.getEntries() != null)
+		{
+			hash = 31 * hash + cart.getEntries().size();
+			for (final AbstractOrderEntryModel entry : cart.getEntries())
+			{
+				hash = 31 * hash + Objects.hash(entry.getPk(), entry.getQuantity(), entry.getTotalPrice());
+			}
+		}
+		return hash;
+	}
+
+	@ManagedAttribute(description = "Number of fragments served from the session")
+	public long getHitCount()
+	{
+		return hits.sum();
+	}
+
+	@ManagedAttribute(description = "Number of fragments rendered")
+	public long getMissCount()
+	{
+		return misses.sum();
+	}
+
+	@ManagedAttribute(description = "Number of carts converted to mini cart or cart data")
+	public long getCartConversionCount()
+	{
+		return cartConversions.sum();
+	}
+
+	@ManagedAttribute(description = "Average time in microseconds to build and render a fragment")
+	public double getAverageRenderMicros()
+	{
+		final long rendered = misses.sum();
+		return rendered == 0 ? 0d : renderNanos.sum() / 1000d / rendered;
+	}
+
+	protected CartFacade getCartFacade()
+	{
+		return cartFacade;
+	}
+
+	@Required
+	public void setCartFacade(final CartFacade cartFacade)
+	{
+		this.cartFacade = cartFacade;
+	}
+
+	protected CartService getCartService()
+	{
+		return cartService;
+	}
+
+	@Required
+	public void setCartService(final CartService cartService)
+	{
+		this.cartService = cartService;
+	}
+
+	protected CommonI18NService getCommonI18NService()
+	{
+		return commonI18NService;
+	}
+
+	@Required
+	public void setCommonI18NService(final CommonI18NService commonI18NService)
+	{
+		this.commonI18NService = commonI18NService;
+	}
+
+	protected UiExperienceService getUiExperienceService()
+	{
+		return uiExperienceService;
+	}
+
+	@Required
+	public void setUiExperienceService(final UiExperienceService uiExperienceService)
+	{
+		this.uiExperienceService = uiExperienceService;
+	}
+
+	@Override
+	public ObjectName getObjectName() throws MalformedObjectNameException
+	{
+		return new ObjectName("astrastorefront:type=MiniCartFragmentCache,tenant="
+				+ ObjectName.quote(Registry.getCurrentTenant().getTenantID()));
+	}
+
+	/**
+	 * The data and fragments of one cart version.
+	 */
+	protected static class CachedMiniCart implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final String version;
+		private final Map<String, String> fragments = new ConcurrentHashMap<>();
+		private CartData miniCart;
+		private CartData sessionCart;
+
+		protected CachedMiniCart(final String version)
+		{
+			this.version = version;
+		}
+
+		public String getVersion()
+		{
+			return version;
+		}
+
+		public Map<String, String> getFragments()
+		{
+			return fragments;
+		}
+
+		public CartData getMiniCart()
+		{
+			return miniCart;
+		}
+
+		public void setMiniCart(final CartData miniCart)
+		{
+			this.miniCart = miniCart;
+		}
+
+		public CartData getSessionCart()
+		{
+			return sessionCart;
+		}
+
+		public void setSessionCart(final CartData sessionCart)
+		{
+			this.sessionCart = sessionCart;
+		}
+	}
+}
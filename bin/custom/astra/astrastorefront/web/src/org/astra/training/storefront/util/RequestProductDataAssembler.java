@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.storefront.util;
+
+import de.hybris.platform.commercefacades.product.ProductOption;
+import de.hybris.platform.commercefacades.product.data.ProductData;
+import de.hybris.platform.converters.ConfigurablePopulator;
+import de.hybris.platform.core.Registry;
+import de.hybris.platform.core.model.product.ProductModel;
+import de.hybris.platform.product.ProductService;
+import de.hybris.platform.servicelayer.dto.converter.Converter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.export.naming.SelfNaming;
+
+
+/**
+ * Assembles the {@link ProductData} of a product once per request. The first consumer converts the product, every
+ * consumer after that gets the same {@link ProductData}, with the populators of the {@link ProductOption}s it asks for
+ * and no consumer asked for before run on it. The populator time is recorded per option and exposed over JMX.
+ */
+@ManagedResource(description = "Product data populator time per product option")
+public class RequestProductDataAssembler implements SelfNaming
+{
+	private static final String ASSEMBLIES_ATTRIBUTE = RequestProductDataAssembler.class.getName() + ".assemblies";
+
+	private final Map<ProductOption, LongAdder> populatorCalls = new EnumMap<>(ProductOption.class);
+	private final Map<ProductOption, LongAdder> populatorNanos = new EnumMap<>(ProductOption.class);
+	private final LongAdder conversions = new LongAdder();
+	private final LongAdder reusedOptions = new LongAdder();
+
+	private ProductService productService;
+	private Converter<ProductModel, ProductData> productConverter;
+	private ConfigurablePopulator<ProductModel, ProductData, ProductOption> productConfiguredPopulator;
+
+	public RequestProductDataAssembler()
+	{
+		for (final ProductOption option : ProductOption.values())
+		{
+			populatorCalls.put(option, new LongAdder());
+			populatorNanos.put(option, new LongAdder());
+		}
+	}
+
+	/**
+	 * @param request
+	 * 		the current request
+	 * @param productCode
+	 * 		the code of the product
+	 * @return the product, loaded once per request
+	 */
+	public ProductModel getProductModel(final HttpServletRequest request, final String productCode)
+	{
+		return getAssembly(request, productCode).getProductModel();
+	}
+
+	/**
+	 * @param request
+	 * 		the current request
+	 * @param productCode
+	 * 		the code of the product
+	 * @param options
+	 * 		the options the caller needs, may be null
+	 * @return the product data of the request, populated for the given options and all options requested before
+	 */
+	public ProductData getProductData(final HttpServletRequest request, final String productCode,
+			final Collection<ProductOption> options)
+	{
+		final ProductAssembly assembly = getAssembly(request, productCode);
+		if (assembly.getProductData() == null)
+		{
+			assembly.setProductData(getProductConverter().convert(assembly.getProductModel()));
+			conversions.increment();
+		}
+		if (options != null)
+		{
+			for (final ProductOption option : options)
+			{
+				if (assembly.getPopulatedOptions().contains(option))
+				{
+					reusedOptions.increment();
+				}
+				else
+				{
+					populate(assembly, option);
+					assembly.getPopulatedOptions().add(option);
+				}
+			}
+		}
+		return assembly.getProductData();
+	}
+
+	protected void populate(final ProductAssembly assembly, final ProductOption option)
+	{
+		final long start = System.nanoTime();
+		getProductConfiguredPopulator().populate(assembly.getProductModel(), assembly.getProductData(),
+				EnumSet.of(option));
+		populatorNanos.get(option).add(System.nanoTime() - start);
+		populatorCalls.get(option).increment();
+	}
+
+	protected ProductAssembly getAssembly(final HttpServletRequest request, final String productCode)
+	{
+		Map<String, ProductAssembly> assemblies = (Map<String, ProductAssembly>) request.getAttribute(ASSEMBLIES_ATTRIBUTE);
+		if (assemblies == null)
+		{
+			assemblies = new HashMap<>();
+			request.setAttribute(ASSEMBLIES_ATTRIBUTE, assemblies);
+		}
+		ProductAssembly assembly = assemblies.get(productCode);
+		if (assembly == null)
+		{
+			assembly = new ProductAssembly(getProductService().getProductForCode(productCode));
+			assemblies.put(productCode, assembly);
+		}
+		return assembly;
+	}
+
+	@ManagedAttribute(description = "Number of products converted")
+	public long getConversionCount()
+	{
+		return conversions.sum();
+	}
+
+	@ManagedAttribute(description = "Number of options asked for again within a request, whose populators did not run again")
+	public long getReusedOptionCount()
+	{
+		return reusedOptions.sum();
+	}
+
+	@ManagedAttribute(description = "Populator calls and average time in microseconds per product option")
+	public String[] getPopulatorTimes()
+	{
+		final List<String> times = new ArrayList<>();
+		for (final ProductOption option : ProductOption.values())
+		{
+			final long calls = populatorCalls.get(option).sum();
+			if (calls > 0)
+			{
+				times.add(option + ": " + calls + " calls, " + populatorNanos.get(option).sum() / 1000d / calls
+						+ " us average");
+			}
+		}
+		return times.toArray(new String[times.size()]);
+	}
+
+	protected ProductService getProductService()
+	{
+		return productService;
+	}
+
+	@Required
+	public void setProductService(final ProductService productService)
+	{
+		this.productService = productService;
+	}
+
+	protected Converter<ProductModel, ProductData> getProductConverter()
+	{
+		return productConverter;
+	}
+
+	@Required
+	public void setProductConverter(final Converter<ProductModel, ProductData> productConverter)
+	{
+		this.productConverter = productConverter;
+	}
+
+	protected ConfigurablePopulator<ProductModel, ProductData, ProductOption> getProductConfiguredPopulator()
+	{
+		return productConfiguredPopulator;
+	}
+
+	@Required
+	public void setProductConfiguredPopulator(
+			final ConfigurablePopulator<ProductModel, ProductData, ProductOption> productConfiguredPopulator)
+	{
+		this.productConfiguredPopulator = productConfiguredPopulator;
+	}
+
+	@Override
+	public ObjectName getObjectName() throws MalformedObjectNameException
+	{
+		return new ObjectName("astrastorefront:type=ProductDataAssembler,tenant="
+				+ ObjectName.quote(Registry.getCurrentTenant().getTenantID()));
+	}
+
+	/**
+	 * The product and its data within one request.
+	 */
+	protected static class ProductAssembly
+	{
+		private final ProductModel productModel;
+		private final Set<ProductOption> populatedOptions = EnumSet.noneOf(ProductOption.class);
+		private ProductData productData;
+
+		protected ProductAssembly(final ProductModel productModel)
+		{
+			this.productModel = productModel;
+		}
+
+		public ProductModel getProductModel()
+		{
+			return productModel;
+		}
+
+		public ProductData getProductData()
+		{
+			return productData;
+		}
+
+		public void setProductData(final ProductData productData)
+		{
+			this.productData = productData;
+		}
+
+		public Set<ProductOption> getPopulatedOptions()
+		{
+			return populatedOptions;
+		}
+	}
+}
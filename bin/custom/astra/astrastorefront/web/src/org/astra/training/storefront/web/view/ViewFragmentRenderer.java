@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.storefront.web.view;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.web.servlet.View;
+import org.springframework.web.servlet.ViewResolver;
+import org.springframework.web.servlet.support.RequestContextUtils;
+
+
+/**
+ * Renders a view into a string instead of the response, so the markup of a fragment can be kept and written again for
+ * later requests. The view is included, so it cannot change the status or the headers of the response.
+ */
+public class ViewFragmentRenderer
+{
+	private ViewResolver viewResolver;
+
+	/**
+	 * @param viewName
+	 *           the view to render
+	 * @param model
+	 *           the model of the view
+	 * @param request
+	 *           the current request
+	 * @param response
+	 *           the current response, which is not written to
+	 * @return the markup written by the view
+	 */
+	public String render(final String viewName, final Map<String, ?> model, final HttpServletRequest request,
+			final HttpServletResponse response) throws ServletException, IOException
+	{
+		final CapturingResponse capturingResponse = new CapturingResponse(response);
+		try
+		{
+			final View view = getViewResolver().resolveViewName(viewName, RequestContextUtils.getLocale(request));
+			if (view == null)
+			{
+				throw new ServletException("Could not resolve view " + viewName);
+			}
+			view.render(model, request, capturingResponse);
+		}
+		catch (final ServletException | IOException | RuntimeException e)
+		{
+			throw e;
+		}
+		catch (final Exception e)
+		{
+			throw new ServletException("Could not render view " + viewName, e);
+		}
+		return capturingResponse.getContent();
+	}
+
+	protected ViewResolver getViewResolver()
+	{
+		return viewResolver;
+	}
+
+	@Required
+	public void setViewResolver(final ViewResolver viewResolver)
+	{
+		this.viewResolver = viewResolver;
+	}
+
+	/**
+	 * Response that keeps what is written to it. It reports itself as committed, so views include their resources
+	 * instead of forwarding to them.
+	 */
+	protected static class CapturingResponse extends HttpServletResponseWrapper
+	{
+		private final StringWriter content = new StringWriter();
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private PrintWriter writer;
+		private ServletOutputStream outputStream;
+
+		public CapturingResponse(final HttpServletResponse response)
+		{
+			super(response);
+		}
+
+		@Override
+		public PrintWriter getWriter()
+		{
+			if (writer == null)
+			{
+				writer = new PrintWriter(content);
+			}
+			return writer;
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream()
+		{
+			if (outputStream == null)
+			{
+				outputStream = new ServletOutputStream()
+				{
+					@Override
+					public void write(final int b)
+					{
+						bytes.write(b);
+					}
+
+					@Override
+					public void write(final byte[] b, final int off, final int len)
+					{
+						bytes.write(b, off, len);
+					}
+
+					@Override
+					public boolean isReady()
+					{
+						return true;
+					}
+
+					@Override
+					public void setWriteListener(final WriteListener writeListener)
+					{
+						// written synchronously
+					}
+				};
+			}
+			return outputStream;
+		}
+
+		@Override
+		public boolean isCommitted()
+		{
+			return true;
+		}
+
+		@Override
+		public void flushBuffer()
+		{
+			// nothing is sent
+		}
+
+		@Override
+		public void resetBuffer()
+		{
+			content.getBuffer().setLength(0);
+			bytes.reset();
+		}
+
+		public String getContent() throws UnsupportedEncodingException
+		{
+			if (writer != null)
+			{
+				writer.flush();
+			}
+			final String encoding = getCharacterEncoding();
+			return content.toString() + bytes.toString(encoding == null ? "UTF-8" : encoding);
+		}
+	}
+}
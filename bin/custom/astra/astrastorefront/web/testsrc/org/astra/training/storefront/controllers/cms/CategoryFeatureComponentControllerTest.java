@@ -64,6 +64,8 @@ public class CategoryFeatureComponentControllerTest
 	private CategoryModel categoryModel;
 	@Mock
 	private CategoryData categoryData;
+	@Mock
+	private CmsComponentRenderCache cmsComponentRenderCache;
 
 	@Before
 	public void setUp()
@@ -73,6 +75,7 @@ public class CategoryFeatureComponentControllerTest
 		categoryFeatureComponentController = new CategoryFeatureComponentController();
 		categoryFeatureComponentController.setCmsComponentService(cmsComponentService);
 		ReflectionTestUtils.setField(categoryFeatureComponentController, "categoryUrlConverter", categoryUrlConverter);
+		ReflectionTestUtils.setField(categoryFeatureComponentController, "cmsComponentRenderCache", cmsComponentRenderCache);
 	}
 
 	@Test
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.storefront.controllers.cms;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.acceleratorservices.uiexperience.UiExperienceService;
+import de.hybris.platform.cms2.model.contents.components.AbstractCMSComponentModel;
+import de.hybris.platform.cms2.model.contents.components.CMSLinkComponentModel;
+import de.hybris.platform.cms2.model.restrictions.AbstractRestrictionModel;
+import de.hybris.platform.cms2.model.site.CMSSiteModel;
+import de.hybris.platform.cms2.servicelayer.services.CMSSiteService;
+import de.hybris.platform.commerceservices.enums.UiExperienceLevel;
+import de.hybris.platform.core.model.c2l.CurrencyModel;
+import de.hybris.platform.core.model.c2l.LanguageModel;
+import de.hybris.platform.core.model.user.UserGroupModel;
+import de.hybris.platform.core.model.user.UserModel;
+import de.hybris.platform.servicelayer.i18n.CommonI18NService;
+import de.hybris.platform.servicelayer.user.UserService;
+import org.astra.training.core.cms.CmsContentGenerationService;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.apache.log4j.Logger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+
+@UnitTest
+public class CmsComponentRenderCacheTest
+{
+	private static final Logger LOG = Logger.getLogger(CmsComponentRenderCacheTest.class);
+
+	private static final String TYPE_CODE = "ProductCarouselComponent";
+	private static final int REQUESTS = 20000;
+
+	@Mock
+	private CmsContentGenerationService cmsContentGenerationService;
+	@Mock
+	private CmsContentGenerationService catalogContentGenerationService;
+	@Mock
+	private CMSSiteService cmsSiteService;
+	@Mock
+	private CommonI18NService commonI18NService;
+	@Mock
+	private UiExperienceService uiExperienceService;
+	@Mock
+	private UserService userService;
+	@Mock
+	private AbstractCMSComponentModel component;
+	@Mock
+	private CMSSiteModel site;
+	@Mock
+	private LanguageModel language;
+	@Mock
+	private CurrencyModel currency;
+	@Mock
+	private UserModel user;
+	@Mock
+	private UserGroupModel customerGroup;
+
+	private final AtomicInteger renders = new AtomicInteger();
+	private CmsComponentRenderCache cache;
+
+	@Before
+	public void prepare()
+	{
+		MockitoAnnotations.initMocks(this);
+		BDDMockito.given(component.getUid()).willReturn("ElectronicsHomepageProductCarouselComponent");
+		BDDMockito.given(component.getItemtype()).willReturn(TYPE_CODE);
+		BDDMockito.given(cmsSiteService.getCurrentSite()).willReturn(site);
+		BDDMockito.given(site.getUid()).willReturn("electronics");
+		BDDMockito.given(commonI18NService.getCurrentLanguage()).willReturn(language);
+		BDDMockito.given(commonI18NService.getCurrentCurrency()).willReturn(currency);
+		BDDMockito.given(language.getIsocode()).willReturn("en");
+		BDDMockito.given(currency.getIsocode()).willReturn("USD");
+		BDDMockito.given(uiExperienceService.getUiExperienceLevel()).willReturn(UiExperienceLevel.DESKTOP);
+		BDDMockito.given(userService.getCurrentUser()).willReturn(user);
+		BDDMockito.given(customerGroup.getUid()).willReturn("customergroup");
+		BDDMockito.given(userService.getAllUserGroupsForUser(user)).willReturn(Collections.singleton(customerGroup));
+
+		cache = new CmsComponentRenderCache();
+		cache.setCmsContentGenerationService(cmsContentGenerationService);
+		cache.setCatalogContentGenerationService(catalogContentGenerationService);
+		cache.setCmsSiteService(cmsSiteService);
+		cache.setCommonI18NService(commonI18NService);
+		cache.setUiExperienceService(uiExperienceService);
+		cache.setUserService(userService);
+		cache.afterPropertiesSet();
+	}
+
+	@Test
+	public void shouldRenderOncePerKey() throws Exception
+	{
+		Assert.assertEquals("markup 1", render(null));
+		Assert.assertEquals("markup 1", render(null));
+		Assert.assertEquals("markup 2", render("electronics-cameras"));
+
+		Assert.assertEquals(2, renders.get());
+		Assert.assertEquals(2, cache.getSize());
+		Assert.assertEquals(1L, cache.getComponentStatistics(TYPE_CODE).getHits().sum());
+		Assert.assertEquals(2L, cache.getComponentStatistics(TYPE_CODE).getMisses().sum());
+		Assert.assertTrue(cache.getComponentStatistics()[0].startsWith(TYPE_CODE + ": 1 hits, 2 misses"));
+	}
+
+	@Test
+	public void shouldRenderAgainForOtherCurrencyAndUserGroups() throws Exception
+	{
+		render(null);
+
+		final CurrencyModel euro = Mockito.mock(CurrencyModel.class);
+		BDDMockito.given(euro.getIsocode()).willReturn("EUR");
+		BDDMockito.given(commonI18NService.getCurrentCurrency()).willReturn(euro);
+		render(null);
+
+		final UserGroupModel b2bGroup = Mockito.mock(UserGroupModel.class);
+		BDDMockito.given(b2bGroup.getUid()).willReturn("b2bcustomergroup");
+		BDDMockito.given(userService.getAllUserGroupsForUser(user)).willReturn(Collections.singleton(b2bGroup));
+		render(null);
+
+		Assert.assertEquals(3, renders.get());
+	}
+
+	@Test
+	public void shouldRenderAgainAfterContentChange() throws Exception
+	{
+		render(null);
+		BDDMockito.given(Long.valueOf(catalogContentGenerationService.getGeneration())).willReturn(Long.valueOf(1L));
+		render(null);
+		BDDMockito.given(Long.valueOf(cmsContentGenerationService.getGeneration())).willReturn(Long.valueOf(1L));
+		render(null);
+		render(null);
+
+		Assert.assertEquals(3, renders.get());
+	}
+
+	@Test
+	public void shouldTellRestrictedNestedComponentsOncePerContentGeneration()
+	{
+		final CMSLinkComponentModel link = Mockito.mock(CMSLinkComponentModel.class);
+		final AtomicInteger lookups = new AtomicInteger();
+
+		Assert.assertFalse(cache.isRestricted(component, () -> {
+			lookups.incrementAndGet();
+			return Collections.singletonList(link);
+		}));
+		Assert.assertFalse(cache.isRestricted(component, () -> {
+			lookups.incrementAndGet();
+			return Collections.singletonList(link);
+		}));
+		Assert.assertEquals(1, lookups.get());
+
+		BDDMockito.given(link.getRestrictions())
+				.willReturn(Collections.singletonList(Mockito.mock(AbstractRestrictionModel.class)));
+		BDDMockito.given(Long.valueOf(cmsContentGenerationService.getGeneration())).willReturn(Long.valueOf(1L));
+		Assert.assertTrue(cache.isRestricted(component, () -> Collections.singletonList(link)));
+	}
+
+	@Test
+	public void shouldTellRestrictedComponent()
+	{
+		BDDMockito.given(component.getRestrictions())
+				.willReturn(Collections.singletonList(Mockito.mock(AbstractRestrictionModel.class)));
+
+		Assert.assertTrue(cache.isRestricted(component, Collections::emptyList));
+	}
+
+	@Test
+	public void shouldReportRenderTimeSaved() throws Exception
+	{
+		final long uncachedStart = System.nanoTime();
+		for (int i = 0; i < REQUESTS; i++)
+		{
+			renderMarkup();
+		}
+		final long uncachedNanos = System.nanoTime() - uncachedStart;
+
+		final long cachedStart = System.nanoTime();
+		for (int i = 0; i < REQUESTS; i++)
+		{
+			cache.get(new MockHttpServletRequest(), component, null, this::renderMarkup);
+		}
+		final long cachedNanos = System.nanoTime() - cachedStart;
+
+		LOG.info("Component markup: " + uncachedNanos / REQUESTS + " ns per render, " + cachedNanos / REQUESTS
+				+ " ns per cached lookup including the key");
+		Assert.assertEquals(REQUESTS - 1, cache.getComponentStatistics(TYPE_CODE).getHits().sum());
+	}
+
+	protected String render(final String context) throws Exception
+	{
+		return cache.get(new MockHttpServletRequest(), component, context, () -> "markup " + renders.incrementAndGet());
+	}
+
+	protected String renderMarkup()
+	{
+		final StringBuilder markup = new StringBuilder();
+		for (int i = 0; i < 20; i++)
+		{
+			markup.append("<div class=\"carousel__item\"><a href=\"/p/").append(i).append("\">Product ").append(i)
+					.append("</a><div class=\"carousel__item--price\">$").append(i * 10).append(".00</div></div>");
+		}
+		return markup.toString();
+	}
+}
@@ -25,6 +25,7 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.ui.Model;
 
 
@@ -55,6 +56,8 @@ public class NavigationBarComponentControllerTest
 	private HttpServletRequest request;
 	@Mock
 	private HttpServletResponse response;
+	@Mock
+	private CmsComponentRenderCache cmsComponentRenderCache;
 
 	private final NavigationBarMenuLayout navigationBarMenuLayout = NavigationBarMenuLayout.LEFT_EDGE;
 
@@ -65,6 +68,7 @@ public class NavigationBarComponentControllerTest
 
 		navigationBarComponentController = new NavigationBarComponentController();
 		navigationBarComponentController.setCmsComponentService(cmsComponentService);
+		ReflectionTestUtils.setField(navigationBarComponentController, "cmsComponentRenderCache", cmsComponentRenderCache);
 	}
 
 	@Test
@@ -65,6 +65,8 @@ public class ProductFeatureComponentControllerTest
 	private ProductData productData;
 	@Mock
 	private ProductFacade productFacade;
+	@Mock
+	private CmsComponentRenderCache cmsComponentRenderCache;
 
 	@InjectMocks
 	private final ProductFeatureComponentController productFeatureComponentController = new ProductFeatureComponentController();
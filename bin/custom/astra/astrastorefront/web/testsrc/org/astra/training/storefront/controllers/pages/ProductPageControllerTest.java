@@ -29,6 +29,7 @@ import de.hybris.platform.core.Registry;
 import de.hybris.platform.product.ProductService;
 import de.hybris.platform.testframework.HybrisJUnit4ClassRunner;
 import de.hybris.platform.testframework.HybrisJUnit4Test;
+import org.astra.training.storefront.util.RequestProductDataAssembler;
 
 import java.io.UnsupportedEncodingException;
 
@@ -82,6 +83,9 @@ public class ProductPageControllerTest extends HybrisJUnit4Test
 	@Mock
 	private CMSPreviewService cmsPreviewService;
 
+	@Mock
+	private RequestProductDataAssembler requestProductDataAssembler;
+
 	@InjectMocks
 	private ProductPageController controller;
 
@@ -102,6 +106,7 @@ public class ProductPageControllerTest extends HybrisJUnit4Test
 		MockitoAnnotations.initMocks(this);
 		productData.setConfigurable(false);
 		when(productFacade.getProductForCodeAndOptions(anyString(), any())).thenReturn(productData);
+		when(requestProductDataAssembler.getProductData(any(), anyString(), any())).thenReturn(productData);
 
 		request.getSession().getServletContext().setAttribute(WebApplicationContext.ROOT_WEB_APPLICATION_CONTEXT_ATTRIBUTE, webApplicationContext);
 		when(webApplicationContext.getBean(any(), any(Class.class))).thenReturn(requestContextData);
@@ -112,7 +117,7 @@ public class ProductPageControllerTest extends HybrisJUnit4Test
 	{
 		controller.productDetail(PRODUCT_CODE, model, request, response);
 
-		verify(productFacade).getProductForCodeAndOptions(eq(PRODUCT_CODE), any());
+		verify(requestProductDataAssembler).getProductData(eq(request), eq(PRODUCT_CODE), any());
 	}
 
 	@Test
@@ -120,7 +125,7 @@ public class ProductPageControllerTest extends HybrisJUnit4Test
 	{
 		controller.productOrderForm(PRODUCT_CODE, model, request, response);
 
-		verify(productFacade, times(2)).getProductForCodeAndOptions(eq(PRODUCT_CODE), any());
+		verify(requestProductDataAssembler, times(2)).getProductData(eq(request), eq(PRODUCT_CODE), any());
 		verify(pageTitleResolver).resolveProductPageTitle(PRODUCT_CODE);
 	}
 
@@ -149,7 +154,7 @@ public class ProductPageControllerTest extends HybrisJUnit4Test
 		final RedirectAttributes redirectAttributes = mock(RedirectAttributes.class);
 		controller.postReview(PRODUCT_CODE, reviewForm, bindingResult, model, request, redirectAttributes);
 
-		verify(productFacade).getProductForCodeAndOptions(PRODUCT_CODE, null);
+		verify(requestProductDataAssembler).getProductData(request, PRODUCT_CODE, null);
 	}
 
 	@Test
@@ -163,9 +168,9 @@ public class ProductPageControllerTest extends HybrisJUnit4Test
 	@Test
 	public void testProductCodeIsCorrectlyDecodedAndUsed_writeReview() throws CMSItemNotFoundException
 	{
-		controller.writeReview(PRODUCT_CODE, model);
+		controller.writeReview(PRODUCT_CODE, model, request);
 
-		verify(productFacade, times(2)).getProductForCodeAndOptions(eq(PRODUCT_CODE), any());
+		verify(requestProductDataAssembler).getProductData(eq(request), eq(PRODUCT_CODE), any());
 	}
 
 	@Test
@@ -176,7 +181,7 @@ public class ProductPageControllerTest extends HybrisJUnit4Test
 		final RedirectAttributes redirectAttributes = mock(RedirectAttributes.class);
 		controller.writeReview(PRODUCT_CODE, reviewForm, bindingResult, model, request, redirectAttributes);
 
-		verify(productFacade).getProductForCodeAndOptions(eq(PRODUCT_CODE), any());
+		verify(requestProductDataAssembler).getProductData(request, PRODUCT_CODE, null);
 	}
 
 	@Test
@@ -185,6 +190,6 @@ public class ProductPageControllerTest extends HybrisJUnit4Test
 		Registry.getCurrentTenant().getConfig().setParameter("storefront.products.futurestock.enabled", "true");
 		controller.productFutureStock(PRODUCT_CODE, model, request, response);
 
-		verify(productFacade).getProductForCodeAndOptions(eq(PRODUCT_CODE), any());
+		verify(requestProductDataAssembler).getProductData(eq(request), eq(PRODUCT_CODE), any());
 	}
 }
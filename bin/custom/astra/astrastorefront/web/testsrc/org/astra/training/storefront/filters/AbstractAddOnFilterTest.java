@@ -3,15 +3,13 @@
  */
 package org.astra.training.storefront.filters;
 
+import de.hybris.platform.acceleratorservices.addonsupport.RequiredAddOnsNameProvider;
 import de.hybris.platform.servicelayer.config.ConfigurationService;
 import org.astra.training.storefront.filters.AcceleratorAddOnFilter.ExtensionAccessor;
 
 import java.io.File;
 import java.io.IOException;
-
-import javax.servlet.FilterChain;
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
+import java.util.Collections;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
@@ -40,16 +38,12 @@ public abstract class AbstractAddOnFilterTest
 	protected File addOnSourceResource;
 	protected File webExtensionPhysicalPath;
 
-	@Mock(answer = Answers.RETURNS_DEEP_STUBS)
-	protected HttpServletRequest request;
-	@Mock
-	protected HttpServletResponse response;
-	@Mock
-	protected FilterChain filterChain;
 	@Mock(answer = Answers.RETURNS_DEEP_STUBS)
 	protected ExtensionAccessor extensionAccessor;
 	@Mock(answer = Answers.RETURNS_DEEP_STUBS)
 	protected ConfigurationService configurationService;
+	@Mock
+	protected RequiredAddOnsNameProvider requiredAddOnsNameProvider;
 	@Spy
 	@InjectMocks
 	protected final AcceleratorAddOnFilter filter = new AcceleratorAddOnFilter();
@@ -75,7 +69,8 @@ public abstract class AbstractAddOnFilterTest
 
 		Mockito.doReturn(webExtensionPhysicalPath).when(extensionAccessor).getExtensionDir(STOREFRONT_NAME);
 		Mockito.doReturn(addOnExtensionPhysicalPath).when(extensionAccessor).getExtensionDir(ADDONTWO_NAME);
-		Mockito.doReturn("/addons/").when(request).getAttribute("javax.servlet.include.servlet_path");
+		Mockito.doReturn(Collections.singletonList(ADDONTWO_NAME)).when(filter).getAddOnNames();
+		Mockito.doReturn(new File(webExtensionPhysicalPath, "web/webroot").getPath()).when(filter).getAppContextFullPathName();
 	}
 
 	protected File createWebCtxPhysicalPath()
@@ -86,7 +81,7 @@ public abstract class AbstractAddOnFilterTest
 
 	protected File createWebTargetDir()
 	{
-		return new File(rootSandboxDir, STOREFRONT_NAME + "/web" + getFolder() + "/addons/" + ADDONTWO_NAME);
+		return new File(rootSandboxDir, STOREFRONT_NAME + getFolder() + "/addons/" + ADDONTWO_NAME);
 	}
 
 	protected abstract String getFolder();
@@ -165,12 +160,8 @@ public abstract class AbstractAddOnFilterTest
 						AcceleratorAddOnFilter.ADDON_FILTER_ACTIVE_PROPERTY, false))).willReturn(Boolean.valueOf(active));
 	}
 
-	protected abstract void prepareRequest(final String remotePath);
-
-
-	protected void prepareLocalContextPathRequest(final String remotePath)
+	protected void startFilter() throws Exception
 	{
-
-		Mockito.doReturn(remotePath).when(request).getRequestURI();
+		filter.afterPropertiesSet();
 	}
 }
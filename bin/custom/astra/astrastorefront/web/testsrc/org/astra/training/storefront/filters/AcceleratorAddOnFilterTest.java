@@ -3,104 +3,193 @@
  */
 package org.astra.training.storefront.filters;
 
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+
 import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.acceleratorservices.addonsupport.RequiredAddOnsNameProvider;
 import de.hybris.platform.servicelayer.config.ConfigurationService;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-
-import javax.servlet.FilterChain;
-import javax.servlet.ServletException;
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
-
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.Assert;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.log4j.Logger;
+import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
-import org.mockito.Answers;
-import org.mockito.BDDMockito;
-import org.mockito.InjectMocks;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mock;
-import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
-import org.mockito.Spy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+
 
 @UnitTest
 public class AcceleratorAddOnFilterTest
 {
-	private static final String ADDONTWO = "addontwo";
-	private static final String STOREFRONT_NAME = "astrastorefront";
+	private static final Logger LOG = Logger.getLogger(AcceleratorAddOnFilterTest.class);
+
+	private static final String ADDON = "customerticketingaddon";
+	private static final int THREADS = 8;
+	private static final int REQUESTS_PER_THREAD = 20000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File addOnDir;
+	private File webRoot;
+	private AcceleratorAddOnFilter filter;
 
-	@Mock(answer = Answers.RETURNS_DEEP_STUBS)
-	private HttpServletRequest request;
 	@Mock
-	private HttpServletResponse response;
+	private ConfigurationService configurationService;
+	@Mock
+	private Configuration configuration;
 	@Mock
-	private FilterChain filterChain;
+	private RequiredAddOnsNameProvider requiredAddOnsNameProvider;
 	@Mock
 	private AcceleratorAddOnFilter.ExtensionAccessor extensionAccessor;
-	@Mock(answer = Answers.RETURNS_DEEP_STUBS)
-	private ConfigurationService configurationService;
-	@Spy
-	@InjectMocks
-	private final AcceleratorAddOnFilter filter = new AcceleratorAddOnFilter();
 
 	@Before
-	public void prepare() throws FileNotFoundException
+	public void setUp() throws IOException
 	{
 		MockitoAnnotations.initMocks(this);
-		Mockito.doReturn("/addons/").when(request).getAttribute("javax.servlet.include.servlet_path");
+		addOnDir = folder.newFolder(ADDON);
+		webRoot = folder.newFolder("webroot");
+
+		given(configurationService.getConfiguration()).willReturn(configuration);
+		given(Boolean.valueOf(configuration.getBoolean(AcceleratorAddOnFilter.ADDON_FILTER_ACTIVE_PROPERTY, false)))
+				.willReturn(Boolean.TRUE);
+		given(requiredAddOnsNameProvider.getAddOns(any())).willReturn(Collections.singletonList(ADDON));
+		given(extensionAccessor.getExtensionDir(ADDON)).willReturn(addOnDir);
+
+		filter = new AcceleratorAddOnFilter()
+		{
+			@Override
+			protected String getAppContextFullPathName()
+			{
+				return webRoot.getAbsolutePath();
+			}
+		};
+		filter.setConfigurationService(configurationService);
+		filter.setRequiredAddOnsNameProvider(requiredAddOnsNameProvider);
+		filter.setExtensionAccessor(extensionAccessor);
+		filter.setServletContext(new MockServletContext());
 	}
 
-	private void setAddOnFilterActive(final boolean active)
+	@After
+	public void tearDown()
 	{
-		BDDMockito.given(
-				Boolean.valueOf(configurationService.getConfiguration().getBoolean(
-						AcceleratorAddOnFilter.ADDON_FILTER_ACTIVE_PROPERTY, false))).willReturn(Boolean.valueOf(active));
+		filter.destroy();
 	}
 
-
 	@Test
-	public void testPlainResource() throws ServletException, IOException
+	public void shouldCopyAddOnResourcesOnStartup() throws Exception
 	{
-		setAddOnFilterActive(true);
-
-		final File addOnRootDir = Mockito.mock(File.class);
-		BDDMockito.given(addOnRootDir.getAbsolutePath()).willReturn("/some/otherdir/" + ADDONTWO);
-
-		Mockito.doReturn(addOnRootDir).when(extensionAccessor).getExtensionDir(ADDONTWO);
-
-		final String remotePath = "/some/dir/" + STOREFRONT_NAME + "/web/webroot/_ui/addons/" + ADDONTWO
-				+ "/some/special/resource.txt";
-
-		Mockito.doReturn(remotePath).when(request).getRequestURI();
-		Mockito.doReturn(remotePath).when(filter).getFullPathNameFromRequest(request);
-
-		filter.doFilter(request, response, filterChain);
-		Mockito.verify(filter).copyFileInternalIfNeeded(
-				"/some/otherdir/" + ADDONTWO + "/acceleratoraddon/web/webroot/_ui/some/special/resource.txt", remotePath);
+		write(addOnDir, "acceleratoraddon/web/webroot/_ui/responsive/common/js/tickets.js", "tickets");
+		write(addOnDir, "acceleratoraddon/web/webroot/WEB-INF/views/responsive/pages/ticket.jsp", "ticket");
+		write(addOnDir, "acceleratoraddon/web/webroot/WEB-INF/tags/responsive/ticket.tag", "tag");
+		final File upToDate = write(webRoot, "_ui/addons/" + ADDON + "/responsive/common/css/tickets.css", "edited");
+		final File source = write(addOnDir, "acceleratoraddon/web/webroot/_ui/responsive/common/css/tickets.css", "source");
+		Assert.assertTrue(source.setLastModified(upToDate.lastModified() - TimeUnit.MINUTES.toMillis(1)));
+
+		filter.afterPropertiesSet();
+
+		Assert.assertEquals("tickets", read(webRoot, "_ui/addons/" + ADDON + "/responsive/common/js/tickets.js"));
+		Assert.assertEquals("ticket", read(webRoot, "WEB-INF/views/addons/" + ADDON + "/responsive/pages/ticket.jsp"));
+		Assert.assertEquals("tag", read(webRoot, "WEB-INF/tags/addons/" + ADDON + "/responsive/ticket.tag"));
+		Assert.assertEquals("edited", read(webRoot, "_ui/addons/" + ADDON + "/responsive/common/css/tickets.css"));
 	}
 
-
 	@Test
-	public void testTagResource() throws ServletException, IOException
+	public void shouldCopyChangedResourcesWhenWatching() throws Exception
 	{
-		setAddOnFilterActive(true);
-
-		final File addOnRootDir = Mockito.mock(File.class);
-		BDDMockito.given(addOnRootDir.getAbsolutePath()).willReturn("/some/otherdir/" + ADDONTWO);
-		Mockito.doReturn(addOnRootDir).when(extensionAccessor).getExtensionDir(ADDONTWO);
+		given(Boolean.valueOf(configuration.getBoolean(AcceleratorAddOnFilter.ADDON_FILTER_WATCH_PROPERTY, false)))
+				.willReturn(Boolean.TRUE);
+		write(addOnDir, "acceleratoraddon/web/webroot/_ui/responsive/common/js/tickets.js", "tickets");
+		filter.afterPropertiesSet();
+
+		write(addOnDir, "acceleratoraddon/web/webroot/_ui/responsive/common/js/attachments.js", "attachments");
+
+		final File copy = new File(webRoot, "_ui/addons/" + ADDON + "/responsive/common/js/attachments.js");
+		final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+		while (!copy.exists() && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(50);
+		}
+		Assert.assertTrue(copy.exists());
+	}
 
-		final String remotePath = "/some/dir/" + STOREFRONT_NAME + "/tags/addons/" + ADDONTWO + "/some/special/resource.tag";
-		Mockito.doReturn(remotePath).when(request).getRequestURI();
+	@Test
+	public void shouldPassRequestsWithoutFileAccess() throws Exception
+	{
+		write(addOnDir, "acceleratoraddon/web/webroot/_ui/responsive/common/js/tickets.js", "tickets");
+		filter.afterPropertiesSet();
+		// the extension folder is gone: a request touching the file system would fail now
+		given(extensionAccessor.getExtensionDir(ADDON)).willThrow(new IllegalStateException("no file access on requests"));
+
+		final AtomicLong passed = new AtomicLong();
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try
+		{
+			final List<Callable<Long>> workers = new ArrayList<>();
+			for (int i = 0; i < THREADS; i++)
+			{
+				workers.add(() -> {
+					final long start = System.nanoTime();
+					for (int request = 0; request < REQUESTS_PER_THREAD; request++)
+					{
+						final MockHttpServletRequest servletRequest = new MockHttpServletRequest("GET",
+								"/astrastorefront/_ui/addons/" + ADDON + "/responsive/common/js/tickets.js");
+						servletRequest.setContextPath("/astrastorefront");
+						filter.doFilter(servletRequest, new MockHttpServletResponse(), (req, res) -> passed.incrementAndGet());
+					}
+					return Long.valueOf(System.nanoTime() - start);
+				});
+			}
+			long nanos = 0;
+			for (final Future<Long> result : executor.invokeAll(workers))
+			{
+				nanos += result.get().longValue();
+			}
+			LOG.info("Add-on filter overhead with " + THREADS + " threads: " + nanos / (THREADS * REQUESTS_PER_THREAD)
+					+ " ns per request including request creation");
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+
+		Assert.assertEquals(THREADS * REQUESTS_PER_THREAD, passed.get());
+	}
 
-		Mockito.doReturn(remotePath).when(filter).getFullPathNameFromRequest(request);
-		Mockito.doReturn("/some/dir/" + STOREFRONT_NAME + "/web/webroot/").when(filter)
-				.getAppContextFullPathNameFromRequest(request);
+	protected static File write(final File root, final String path, final String content) throws IOException
+	{
+		final Path file = root.toPath().resolve(path);
+		Files.createDirectories(file.getParent());
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+		return file.toFile();
+	}
 
-		filter.doFilter(request, response, filterChain);
-		Mockito.verify(filter).copyFileInternalIfNeeded(
-				"/some/otherdir/" + ADDONTWO + "/acceleratoraddon/web/webroot/WEB-INF/tags/some/special/resource.tag", //
-				"/some/dir/" + STOREFRONT_NAME + "/web/webroot/WEB-INF/tags/addons/" + ADDONTWO + "/some/special/resource.tag");
+	protected static String read(final File root, final String path) throws IOException
+	{
+		return new String(Files.readAllBytes(root.toPath().resolve(path)), StandardCharsets.UTF_8);
 	}
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.storefront.filters;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+
+
+@UnitTest
+public class RequestPathPatternsTest
+{
+	private static final List<String> PATTERNS = Arrays.asList("/**/cart/export", "/my-account/**", "/login",
+			"/checkout/*/summary", "/**/p/{code}/zoomImages");
+	private static final List<String> PATHS = Arrays.asList("/cart/export", "/en/cart/export", "/cart/exported",
+			"/xcart/export", "/cart/export/", "/my-account", "/my-account/orders", "/my-accounts", "/login", "/login/",
+			"/checkout/multi/summary", "/checkout/summary", "/p/123/zoomImages", "/c/p/123/zoomImages", "", "/");
+
+	private final PathMatcher pathMatcher = new AntPathMatcher();
+
+	@Test
+	public void shouldMatchLikeAntPathMatcher()
+	{
+		final RequestPathPatterns patterns = new RequestPathPatterns(PATTERNS, pathMatcher);
+		for (final String path : PATHS)
+		{
+			Assert.assertEquals(path, PATTERNS.stream().anyMatch(pattern -> pathMatcher.match(pattern, path)),
+					patterns.matches(path));
+		}
+	}
+
+	@Test
+	public void shouldMatchEverythingForAnyPath()
+	{
+		final RequestPathPatterns patterns = new RequestPathPatterns(Collections.singleton("/**"), pathMatcher);
+		Assert.assertTrue(patterns.matches("/cart"));
+		Assert.assertTrue(patterns.matches(null));
+		Assert.assertFalse(new RequestPathPatterns(null, pathMatcher).matches("/cart"));
+	}
+}
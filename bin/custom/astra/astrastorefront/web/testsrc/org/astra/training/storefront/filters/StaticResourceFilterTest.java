@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.storefront.filters;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+
+import junit.framework.Assert;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockFilterConfig;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+
+
+@UnitTest
+public class StaticResourceFilterTest
+{
+	private static final Logger LOG = Logger.getLogger(StaticResourceFilterTest.class);
+
+	private static final String SCRIPT = "/responsive/common/js/acc.storefront.js";
+	private static final int REQUESTS = 20000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File resourceRoot;
+	private MockServletContext servletContext;
+	private StaticResourceFilter filter;
+	private String fingerprint;
+
+	@Before
+	public void setUp() throws IOException, ServletException
+	{
+		resourceRoot = folder.newFolder("_ui");
+		write(resourceRoot.toPath(), SCRIPT, StringUtils.repeat("ACC.storefront = { refresh: function() {} };\n", 500));
+		write(resourceRoot.toPath(), "/responsive/common/images/spinner.gif", "GIF89a");
+		startFilter(false);
+	}
+
+	protected void startFilter(final boolean revalidate) throws ServletException
+	{
+		servletContext = new MockServletContext();
+		filter = new StaticResourceFilter()
+		{
+			@Override
+			protected void initStaticResourceCache()
+			{
+				final StaticResourceCache cache = new StaticResourceCache(resourceRoot.toPath(),
+						name -> name.endsWith(".js") ? "application/javascript" : "image/gif", 1024L * 1024L, 1024L * 1024L);
+				cache.setRevalidate(revalidate);
+				loadStaticResourceCache(cache);
+			}
+
+			@Override
+			protected void readConfiguredHeaderParamsAndWriteToResponse(final HttpServletResponse httpResponse)
+			{
+				httpResponse.setHeader("Cache-Control", "no-cache,must-revalidate");
+			}
+		};
+		filter.init(new MockFilterConfig(servletContext));
+		fingerprint = (String) servletContext.getAttribute(StaticResourceFilter.FINGERPRINT_ATTRIBUTE);
+	}
+
+	@Test
+	public void shouldServeFingerprintedResourceAsImmutable() throws Exception
+	{
+		final MockHttpServletResponse response = get("/" + fingerprint + SCRIPT, null, null);
+
+		Assert.assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		Assert.assertEquals("public,max-age=31536000,immutable", response.getHeader("Cache-Control"));
+		Assert.assertEquals("application/javascript", response.getContentType());
+		Assert.assertTrue(response.getContentAsString().startsWith("ACC.storefront"));
+		Assert.assertNull(response.getForwardedUrl());
+	}
+
+	@Test
+	public void shouldServeGzipVariantAndNotModified() throws Exception
+	{
+		final MockHttpServletResponse gzip = get(SCRIPT, "gzip, deflate", null);
+		Assert.assertEquals("gzip", gzip.getHeader("Content-Encoding"));
+		Assert.assertEquals("no-cache,must-revalidate", gzip.getHeader("Cache-Control"));
+		Assert.assertTrue(gzip.getContentAsByteArray().length < get(SCRIPT, null, null).getContentAsByteArray().length);
+
+		final MockHttpServletResponse notModified = get(SCRIPT, "gzip", gzip.getHeader("ETag"));
+		Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, notModified.getStatus());
+		Assert.assertEquals(0, notModified.getContentAsByteArray().length);
+		// the identity variant has another entity tag
+		Assert.assertEquals(HttpServletResponse.SC_OK, get(SCRIPT, null, gzip.getHeader("ETag")).getStatus());
+	}
+
+	@Test
+	public void shouldForwardUnknownResourcesWithoutFingerprint() throws Exception
+	{
+		final MockHttpServletResponse response = get("/" + fingerprint + "/responsive/common/js/missing.js", null, null);
+
+		Assert.assertEquals("/_ui/responsive/common/js/missing.js", response.getForwardedUrl());
+	}
+
+	@Test
+	public void shouldRejectPathsLeavingResourceRoot() throws Exception
+	{
+		final String traversal = "/_ui/" + fingerprint + "/../WEB-INF/web.xml";
+		final String[][] requests = { { traversal, traversal },
+				{ "/_ui/" + fingerprint + "/%2e%2e/WEB-INF/web.xml", "/_ui/WEB-INF/web.xml" },
+				{ "/_ui/" + fingerprint + "/..%5cWEB-INF/web.xml", "/_ui/" + fingerprint + "/..\\WEB-INF/web.xml" },
+				{ "/_ui/../WEB-INF/web.xml", "/WEB-INF/web.xml" } };
+		for (final String[] request : requests)
+		{
+			final MockHttpServletResponse response = get(request[0], request[1], null, null);
+
+			Assert.assertEquals(request[0], HttpServletResponse.SC_NOT_FOUND, response.getStatus());
+			Assert.assertNull(request[0], response.getForwardedUrl());
+		}
+	}
+
+	@Test
+	public void shouldChangeFingerprintWithContent() throws Exception
+	{
+		final String previous = fingerprint;
+		write(resourceRoot.toPath(), SCRIPT, "ACC.storefront = {};");
+		startFilter(false);
+
+		Assert.assertFalse(previous.equals(fingerprint));
+	}
+
+	@Test
+	public void shouldServeChangedFileWhenRevalidating() throws Exception
+	{
+		startFilter(true);
+		final MockHttpServletResponse before = get("/" + fingerprint + SCRIPT, null, null);
+		Assert.assertEquals("no-cache,must-revalidate", before.getHeader("Cache-Control"));
+
+		final Path script = write(resourceRoot.toPath(), SCRIPT, "ACC.storefront = {};");
+		Files.setLastModifiedTime(script, FileTime.fromMillis(Files.getLastModifiedTime(script).toMillis() + 2000L));
+		final MockHttpServletResponse after = get("/" + fingerprint + SCRIPT, null, before.getHeader("ETag"));
+
+		Assert.assertEquals(HttpServletResponse.SC_OK, after.getStatus());
+		Assert.assertEquals("ACC.storefront = {};", after.getContentAsString());
+		Assert.assertFalse(before.getHeader("ETag").equals(after.getHeader("ETag")));
+	}
+
+	@Test
+	public void shouldKeepServingChangedFileFromCacheWithoutRevalidating() throws Exception
+	{
+		get(SCRIPT, null, null);
+		final Path script = write(resourceRoot.toPath(), SCRIPT, "ACC.storefront = {};");
+		Files.setLastModifiedTime(script, FileTime.fromMillis(Files.getLastModifiedTime(script).toMillis() + 2000L));
+
+		Assert.assertTrue(get(SCRIPT, null, null).getContentAsString().startsWith("ACC.storefront = { refresh"));
+	}
+
+	@Test
+	public void shouldReportOriginBytesAndCpuPerRequest() throws Exception
+	{
+		final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		for (final String[] variant : new String[][] { { "identity", null, null }, { "gzip", "gzip", null },
+				{ "not modified", "gzip", get(SCRIPT, "gzip", null).getHeader("ETag") } })
+		{
+			long bytes = 0;
+			final long cpuStart = threads.getCurrentThreadCpuTime();
+			for (int i = 0; i < REQUESTS; i++)
+			{
+				bytes += get("/" + fingerprint + SCRIPT, variant[1], variant[2]).getContentAsByteArray().length;
+			}
+			final long cpuNanos = threads.getCurrentThreadCpuTime() - cpuStart;
+			LOG.info("Static resource " + variant[0] + ": " + bytes / REQUESTS + " body bytes and " + cpuNanos / REQUESTS
+					+ " ns CPU per request including request creation");
+		}
+	}
+
+	protected MockHttpServletResponse get(final String path, final String acceptEncoding, final String ifNoneMatch)
+			throws IOException, ServletException
+	{
+		return get("/_ui" + path, "/_ui" + path, acceptEncoding, ifNoneMatch);
+	}
+
+	/**
+	 * Sends a request with the given raw URI and the servlet path the container decoded and normalized it to.
+	 */
+	protected MockHttpServletResponse get(final String uri, final String servletPath, final String acceptEncoding,
+			final String ifNoneMatch) throws IOException, ServletException
+	{
+		final MockHttpServletRequest request = new MockHttpServletRequest(servletContext, "GET", "/astrastorefront" + uri);
+		request.setContextPath("/astrastorefront");
+		request.setServletPath(servletPath);
+		if (acceptEncoding != null)
+		{
+			request.addHeader("Accept-Encoding", acceptEncoding);
+		}
+		if (ifNoneMatch != null)
+		{
+			request.addHeader("If-None-Match", ifNoneMatch);
+		}
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, new MockFilterChain());
+		return response;
+	}
+
+	protected static Path write(final Path root, final String path, final String content) throws IOException
+	{
+		final Path file = root.resolve(StringUtils.removeStart(path, "/"));
+		Files.createDirectories(file.getParent());
+		return Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -5,6 +5,7 @@ package org.astra.training.storefront.filters;
 
 import de.hybris.bootstrap.annotations.UnitTest;
 import de.hybris.platform.acceleratorstorefrontcommons.history.BrowseHistory;
+import de.hybris.platform.acceleratorstorefrontcommons.history.BrowseHistoryEntry;
 import de.hybris.platform.commercefacades.storesession.StoreSessionFacade;
 import de.hybris.platform.commerceservices.i18n.CommerceCommonI18NService;
 import de.hybris.platform.core.model.c2l.LanguageModel;
@@ -105,11 +106,22 @@ public class StorefrontFilterTest
 	{
 		Mockito.when(request.getMethod()).thenReturn(HttpMethod.GET.toString());
 		Mockito.when(request.getHeader(StorefrontFilter.AJAX_REQUEST_HEADER_NAME)).thenReturn(null);
-		Mockito.when(filter.isRequestPathExcluded(request)).thenReturn(false);
+		Mockito.when(request.getServletPath()).thenReturn("/cart");
 		filter.doFilterInternal(request, response, filterChain);
 		Mockito.verify(session).setAttribute(StorefrontFilter.ORIGINAL_REFERER, REQUESTEDURL);
 	}
 
+	@Test
+	public void shouldNotStoreUnchangedOriginalReferer() throws IOException, ServletException
+	{
+		Mockito.when(request.getMethod()).thenReturn(HttpMethod.GET.toString());
+		Mockito.when(request.getServletPath()).thenReturn("/cart");
+		Mockito.when(session.getAttribute(StorefrontFilter.ORIGINAL_REFERER)).thenReturn(REQUESTEDURL);
+		filter.doFilterInternal(request, response, filterChain);
+		Mockito.verify(session, Mockito.never()).setAttribute(StorefrontFilter.ORIGINAL_REFERER, REQUESTEDURL);
+		Mockito.verify(browseHistory).addBrowseHistoryEntry(Mockito.any(BrowseHistoryEntry.class));
+	}
+
 	@Test
 	public void shouldNotStoreOriginalRefererOnPOST() throws IOException, ServletException
 	{
@@ -125,6 +137,7 @@ public class StorefrontFilterTest
 		Mockito.when(request.getHeader(StorefrontFilter.AJAX_REQUEST_HEADER_NAME)).thenReturn("1");
 		filter.doFilterInternal(request, response, filterChain);
 		Mockito.verify(session, Mockito.never()).setAttribute(StorefrontFilter.ORIGINAL_REFERER, REQUESTEDURL);
+		Mockito.verify(browseHistory, Mockito.never()).addBrowseHistoryEntry(Mockito.any(BrowseHistoryEntry.class));
 	}
 
 
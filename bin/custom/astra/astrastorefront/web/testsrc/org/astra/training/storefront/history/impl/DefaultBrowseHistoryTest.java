@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.storefront.history.impl;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.acceleratorstorefrontcommons.history.BrowseHistoryEntry;
+import de.hybris.platform.cms2.model.site.CMSSiteModel;
+import de.hybris.platform.cms2.servicelayer.services.CMSSiteService;
+import de.hybris.platform.servicelayer.session.SessionService;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+
+@UnitTest
+public class DefaultBrowseHistoryTest
+{
+	private static final int CAPACITY = 3;
+
+	@Mock
+	private SessionService sessionService;
+	@Mock
+	private CMSSiteService cmsSiteService;
+	@Mock
+	private CMSSiteModel site;
+
+	private final DefaultBrowseHistory.EntryRing ring = new DefaultBrowseHistory.EntryRing(CAPACITY);
+	private DefaultBrowseHistory browseHistory;
+
+	@Before
+	public void prepare()
+	{
+		MockitoAnnotations.initMocks(this);
+		BDDMockito.given(site.getUid()).willReturn("electronics");
+		BDDMockito.given(cmsSiteService.getCurrentSite()).willReturn(site);
+		BDDMockito.given(sessionService.getOrLoadAttribute(Mockito.anyString(), Mockito.any())).willReturn(ring);
+
+		browseHistory = new DefaultBrowseHistory();
+		browseHistory.setSessionService(sessionService);
+		browseHistory.setCmsSiteService(cmsSiteService);
+		browseHistory.setCapacity(CAPACITY);
+	}
+
+	@Test
+	public void shouldSkipRepeatedUrl()
+	{
+		browseHistory.addBrowseHistoryEntry(new BrowseHistoryEntry("/c/cameras", null));
+		browseHistory.addBrowseHistoryEntry(new BrowseHistoryEntry("/c/cameras", null));
+
+		Assert.assertEquals(1, ring.size());
+		Assert.assertEquals(1, browseHistory.getEntriesAdded());
+		Assert.assertEquals(1, browseHistory.getEntriesSkipped());
+	}
+
+	@Test
+	public void shouldOverwriteOldestEntryWhenFull()
+	{
+		for (final String url : new String[] { "/c/cameras", "/c/lenses", "/c/tripods", "/c/flashes" })
+		{
+			browseHistory.addBrowseHistoryEntry(new BrowseHistoryEntry(url, null));
+		}
+
+		Assert.assertEquals(CAPACITY, ring.size());
+		Assert.assertEquals("/c/flashes", ring.get(0).getUrl());
+		Assert.assertEquals("/c/lenses", ring.get(CAPACITY - 1).getUrl());
+		Assert.assertNull(browseHistory.findEntryMatchUrlEndsWith("cameras"));
+		Assert.assertEquals("/c/tripods", browseHistory.findEntryMatchUrlEndsWith("tripods").getUrl());
+	}
+}
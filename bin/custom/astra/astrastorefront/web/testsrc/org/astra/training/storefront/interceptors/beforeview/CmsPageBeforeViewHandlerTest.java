@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.storefront.interceptors.beforeview;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.acceleratorcms.data.CmsPageRequestContextData;
+import de.hybris.platform.acceleratorcms.model.actions.AbstractCMSActionModel;
+import de.hybris.platform.acceleratorcms.services.CMSPageContextService;
+import de.hybris.platform.acceleratorservices.addonsupport.RequiredAddOnsNameProvider;
+import de.hybris.platform.cms2.model.contents.components.AbstractCMSComponentModel;
+import de.hybris.platform.cms2.model.contents.contentslot.ContentSlotModel;
+import de.hybris.platform.cms2.model.pages.ContentPageModel;
+import de.hybris.platform.cms2.model.pages.PageTemplateModel;
+import de.hybris.platform.cms2.model.preview.PreviewDataModel;
+import de.hybris.platform.cms2.servicelayer.data.ContentSlotData;
+import de.hybris.platform.cms2.servicelayer.services.CMSPageService;
+import de.hybris.platform.cms2.servicelayer.services.CMSPreviewService;
+import de.hybris.platform.core.PK;
+import de.hybris.platform.core.model.type.ComposedTypeModel;
+import de.hybris.platform.servicelayer.type.TypeService;
+import org.astra.training.core.cms.CmsContentGenerationService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.ModelAndView;
+
+
+@UnitTest
+public class CmsPageBeforeViewHandlerTest
+{
+	private static final int COMPONENTS = 60;
+	private static final String[] ACTION_TYPES = { "AddToCartAction", "PickUpInStoreAction", "ViewStoreAction" };
+
+	private CmsPageBeforeViewHandler handler;
+	private CmsPageManifestCache cmsPageManifestCache;
+	private CmsPageRequestContextData cmsPageRequestContextData;
+	private MockHttpServletRequest request;
+
+	@Mock
+	private CMSPageService cmsPageService;
+	@Mock
+	private CMSPreviewService cmsPreviewService;
+	@Mock
+	private CMSPageContextService cmsPageContextService;
+	@Mock
+	private TypeService typeService;
+	@Mock
+	private RequiredAddOnsNameProvider requiredAddOnsNameProvider;
+	@Mock
+	private CmsContentGenerationService cmsContentGenerationService;
+	@Mock
+	private ContentPageModel page;
+	@Mock
+	private PageTemplateModel template;
+	@Mock
+	private ContentSlotData contentSlotData;
+	@Mock
+	private ContentSlotModel contentSlot;
+	@Mock
+	private ComposedTypeModel composedType;
+
+	@Before
+	public void setUp()
+	{
+		MockitoAnnotations.initMocks(this);
+		request = new MockHttpServletRequest();
+		cmsPageRequestContextData = new CmsPageRequestContextData();
+
+		given(page.getPk()).willReturn(PK.fromLong(8796093088824L));
+		given(page.getUid()).willReturn("homepage");
+		given(page.getItemtype()).willReturn("ContentPage");
+		given(page.getMasterTemplate()).willReturn(template);
+		given(cmsPageService.getFrontendTemplateName(template)).willReturn("layout/landingLayout2Page");
+		given(cmsPageService.getContentSlotsForPage(any(), any())).willReturn(Collections.singletonList(contentSlotData));
+		given(cmsPageContextService.getCmsPageRequestContextData(request)).willReturn(cmsPageRequestContextData);
+		given(contentSlotData.getContentSlot()).willReturn(contentSlot);
+		given(requiredAddOnsNameProvider.getAddOns(any())).willReturn(Collections.singletonList("smarteditaddon"));
+		given(typeService.getComposedTypeForCode(anyString())).willReturn(composedType);
+		given(composedType.getExtensionName()).willReturn("acceleratorcms");
+
+		final List<AbstractCMSComponentModel> components = new ArrayList<>();
+		for (int i = 0; i < COMPONENTS; i++)
+		{
+			final AbstractCMSComponentModel component = mock(AbstractCMSComponentModel.class);
+			final List<AbstractCMSActionModel> actions = new ArrayList<>();
+			for (final String actionType : ACTION_TYPES)
+			{
+				final AbstractCMSActionModel action = mock(AbstractCMSActionModel.class);
+				given(action.getItemtype()).willReturn(actionType);
+				actions.add(action);
+			}
+			given(component.getActions()).willReturn(actions);
+			components.add(component);
+		}
+		given(contentSlot.getCmsComponents()).willReturn(components);
+
+		cmsPageManifestCache = new CmsPageManifestCache();
+		cmsPageManifestCache.setCmsContentGenerationService(cmsContentGenerationService);
+		cmsPageManifestCache.afterPropertiesSet();
+
+		handler = new CmsPageBeforeViewHandler();
+		ReflectionTestUtils.setField(handler, "cmsPageService", cmsPageService);
+		ReflectionTestUtils.setField(handler, "cmsPreviewService", cmsPreviewService);
+		ReflectionTestUtils.setField(handler, "cmsPageContextService", cmsPageContextService);
+		ReflectionTestUtils.setField(handler, "typeService", typeService);
+		ReflectionTestUtils.setField(handler, "requiredAddOnsNameProvider", requiredAddOnsNameProvider);
+		ReflectionTestUtils.setField(handler, "cmsPageManifestCache", cmsPageManifestCache);
+	}
+
+	@Test
+	public void shouldWalkPageOnlyOnceForSameContent()
+	{
+		// cold: every slot, component and action is visited and every action type looked up once
+		final ModelAndView first = view();
+		verify(cmsPageService).getContentSlotsForPage(any(), any());
+		verify(typeService, times(ACTION_TYPES.length)).getComposedTypeForCode(anyString());
+
+		// warm: neither the slots nor the type system are touched
+		final ModelAndView second = view();
+		verify(cmsPageService).getContentSlotsForPage(any(), any());
+		verify(cmsPageService).getFrontendTemplateName(template);
+		verify(typeService, times(ACTION_TYPES.length)).getComposedTypeForCode(anyString());
+
+		Assert.assertEquals("page-homepage pageType-ContentPage template-pages-layout-landingLayout2Page ",
+				first.getModel().get("pageBodyCssClasses"));
+		Assert.assertEquals(first.getModel().get("pageBodyCssClasses"), second.getModel().get("pageBodyCssClasses"));
+		final Set<String> actionJsFiles = (Set<String>) second.getModel().get("cmsActionsJsFiles");
+		Assert.assertEquals(ACTION_TYPES.length, actionJsFiles.size());
+		Assert.assertTrue(actionJsFiles.contains("addtocartaction.js"));
+	}
+
+	@Test
+	public void shouldRebuildManifestWhenContentChanges()
+	{
+		given(Long.valueOf(cmsContentGenerationService.getGeneration())).willReturn(Long.valueOf(1L), Long.valueOf(2L));
+
+		view();
+		view();
+
+		verify(cmsPageService, times(2)).getContentSlotsForPage(any(), any());
+		// the extensions of the action types are still known
+		verify(typeService, times(ACTION_TYPES.length)).getComposedTypeForCode(anyString());
+	}
+
+	@Test
+	public void shouldNotCachePreviewedPages()
+	{
+		cmsPageRequestContextData.setPreviewData(new PreviewDataModel());
+
+		view();
+		view();
+
+		verify(cmsPageService, times(2)).getContentSlotsForPage(any(), any());
+	}
+
+	@Test
+	public void shouldExcludeActionsOfAddOns()
+	{
+		given(composedType.getExtensionName()).willReturn("smarteditaddon");
+
+		final ModelAndView modelAndView = view();
+
+		Assert.assertTrue(((Set<String>) modelAndView.getModel().get("cmsActionsJsFiles")).isEmpty());
+	}
+
+	protected ModelAndView view()
+	{
+		final ModelAndView modelAndView = new ModelAndView();
+		handler.addCmsPageManifest(request, modelAndView, page);
+		return modelAndView;
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.storefront.util;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.acceleratorservices.uiexperience.UiExperienceService;
+import de.hybris.platform.commercefacades.order.CartFacade;
+import de.hybris.platform.commercefacades.order.data.CartData;
+import de.hybris.platform.commerceservices.enums.UiExperienceLevel;
+import de.hybris.platform.core.PK;
+import de.hybris.platform.core.model.c2l.CurrencyModel;
+import de.hybris.platform.core.model.c2l.LanguageModel;
+import de.hybris.platform.core.model.order.CartModel;
+import de.hybris.platform.order.CartService;
+import de.hybris.platform.servicelayer.i18n.CommonI18NService;
+
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.apache.log4j.Logger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+
+
+@UnitTest
+public class MiniCartFragmentCacheTest
+{
+	private static final Logger LOG = Logger.getLogger(MiniCartFragmentCacheTest.class);
+
+	private static final String FRAGMENT = "miniCart/TOTAL";
+	private static final int REQUESTS = 20000;
+
+	@Mock
+	private CartFacade cartFacade;
+	@Mock
+	private CartService cartService;
+	@Mock
+	private CommonI18NService commonI18NService;
+	@Mock
+	private UiExperienceService uiExperienceService;
+	@Mock
+	private CartModel cart;
+	@Mock
+	private CurrencyModel currency;
+	@Mock
+	private LanguageModel language;
+
+	private final AtomicInteger renders = new AtomicInteger();
+	private MiniCartFragmentCache cache;
+	private MockHttpSession session;
+
+	@Before
+	public void prepare()
+	{
+		MockitoAnnotations.initMocks(this);
+		BDDMockito.given(commonI18NService.getCurrentCurrency()).willReturn(currency);
+		BDDMockito.given(commonI18NService.getCurrentLanguage()).willReturn(language);
+		BDDMockito.given(currency.getIsocode()).willReturn("USD");
+		BDDMockito.given(language.getIsocode()).willReturn("en");
+		BDDMockito.given(uiExperienceService.getUiExperienceLevel()).willReturn(UiExperienceLevel.DESKTOP);
+		BDDMockito.given(cartService.getSessionCart()).willReturn(cart);
+		BDDMockito.given(cart.getPk()).willReturn(PK.fromLong(8796093055021L));
+		BDDMockito.given(cart.getModifiedtime()).willReturn(new Date(1000L));
+		BDDMockito.given(cartFacade.getMiniCart()).willAnswer(invocation -> new CartData());
+		BDDMockito.given(cartFacade.getSessionCart()).willAnswer(invocation -> new CartData());
+
+		cache = new MiniCartFragmentCache();
+		cache.setCartFacade(cartFacade);
+		cache.setCartService(cartService);
+		cache.setCommonI18NService(commonI18NService);
+		cache.setUiExperienceService(uiExperienceService);
+		session = new MockHttpSession();
+	}
+
+	@Test
+	public void shouldNotLoadCartWithoutSessionCart() throws Exception
+	{
+		BDDMockito.given(Boolean.valueOf(cartFacade.hasSessionCart())).willReturn(Boolean.FALSE);
+
+		final MockHttpServletRequest request = newRequest(session);
+		final CartData miniCart = cache.getMiniCart(request);
+
+		Assert.assertSame(miniCart, cache.getSessionCart(request));
+		Assert.assertSame(miniCart, cache.getMiniCart(newRequest(session)));
+		Mockito.verify(cartFacade).getMiniCart();
+		Mockito.verify(cartFacade, Mockito.never()).getSessionCart();
+		Mockito.verifyZeroInteractions(cartService);
+	}
+
+	@Test
+	public void shouldRenderOncePerCartVersion() throws Exception
+	{
+		BDDMockito.given(Boolean.valueOf(cartFacade.hasSessionCart())).willReturn(Boolean.TRUE);
+
+		Assert.assertEquals("1", render(newRequest(session)));
+		Assert.assertEquals("1", render(newRequest(session)));
+		BDDMockito.given(cart.getModifiedtime()).willReturn(new Date(2000L));
+		Assert.assertEquals("2", render(newRequest(session)));
+
+		Mockito.verify(cartFacade, Mockito.times(2)).getMiniCart();
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void shouldRenderAgainForModificationWithinTimestampResolution() throws Exception
+	{
+		BDDMockito.given(Boolean.valueOf(cartFacade.hasSessionCart())).willReturn(Boolean.TRUE);
+		BDDMockito.given(cart.getTotalPrice()).willReturn(Double.valueOf(10d));
+
+		Assert.assertEquals("1", render(newRequest(session)));
+		// saved again with the same modification time
+		BDDMockito.given(cart.getTotalPrice()).willReturn(Double.valueOf(20d));
+		Assert.assertEquals("2", render(newRequest(session)));
+	}
+
+	@Test
+	public void shouldRenderAgainForOtherCurrency() throws Exception
+	{
+		BDDMockito.given(Boolean.valueOf(cartFacade.hasSessionCart())).willReturn(Boolean.TRUE);
+
+		render(newRequest(session));
+		BDDMockito.given(currency.getIsocode()).willReturn("JPY");
+		render(newRequest(session));
+
+		Assert.assertEquals(2, renders.get());
+	}
+
+	@Test
+	public void shouldNotShareFragmentsBetweenSessions() throws Exception
+	{
+		BDDMockito.given(Boolean.valueOf(cartFacade.hasSessionCart())).willReturn(Boolean.TRUE);
+
+		Assert.assertEquals("1", render(newRequest(session)));
+		Assert.assertEquals("2", render(newRequest(new MockHttpSession())));
+	}
+
+	@Test
+	public void shouldReportTimePerRequest() throws Exception
+	{
+		BDDMockito.given(Boolean.valueOf(cartFacade.hasSessionCart())).willReturn(Boolean.TRUE);
+		final Callable<String> renderer = () -> {
+			// stands in for converting the cart and rendering the fragment JSP
+			final StringBuilder json = new StringBuilder();
+			for (int i = 0; i < 200; i++)
+			{
+				json.append("{\"miniCartCount\": ").append(i).append(", \"miniCartPrice\": \"$").append(i * 3).append("\"}");
+			}
+			return json.toString();
+		};
+
+		long start = System.nanoTime();
+		for (int i = 0; i < REQUESTS; i++)
+		{
+			cache.getFragment(newRequest(new MockHttpSession()), FRAGMENT, renderer);
+		}
+		final long missNanos = (System.nanoTime() - start) / REQUESTS;
+
+		start = System.nanoTime();
+		for (int i = 0; i < REQUESTS; i++)
+		{
+			cache.getFragment(newRequest(session), FRAGMENT, renderer);
+		}
+		final long hitNanos = (System.nanoTime() - start) / REQUESTS;
+
+		LOG.info("Mini cart fragment: " + missNanos + " ns per request rendered for a new session, " + hitNanos
+				+ " ns per request when served from the session, " + cache.getMissCount() + " renders for " + REQUESTS * 2
+				+ " requests");
+		Assert.assertEquals(REQUESTS, cache.getMissCount());
+	}
+
+	protected String render(final MockHttpServletRequest request) throws Exception
+	{
+		return cache.getFragment(request, FRAGMENT, () -> {
+			cache.getMiniCart(request);
+			return String.valueOf(renders.incrementAndGet());
+		});
+	}
+
+	protected MockHttpServletRequest newRequest(final MockHttpSession httpSession)
+	{
+		final MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setSession(httpSession);
+		return request;
+	}
+}
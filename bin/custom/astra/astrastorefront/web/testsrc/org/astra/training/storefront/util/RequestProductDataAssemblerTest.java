@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2019 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.storefront.util;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.commercefacades.product.ProductOption;
+import de.hybris.platform.commercefacades.product.data.ProductData;
+import de.hybris.platform.converters.ConfigurablePopulator;
+import de.hybris.platform.core.model.product.ProductModel;
+import de.hybris.platform.product.ProductService;
+import de.hybris.platform.servicelayer.dto.converter.Converter;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+
+@UnitTest
+public class RequestProductDataAssemblerTest
+{
+	private static final String PRODUCT_CODE = "1382080";
+
+	@Mock
+	private ProductService productService;
+	@Mock
+	private Converter<ProductModel, ProductData> productConverter;
+	@Mock
+	private ConfigurablePopulator<ProductModel, ProductData, ProductOption> productConfiguredPopulator;
+	@Mock
+	private ProductModel productModel;
+
+	private final ProductData productData = new ProductData();
+	private RequestProductDataAssembler assembler;
+
+	@Before
+	public void prepare()
+	{
+		MockitoAnnotations.initMocks(this);
+		BDDMockito.given(productService.getProductForCode(PRODUCT_CODE)).willReturn(productModel);
+		BDDMockito.given(productConverter.convert(productModel)).willReturn(productData);
+
+		assembler = new RequestProductDataAssembler();
+		assembler.setProductService(productService);
+		assembler.setProductConverter(productConverter);
+		assembler.setProductConfiguredPopulator(productConfiguredPopulator);
+	}
+
+	@Test
+	public void shouldPopulateEachOptionOncePerRequest()
+	{
+		final MockHttpServletRequest request = new MockHttpServletRequest();
+
+		assembler.getProductData(request, PRODUCT_CODE, Arrays.asList(ProductOption.BASIC, ProductOption.VARIANT_MATRIX_BASE));
+		final ProductData result = assembler.getProductData(request, PRODUCT_CODE,
+				Arrays.asList(ProductOption.BASIC, ProductOption.PRICE));
+
+		Assert.assertSame(productData, result);
+		Assert.assertSame(productModel, assembler.getProductModel(request, PRODUCT_CODE));
+		Mockito.verify(productService).getProductForCode(PRODUCT_CODE);
+		Mockito.verify(productConverter).convert(productModel);
+		Mockito.verify(productConfiguredPopulator).populate(productModel, productData, EnumSet.of(ProductOption.BASIC));
+		Mockito.verify(productConfiguredPopulator).populate(productModel, productData, EnumSet.of(ProductOption.PRICE));
+		Assert.assertEquals(1, assembler.getConversionCount());
+		Assert.assertEquals(1, assembler.getReusedOptionCount());
+		Assert.assertEquals(3, assembler.getPopulatorTimes().length);
+	}
+
+	@Test
+	public void shouldAssembleAgainForNextRequest()
+	{
+		assembler.getProductData(new MockHttpServletRequest(), PRODUCT_CODE, Arrays.asList(ProductOption.BASIC));
+		assembler.getProductData(new MockHttpServletRequest(), PRODUCT_CODE, Arrays.asList(ProductOption.BASIC));
+
+		Mockito.verify(productConverter, Mockito.times(2)).convert(productModel);
+		Mockito.verify(productConfiguredPopulator, Mockito.times(2)).populate(productModel, productData,
+				EnumSet.of(ProductOption.BASIC));
+	}
+}
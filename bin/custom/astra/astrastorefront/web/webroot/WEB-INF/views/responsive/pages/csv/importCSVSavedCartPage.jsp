@@ -65,6 +65,7 @@
     	<spring:theme code="import.csv.savedCart.success" var="inportSuccessHtml" arguments="${savedCartsLink}" htmlEscape="false"/>
         <span id="import-csv-success-message">${ycommerce:sanitizeHTML(inportSuccessHtml)}</span>
         <span id="import-csv-upload-message"><spring:theme code="import.csv.savedCart.uploadStarted"/></span>
+        <span id="import-csv-progress-message"><spring:theme code="import.csv.savedCart.progress"/></span>
         <span id="import-csv-generic-error-message"><spring:theme code="import.csv.savedCart.genericError"/></span>
         <span id="import-csv-file-max-size-exceeded-error-message"><spring:theme code="import.csv.savedCart.fileMaxSizeExceeded"/></span>
         <span id="import-csv-file-csv-required"><spring:theme code="import.csv.savedCart.fileCSVRequired"/></span>
@@ -2,6 +2,7 @@ ACC.csvimport = {
     TEXT_CSV_CONTENT_TYPE: 'text/csv',
     TEXT_CSV_LONG_CONTENT_TYPE: 'text/comma-separated-values',
     APP_EXCEL_CONTENT_TYPE: 'application/vnd.ms-excel',
+    PROGRESS_INTERVAL: 1000,
 
     _autoload: [
         ["changeFileUploadAppearance", $(".js-file-upload").length != 0],
@@ -56,13 +57,12 @@ ACC.csvimport = {
                 data: formData,
                 contentType: false,
                 processData: false,
-                success: function() {
-                    ACC.csvimport.displayGlobalAlert({type: 'info', message: ''});
-                    $('#import-csv-alerts .alert-info').append($('#import-csv-success-message').html());
-
-                    ACC.csvimport.clearChosenFile();
+                success: function(importId) {
+                    // the import runs in the background, its progress is polled until it is done
+                    ACC.csvimport.pollProgress(form.action + '/progress/' + encodeURIComponent(importId));
                 },
                 error: function(jqXHR) {
+                    ACC.csvimport.enableDisableActionButtons(true);
                     if (jqXHR.status == 400) {
                         if (jqXHR.responseJSON) {
                             ACC.csvimport.displayGlobalAlert({type: 'error', message: jqXHR.responseJSON});
@@ -71,14 +71,57 @@ ACC.csvimport = {
                     }
 
                     ACC.csvimport.displayGlobalAlert({type: 'error', messageId: 'import-csv-generic-error-message'});
-                },
-                complete: function() {
-                    ACC.csvimport.enableDisableActionButtons(true);
                 }
             });
         });
     },
 
+    pollProgress: function(progressUrl) {
+        $.ajax({
+            url: progressUrl,
+            type: 'GET',
+            dataType: 'json',
+            cache: false,
+            success: function(progress) {
+                if (!progress.done) {
+                    ACC.csvimport.displayGlobalAlert({type: 'warning', message: ACC.csvimport.formatProgress(progress)});
+                    setTimeout(function() {
+                        ACC.csvimport.pollProgress(progressUrl);
+                    }, ACC.csvimport.PROGRESS_INTERVAL);
+                    return;
+                }
+                ACC.csvimport.finishImport(progress);
+            },
+            error: function() {
+                ACC.csvimport.enableDisableActionButtons(true);
+                ACC.csvimport.displayGlobalAlert({type: 'error', messageId: 'import-csv-generic-error-message'});
+            }
+        });
+    },
+
+    finishImport: function(progress) {
+        ACC.csvimport.enableDisableActionButtons(true);
+        if (progress.failed) {
+            ACC.csvimport.displayGlobalAlert({type: 'error', messageId: 'import-csv-generic-error-message'});
+            return;
+        }
+
+        ACC.csvimport.displayGlobalAlert({type: 'info', message: ''});
+        $('#import-csv-alerts .alert-info').append($('#import-csv-success-message').html());
+        if (progress.errorCount > 0) {
+            // lines that could not be added are reported below the success message
+            $('#import-csv-alerts').append($('#global-alert-warning-template').tmpl({message: ACC.csvimport.formatProgress(progress)}));
+        }
+        ACC.csvimport.clearChosenFile();
+    },
+
+    formatProgress: function(progress) {
+        return $('#import-csv-progress-message').text()
+            .replace('{0}', progress.linesRead)
+            .replace('{1}', progress.entriesAdded)
+            .replace('{2}', progress.errorCount);
+    },
+
     isSelectedFileValid: function(selectedFile) {
         if (window.File && window.Blob) {
             if (selectedFile) {
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cache;
+
+import java.util.Collection;
+
+
+/**
+ * Generation counters for cache regions and the entities cached within them. Cache keys embed the generation they were
+ * built for, so entries of changed entities are no longer found and simply expire, and the regions can use long time
+ * to live settings. Invalidations are propagated to all cluster nodes.
+ */
+public interface CacheGenerationService
+{
+	/**
+	 * Returns the generation of a whole region, which changes whenever the region is invalidated as a whole. To be used
+	 * for keys of entries combining several entities, like search results.
+	 *
+	 * @param region
+	 * 		name of the region
+	 * @return current generation of the region
+	 */
+	long getGeneration(String region);
+
+	/**
+	 * Returns the generation of one entity of a region, which changes whenever the entity or the whole region is
+	 * invalidated.
+	 *
+	 * @param region
+	 * 		name of the region
+	 * @param key
+	 * 		key of the entity within the region, e.g. a product code
+	 * @return current generation of the entity
+	 */
+	long getGeneration(String region, String key);
+
+	/**
+	 * Invalidates single entities of a region on all cluster nodes. The generation of the whole region changes as well,
+	 * as entries combining several entities may contain them.
+	 *
+	 * @param region
+	 * 		name of the region
+	 * @param keys
+	 * 		keys of the changed entities
+	 */
+	void invalidate(String region, Collection<String> keys);
+
+	/**
+	 * Invalidates a whole region on all cluster nodes.
+	 *
+	 * @param region
+	 * 		name of the region
+	 */
+	void invalidateAll(String region);
+}
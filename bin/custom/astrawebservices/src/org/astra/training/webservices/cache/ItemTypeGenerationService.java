@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cache;
+
+/**
+ * Keeps a generation counter per observed item type. The generation is increased whenever an item of the type or one
+ * of its subtypes is created, changed or removed, so values derived from such items can be cached together with the
+ * generation they were built for and rebuilt once it moves on.
+ */
+public interface ItemTypeGenerationService
+{
+	/**
+	 * Returns the sum of the current generations of the given types, which changes whenever any of them changes.
+	 *
+	 * @param typeCodes
+	 * 		codes of observed composed types
+	 * @return combined generation
+	 * @throws IllegalArgumentException
+	 * 		if one of the types is not observed
+	 */
+	long getGeneration(String... typeCodes);
+}
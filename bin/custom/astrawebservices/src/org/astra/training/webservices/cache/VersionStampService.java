@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cache;
+
+/**
+ * Provides version stamps of persisted data, meant to build entity tags of HTTP responses. Stamps are derived from the
+ * modification times and counts of the items in the database, so every cluster node computes the same stamp for the
+ * same data.
+ */
+public interface VersionStampService
+{
+	/**
+	 * Returns a stamp that changes whenever an item of one of the given types, or of a subtype, is created, changed or
+	 * removed, or starts or stops being valid. The types must be observed by the {@link ItemTypeGenerationService}.
+	 *
+	 * @param typeCodes
+	 * 		codes of the composed types
+	 * @return version stamp of all items of the types
+	 */
+	String getTypeStamp(String... typeCodes);
+
+	/**
+	 * Returns a stamp that changes whenever a product with the given code or one of its variants, prices, stock levels,
+	 * variant prices and stock levels, references, reviews, classification features or category assignments is
+	 * created, changed or removed, and whenever one of its prices or variant prices starts or stops being valid.
+	 *
+	 * @param productCode
+	 * 		the product code, in any catalog version
+	 * @return version stamp of the product
+	 */
+	String getProductStamp(String productCode);
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cache.event;
+
+import de.hybris.platform.servicelayer.event.ClusterAwareEvent;
+import de.hybris.platform.servicelayer.event.PublishEventContext;
+import de.hybris.platform.servicelayer.event.events.AbstractEvent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Tells all cluster nodes, the sending one included, that entities of a cache region, or the whole region, changed.
+ */
+public class CacheInvalidationEvent extends AbstractEvent implements ClusterAwareEvent
+{
+	private final String region;
+	private final ArrayList<String> keys;
+
+	/**
+	 * @param region
+	 * 		name of the region
+	 * @param keys
+	 * 		keys of the changed entities, <tt>null</tt> if the whole region changed
+	 */
+	public CacheInvalidationEvent(final String region, final Collection<String> keys)
+	{
+		super();
+		this.region = region;
+		this.keys = keys == null ? null : new ArrayList<>(keys);
+	}
+
+	@Override
+	public boolean canPublish(final PublishEventContext publishEventContext)
+	{
+		return true;
+	}
+
+	public String getRegion()
+	{
+		return region;
+	}
+
+	public boolean isWholeRegion()
+	{
+		return keys == null;
+	}
+
+	public List<String> getKeys()
+	{
+		return keys == null ? Collections.emptyList() : Collections.unmodifiableList(keys);
+	}
+}
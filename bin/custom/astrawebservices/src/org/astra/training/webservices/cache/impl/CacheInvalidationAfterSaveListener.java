@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cache.impl;
+
+import de.hybris.platform.catalog.model.ProductFeatureModel;
+import de.hybris.platform.catalog.model.ProductReferenceModel;
+import de.hybris.platform.core.PK;
+import de.hybris.platform.core.model.ItemModel;
+import de.hybris.platform.core.model.order.OrderModel;
+import de.hybris.platform.core.model.product.ProductModel;
+import de.hybris.platform.core.model.user.UserModel;
+import de.hybris.platform.customerreview.model.CustomerReviewModel;
+import de.hybris.platform.europe1.model.PriceRowModel;
+import de.hybris.platform.ordersplitting.model.StockLevelModel;
+import de.hybris.platform.servicelayer.exceptions.ModelLoadingException;
+import de.hybris.platform.servicelayer.model.ModelService;
+import de.hybris.platform.servicelayer.type.TypeService;
+import de.hybris.platform.tx.AfterSaveEvent;
+import de.hybris.platform.tx.AfterSaveListener;
+import org.astra.training.webservices.cache.CacheGenerationService;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Required;
+
+
+/**
+ * Translates {@link AfterSaveEvent}s into invalidations of the {@link CacheGenerationService}. Every observed type is
+ * assigned to a cache region. Products, prices, stock levels, reviews and classification features are invalidated per
+ * product code, product references per code of their source product, orders per uid of their user; any other item, a
+ * removed item or an item whose product or user cannot be told invalidates its whole region. To keep bulk imports
+ * cheap, at most <code>maxLoadedItems</code> items are loaded per transaction, beyond that the affected regions are
+ * invalidated as a whole.
+ */
+public class CacheInvalidationAfterSaveListener implements AfterSaveListener
+{
+	private Map<String, String> regionsByType;
+	private int maxLoadedItems = 100;
+	private CacheGenerationService cacheGenerationService;
+	private ItemTypeCodeResolver itemTypeCodeResolver;
+	private ModelService modelService;
+	private TypeService typeService;
+
+	private volatile Map<Integer, Set<String>> regionsByTypeCode;
+
+	@Override
+	public void afterSave(final Collection<AfterSaveEvent> events)
+	{
+		final Map<Integer, Set<String>> candidates = getRegionsByTypeCode();
+		final Map<String, Set<String>> keysByRegion = new HashMap<>();
+		final Set<String> wholeRegions = new HashSet<>();
+		int loadedItems = 0;
+
+		for (final AfterSaveEvent event : events)
+		{
+			final Set<String> regions = candidates.get(Integer.valueOf(event.getPk().getTypeCode()));
+			if (regions == null)
+			{
+				continue;
+			}
+
+			final ItemModel item = event.getType() == AfterSaveEvent.REMOVE || loadedItems++ >= getMaxLoadedItems() ? null
+					: loadItem(event.getPk());
+			if (item == null)
+			{
+				wholeRegions.addAll(regions);
+				continue;
+			}
+
+			for (final String region : regions)
+			{
+				if (belongsToRegion(item, region))
+				{
+					final String key = getEntityKey(item);
+					if (key == null)
+					{
+						wholeRegions.add(region);
+					}
+					else
+					{
+						keysByRegion.computeIfAbsent(region, name -> new HashSet<>()).add(key);
+					}
+				}
+			}
+		}
+
+		wholeRegions.forEach(getCacheGenerationService()::invalidateAll);
+		keysByRegion.forEach((region, keys) -> {
+			if (!wholeRegions.contains(region))
+			{
+				getCacheGenerationService().invalidate(region, keys);
+			}
+		});
+	}
+
+	protected ItemModel loadItem(final PK pk)
+	{
+		try
+		{
+			return getModelService().get(pk);
+		}
+		catch (final ModelLoadingException e)
+		{
+			// removed in the meantime
+			return null;
+		}
+	}
+
+	protected boolean belongsToRegion(final ItemModel item, final String region)
+	{
+		for (final Map.Entry<String, String> entry : getRegionsByType().entrySet())
+		{
+			if (entry.getValue().equals(region) && getTypeService().isAssignableFrom(entry.getKey(), item.getItemtype()))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the key of the cached entity affected by the given item, or <tt>null</tt> if it cannot be told.
+	 */
+	protected String getEntityKey(final ItemModel item)
+	{
+		if (item instanceof ProductModel)
+		{
+			return ((ProductModel) item).getCode();
+		}
+		if (item instanceof PriceRowModel)
+		{
+			final PriceRowModel priceRow = (PriceRowModel) item;
+			if (priceRow.getProductId() != null)
+			{
+				return priceRow.getProductId();
+			}
+			return priceRow.getProduct() == null ? null : priceRow.getProduct().getCode();
+		}
+		if (item instanceof StockLevelModel)
+		{
+			return ((StockLevelModel) item).getProductCode();
+		}
+		if (item instanceof CustomerReviewModel)
+		{
+			final ProductModel product = ((CustomerReviewModel) item).getProduct();
+			return product == null ? null : product.getCode();
+		}
+		if (item instanceof ProductFeatureModel)
+		{
+			final ProductModel product = ((ProductFeatureModel) item).getProduct();
+			return product == null ? null : product.getCode();
+		}
+		if (item instanceof ProductReferenceModel)
+		{
+			final ProductModel source = ((ProductReferenceModel) item).getSource();
+			return source == null ? null : source.getCode();
+		}
+		if (item instanceof OrderModel)
+		{
+			final UserModel user = ((OrderModel) item).getUser();
+			return user == null ? null : user.getUid();
+		}
+		return null;
+	}
+
+	protected Map<Integer, Set<String>> getRegionsByTypeCode()
+	{
+		if (regionsByTypeCode == null)
+		{
+			final Map<Integer, Set<String>> result = new HashMap<>();
+			for (final Map.Entry<String, String> entry : getRegionsByType().entrySet())
+			{
+				for (final Integer typeCode : getItemTypeCodeResolver().getDeploymentTypeCodes(entry.getKey()))
+				{
+					result.computeIfAbsent(typeCode, key -> new HashSet<>()).add(entry.getValue());
+				}
+			}
+			regionsByTypeCode = result;
+		}
+		return regionsByTypeCode;
+	}
+
+	protected Map<String, String> getRegionsByType()
+	{
+		return regionsByType;
+	}
+
+	@Required
+	public void setRegionsByType(final Map<String, String> regionsByType)
+	{
+		this.regionsByType = regionsByType;
+	}
+
+	protected int getMaxLoadedItems()
+	{
+		return maxLoadedItems;
+	}
+
+	public void setMaxLoadedItems(final int maxLoadedItems)
+	{
+		this.maxLoadedItems = maxLoadedItems;
+	}
+
+	protected CacheGenerationService getCacheGenerationService()
+	{
+		return cacheGenerationService;
+	}
+
+	@Required
+	public void setCacheGenerationService(final CacheGenerationService cacheGenerationService)
+	{
+		this.cacheGenerationService = cacheGenerationService;
+	}
+
+	protected ItemTypeCodeResolver getItemTypeCodeResolver()
+	{
+		return itemTypeCodeResolver;
+	}
+
+	@Required
+	public void setItemTypeCodeResolver(final ItemTypeCodeResolver itemTypeCodeResolver)
+	{
+		this.itemTypeCodeResolver = itemTypeCodeResolver;
+	}
+
+	protected ModelService getModelService()
+	{
+		return modelService;
+	}
+
+	@Required
+	public void setModelService(final ModelService modelService)
+	{
+		this.modelService = modelService;
+	}
+
+	protected TypeService getTypeService()
+	{
+		return typeService;
+	}
+
+	@Required
+	public void setTypeService(final TypeService typeService)
+	{
+		this.typeService = typeService;
+	}
+}
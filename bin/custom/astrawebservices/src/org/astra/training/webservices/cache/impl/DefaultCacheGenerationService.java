@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cache.impl;
+
+import de.hybris.platform.servicelayer.event.EventService;
+import de.hybris.platform.servicelayer.event.impl.AbstractEventListener;
+import org.astra.training.webservices.cache.CacheGenerationService;
+import org.astra.training.webservices.cache.event.CacheInvalidationEvent;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Required;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+
+
+/**
+ * Default implementation of {@link CacheGenerationService}. All generations are taken from a single increasing
+ * sequence, so an invalidated entity never gets a generation it had before. Only changed entities are tracked, up to
+ * a maximum per region; entities evicted from the tracking fall back to the highest generation evicted so far, which
+ * is at least the one they had. Invalidations are only applied when their {@link CacheInvalidationEvent} arrives, on
+ * the publishing node as on all others, so every node of the cluster moves its generations on for the same changes.
+ */
+public class DefaultCacheGenerationService extends AbstractEventListener<CacheInvalidationEvent>
+		implements CacheGenerationService
+{
+	private static final Logger LOG = Logger.getLogger(DefaultCacheGenerationService.class);
+
+	private final AtomicLong sequence = new AtomicLong();
+	private final ConcurrentMap<String, Region> regions = new ConcurrentHashMap<>();
+
+	private long maxTrackedKeys = 100000;
+	private EventService eventService;
+
+	@Override
+	public long getGeneration(final String region)
+	{
+		return getRegion(region).generation.get();
+	}
+
+	@Override
+	public long getGeneration(final String region, final String key)
+	{
+		final Region cached = getRegion(region);
+		final Long generation = cached.keys.getIfPresent(key);
+		final long fallback = Math.max(cached.floor.get(), cached.evictedFloor.get());
+		return generation != null ? Math.max(generation.longValue(), fallback) : fallback;
+	}
+
+	@Override
+	public void invalidate(final String region, final Collection<String> keys)
+	{
+		if (CollectionUtils.isNotEmpty(keys))
+		{
+			getEventService().publishEvent(new CacheInvalidationEvent(region, keys));
+		}
+	}
+
+	@Override
+	public void invalidateAll(final String region)
+	{
+		getEventService().publishEvent(new CacheInvalidationEvent(region, null));
+	}
+
+	@Override
+	protected void onEvent(final CacheInvalidationEvent event)
+	{
+		applyInvalidation(event.getRegion(), event.isWholeRegion() ? null : event.getKeys());
+	}
+
+	protected void applyInvalidation(final String region, final Collection<String> keys)
+	{
+		final Region cached = getRegion(region);
+		if (keys == null)
+		{
+			cached.floor.set(sequence.incrementAndGet());
+			cached.keys.invalidateAll();
+		}
+		else
+		{
+			for (final String key : keys)
+			{
+				cached.keys.put(key, Long.valueOf(sequence.incrementAndGet()));
+			}
+		}
+		cached.generation.set(sequence.incrementAndGet());
+
+		if (LOG.isDebugEnabled())
+		{
+			LOG.debug("Invalidated " + (keys == null ? "all entries" : keys.size() + " entities") + " of cache region " + region);
+		}
+	}
+
+	protected Region getRegion(final String region)
+	{
+		return regions.computeIfAbsent(region, name -> new Region(getMaxTrackedKeys()));
+	}
+
+	protected long getMaxTrackedKeys()
+	{
+		return maxTrackedKeys;
+	}
+
+	public void setMaxTrackedKeys(final long maxTrackedKeys)
+	{
+		this.maxTrackedKeys = maxTrackedKeys;
+	}
+
+	protected EventService getEventService()
+	{
+		return eventService;
+	}
+
+	@Required
+	public void setEventService(final EventService eventService)
+	{
+		this.eventService = eventService;
+	}
+
+	protected static class Region
+	{
+		private final AtomicLong generation = new AtomicLong();
+		private final AtomicLong floor = new AtomicLong();
+		private final AtomicLong evictedFloor = new AtomicLong();
+		private final Cache<String, Long> keys;
+
+		protected Region(final long maxKeys)
+		{
+			keys = CacheBuilder.newBuilder().maximumSize(maxKeys).<String, Long>removalListener(notification -> {
+				if (notification.getCause() == RemovalCause.SIZE)
+				{
+					evictedFloor.accumulateAndGet(notification.getValue().longValue(), Math::max);
+				}
+			}).build();
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cache.impl;
+
+import de.hybris.platform.tx.AfterSaveEvent;
+import de.hybris.platform.tx.AfterSaveListener;
+import org.astra.training.webservices.cache.ItemTypeGenerationService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Required;
+
+
+/**
+ * Default implementation of {@link ItemTypeGenerationService} driven by {@link AfterSaveEvent}s. The events only carry
+ * the deployment type code of the saved item, so all types sharing a deployment with an observed type move on
+ * together. Events are only delivered on the node that saved the item; caches relying on the generation should bound
+ * their lifetime to cover changes made on other cluster nodes.
+ */
+public class DefaultItemTypeGenerationService implements ItemTypeGenerationService, AfterSaveListener, InitializingBean
+{
+	private Set<String> observedTypes;
+	private ItemTypeCodeResolver itemTypeCodeResolver;
+
+	private Map<String, AtomicLong> generations;
+	private volatile Map<Integer, List<AtomicLong>> generationsByTypeCode;
+
+	@Override
+	public void afterPropertiesSet()
+	{
+		final Map<String, AtomicLong> result = new HashMap<>();
+		for (final String observedType : getObservedTypes())
+		{
+			result.put(observedType, new AtomicLong());
+		}
+		generations = Collections.unmodifiableMap(result);
+	}
+
+	@Override
+	public long getGeneration(final String... typeCodes)
+	{
+		long generation = 0;
+		for (final String typeCode : typeCodes)
+		{
+			final AtomicLong counter = generations.get(typeCode);
+			if (counter == null)
+			{
+				throw new IllegalArgumentException("Type " + typeCode + " is not observed");
+			}
+			generation += counter.get();
+		}
+		return generation;
+	}
+
+	@Override
+	public void afterSave(final Collection<AfterSaveEvent> events)
+	{
+		final Map<Integer, List<AtomicLong>> counters = getGenerationsByTypeCode();
+		for (final AfterSaveEvent event : events)
+		{
+			final List<AtomicLong> affected = counters.get(Integer.valueOf(event.getPk().getTypeCode()));
+			if (affected != null)
+			{
+				affected.forEach(AtomicLong::incrementAndGet);
+			}
+		}
+	}
+
+	protected Map<Integer, List<AtomicLong>> getGenerationsByTypeCode()
+	{
+		if (generationsByTypeCode == null)
+		{
+			generationsByTypeCode = resolveTypeCodes();
+		}
+		return generationsByTypeCode;
+	}
+
+	/**
+	 * Maps the deployment type codes of all observed types and their subtypes to the counters they affect.
+	 */
+	protected Map<Integer, List<AtomicLong>> resolveTypeCodes()
+	{
+		final Map<Integer, List<AtomicLong>> result = new HashMap<>();
+		for (final Map.Entry<String, AtomicLong> entry : generations.entrySet())
+		{
+			for (final Integer typeCode : getItemTypeCodeResolver().getDeploymentTypeCodes(entry.getKey()))
+			{
+				result.computeIfAbsent(typeCode, key -> new ArrayList<>()).add(entry.getValue());
+			}
+		}
+		return result;
+	}
+
+	protected Set<String> getObservedTypes()
+	{
+		return observedTypes;
+	}
+
+	@Required
+	public void setObservedTypes(final Set<String> observedTypes)
+	{
+		this.observedTypes = observedTypes;
+	}
+
+	protected ItemTypeCodeResolver getItemTypeCodeResolver()
+	{
+		return itemTypeCodeResolver;
+	}
+
+	@Required
+	public void setItemTypeCodeResolver(final ItemTypeCodeResolver itemTypeCodeResolver)
+	{
+		this.itemTypeCodeResolver = itemTypeCodeResolver;
+	}
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cache.impl;
+
+import de.hybris.platform.catalog.model.ProductFeatureModel;
+import de.hybris.platform.catalog.model.ProductReferenceModel;
+import de.hybris.platform.category.model.CategoryModel;
+import de.hybris.platform.core.model.product.ProductModel;
+import de.hybris.platform.customerreview.model.CustomerReviewModel;
+import de.hybris.platform.europe1.model.PriceRowModel;
+import de.hybris.platform.ordersplitting.model.StockLevelModel;
+import de.hybris.platform.servicelayer.search.FlexibleSearchQuery;
+import de.hybris.platform.servicelayer.search.FlexibleSearchService;
+import de.hybris.platform.servicelayer.search.SearchResult;
+import de.hybris.platform.servicelayer.session.SessionExecutionBody;
+import de.hybris.platform.servicelayer.session.SessionService;
+import de.hybris.platform.servicelayer.user.UserService;
+import de.hybris.platform.variants.model.VariantProductModel;
+import org.astra.training.webservices.cache.CacheGenerationService;
+import org.astra.training.webservices.cache.ItemTypeGenerationService;
+import org.astra.training.webservices.cache.VersionStampService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Required;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+
+/**
+ * Default implementation of {@link VersionStampService}. A stamp is the latest modification time and the number of the
+ * items concerned; counting catches removals. Items valid for a date range, like price rows and the types
+ * configured in <code>validityAttributes</code>, start or stop applying without being changed, so their stamps also
+ * contain the next of these boundaries after the time of computing and are recomputed once it is passed. Stamps are
+ * computed without search restrictions and remembered until the items may have changed:
+ * <ul>
+ * <li>type stamps until the generation of the type in the {@link ItemTypeGenerationService} moves on, which only
+ * happens for changes made on this node, so they are also recomputed after <code>maxAgeMillis</code>;</li>
+ * <li>product stamps until the generation of the product in the <code>product</code> region of the
+ * {@link CacheGenerationService} moves on, which happens on all cluster nodes, and at most for
+ * <code>maxAgeMillis</code>, as not every item a product stamp covers invalidates that region.</li>
+ * </ul>
+ */
+public class DefaultVersionStampService implements VersionStampService, InitializingBean
+{
+	public static final String PRODUCT_REGION = "product";
+
+	private static final String TYPE_QUERY = "SELECT MAX({modifiedtime}), COUNT({pk}) FROM {%s}";
+	private static final String PRODUCT_PKS = "{{SELECT {" + ProductModel.PK + "} FROM {" + ProductModel._TYPECODE
+			+ "} WHERE {" + ProductModel.CODE + "} = ?code}}";
+	private static final String VARIANTS = "{" + VariantProductModel._TYPECODE + " AS v JOIN " + ProductModel._TYPECODE
+			+ " AS b ON {v." + VariantProductModel.BASEPRODUCT + "} = {b." + ProductModel.PK + "}} WHERE {b." + ProductModel.CODE
+			+ "} = ?code";
+	private static final String PRODUCT_QUERY = "SELECT MAX({" + ProductModel.MODIFIEDTIME + "}), COUNT({" + ProductModel.PK
+			+ "}) FROM {" + ProductModel._TYPECODE + "} WHERE {" + ProductModel.CODE + "} = ?code";
+	private static final String VARIANT_QUERY = "SELECT MAX({v." + VariantProductModel.MODIFIEDTIME + "}), COUNT({v."
+			+ VariantProductModel.PK + "}) FROM " + VARIANTS;
+	private static final String PRICE_CONDITION = "({" + PriceRowModel.PRODUCTID + "} = ?code OR {" + PriceRowModel.PRODUCT
+			+ "} IN (" + PRODUCT_PKS + ") OR {" + PriceRowModel.PRODUCT + "} IN ({{SELECT {v." + VariantProductModel.PK
+			+ "} FROM " + VARIANTS + "}}))";
+	private static final String PRICE_QUERY = "SELECT MAX({" + PriceRowModel.MODIFIEDTIME + "}), COUNT({" + PriceRowModel.PK
+			+ "}) FROM {" + PriceRowModel._TYPECODE + "} WHERE " + PRICE_CONDITION;
+	private static final List<String> PRICE_BOUNDARY_QUERIES = Arrays.asList(
+			"SELECT MIN({" + PriceRowModel.STARTTIME + "}) FROM {" + PriceRowModel._TYPECODE + "} WHERE " + PRICE_CONDITION
+					+ " AND {" + PriceRowModel.STARTTIME + "} > ?now",
+			"SELECT MIN({" + PriceRowModel.ENDTIME + "}) FROM {" + PriceRowModel._TYPECODE + "} WHERE " + PRICE_CONDITION
+					+ " AND {" + PriceRowModel.ENDTIME + "} > ?now");
+	private static final String TYPE_BOUNDARY_QUERY = "SELECT MIN({%2$s}) FROM {%1$s} WHERE {%2$s} > ?now";
+	private static final String STOCK_QUERY = "SELECT MAX({" + StockLevelModel.MODIFIEDTIME + "}), COUNT({"
+			+ StockLevelModel.PK + "}) FROM {" + StockLevelModel._TYPECODE + "} WHERE {" + StockLevelModel.PRODUCTCODE
+			+ "} = ?code OR {" + StockLevelModel.PRODUCTCODE + "} IN ({{SELECT {v." + VariantProductModel.CODE + "} FROM "
+			+ VARIANTS + "}})";
+	private static final String REFERENCE_QUERY = "SELECT MAX({" + ProductReferenceModel.MODIFIEDTIME + "}), COUNT({"
+			+ ProductReferenceModel.PK + "}) FROM {" + ProductReferenceModel._TYPECODE + "} WHERE {"
+			+ ProductReferenceModel.SOURCE + "} IN (" + PRODUCT_PKS + ")";
+	private static final String REVIEW_QUERY = "SELECT MAX({" + CustomerReviewModel.MODIFIEDTIME + "}), COUNT({"
+			+ CustomerReviewModel.PK + "}) FROM {" + CustomerReviewModel._TYPECODE + "} WHERE {" + CustomerReviewModel.PRODUCT
+			+ "} IN (" + PRODUCT_PKS + ")";
+	private static final String FEATURE_QUERY = "SELECT MAX({" + ProductFeatureModel.MODIFIEDTIME + "}), COUNT({"
+			+ ProductFeatureModel.PK + "}) FROM {" + ProductFeatureModel._TYPECODE + "} WHERE {" + ProductFeatureModel.PRODUCT
+			+ "} IN (" + PRODUCT_PKS + ")";
+	private static final String CATEGORY_QUERY = "SELECT MAX({modifiedtime}), COUNT({pk}) FROM {"
+			+ CategoryModel._CATEGORYPRODUCTRELATION + "} WHERE {target} IN (" + PRODUCT_PKS + ")";
+	private static final List<String> PRODUCT_QUERIES = Arrays.asList(PRODUCT_QUERY, VARIANT_QUERY, PRICE_QUERY,
+			STOCK_QUERY, REFERENCE_QUERY, REVIEW_QUERY, FEATURE_QUERY, CATEGORY_QUERY);
+
+	private long maxAgeMillis = 10000L;
+	private long maxProducts = 10000L;
+	private FlexibleSearchService flexibleSearchService;
+	private SessionService sessionService;
+	private UserService userService;
+	private ItemTypeGenerationService itemTypeGenerationService;
+	private CacheGenerationService cacheGenerationService;
+	private Map<String, List<String>> validityAttributes = Collections.emptyMap();
+
+	private final ConcurrentMap<String, Stamp> typeStamps = new ConcurrentHashMap<>();
+	private Cache<String, Stamp> productStamps;
+
+	@Override
+	public void afterPropertiesSet()
+	{
+		productStamps = CacheBuilder.newBuilder().maximumSize(getMaxProducts()).build();
+	}
+
+	@Override
+	public String getTypeStamp(final String... typeCodes)
+	{
+		final StringBuilder stamp = new StringBuilder();
+		for (final String typeCode : typeCodes)
+		{
+			final long generation = getItemTypeGenerationService().getGeneration(typeCode);
+			Stamp typeStamp = typeStamps.get(typeCode);
+			if (typeStamp == null || !typeStamp.isCurrent(generation, getMaxAgeMillis()))
+			{
+				typeStamp = computeTypeStamp(typeCode, generation);
+				typeStamps.put(typeCode, typeStamp);
+			}
+			stamp.append(typeCode).append('=').append(typeStamp.value).append(';');
+		}
+		return stamp.toString();
+	}
+
+	@Override
+	public String getProductStamp(final String productCode)
+	{
+		final long generation = getCacheGenerationService().getGeneration(PRODUCT_REGION, productCode);
+		Stamp productStamp = productStamps.getIfPresent(productCode);
+		if (productStamp == null || !productStamp.isCurrent(generation, getMaxAgeMillis()))
+		{
+			productStamp = computeProductStamp(productCode, generation);
+			productStamps.put(productCode, productStamp);
+		}
+		return productStamp.value;
+	}
+
+	protected Stamp computeTypeStamp(final String typeCode, final long generation)
+	{
+		final Date now = new Date();
+		final List<String> boundaryQueries = new ArrayList<>();
+		for (final String attribute : getValidityAttributes().getOrDefault(typeCode, Collections.emptyList()))
+		{
+			boundaryQueries.add(String.format(TYPE_BOUNDARY_QUERY, typeCode, attribute));
+		}
+		final long nextBoundary = queryNextBoundary(boundaryQueries, null, now);
+		return new Stamp(generation, now.getTime(), nextBoundary,
+				query(String.format(TYPE_QUERY, typeCode), null) + (boundaryQueries.isEmpty() ? "" : ":" + nextBoundary));
+	}
+
+	protected Stamp computeProductStamp(final String productCode, final long generation)
+	{
+		final Date now = new Date();
+		final StringBuilder value = new StringBuilder();
+		for (final String query : PRODUCT_QUERIES)
+		{
+			value.append(query(query, productCode)).append(';');
+		}
+		final long nextBoundary = queryNextBoundary(PRICE_BOUNDARY_QUERIES, productCode, now);
+		value.append(nextBoundary).append(';');
+		return new Stamp(generation, now.getTime(), nextBoundary, value.toString());
+	}
+
+	/**
+	 * Runs a query selecting the latest modification time and a count as admin, so that no search restriction hides
+	 * items, and renders the result.
+	 */
+	protected String query(final String query, final String code)
+	{
+		final Map<String, Object> parameters = new HashMap<>();
+		if (code != null)
+		{
+			parameters.put("code", code);
+		}
+		final List<Object> row = searchAsAdmin(query, parameters, Arrays.asList(Date.class, Long.class));
+
+		final Date lastModified = row == null ? null : (Date) row.get(0);
+		final Long count = row == null ? null : (Long) row.get(1);
+		return (lastModified == null ? 0L : lastModified.getTime()) + ":" + (count == null ? 0L : count.longValue());
+	}
+
+	/**
+	 * Returns the earliest of the dates selected by the given queries, each selecting the minimum of a date attribute
+	 * after <code>now</code>, or {@link Long#MAX_VALUE} if there is none.
+	 */
+	protected long queryNextBoundary(final List<String> queries, final String code, final Date now)
+	{
+		final Map<String, Object> parameters = new HashMap<>();
+		parameters.put("now", now);
+		if (code != null)
+		{
+			parameters.put("code", code);
+		}
+		long nextBoundary = Long.MAX_VALUE;
+		for (final String query : queries)
+		{
+			final List<Object> row = searchAsAdmin(query, parameters, Collections.singletonList(Date.class));
+			final Date boundary = row == null ? null : (Date) row.get(0);
+			if (boundary != null)
+			{
+				nextBoundary = Math.min(nextBoundary, boundary.getTime());
+			}
+		}
+		return nextBoundary;
+	}
+
+	/**
+	 * Runs a query returning a single row as admin, so that no search restriction hides items.
+	 */
+	protected List<Object> searchAsAdmin(final String query, final Map<String, Object> parameters,
+			final List<Class<?>> resultClasses)
+	{
+		return getSessionService().executeInLocalView(new SessionExecutionBody()
+		{
+			@Override
+			public Object execute()
+			{
+				final FlexibleSearchQuery searchQuery = new FlexibleSearchQuery(query, parameters);
+				searchQuery.setResultClassList(resultClasses);
+				final SearchResult<List<Object>> result = getFlexibleSearchService().search(searchQuery);
+				return result.getResult().isEmpty() ? null : result.getResult().get(0);
+			}
+		}, getUserService().getAdminUser());
+	}
+
+	protected long getMaxAgeMillis()
+	{
+		return maxAgeMillis;
+	}
+
+	public void setMaxAgeMillis(final long maxAgeMillis)
+	{
+		this.maxAgeMillis = maxAgeMillis;
+	}
+
+	protected long getMaxProducts()
+	{
+		return maxProducts;
+	}
+
+	public void setMaxProducts(final long maxProducts)
+	{
+		this.maxProducts = maxProducts;
+	}
+
+	protected FlexibleSearchService getFlexibleSearchService()
+	{
+		return flexibleSearchService;
+	}
+
+	@Required
+	public void setFlexibleSearchService(final FlexibleSearchService flexibleSearchService)
+	{
+		this.flexibleSearchService = flexibleSearchService;
+	}
+
+	protected SessionService getSessionService()
+	{
+		return sessionService;
+	}
+
+	@Required
+	public void setSessionService(final SessionService sessionService)
+	{
+		this.sessionService = sessionService;
+	}
+
+	protected UserService getUserService()
+	{
+		return userService;
+	}
+
+	@Required
+	public void setUserService(final UserService userService)
+	{
+		this.userService = userService;
+	}
+
+	protected ItemTypeGenerationService getItemTypeGenerationService()
+	{
+		return itemTypeGenerationService;
+	}
+
+	@Required
+	public void setItemTypeGenerationService(final ItemTypeGenerationService itemTypeGenerationService)
+	{
+		this.itemTypeGenerationService = itemTypeGenerationService;
+	}
+
+	protected CacheGenerationService getCacheGenerationService()
+	{
+		return cacheGenerationService;
+	}
+
+	@Required
+	public void setCacheGenerationService(final CacheGenerationService cacheGenerationService)
+	{
+		this.cacheGenerationService = cacheGenerationService;
+	}
+
+	protected Map<String, List<String>> getValidityAttributes()
+	{
+		return validityAttributes;
+	}
+
+	/**
+	 * @param validityAttributes
+	 * 		date attributes bounding the validity of the items, by code of the composed type
+	 */
+	public void setValidityAttributes(final Map<String, List<String>> validityAttributes)
+	{
+		this.validityAttributes = validityAttributes;
+	}
+
+	protected static final class Stamp
+	{
+		private final long generation;
+		private final long computedAt;
+		private final long nextBoundary;
+		private final String value;
+
+		protected Stamp(final long generation, final long computedAt, final long nextBoundary, final String value)
+		{
+			this.generation = generation;
+			this.computedAt = computedAt;
+			this.nextBoundary = nextBoundary;
+			this.value = value;
+		}
+
+		protected boolean isCurrent(final long currentGeneration, final long maxAgeMillis)
+		{
+			final long now = System.currentTimeMillis();
+			return generation == currentGeneration && now - computedAt <= maxAgeMillis && now < nextBoundary;
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cache.impl;
+
+import de.hybris.platform.core.model.type.ComposedTypeModel;
+import de.hybris.platform.jalo.type.ComposedType;
+import de.hybris.platform.servicelayer.exceptions.UnknownIdentifierException;
+import de.hybris.platform.servicelayer.model.ModelService;
+import de.hybris.platform.servicelayer.type.TypeService;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Required;
+
+
+/**
+ * Resolves the deployment type codes carried by the primary keys of items of a composed type and all its subtypes.
+ * Subtypes without a deployment of their own share the code of their supertype.
+ */
+public class ItemTypeCodeResolver
+{
+	private static final Logger LOG = Logger.getLogger(ItemTypeCodeResolver.class);
+
+	private ModelService modelService;
+	private TypeService typeService;
+
+	/**
+	 * @param composedTypeCode
+	 * 		code of the composed type
+	 * @return deployment type codes of the type and its subtypes, empty if the type does not exist
+	 */
+	public Set<Integer> getDeploymentTypeCodes(final String composedTypeCode)
+	{
+		try
+		{
+			final ComposedTypeModel type = getTypeService().getComposedTypeForCode(composedTypeCode);
+			final Set<Integer> typeCodes = new HashSet<>();
+			typeCodes.add(getDeploymentTypeCode(type));
+			for (final ComposedTypeModel subType : type.getAllSubTypes())
+			{
+				typeCodes.add(getDeploymentTypeCode(subType));
+			}
+			return typeCodes;
+		}
+		catch (final UnknownIdentifierException e)
+		{
+			LOG.warn("Type " + composedTypeCode + " does not exist, its items are not observed");
+			return Collections.emptySet();
+		}
+	}
+
+	protected Integer getDeploymentTypeCode(final ComposedTypeModel type)
+	{
+		return Integer.valueOf(((ComposedType) getModelService().getSource(type)).getItemTypeCode());
+	}
+
+	protected ModelService getModelService()
+	{
+		return modelService;
+	}
+
+	@Required
+	public void setModelService(final ModelService modelService)
+	{
+		this.modelService = modelService;
+	}
+
+	protected TypeService getTypeService()
+	{
+		return typeService;
+	}
+
+	@Required
+	public void setTypeService(final TypeService typeService)
+	{
+		this.typeService = typeService;
+	}
+}
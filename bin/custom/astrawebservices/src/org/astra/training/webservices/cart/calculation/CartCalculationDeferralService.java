@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cart.calculation;
+
+import de.hybris.platform.commerceservices.order.CommerceCartModificationException;
+
+
+/**
+ * Runs several cart modifications with a single cart calculation. While a modification runs, calculations requested
+ * by the commerce cart strategies are skipped; the session cart is recalculated once, including promotions, when the
+ * outermost modification has finished.
+ */
+public interface CartCalculationDeferralService
+{
+	/**
+	 * Session attribute that is set while cart calculations are deferred.
+	 */
+	String CALCULATION_DEFERRED_SESSION_ATTRIBUTE = "astrawebservices.cartCalculationDeferred";
+
+	/**
+	 * Runs the given modification with deferred cart calculation and recalculates the session cart afterwards. Nested
+	 * calls run inside the outer one and leave the calculation to it. The cart is recalculated even if the modification
+	 * fails, so that already applied changes are never left uncalculated.
+	 *
+	 * @param modification
+	 * 		the cart modification to run
+	 * @return result of the modification
+	 * @throws CommerceCartModificationException
+	 * 		when thrown by the modification
+	 */
+	<T> T executeWithSingleCalculation(CartModification<T> modification) throws CommerceCartModificationException;
+
+	/**
+	 * @return <tt>true</tt> while cart calculations of the current session are deferred
+	 */
+	boolean isCalculationDeferred();
+
+	/**
+	 * A cart modification that may fail with a {@link CommerceCartModificationException}.
+	 */
+	@FunctionalInterface
+	interface CartModification<T>
+	{
+		T execute() throws CommerceCartModificationException;
+	}
+}
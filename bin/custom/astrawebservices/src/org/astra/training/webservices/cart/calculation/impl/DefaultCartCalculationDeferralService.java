@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cart.calculation.impl;
+
+import de.hybris.platform.commerceservices.order.CommerceCartCalculationStrategy;
+import de.hybris.platform.commerceservices.order.CommerceCartModificationException;
+import de.hybris.platform.commerceservices.service.data.CommerceCartParameter;
+import de.hybris.platform.core.model.order.CartModel;
+import de.hybris.platform.order.CartService;
+import de.hybris.platform.servicelayer.model.ModelService;
+import de.hybris.platform.servicelayer.session.SessionService;
+import org.astra.training.webservices.cart.calculation.CartCalculationDeferralService;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Required;
+
+
+/**
+ * Default implementation of {@link CartCalculationDeferralService}. The deferral flag is kept in the session, so it
+ * is seen by every {@link DeferringCommerceCartCalculationStrategy} working on the session cart. The final calculation
+ * is a full recalculation: entries changed while deferred were never priced, so calculating only the entries flagged
+ * as not calculated is not enough.
+ */
+public class DefaultCartCalculationDeferralService implements CartCalculationDeferralService
+{
+	private static final Logger LOG = Logger.getLogger(DefaultCartCalculationDeferralService.class);
+
+	private SessionService sessionService;
+	private CartService cartService;
+	private ModelService modelService;
+	private CommerceCartCalculationStrategy commerceCartCalculationStrategy;
+
+	@Override
+	public <T> T executeWithSingleCalculation(final CartModification<T> modification)
+			throws CommerceCartModificationException
+	{
+		if (isCalculationDeferred())
+		{
+			return modification.execute();
+		}
+
+		getSessionService().setAttribute(CALCULATION_DEFERRED_SESSION_ATTRIBUTE, Boolean.TRUE);
+		try
+		{
+			return modification.execute();
+		}
+		finally
+		{
+			getSessionService().removeAttribute(CALCULATION_DEFERRED_SESSION_ATTRIBUTE);
+			recalculateSessionCart();
+		}
+	}
+
+	@Override
+	public boolean isCalculationDeferred()
+	{
+		return Boolean.TRUE.equals(getSessionService().getAttribute(CALCULATION_DEFERRED_SESSION_ATTRIBUTE));
+	}
+
+	protected void recalculateSessionCart()
+	{
+		if (!getCartService().hasSessionCart())
+		{
+			return;
+		}
+		final CartModel cart = getCartService().getSessionCart();
+		getModelService().refresh(cart);
+
+		final CommerceCartParameter parameter = new CommerceCartParameter();
+		parameter.setEnableHooks(true);
+		parameter.setCart(cart);
+		final long start = System.currentTimeMillis();
+		getCommerceCartCalculationStrategy().recalculateCart(parameter);
+		if (LOG.isDebugEnabled())
+		{
+			LOG.debug("Recalculated cart " + cart.getCode() + " after deferred modifications in "
+					+ (System.currentTimeMillis() - start) + " ms");
+		}
+	}
+
+	protected SessionService getSessionService()
+	{
+		return sessionService;
+	}
+
+	@Required
+	public void setSessionService(final SessionService sessionService)
+	{
+		this.sessionService = sessionService;
+	}
+
+	protected CartService getCartService()
+	{
+		return cartService;
+	}
+
+	@Required
+	public void setCartService(final CartService cartService)
+	{
+		this.cartService = cartService;
+	}
+
+	protected ModelService getModelService()
+	{
+		return modelService;
+	}
+
+	@Required
+	public void setModelService(final ModelService modelService)
+	{
+		this.modelService = modelService;
+	}
+
+	protected CommerceCartCalculationStrategy getCommerceCartCalculationStrategy()
+	{
+		return commerceCartCalculationStrategy;
+	}
+
+	@Required
+	public void setCommerceCartCalculationStrategy(final CommerceCartCalculationStrategy commerceCartCalculationStrategy)
+	{
+		this.commerceCartCalculationStrategy = commerceCartCalculationStrategy;
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cart.calculation.impl;
+
+import de.hybris.platform.commerceservices.order.impl.DefaultCommerceCartCalculationStrategy;
+import de.hybris.platform.commerceservices.service.data.CommerceCartParameter;
+import de.hybris.platform.servicelayer.session.SessionService;
+import org.astra.training.webservices.cart.calculation.CartCalculationDeferralService;
+
+import org.springframework.beans.factory.annotation.Required;
+
+
+/**
+ * Extension of {@link DefaultCommerceCartCalculationStrategy} that skips cart calculation and promotion evaluation
+ * while {@link CartCalculationDeferralService} defers calculations for the current session.
+ */
+public class DeferringCommerceCartCalculationStrategy extends DefaultCommerceCartCalculationStrategy
+{
+	private SessionService sessionService;
+
+	@Override
+	public boolean calculateCart(final CommerceCartParameter parameter)
+	{
+		return !isCalculationDeferred() && super.calculateCart(parameter);
+	}
+
+	@Override
+	public boolean recalculateCart(final CommerceCartParameter parameter)
+	{
+		return !isCalculationDeferred() && super.recalculateCart(parameter);
+	}
+
+	protected boolean isCalculationDeferred()
+	{
+		return Boolean.TRUE
+				.equals(getSessionService().getAttribute(CartCalculationDeferralService.CALCULATION_DEFERRED_SESSION_ATTRIBUTE));
+	}
+
+	protected SessionService getSessionService()
+	{
+		return sessionService;
+	}
+
+	@Required
+	public void setSessionService(final SessionService sessionService)
+	{
+		this.sessionService = sessionService;
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cart.purge;
+
+import de.hybris.platform.basecommerce.model.site.BaseSiteModel;
+import de.hybris.platform.core.PK;
+import de.hybris.platform.core.model.order.CartModel;
+import de.hybris.platform.core.model.user.UserModel;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+
+/**
+ * Data access for the bulk removal of old carts. Candidate carts are found by primary key only, so that they are loaded
+ * as models one batch at a time, just to be removed through the model service.
+ */
+public interface OldCartPurgeDao
+{
+	/**
+	 * Returns the next page of carts eligible for removal, ordered by primary key. Paging is keyset based: only carts
+	 * with a primary key greater than <code>lastPk</code> are returned.
+	 *
+	 * @param site
+	 * 		the site the carts belong to
+	 * @param modifiedBefore
+	 * 		carts modified after this date are kept
+	 * @param user
+	 * 		when set, only carts of this user are returned
+	 * @param lastPk
+	 * 		primary key of the last cart of the previous page, or <tt>null</tt> for the first page
+	 * @param pageSize
+	 * 		maximum number of primary keys to return
+	 * @return primary keys of the carts eligible for removal
+	 */
+	List<PK> findCartPksForRemoval(BaseSiteModel site, Date modifiedBefore, UserModel user, PK lastPk, int pageSize);
+
+	/**
+	 * Counts carts eligible for removal.
+	 *
+	 * @param site
+	 * 		the site the carts belong to
+	 * @param modifiedBefore
+	 * 		carts modified after this date are not counted
+	 * @param user
+	 * 		when set, only carts of this user are counted
+	 * @return number of carts eligible for removal
+	 */
+	long countCartsForRemoval(BaseSiteModel site, Date modifiedBefore, UserModel user);
+
+	/**
+	 * Loads the given carts in one query.
+	 *
+	 * @param cartPks
+	 * 		primary keys of the carts
+	 * @return the carts, without those removed meanwhile
+	 */
+	List<CartModel> findCartsByPks(Collection<PK> cartPks);
+
+	/**
+	 * Returns the primary keys of the items other than entries that are part of the given carts: their addresses,
+	 * payment infos and promotion results. These are not removed together with the carts by the model service.
+	 *
+	 * @param cartPks
+	 * 		primary keys of the carts
+	 * @return primary keys of the dependent items
+	 */
+	List<PK> findDependentPksForCarts(Collection<PK> cartPks);
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cart.purge;
+
+import de.hybris.platform.basecommerce.model.site.BaseSiteModel;
+import org.astra.training.webservices.cart.purge.data.OldCartPurgeResultData;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.function.BooleanSupplier;
+
+
+/**
+ * Removes old carts in bulk. Candidate carts are paged by primary key and removed batch by batch, with the sites
+ * processed in parallel.
+ */
+public interface OldCartPurgeEngine
+{
+	/**
+	 * Removes all carts of the given sites that were not modified since the given dates.
+	 *
+	 * @param sites
+	 * 		sites to clean up
+	 * @param cartModifiedBefore
+	 * 		carts of any user modified before this date are removed
+	 * @param anonymousCartModifiedBefore
+	 * 		carts of the anonymous user modified before this date are removed
+	 * @param abortRequested
+	 * 		polled by the calling thread; once it returns <tt>true</tt> no further batch is started
+	 * @return summary of the removal
+	 */
+	OldCartPurgeResultData purge(Collection<BaseSiteModel> sites, Date cartModifiedBefore, Date anonymousCartModifiedBefore,
+			BooleanSupplier abortRequested);
+}
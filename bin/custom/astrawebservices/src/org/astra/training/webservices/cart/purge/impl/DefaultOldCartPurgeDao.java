@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cart.purge.impl;
+
+import de.hybris.platform.basecommerce.model.site.BaseSiteModel;
+import de.hybris.platform.core.PK;
+import de.hybris.platform.core.model.order.CartModel;
+import de.hybris.platform.core.model.order.payment.PaymentInfoModel;
+import de.hybris.platform.core.model.user.AddressModel;
+import de.hybris.platform.core.model.user.UserModel;
+import de.hybris.platform.promotions.model.PromotionResultModel;
+import de.hybris.platform.servicelayer.internal.dao.AbstractItemDao;
+import de.hybris.platform.servicelayer.search.FlexibleSearchQuery;
+import de.hybris.platform.servicelayer.search.SearchResult;
+import org.astra.training.webservices.cart.purge.OldCartPurgeDao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+
+/**
+ * Default implementation of {@link OldCartPurgeDao}. Saved carts are never returned, which keeps the behaviour of
+ * {@link de.hybris.platform.commerceservices.order.dao.CommerceCartDao#getCartsForRemovalForSiteAndUser}.
+ */
+public class DefaultOldCartPurgeDao extends AbstractItemDao implements OldCartPurgeDao
+{
+	private static final String CART_CONDITIONS = " WHERE {" + CartModel.MODIFIEDTIME + "} <= ?modifiedBefore AND {"
+			+ CartModel.SITE + "} = ?site AND {" + CartModel.SAVETIME + "} IS NULL";
+	private static final String USER_CONDITION = " AND {" + CartModel.USER + "} = ?user";
+	private static final String KEYSET_CONDITION = " AND {" + CartModel.PK + "} > ?lastPk";
+
+	private static final String FIND_CART_PKS = "SELECT {" + CartModel.PK + "} FROM {" + CartModel._TYPECODE + "}"
+			+ CART_CONDITIONS;
+	private static final String COUNT_CARTS = "SELECT COUNT({" + CartModel.PK + "}) FROM {" + CartModel._TYPECODE + "}"
+			+ CART_CONDITIONS;
+	private static final String ORDER_BY_PK = " ORDER BY {" + CartModel.PK + "} ASC";
+
+	private static final String FIND_CARTS = "SELECT {" + CartModel.PK + "} FROM {" + CartModel._TYPECODE + "} WHERE {"
+			+ CartModel.PK + "} IN (?carts)";
+	private static final String[] FIND_DEPENDENT_PKS = {
+			"SELECT {" + AddressModel.PK + "} FROM {" + AddressModel._TYPECODE + "} WHERE {" + AddressModel.OWNER
+					+ "} IN (?carts)",
+			"SELECT {" + PaymentInfoModel.PK + "} FROM {" + PaymentInfoModel._TYPECODE + "} WHERE {" + PaymentInfoModel.OWNER
+					+ "} IN (?carts)",
+			"SELECT {" + PromotionResultModel.PK + "} FROM {" + PromotionResultModel._TYPECODE + "} WHERE {"
+					+ PromotionResultModel.ORDER + "} IN (?carts)" };
+
+	@Override
+	public List<PK> findCartPksForRemoval(final BaseSiteModel site, final Date modifiedBefore, final UserModel user,
+			final PK lastPk, final int pageSize)
+	{
+		final StringBuilder query = new StringBuilder(FIND_CART_PKS);
+		if (user != null)
+		{
+			query.append(USER_CONDITION);
+		}
+		if (lastPk != null)
+		{
+			query.append(KEYSET_CONDITION);
+		}
+		query.append(ORDER_BY_PK);
+
+		final FlexibleSearchQuery searchQuery = createCartQuery(query.toString(), site, modifiedBefore, user);
+		if (lastPk != null)
+		{
+			searchQuery.addQueryParameter("lastPk", lastPk);
+		}
+		searchQuery.setCount(pageSize);
+		searchQuery.setResultClassList(Collections.singletonList(PK.class));
+
+		final SearchResult<PK> result = getFlexibleSearchService().search(searchQuery);
+		return result.getResult();
+	}
+
+	@Override
+	public long countCartsForRemoval(final BaseSiteModel site, final Date modifiedBefore, final UserModel user)
+	{
+		final String query = user != null ? COUNT_CARTS + USER_CONDITION : COUNT_CARTS;
+
+		final FlexibleSearchQuery searchQuery = createCartQuery(query, site, modifiedBefore, user);
+		searchQuery.setResultClassList(Collections.singletonList(Long.class));
+
+		final SearchResult<Long> result = getFlexibleSearchService().search(searchQuery);
+		return result.getResult().isEmpty() || result.getResult().get(0) == null ? 0L : result.getResult().get(0).longValue();
+	}
+
+	@Override
+	public List<CartModel> findCartsByPks(final Collection<PK> cartPks)
+	{
+		if (cartPks == null || cartPks.isEmpty())
+		{
+			return Collections.emptyList();
+		}
+
+		final FlexibleSearchQuery searchQuery = new FlexibleSearchQuery(FIND_CARTS);
+		searchQuery.addQueryParameter("carts", cartPks);
+
+		final SearchResult<CartModel> result = getFlexibleSearchService().search(searchQuery);
+		return result.getResult();
+	}
+
+	@Override
+	public List<PK> findDependentPksForCarts(final Collection<PK> cartPks)
+	{
+		if (cartPks == null || cartPks.isEmpty())
+		{
+			return Collections.emptyList();
+		}
+
+		final List<PK> pks = new ArrayList<>();
+		for (final String query : FIND_DEPENDENT_PKS)
+		{
+			final FlexibleSearchQuery searchQuery = new FlexibleSearchQuery(query);
+			searchQuery.addQueryParameter("carts", cartPks);
+			searchQuery.setResultClassList(Collections.singletonList(PK.class));
+			pks.addAll(getFlexibleSearchService().<PK> search(searchQuery).getResult());
+		}
+		return pks;
+	}
+
+	protected FlexibleSearchQuery createCartQuery(final String query, final BaseSiteModel site, final Date modifiedBefore,
+			final UserModel user)
+	{
+		final FlexibleSearchQuery searchQuery = new FlexibleSearchQuery(query);
+		searchQuery.addQueryParameter("modifiedBefore", modifiedBefore);
+		searchQuery.addQueryParameter("site", site);
+		if (user != null)
+		{
+			searchQuery.addQueryParameter("user", user);
+		}
+		return searchQuery;
+	}
+}
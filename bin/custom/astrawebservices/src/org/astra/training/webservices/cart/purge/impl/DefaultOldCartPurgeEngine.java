@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cart.purge.impl;
+
+import de.hybris.platform.basecommerce.model.site.BaseSiteModel;
+import de.hybris.platform.core.PK;
+import de.hybris.platform.core.Registry;
+import de.hybris.platform.core.Tenant;
+import de.hybris.platform.core.TenantAwareThreadFactory;
+import de.hybris.platform.core.model.ItemModel;
+import de.hybris.platform.core.model.user.UserModel;
+import de.hybris.platform.servicelayer.config.ConfigurationService;
+import de.hybris.platform.servicelayer.model.ModelService;
+import de.hybris.platform.servicelayer.session.Session;
+import de.hybris.platform.servicelayer.session.SessionService;
+import de.hybris.platform.servicelayer.user.UserService;
+import org.astra.training.webservices.cart.purge.OldCartPurgeDao;
+import org.astra.training.webservices.cart.purge.OldCartPurgeEngine;
+import org.astra.training.webservices.cart.purge.data.OldCartPurgeResultData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+
+/**
+ * Default implementation of {@link OldCartPurgeEngine}. Every site is handled by its own worker running in a fresh
+ * session of the current tenant. Each batch of carts is removed together with its entries in a single transaction and
+ * the abort flag is checked between batches. Carts are paged by primary key and loaded one batch at a time; they are
+ * removed through the model service, so remove interceptors run and their entries, the items part of carts and entries
+ * and their relations are removed as well.
+ */
+public class DefaultOldCartPurgeEngine implements OldCartPurgeEngine
+{
+	private static final Logger LOG = Logger.getLogger(DefaultOldCartPurgeEngine.class);
+
+	public static final String BATCH_SIZE_PROPERTY = "astrawebservices.oldcartremoval.batchsize";
+	public static final String WORKERS_PROPERTY = "astrawebservices.oldcartremoval.workers";
+	public static final String ABORT_POLL_INTERVAL_PROPERTY = "astrawebservices.oldcartremoval.abortpollinterval";
+
+	private static final int DEFAULT_BATCH_SIZE = 500;
+	private static final int DEFAULT_WORKERS = 2;
+	private static final long DEFAULT_ABORT_POLL_INTERVAL = 1000L;
+
+	private OldCartPurgeDao oldCartPurgeDao;
+	private ModelService modelService;
+	private SessionService sessionService;
+	private UserService userService;
+	private ConfigurationService configurationService;
+	private PlatformTransactionManager transactionManager;
+
+	@Override
+	public OldCartPurgeResultData purge(final Collection<BaseSiteModel> sites, final Date cartModifiedBefore,
+			final Date anonymousCartModifiedBefore, final BooleanSupplier abortRequested)
+	{
+		final OldCartPurgeResultData result = createResult();
+		if (sites == null || sites.isEmpty())
+		{
+			return result;
+		}
+
+		final long start = System.currentTimeMillis();
+		final PK anonymousUserPk = getUserService().getAnonymousUser().getPk();
+		final int batchSize = Math.max(1, getConfigurationService().getConfiguration().getInt(BATCH_SIZE_PROPERTY,
+				DEFAULT_BATCH_SIZE));
+		final int workers = Math.min(sites.size(),
+				Math.max(1, getConfigurationService().getConfiguration().getInt(WORKERS_PROPERTY, DEFAULT_WORKERS)));
+		final AtomicBoolean aborted = new AtomicBoolean(false);
+
+		final ExecutorService executor = Executors.newFixedThreadPool(workers,
+				createThreadFactory(Registry.getCurrentTenant()));
+		try
+		{
+			final List<Future<OldCartPurgeResultData>> futures = new ArrayList<>(sites.size());
+			for (final BaseSiteModel site : sites)
+			{
+				final PK sitePk = site.getPk();
+				futures.add(executor.submit(() -> purgeSiteInSession(sitePk, anonymousUserPk, cartModifiedBefore,
+						anonymousCartModifiedBefore, batchSize, aborted)));
+			}
+			executor.shutdown();
+			awaitTermination(executor, abortRequested, aborted);
+
+			for (final Future<OldCartPurgeResultData> future : futures)
+			{
+				merge(result, future.get());
+			}
+		}
+		catch (final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			aborted.set(true);
+		}
+		catch (final ExecutionException e)
+		{
+			throw new IllegalStateException("Old cart removal failed", e.getCause());
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+
+		result.setAborted(aborted.get());
+		result.setDurationMillis(System.currentTimeMillis() - start);
+		logResult("all sites", result);
+		return result;
+	}
+
+	/**
+	 * Waits for all workers to finish, polling the abort request in between. Workers only see the abort flag between
+	 * batches, so a running batch is always completed.
+	 */
+	protected void awaitTermination(final ExecutorService executor, final BooleanSupplier abortRequested,
+			final AtomicBoolean aborted) throws InterruptedException
+	{
+		final long pollInterval = getConfigurationService().getConfiguration().getLong(ABORT_POLL_INTERVAL_PROPERTY,
+				DEFAULT_ABORT_POLL_INTERVAL);
+		while (!executor.awaitTermination(pollInterval, TimeUnit.MILLISECONDS))
+		{
+			if (!aborted.get() && abortRequested != null && abortRequested.getAsBoolean())
+			{
+				LOG.info("Abort requested, old cart removal stops after the current batch");
+				aborted.set(true);
+			}
+		}
+	}
+
+	protected OldCartPurgeResultData purgeSiteInSession(final PK sitePk, final PK anonymousUserPk,
+			final Date cartModifiedBefore, final Date anonymousCartModifiedBefore, final int batchSize,
+			final AtomicBoolean aborted)
+	{
+		final Session session = getSessionService().createNewSession();
+		try
+		{
+			getUserService().setCurrentUser(getUserService().getAdminUser());
+			final BaseSiteModel site = getModelService().get(sitePk);
+			final UserModel anonymousUser = getModelService().get(anonymousUserPk);
+			return purgeSite(site, anonymousUser, cartModifiedBefore, anonymousCartModifiedBefore, batchSize, aborted);
+		}
+		finally
+		{
+			getSessionService().closeSession(session);
+		}
+	}
+
+	protected OldCartPurgeResultData purgeSite(final BaseSiteModel site, final UserModel anonymousUser,
+			final Date cartModifiedBefore, final Date anonymousCartModifiedBefore, final int batchSize,
+			final AtomicBoolean aborted)
+	{
+		final long start = System.currentTimeMillis();
+		final OldCartPurgeResultData result = createResult();
+
+		merge(result, purgeCarts(site, cartModifiedBefore, null, batchSize, aborted));
+		merge(result, purgeCarts(site, anonymousCartModifiedBefore, anonymousUser, batchSize, aborted));
+
+		result.setAborted(aborted.get());
+		result.setDurationMillis(System.currentTimeMillis() - start);
+		logResult("site " + site.getUid(), result);
+		return result;
+	}
+
+	protected OldCartPurgeResultData purgeCarts(final BaseSiteModel site, final Date modifiedBefore, final UserModel user,
+			final int batchSize, final AtomicBoolean aborted)
+	{
+		final OldCartPurgeResultData result = createResult();
+		final long backlog = getOldCartPurgeDao().countCartsForRemoval(site, modifiedBefore, user);
+		long removed = 0;
+		PK lastPk = null;
+
+		while (removed < backlog && !aborted.get())
+		{
+			final List<PK> cartPks = getOldCartPurgeDao().findCartPksForRemoval(site, modifiedBefore, user, lastPk, batchSize);
+			if (cartPks.isEmpty())
+			{
+				break;
+			}
+			removeBatch(cartPks);
+			removed += cartPks.size();
+			lastPk = cartPks.get(cartPks.size() - 1);
+		}
+
+		result.setRemovedCarts(removed);
+		result.setRemainingCarts(Math.max(0L, backlog - removed));
+		return result;
+	}
+
+	/**
+	 * Removes the given carts, all of their entries and the addresses, payment infos and promotion results owned by them
+	 * in one transaction. The model context is detached afterwards so that a long running removal does not accumulate
+	 * removed models.
+	 */
+	protected void removeBatch(final List<PK> cartPks)
+	{
+		try
+		{
+			new TransactionTemplate(getTransactionManager()).execute(status -> {
+				final List<ItemModel> models = loadModels(getOldCartPurgeDao().findDependentPksForCarts(cartPks));
+				models.addAll(getOldCartPurgeDao().findCartsByPks(cartPks));
+				getModelService().removeAll(models);
+				return null;
+			});
+		}
+		finally
+		{
+			getModelService().detachAll();
+		}
+	}
+
+	protected List<ItemModel> loadModels(final List<PK> pks)
+	{
+		final List<ItemModel> models = new ArrayList<>(pks.size());
+		for (final PK pk : pks)
+		{
+			models.add(getModelService().get(pk));
+		}
+		return models;
+	}
+
+	protected void merge(final OldCartPurgeResultData target, final OldCartPurgeResultData source)
+	{
+		target.setRemovedCarts(target.getRemovedCarts() + source.getRemovedCarts());
+		target.setRemainingCarts(target.getRemainingCarts() + source.getRemainingCarts());
+		target.setAborted(target.isAborted() || source.isAborted());
+	}
+
+	protected void logResult(final String scope, final OldCartPurgeResultData result)
+	{
+		if (LOG.isInfoEnabled())
+		{
+			final double seconds = Math.max(1L, result.getDurationMillis()) / 1000d;
+			LOG.info(String.format("Removed %d old carts for %s in %d ms (%.1f carts/s), %d remaining%s",
+					Long.valueOf(result.getRemovedCarts()), scope, Long.valueOf(result.getDurationMillis()),
+					Double.valueOf(result.getRemovedCarts() / seconds), Long.valueOf(result.getRemainingCarts()),
+					result.isAborted() ? " (aborted)" : ""));
+		}
+	}
+
+	protected OldCartPurgeResultData createResult()
+	{
+		return new OldCartPurgeResultData();
+	}
+
+	/**
+	 * @return a factory of worker threads bound to the given tenant
+	 */
+	protected ThreadFactory createThreadFactory(final Tenant tenant)
+	{
+		final ThreadFactory tenantAwareThreadFactory = new TenantAwareThreadFactory(tenant);
+		final AtomicInteger counter = new AtomicInteger();
+		return runnable -> {
+			final Thread thread = tenantAwareThreadFactory.newThread(runnable);
+			thread.setName("OldCartPurge-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	protected OldCartPurgeDao getOldCartPurgeDao()
+	{
+		return oldCartPurgeDao;
+	}
+
+	@Required
+	public void setOldCartPurgeDao(final OldCartPurgeDao oldCartPurgeDao)
+	{
+		this.oldCartPurgeDao = oldCartPurgeDao;
+	}
+
+	protected ModelService getModelService()
+	{
+		return modelService;
+	}
+
+	@Required
+	public void setModelService(final ModelService modelService)
+	{
+		this.modelService = modelService;
+	}
+
+	protected SessionService getSessionService()
+	{
+		return sessionService;
+	}
+
+	@Required
+	public void setSessionService(final SessionService sessionService)
+	{
+		this.sessionService = sessionService;
+	}
+
+	protected UserService getUserService()
+	{
+		return userService;
+	}
+
+	@Required
+	public void setUserService(final UserService userService)
+	{
+		this.userService = userService;
+	}
+
+	protected ConfigurationService getConfigurationService()
+	{
+		return configurationService;
+	}
+
+	@Required
+	public void setConfigurationService(final ConfigurationService configurationService)
+	{
+		this.configurationService = configurationService;
+	}
+
+	protected PlatformTransactionManager getTransactionManager()
+	{
+		return transactionManager;
+	}
+
+	@Required
+	public void setTransactionManager(final PlatformTransactionManager transactionManager)
+	{
+		this.transactionManager = transactionManager;
+	}
+}
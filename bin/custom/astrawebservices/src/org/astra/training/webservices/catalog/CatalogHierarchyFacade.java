@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.catalog;
+
+import de.hybris.platform.commercefacades.catalog.data.CatalogData;
+import de.hybris.platform.commercefacades.catalog.data.CatalogVersionData;
+import de.hybris.platform.commercefacades.catalog.data.CategoryHierarchyData;
+
+import java.util.List;
+
+
+/**
+ * Provides the product catalogs of the current site together with their complete category hierarchies. The
+ * hierarchies are served from a {@link CategoryHierarchySnapshot} per catalog version, which is built once and rebuilt
+ * only after categories or their relations changed.
+ */
+public interface CatalogHierarchyFacade
+{
+	/**
+	 * Returns all product catalogs of the current site with their versions and category hierarchies.
+	 *
+	 * @return catalogs of the current site
+	 */
+	List<CatalogData> getAllProductCatalogsForCurrentSite();
+
+	/**
+	 * Returns a product catalog of the current site with its versions and category hierarchies.
+	 *
+	 * @param catalogId
+	 * 		catalog identifier
+	 * @return catalog
+	 */
+	CatalogData getProductCatalogForCurrentSite(String catalogId);
+
+	/**
+	 * Returns a product catalog version of the current site with its category hierarchy.
+	 *
+	 * @param catalogId
+	 * 		catalog identifier
+	 * @param catalogVersionId
+	 * 		catalog version identifier
+	 * @return catalog version
+	 */
+	CatalogVersionData getProductCatalogVersionForTheCurrentSite(String catalogId, String catalogVersionId);
+
+	/**
+	 * Returns a category with all of its subcategories, at whatever depth of the hierarchy it is.
+	 *
+	 * @param catalogId
+	 * 		catalog identifier
+	 * @param catalogVersionId
+	 * 		catalog version identifier
+	 * @param categoryId
+	 * 		category identifier
+	 * @return category hierarchy starting at the category
+	 */
+	CategoryHierarchyData getCategoryById(String catalogId, String catalogVersionId, String categoryId);
+
+	/**
+	 * Returns a stamp that changes whenever the hierarchies returned to the current session may change, to be used in
+	 * keys of cached results.
+	 *
+	 * @return hierarchy stamp
+	 */
+	String getHierarchyStamp();
+}
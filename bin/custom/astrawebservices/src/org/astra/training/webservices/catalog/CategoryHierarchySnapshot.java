@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.catalog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Immutable category hierarchy of one catalog version. Categories are numbered in the order they were added and kept
+ * in parallel arrays; the subcategories of category <code>i</code> are the entries
+ * <code>childIndexes[childStart[i]]</code> to <code>childIndexes[childStart[i + 1] - 1]</code>. A category with several
+ * supercategories is stored once and referenced by each of them.
+ */
+public final class CategoryHierarchySnapshot
+{
+	private static final long NO_DATE = Long.MIN_VALUE;
+
+	private final String[] ids;
+	private final String[] names;
+	private final String[] urls;
+	private final long[] lastModified;
+	private final int[] childStart;
+	private final int[] childIndexes;
+	private final int[] roots;
+	private final Map<String, Integer> indexById;
+
+	private CategoryHierarchySnapshot(final Builder builder)
+	{
+		final int size = builder.ids.size();
+		ids = builder.ids.toArray(new String[size]);
+		names = builder.names.toArray(new String[size]);
+		urls = builder.urls.toArray(new String[size]);
+		lastModified = new long[size];
+		childStart = new int[size + 1];
+		for (int i = 0; i < size; i++)
+		{
+			lastModified[i] = builder.lastModified.get(i).longValue();
+			childStart[i + 1] = childStart[i] + builder.children.get(i).size();
+		}
+		childIndexes = new int[childStart[size]];
+		for (int i = 0; i < size; i++)
+		{
+			final List<Integer> children = builder.children.get(i);
+			for (int j = 0; j < children.size(); j++)
+			{
+				childIndexes[childStart[i] + j] = children.get(j).intValue();
+			}
+		}
+		roots = builder.roots.stream().mapToInt(Integer::intValue).toArray();
+		indexById = Collections.unmodifiableMap(new HashMap<>(builder.indexById));
+	}
+
+	public int size()
+	{
+		return ids.length;
+	}
+
+	/**
+	 * Returns the index of the category with the given id, or <tt>-1</tt> if it is not part of the hierarchy.
+	 */
+	public int indexOf(final String id)
+	{
+		final Integer index = indexById.get(id);
+		return index == null ? -1 : index.intValue();
+	}
+
+	public int getRootCount()
+	{
+		return roots.length;
+	}
+
+	public int getRoot(final int position)
+	{
+		return roots[position];
+	}
+
+	public int getChildCount(final int index)
+	{
+		return childStart[index + 1] - childStart[index];
+	}
+
+	public int getChild(final int index, final int position)
+	{
+		return childIndexes[childStart[index] + position];
+	}
+
+	public String getId(final int index)
+	{
+		return ids[index];
+	}
+
+	public String getName(final int index)
+	{
+		return names[index];
+	}
+
+	public String getUrl(final int index)
+	{
+		return urls[index];
+	}
+
+	public Date getLastModified(final int index)
+	{
+		return lastModified[index] == NO_DATE ? null : new Date(lastModified[index]);
+	}
+
+	/**
+	 * Collects a hierarchy category by category. Categories are identified by their id, adding an id a second time
+	 * returns the index it got first.
+	 */
+	public static final class Builder
+	{
+		private final List<String> ids = new ArrayList<>();
+		private final List<String> names = new ArrayList<>();
+		private final List<String> urls = new ArrayList<>();
+		private final List<Long> lastModified = new ArrayList<>();
+		private final List<List<Integer>> children = new ArrayList<>();
+		private final List<Integer> roots = new ArrayList<>();
+		private final Map<String, Integer> indexById = new HashMap<>();
+
+		public int indexOf(final String id)
+		{
+			final Integer index = indexById.get(id);
+			return index == null ? -1 : index.intValue();
+		}
+
+		public int addCategory(final String id, final String name, final String url, final Date modified)
+		{
+			final int existing = indexOf(id);
+			if (existing >= 0)
+			{
+				return existing;
+			}
+			final int index = ids.size();
+			ids.add(id);
+			names.add(name);
+			urls.add(url);
+			lastModified.add(Long.valueOf(modified == null ? NO_DATE : modified.getTime()));
+			children.add(new ArrayList<>());
+			indexById.put(id, Integer.valueOf(index));
+			return index;
+		}
+
+		public Builder addChild(final int parent, final int child)
+		{
+			children.get(parent).add(Integer.valueOf(child));
+			return this;
+		}
+
+		public Builder addRoot(final int index)
+		{
+			roots.add(Integer.valueOf(index));
+			return this;
+		}
+
+		public CategoryHierarchySnapshot build()
+		{
+			return new CategoryHierarchySnapshot(this);
+		}
+	}
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.catalog.impl;
+
+import de.hybris.platform.basecommerce.model.site.BaseSiteModel;
+import de.hybris.platform.commercefacades.catalog.CatalogFacade;
+import de.hybris.platform.commercefacades.catalog.CatalogOption;
+import de.hybris.platform.commercefacades.catalog.PageOption;
+import de.hybris.platform.commercefacades.catalog.data.CatalogData;
+import de.hybris.platform.commercefacades.catalog.data.CatalogVersionData;
+import de.hybris.platform.commercefacades.catalog.data.CategoryHierarchyData;
+import de.hybris.platform.core.model.c2l.LanguageModel;
+import de.hybris.platform.core.model.user.UserGroupModel;
+import de.hybris.platform.servicelayer.i18n.CommonI18NService;
+import de.hybris.platform.servicelayer.user.UserService;
+import de.hybris.platform.site.BaseSiteService;
+import org.astra.training.webservices.cache.CacheGenerationService;
+import org.astra.training.webservices.catalog.CatalogHierarchyFacade;
+import org.astra.training.webservices.catalog.CategoryHierarchySnapshot;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Required;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+
+/**
+ * Default implementation of {@link CatalogHierarchyFacade}. Catalogs, versions and the requested category itself are
+ * still populated by the catalog facade, but without subcategories; the subcategories are then copied from a
+ * {@link CategoryHierarchySnapshot}. A snapshot is built from one full hierarchy of the catalog facade, so it holds
+ * exactly what the facade would return, and is kept per site, language, catalog version and user groups, which decide
+ * about restricted categories. Snapshots embed the generation of the {@link #CATEGORY_REGION} region of the
+ * {@link CacheGenerationService}, which moves on with every change of a catalog, catalog version, category or category
+ * relation on any cluster node, including catalog synchronizations.
+ */
+public class DefaultCatalogHierarchyFacade implements CatalogHierarchyFacade, InitializingBean
+{
+	private static final Logger LOG = Logger.getLogger(DefaultCatalogHierarchyFacade.class);
+
+	public static final String CATEGORY_REGION = "category";
+
+	private static final Set<CatalogOption> ROOT_OPTIONS = EnumSet.of(CatalogOption.BASIC, CatalogOption.CATEGORIES);
+	private static final Set<CatalogOption> HIERARCHY_OPTIONS = EnumSet
+			.of(CatalogOption.BASIC, CatalogOption.CATEGORIES, CatalogOption.SUBCATEGORIES);
+	private static final Set<CatalogOption> CATEGORY_OPTIONS = EnumSet.of(CatalogOption.BASIC);
+	private static final char KEY_SEPARATOR = '|';
+
+	private long maxSnapshots = 100;
+	private CatalogFacade catalogFacade;
+	private CacheGenerationService cacheGenerationService;
+	private BaseSiteService baseSiteService;
+	private CommonI18NService commonI18NService;
+	private UserService userService;
+
+	private Cache<String, CategoryHierarchySnapshot> snapshots;
+
+	@Override
+	public void afterPropertiesSet()
+	{
+		snapshots = CacheBuilder.newBuilder().maximumSize(getMaxSnapshots()).build();
+	}
+
+	@Override
+	public List<CatalogData> getAllProductCatalogsForCurrentSite()
+	{
+		final List<CatalogData> catalogs = getCatalogFacade().getAllProductCatalogsForCurrentSite(ROOT_OPTIONS);
+		for (final CatalogData catalog : catalogs)
+		{
+			addHierarchies(catalog);
+		}
+		return catalogs;
+	}
+
+	@Override
+	public CatalogData getProductCatalogForCurrentSite(final String catalogId)
+	{
+		final CatalogData catalog = getCatalogFacade().getProductCatalogForCurrentSite(catalogId, ROOT_OPTIONS);
+		addHierarchies(catalog);
+		return catalog;
+	}
+
+	@Override
+	public CatalogVersionData getProductCatalogVersionForTheCurrentSite(final String catalogId, final String catalogVersionId)
+	{
+		final CatalogVersionData catalogVersion = getCatalogFacade()
+				.getProductCatalogVersionForTheCurrentSite(catalogId, catalogVersionId, ROOT_OPTIONS);
+		addHierarchy(catalogId, catalogVersion);
+		return catalogVersion;
+	}
+
+	@Override
+	public CategoryHierarchyData getCategoryById(final String catalogId, final String catalogVersionId, final String categoryId)
+	{
+		final PageOption page = PageOption.createForPageNumberAndPageSize(0, 10);
+		final CategoryHierarchyData category = getCatalogFacade()
+				.getCategoryById(catalogId, catalogVersionId, categoryId, page, CATEGORY_OPTIONS);
+
+		final CategoryHierarchySnapshot snapshot = getSnapshot(catalogId, catalogVersionId);
+		final int index = snapshot.indexOf(categoryId);
+		if (index < 0)
+		{
+			// not reachable from a root category
+			return getCatalogFacade().getCategoryById(catalogId, catalogVersionId, categoryId, page, HIERARCHY_OPTIONS);
+		}
+		category.setSubcategories(createSubcategories(snapshot, index, new boolean[snapshot.size()]));
+		return category;
+	}
+
+	@Override
+	public String getHierarchyStamp()
+	{
+		final Set<UserGroupModel> userGroups = getUserService().getAllUserGroupsForUser(getUserService().getCurrentUser());
+		return getCacheGenerationService().getGeneration(CATEGORY_REGION) + ":" + userGroups.stream().map(UserGroupModel::getUid)
+				.sorted().collect(Collectors.joining(","));
+	}
+
+	protected void addHierarchies(final CatalogData catalog)
+	{
+		if (catalog.getCatalogVersions() != null)
+		{
+			for (final CatalogVersionData catalogVersion : catalog.getCatalogVersions())
+			{
+				addHierarchy(catalog.getId(), catalogVersion);
+			}
+		}
+	}
+
+	protected void addHierarchy(final String catalogId, final CatalogVersionData catalogVersion)
+	{
+		if (catalogVersion.getCategoriesHierarchyData() == null || catalogVersion.getCategoriesHierarchyData().isEmpty())
+		{
+			return;
+		}
+
+		final CategoryHierarchySnapshot snapshot = getSnapshot(catalogId, catalogVersion.getId());
+		for (final CategoryHierarchyData root : catalogVersion.getCategoriesHierarchyData())
+		{
+			if (snapshot.indexOf(root.getId()) < 0)
+			{
+				// root categories changed after the snapshot was read
+				catalogVersion.setCategoriesHierarchyData(getCatalogFacade()
+						.getProductCatalogVersionForTheCurrentSite(catalogId, catalogVersion.getId(), HIERARCHY_OPTIONS)
+						.getCategoriesHierarchyData());
+				return;
+			}
+		}
+		for (final CategoryHierarchyData root : catalogVersion.getCategoriesHierarchyData())
+		{
+			root.setSubcategories(createSubcategories(snapshot, snapshot.indexOf(root.getId()), new boolean[snapshot.size()]));
+		}
+	}
+
+	/**
+	 * Creates the subcategories of a snapshot category recursively. Categories already on the path are skipped, so a
+	 * cyclic hierarchy cannot recurse endlessly.
+	 */
+	protected List<CategoryHierarchyData> createSubcategories(final CategoryHierarchySnapshot snapshot, final int index,
+			final boolean[] onPath)
+	{
+		onPath[index] = true;
+		final int childCount = snapshot.getChildCount(index);
+		final List<CategoryHierarchyData> subcategories = new ArrayList<>(childCount);
+		for (int position = 0; position < childCount; position++)
+		{
+			final int child = snapshot.getChild(index, position);
+			if (!onPath[child])
+			{
+				final CategoryHierarchyData subcategory = new CategoryHierarchyData();
+				subcategory.setId(snapshot.getId(child));
+				subcategory.setName(snapshot.getName(child));
+				subcategory.setUrl(snapshot.getUrl(child));
+				subcategory.setLastModified(snapshot.getLastModified(child));
+				subcategory.setSubcategories(createSubcategories(snapshot, child, onPath));
+				subcategories.add(subcategory);
+			}
+		}
+		onPath[index] = false;
+		return subcategories;
+	}
+
+	protected CategoryHierarchySnapshot getSnapshot(final String catalogId, final String catalogVersionId)
+	{
+		// read the stamp before building, a change during the build leaves the snapshot outdated and it is built again
+		final String key = createKey(catalogId, catalogVersionId);
+		try
+		{
+			return snapshots.get(key, () -> buildSnapshot(catalogId, catalogVersionId));
+		}
+		catch (final ExecutionException | UncheckedExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException)
+			{
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("Could not build category hierarchy of " + catalogId + ':' + catalogVersionId,
+					e.getCause());
+		}
+	}
+
+	protected CategoryHierarchySnapshot buildSnapshot(final String catalogId, final String catalogVersionId)
+	{
+		final long start = System.currentTimeMillis();
+		final CatalogVersionData catalogVersion = getCatalogFacade()
+				.getProductCatalogVersionForTheCurrentSite(catalogId, catalogVersionId, HIERARCHY_OPTIONS);
+
+		final CategoryHierarchySnapshot.Builder builder = new CategoryHierarchySnapshot.Builder();
+		if (catalogVersion.getCategoriesHierarchyData() != null)
+		{
+			for (final CategoryHierarchyData root : catalogVersion.getCategoriesHierarchyData())
+			{
+				builder.addRoot(addCategory(builder, root));
+			}
+		}
+		final CategoryHierarchySnapshot snapshot = builder.build();
+
+		if (LOG.isInfoEnabled())
+		{
+			LOG.info(String.format("Built category hierarchy of %s:%s with %d categories in %d ms", catalogId, catalogVersionId,
+					Integer.valueOf(snapshot.size()), Long.valueOf(System.currentTimeMillis() - start)));
+		}
+		return snapshot;
+	}
+
+	protected int addCategory(final CategoryHierarchySnapshot.Builder builder, final CategoryHierarchyData category)
+	{
+		final int existing = builder.indexOf(category.getId());
+		if (existing >= 0)
+		{
+			return existing;
+		}
+
+		final int index = builder.addCategory(category.getId(), category.getName(), category.getUrl(),
+				category.getLastModified());
+		if (category.getSubcategories() != null)
+		{
+			for (final CategoryHierarchyData subcategory : category.getSubcategories())
+			{
+				builder.addChild(index, addCategory(builder, subcategory));
+			}
+		}
+		return index;
+	}
+
+	protected String createKey(final String catalogId, final String catalogVersionId)
+	{
+		final BaseSiteModel site = getBaseSiteService().getCurrentBaseSite();
+		final LanguageModel language = getCommonI18NService().getCurrentLanguage();
+		return (site == null ? null : site.getUid()) + KEY_SEPARATOR + (language == null ? null : language.getIsocode())
+				+ KEY_SEPARATOR + catalogId + KEY_SEPARATOR + catalogVersionId + KEY_SEPARATOR + getHierarchyStamp();
+	}
+
+	protected long getMaxSnapshots()
+	{
+		return maxSnapshots;
+	}
+
+	public void setMaxSnapshots(final long maxSnapshots)
+	{
+		this.maxSnapshots = maxSnapshots;
+	}
+
+	protected CatalogFacade getCatalogFacade()
+	{
+		return catalogFacade;
+	}
+
+	@Required
+	public void setCatalogFacade(final CatalogFacade catalogFacade)
+	{
+		this.catalogFacade = catalogFacade;
+	}
+
+	protected CacheGenerationService getCacheGenerationService()
+	{
+		return cacheGenerationService;
+	}
+
+	@Required
+	public void setCacheGenerationService(final CacheGenerationService cacheGenerationService)
+	{
+		this.cacheGenerationService = cacheGenerationService;
+	}
+
+	protected BaseSiteService getBaseSiteService()
+	{
+		return baseSiteService;
+	}
+
+	@Required
+	public void setBaseSiteService(final BaseSiteService baseSiteService)
+	{
+		this.baseSiteService = baseSiteService;
+	}
+
+	protected CommonI18NService getCommonI18NService()
+	{
+		return commonI18NService;
+	}
+
+	@Required
+	public void setCommonI18NService(final CommonI18NService commonI18NService)
+	{
+		this.commonI18NService = commonI18NService;
+	}
+
+	protected UserService getUserService()
+	{
+		return userService;
+	}
+
+	@Required
+	public void setUserService(final UserService userService)
+	{
+		this.userService = userService;
+	}
+}
@@ -3,17 +3,14 @@
  */
 package org.astra.training.webservices.cronjob;
 
-import de.hybris.platform.basecommerce.model.site.BaseSiteModel;
-import de.hybris.platform.commerceservices.order.dao.CommerceCartDao;
 import de.hybris.platform.commercewebservicescommons.model.OldCartRemovalCronJobModel;
-import de.hybris.platform.core.model.order.CartModel;
 import de.hybris.platform.cronjob.enums.CronJobResult;
 import de.hybris.platform.cronjob.enums.CronJobStatus;
 import de.hybris.platform.servicelayer.cronjob.AbstractJobPerformable;
 import de.hybris.platform.servicelayer.cronjob.PerformResult;
-import de.hybris.platform.servicelayer.model.ModelService;
 import de.hybris.platform.servicelayer.time.TimeService;
-import de.hybris.platform.servicelayer.user.UserService;
+import org.astra.training.webservices.cart.purge.OldCartPurgeEngine;
+import org.astra.training.webservices.cart.purge.data.OldCartPurgeResultData;
 
 import org.apache.log4j.Logger;
 import org.joda.time.DateTime;
@@ -21,15 +18,15 @@ import org.springframework.beans.factory.annotation.Required;
 
 
 /**
- * A Cron Job to clean up old carts.
+ * A Cron Job to clean up old carts. The removal itself is delegated to {@link OldCartPurgeEngine}, which removes carts
+ * in batches and stops between batches when an abort of the job is requested.
  */
 public class OldCartRemovalJob extends AbstractJobPerformable<OldCartRemovalCronJobModel>
 {
 	private static final Logger LOG = Logger.getLogger(OldCartRemovalJob.class);
 
-	private CommerceCartDao commerceCartDao;
+	private OldCartPurgeEngine oldCartPurgeEngine;
 	private TimeService timeService;
-	private UserService userService;
 
 	private static final int DEFAULT_CART_MAX_AGE = 2419200;
 	private static final int DEFAULT_ANONYMOUS_CART_MAX_AGE = 1209600;
@@ -50,20 +47,15 @@ public class OldCartRemovalJob extends AbstractJobPerformable<OldCartRemovalCron
 					job.getAnonymousCartRemovalAge().intValue() :
 					DEFAULT_ANONYMOUS_CART_MAX_AGE;
 
-			for (final BaseSiteModel site : job.getSites())
+			final DateTime now = new DateTime(getTimeService().getCurrentTime());
+			final OldCartPurgeResultData result = getOldCartPurgeEngine().purge(job.getSites(),
+					now.minusSeconds(cartAge).toDate(), now.minusSeconds(anonymousCartAge).toDate(),
+					() -> clearAbortRequestedIfNeeded(job));
+
+			if (result.isAborted())
 			{
-				for (final CartModel oldCart : getCommerceCartDao().getCartsForRemovalForSiteAndUser(
-						new DateTime(getTimeService().getCurrentTime()).minusSeconds(cartAge).toDate(), site, null))
-				{
-					getModelService().remove(oldCart);
-				}
-
-				for (final CartModel oldCart : getCommerceCartDao().getCartsForRemovalForSiteAndUser(
-						new DateTime(getTimeService().getCurrentTime()).minusSeconds(anonymousCartAge).toDate(), site,
-						getUserService().getAnonymousUser()))
-				{
-					getModelService().remove(oldCart);
-				}
+				LOG.info("Old cart removal aborted for " + job.getCode() + ", " + result.getRemainingCarts() + " carts remaining");
+				return new PerformResult(CronJobResult.UNKNOWN, CronJobStatus.ABORTED);
 			}
 
 			return new PerformResult(CronJobResult.SUCCESS, CronJobStatus.FINISHED);
@@ -75,15 +67,21 @@ public class OldCartRemovalJob extends AbstractJobPerformable<OldCartRemovalCron
 		}
 	}
 
-	protected CommerceCartDao getCommerceCartDao()
+	@Override
+	public boolean isAbortable()
+	{
+		return true;
+	}
+
+	protected OldCartPurgeEngine getOldCartPurgeEngine()
 	{
-		return commerceCartDao;
+		return oldCartPurgeEngine;
 	}
 
 	@Required
-	public void setCommerceCartDao(final CommerceCartDao commerceCartDao)
+	public void setOldCartPurgeEngine(final OldCartPurgeEngine oldCartPurgeEngine)
 	{
-		this.commerceCartDao = commerceCartDao;
+		this.oldCartPurgeEngine = oldCartPurgeEngine;
 	}
 
 	protected TimeService getTimeService()
@@ -96,20 +94,4 @@ public class OldCartRemovalJob extends AbstractJobPerformable<OldCartRemovalCron
 	{
 		this.timeService = timeService;
 	}
-
-	protected ModelService getModelService()
-	{
-		return modelService;
-	}
-
-	protected UserService getUserService()
-	{
-		return userService;
-	}
-
-	@Required
-	public void setUserService(final UserService userService)
-	{
-		this.userService = userService;
-	}
 }
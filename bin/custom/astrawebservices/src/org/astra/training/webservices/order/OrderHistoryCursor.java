@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.order;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+
+/**
+ * Position in an order history sorted by date and PK, both descending: the date and PK of the last order of a page.
+ * The next page starts with the first order placed before it. Clients get the cursor as an opaque string.
+ */
+public final class OrderHistoryCursor
+{
+	private static final char SEPARATOR = '.';
+
+	private final long dateMillis;
+	private final long pk;
+
+	public OrderHistoryCursor(final Date date, final long pk)
+	{
+		this(date.getTime(), pk);
+	}
+
+	private OrderHistoryCursor(final long dateMillis, final long pk)
+	{
+		this.dateMillis = dateMillis;
+		this.pk = pk;
+	}
+
+	/**
+	 * Reads a cursor created by {@link #encode()}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if the value is no cursor
+	 */
+	public static OrderHistoryCursor decode(final String value)
+	{
+		final String decoded;
+		try
+		{
+			decoded = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.US_ASCII);
+		}
+		catch (final IllegalArgumentException e)
+		{
+			throw new IllegalArgumentException("Invalid cursor", e);
+		}
+
+		final int separator = decoded.indexOf(SEPARATOR);
+		if (separator <= 0)
+		{
+			throw new IllegalArgumentException("Invalid cursor");
+		}
+		try
+		{
+			return new OrderHistoryCursor(Long.parseLong(decoded.substring(0, separator)),
+					Long.parseLong(decoded.substring(separator + 1)));
+		}
+		catch (final NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Invalid cursor", e);
+		}
+	}
+
+	public String encode()
+	{
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString((Long.toString(dateMillis) + SEPARATOR + pk).getBytes(StandardCharsets.US_ASCII));
+	}
+
+	public Date getDate()
+	{
+		return new Date(dateMillis);
+	}
+
+	public long getPk()
+	{
+		return pk;
+	}
+
+	@Override
+	public boolean equals(final Object other)
+	{
+		if (this == other)
+		{
+			return true;
+		}
+		if (!(other instanceof OrderHistoryCursor))
+		{
+			return false;
+		}
+		final OrderHistoryCursor cursor = (OrderHistoryCursor) other;
+		return dateMillis == cursor.dateMillis && pk == cursor.pk;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Long.hashCode(dateMillis) * 31 + Long.hashCode(pk);
+	}
+
+	@Override
+	public String toString()
+	{
+		return encode();
+	}
+}
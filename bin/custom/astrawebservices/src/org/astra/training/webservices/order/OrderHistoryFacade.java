@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.order;
+
+import de.hybris.platform.commercefacades.order.data.OrderHistoriesData;
+import de.hybris.platform.core.enums.OrderStatus;
+
+import java.util.Set;
+
+
+/**
+ * Order history of the current user in the current base store, paged with an {@link OrderHistoryCursor} instead of a
+ * page number. Deep pages cost as much as the first one, and the orders are not counted.
+ */
+public interface OrderHistoryFacade
+{
+	/**
+	 * Returns a page of the order history of the current user, latest orders first. The orders hold code, guid, date,
+	 * status and total, as in the order history list; the next cursor is set if there are further orders.
+	 *
+	 * @param statuses
+	 * 		statuses to restrict the orders to, all orders if empty
+	 * @param cursor
+	 * 		cursor returned with the previous page, <code>null</code> or empty for the first page
+	 * @param pageSize
+	 * 		maximum number of orders
+	 * @return the page of orders
+	 * @throws IllegalArgumentException
+	 * 		if the cursor is invalid
+	 */
+	OrderHistoriesData getOrderHistory(Set<OrderStatus> statuses, String cursor, int pageSize);
+
+	/**
+	 * Returns a stamp of the order history of the current user, which changes whenever one of the orders of the user
+	 * changes on any cluster node. To be used in cache keys of order history pages.
+	 */
+	String getOrderHistoryStamp();
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.order;
+
+import java.util.Date;
+
+
+/**
+ * The columns of an order shown in an order history, read without loading the order.
+ */
+public class OrderHistoryRow
+{
+	private final long pk;
+	private final String code;
+	private final String guid;
+	private final Date date;
+	private final String statusCode;
+	private final String statusDisplay;
+	private final Double totalPrice;
+	private final Double totalTax;
+	private final boolean net;
+	private final String currencyIsocode;
+
+	public OrderHistoryRow(final long pk, final String code, final String guid, final Date date, final String statusCode,
+			final String statusDisplay, final Double totalPrice, final Double totalTax, final boolean net,
+			final String currencyIsocode)
+	{
+		this.pk = pk;
+		this.code = code;
+		this.guid = guid;
+		this.date = date;
+		this.statusCode = statusCode;
+		this.statusDisplay = statusDisplay;
+		this.totalPrice = totalPrice;
+		this.totalTax = totalTax;
+		this.net = net;
+		this.currencyIsocode = currencyIsocode;
+	}
+
+	public long getPk()
+	{
+		return pk;
+	}
+
+	public String getCode()
+	{
+		return code;
+	}
+
+	public String getGuid()
+	{
+		return guid;
+	}
+
+	public Date getDate()
+	{
+		return date;
+	}
+
+	/**
+	 * Returns the code of the order status, or <code>null</code> if the order has no status.
+	 */
+	public String getStatusCode()
+	{
+		return statusCode;
+	}
+
+	/**
+	 * Returns the status of the order as shown to the customer, or <code>null</code> if it has none.
+	 */
+	public String getStatusDisplay()
+	{
+		return statusDisplay;
+	}
+
+	public Double getTotalPrice()
+	{
+		return totalPrice;
+	}
+
+	public Double getTotalTax()
+	{
+		return totalTax;
+	}
+
+	public boolean isNet()
+	{
+		return net;
+	}
+
+	public String getCurrencyIsocode()
+	{
+		return currencyIsocode;
+	}
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.order.dao;
+
+import de.hybris.platform.core.enums.OrderStatus;
+import de.hybris.platform.core.model.user.UserModel;
+import de.hybris.platform.store.BaseStoreModel;
+import org.astra.training.webservices.order.OrderHistoryCursor;
+import org.astra.training.webservices.order.OrderHistoryRow;
+
+import java.util.Collection;
+import java.util.List;
+
+
+/**
+ * Reads order histories page by page, in the order of the {@link OrderHistoryCursor}.
+ */
+public interface OrderHistoryDao
+{
+	/**
+	 * Returns the orders of a user in a base store, latest first. Only the columns of {@link OrderHistoryRow} are
+	 * selected, no order is loaded as a model, and the orders are not counted.
+	 *
+	 * @param user
+	 * 		the user who placed the orders
+	 * @param store
+	 * 		the base store the orders were placed in
+	 * @param statuses
+	 * 		statuses to restrict the orders to, all orders if empty
+	 * @param after
+	 * 		position of the last order of the previous page, <code>null</code> for the first page
+	 * @param count
+	 * 		maximum number of orders to return
+	 * @return the orders following the cursor
+	 */
+	List<OrderHistoryRow> findOrderHistoryRows(UserModel user, BaseStoreModel store, Collection<OrderStatus> statuses,
+			OrderHistoryCursor after, int count);
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.order.dao.impl;
+
+import de.hybris.platform.core.enums.OrderStatus;
+import de.hybris.platform.core.model.c2l.CurrencyModel;
+import de.hybris.platform.core.model.enumeration.EnumerationValueModel;
+import de.hybris.platform.core.model.order.OrderModel;
+import de.hybris.platform.core.model.user.UserModel;
+import de.hybris.platform.servicelayer.internal.dao.AbstractItemDao;
+import de.hybris.platform.servicelayer.search.FlexibleSearchQuery;
+import de.hybris.platform.servicelayer.search.SearchResult;
+import de.hybris.platform.store.BaseStoreModel;
+import org.astra.training.webservices.order.OrderHistoryCursor;
+import org.astra.training.webservices.order.OrderHistoryRow;
+import org.astra.training.webservices.order.dao.OrderHistoryDao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+
+/**
+ * Default implementation of {@link OrderHistoryDao}. Pages are selected by the date and PK of the last order of the
+ * previous page instead of an offset, so every page costs the same, however deep it is.
+ */
+public class DefaultOrderHistoryDao extends AbstractItemDao implements OrderHistoryDao
+{
+	private static final String SELECT = "SELECT {o:" + OrderModel.PK + "}, {o:" + OrderModel.CODE + "}, {o:" + OrderModel.GUID
+			+ "}, {o:" + OrderModel.DATE + "}, {s:" + EnumerationValueModel.CODE + "}, {o:" + OrderModel.STATUSDISPLAY
+			+ "}, {o:" + OrderModel.TOTALPRICE + "}, {o:" + OrderModel.TOTALTAX + "}, {o:" + OrderModel.NET + "}, {c:"
+			+ CurrencyModel.ISOCODE + "} FROM {"
+			+ OrderModel._TYPECODE + " AS o JOIN " + CurrencyModel._TYPECODE + " AS c ON {o:" + OrderModel.CURRENCY + "} = {c:"
+			+ CurrencyModel.PK + "} LEFT JOIN " + OrderStatus._TYPECODE + " AS s ON {o:" + OrderModel.STATUS + "} = {s:"
+			+ EnumerationValueModel.PK + "}} WHERE {o:" + OrderModel.USER + "} = ?user AND {o:" + OrderModel.STORE
+			+ "} = ?store AND {o:" + OrderModel.VERSIONID + "} IS NULL AND {o:" + OrderModel.DATE + "} IS NOT NULL";
+	private static final String STATUS_RESTRICTION = " AND {o:" + OrderModel.STATUS + "} IN (?statuses)";
+	private static final String CURSOR_RESTRICTION = " AND ({o:" + OrderModel.DATE + "} < ?date OR ({o:" + OrderModel.DATE
+			+ "} = ?date AND {o:" + OrderModel.PK + "} < ?pk))";
+	private static final String ORDER_BY = " ORDER BY {o:" + OrderModel.DATE + "} DESC, {o:" + OrderModel.PK + "} DESC";
+
+	@Override
+	public List<OrderHistoryRow> findOrderHistoryRows(final UserModel user, final BaseStoreModel store,
+			final Collection<OrderStatus> statuses, final OrderHistoryCursor after, final int count)
+	{
+		final StringBuilder query = new StringBuilder(SELECT);
+		if (statuses != null && !statuses.isEmpty())
+		{
+			query.append(STATUS_RESTRICTION);
+		}
+		if (after != null)
+		{
+			query.append(CURSOR_RESTRICTION);
+		}
+		query.append(ORDER_BY);
+
+		final FlexibleSearchQuery searchQuery = new FlexibleSearchQuery(query.toString());
+		searchQuery.addQueryParameter("user", user);
+		searchQuery.addQueryParameter("store", store);
+		if (statuses != null && !statuses.isEmpty())
+		{
+			searchQuery.addQueryParameter("statuses", statuses);
+		}
+		if (after != null)
+		{
+			searchQuery.addQueryParameter("date", after.getDate());
+			searchQuery.addQueryParameter("pk", Long.valueOf(after.getPk()));
+		}
+		searchQuery.setResultClassList(Arrays.asList(Long.class, String.class, String.class, Date.class, String.class,
+				String.class, Double.class, Double.class, Boolean.class, String.class));
+		searchQuery.setCount(count);
+		searchQuery.setNeedTotal(false);
+
+		final SearchResult<List<Object>> result = getFlexibleSearchService().search(searchQuery);
+		final List<OrderHistoryRow> rows = new ArrayList<>(result.getResult().size());
+		for (final List<Object> row : result.getResult())
+		{
+			rows.add(new OrderHistoryRow(((Long) row.get(0)).longValue(), (String) row.get(1), (String) row.get(2),
+					(Date) row.get(3), (String) row.get(4), (String) row.get(5), (Double) row.get(6), (Double) row.get(7),
+					Boolean.TRUE.equals(row.get(8)), (String) row.get(9)));
+		}
+		return rows;
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.order.impl;
+
+import de.hybris.platform.commercefacades.order.data.OrderHistoriesData;
+import de.hybris.platform.commercefacades.order.data.OrderHistoryData;
+import de.hybris.platform.commercefacades.product.PriceDataFactory;
+import de.hybris.platform.commercefacades.product.data.PriceDataType;
+import de.hybris.platform.commerceservices.search.pagedata.PaginationData;
+import de.hybris.platform.core.enums.OrderStatus;
+import de.hybris.platform.core.model.user.UserModel;
+import de.hybris.platform.servicelayer.user.UserService;
+import de.hybris.platform.store.services.BaseStoreService;
+import org.astra.training.webservices.cache.CacheGenerationService;
+import org.astra.training.webservices.order.OrderHistoryCursor;
+import org.astra.training.webservices.order.OrderHistoryFacade;
+import org.astra.training.webservices.order.OrderHistoryRow;
+import org.astra.training.webservices.order.dao.OrderHistoryDao;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+import org.springframework.beans.factory.annotation.Required;
+
+
+/**
+ * Default implementation of {@link OrderHistoryFacade}. The orders are read as {@link OrderHistoryRow}s and turned into
+ * order history data the same way the order history populator does, without loading the orders. One more order than
+ * requested is read to tell whether there is a next page.
+ * <p>
+ * The stamp embeds the generation of the current user in the {@link #ORDER_REGION} region of the
+ * {@link CacheGenerationService}, which moves on with every change of an order of the user.
+ */
+public class DefaultOrderHistoryFacade implements OrderHistoryFacade
+{
+	public static final String ORDER_REGION = "order";
+
+	private int maxPageSize = 100;
+	private OrderHistoryDao orderHistoryDao;
+	private UserService userService;
+	private BaseStoreService baseStoreService;
+	private PriceDataFactory priceDataFactory;
+	private CacheGenerationService cacheGenerationService;
+
+	@Override
+	public OrderHistoriesData getOrderHistory(final Set<OrderStatus> statuses, final String cursor, final int pageSize)
+	{
+		final OrderHistoryCursor after = StringUtils.isEmpty(cursor) ? null : OrderHistoryCursor.decode(cursor);
+		final int size = Math.max(1, Math.min(pageSize, getMaxPageSize()));
+
+		final List<OrderHistoryRow> rows = getOrderHistoryDao().findOrderHistoryRows(getUserService().getCurrentUser(),
+				getBaseStoreService().getCurrentBaseStore(), statuses, after, size + 1);
+
+		final List<OrderHistoryData> orders = new ArrayList<>(Math.min(rows.size(), size));
+		for (int i = 0; i < rows.size() && i < size; i++)
+		{
+			orders.add(convert(rows.get(i)));
+		}
+
+		final PaginationData pagination = new PaginationData();
+		pagination.setPageSize(size);
+
+		final OrderHistoriesData result = new OrderHistoriesData();
+		result.setOrders(orders);
+		result.setPagination(pagination);
+		if (rows.size() > size)
+		{
+			final OrderHistoryRow last = rows.get(size - 1);
+			result.setNextCursor(new OrderHistoryCursor(last.getDate(), last.getPk()).encode());
+		}
+		return result;
+	}
+
+	protected OrderHistoryData convert(final OrderHistoryRow row)
+	{
+		final OrderHistoryData order = new OrderHistoryData();
+		order.setCode(row.getCode());
+		order.setGuid(row.getGuid());
+		order.setPlaced(row.getDate());
+		if (row.getStatusCode() != null)
+		{
+			order.setStatus(OrderStatus.valueOf(row.getStatusCode()));
+		}
+		order.setStatusDisplay(row.getStatusDisplay());
+		if (row.getTotalPrice() != null)
+		{
+			BigDecimal total = BigDecimal.valueOf(row.getTotalPrice().doubleValue());
+			if (row.isNet() && row.getTotalTax() != null)
+			{
+				total = total.add(BigDecimal.valueOf(row.getTotalTax().doubleValue()));
+			}
+			order.setTotal(getPriceDataFactory().create(PriceDataType.BUY, total, row.getCurrencyIsocode()));
+		}
+		return order;
+	}
+
+	@Override
+	public String getOrderHistoryStamp()
+	{
+		final UserModel user = getUserService().getCurrentUser();
+		return user.getUid() + ':' + getCacheGenerationService().getGeneration(ORDER_REGION, user.getUid());
+	}
+
+	protected int getMaxPageSize()
+	{
+		return maxPageSize;
+	}
+
+	public void setMaxPageSize(final int maxPageSize)
+	{
+		this.maxPageSize = maxPageSize;
+	}
+
+	protected OrderHistoryDao getOrderHistoryDao()
+	{
+		return orderHistoryDao;
+	}
+
+	@Required
+	public void setOrderHistoryDao(final OrderHistoryDao orderHistoryDao)
+	{
+		this.orderHistoryDao = orderHistoryDao;
+	}
+
+	protected UserService getUserService()
+	{
+		return userService;
+	}
+
+	@Required
+	public void setUserService(final UserService userService)
+	{
+		this.userService = userService;
+	}
+
+	protected BaseStoreService getBaseStoreService()
+	{
+		return baseStoreService;
+	}
+
+	@Required
+	public void setBaseStoreService(final BaseStoreService baseStoreService)
+	{
+		this.baseStoreService = baseStoreService;
+	}
+
+	protected PriceDataFactory getPriceDataFactory()
+	{
+		return priceDataFactory;
+	}
+
+	@Required
+	public void setPriceDataFactory(final PriceDataFactory priceDataFactory)
+	{
+		this.priceDataFactory = priceDataFactory;
+	}
+
+	protected CacheGenerationService getCacheGenerationService()
+	{
+		return cacheGenerationService;
+	}
+
+	@Required
+	public void setCacheGenerationService(final CacheGenerationService cacheGenerationService)
+	{
+		this.cacheGenerationService = cacheGenerationService;
+	}
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.product.reference;
+
+import de.hybris.platform.catalog.enums.ProductReferenceTypeEnum;
+import de.hybris.platform.commercefacades.product.ProductOption;
+import de.hybris.platform.commercefacades.product.data.ProductReferenceData;
+import de.hybris.platform.commerceservices.search.pagedata.PageableData;
+import de.hybris.platform.commerceservices.search.pagedata.SearchPageData;
+import de.hybris.platform.servicelayer.exceptions.UnknownIdentifierException;
+
+import java.util.Collection;
+import java.util.List;
+
+
+/**
+ * Product reference facade returning the references of a product page by page. Only the targets of the requested page
+ * are converted.
+ */
+public interface PagedProductReferenceFacade
+{
+	/**
+	 * Returns one page of the active references of a product.
+	 *
+	 * @param productCode
+	 * 		code of the source product
+	 * @param referenceTypes
+	 * 		reference types to return, references are ordered by type in the order given here
+	 * @param options
+	 * 		options used to populate the target products
+	 * @param pageableData
+	 * 		current page and page size
+	 * @return the requested page of references together with the pagination data
+	 * @throws UnknownIdentifierException
+	 * 		when no product with the given code exists
+	 */
+	SearchPageData<ProductReferenceData> getProductReferencesForCode(String productCode,
+			List<ProductReferenceTypeEnum> referenceTypes, Collection<ProductOption> options, PageableData pageableData);
+}
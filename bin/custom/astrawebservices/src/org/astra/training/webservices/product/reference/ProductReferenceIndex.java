@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.product.reference;
+
+import de.hybris.platform.catalog.enums.ProductReferenceTypeEnum;
+import de.hybris.platform.core.PK;
+import de.hybris.platform.core.model.product.ProductModel;
+
+import java.util.List;
+
+
+/**
+ * Index of the active product references of a product, kept per source product, reference type and restriction
+ * context. It holds primary keys only, so that a page of references can be picked without loading or converting the
+ * others.
+ */
+public interface ProductReferenceIndex
+{
+	/**
+	 * Cache region of {@link org.astra.training.webservices.cache.CacheGenerationService} invalidated per source product
+	 * code whenever a product reference changes.
+	 */
+	String REGION = "productReference";
+
+	/**
+	 * Returns the primary keys of the active references of the given type visible in the current session, in the order
+	 * of the references of the product followed by those of its base products.
+	 *
+	 * @param source
+	 * 		the source product
+	 * @param referenceType
+	 * 		the reference type
+	 * @return unmodifiable list of product reference primary keys
+	 */
+	List<PK> getReferencePks(ProductModel source, ProductReferenceTypeEnum referenceType);
+}
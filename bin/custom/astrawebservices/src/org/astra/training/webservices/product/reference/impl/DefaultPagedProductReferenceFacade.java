@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.product.reference.impl;
+
+import de.hybris.platform.catalog.enums.ProductReferenceTypeEnum;
+import de.hybris.platform.catalog.model.ProductReferenceModel;
+import de.hybris.platform.commercefacades.product.ProductOption;
+import de.hybris.platform.commercefacades.product.data.ProductData;
+import de.hybris.platform.commercefacades.product.data.ProductReferenceData;
+import de.hybris.platform.commerceservices.search.pagedata.PageableData;
+import de.hybris.platform.commerceservices.search.pagedata.PaginationData;
+import de.hybris.platform.commerceservices.search.pagedata.SearchPageData;
+import de.hybris.platform.converters.ConfigurablePopulator;
+import de.hybris.platform.core.PK;
+import de.hybris.platform.core.model.product.ProductModel;
+import de.hybris.platform.product.ProductService;
+import de.hybris.platform.servicelayer.dto.converter.Converter;
+import de.hybris.platform.servicelayer.model.ModelService;
+import org.astra.training.webservices.product.reference.PagedProductReferenceFacade;
+import org.astra.training.webservices.product.reference.ProductReferenceIndex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Required;
+
+
+/**
+ * Default implementation of {@link PagedProductReferenceFacade}. The page is cut from the {@link ProductReferenceIndex}
+ * and only the references of the page are loaded and converted.
+ */
+public class DefaultPagedProductReferenceFacade implements PagedProductReferenceFacade
+{
+	private ProductService productService;
+	private ModelService modelService;
+	private ProductReferenceIndex productReferenceIndex;
+	private Converter<ProductModel, ProductData> productConverter;
+	private ConfigurablePopulator<ProductModel, ProductData, ProductOption> productConfiguredPopulator;
+
+	@Override
+	public SearchPageData<ProductReferenceData> getProductReferencesForCode(final String productCode,
+			final List<ProductReferenceTypeEnum> referenceTypes, final Collection<ProductOption> options,
+			final PageableData pageableData)
+	{
+		final ProductModel product = getProductService().getProductForCode(productCode);
+
+		final List<List<PK>> referencePksByType = new ArrayList<>(referenceTypes.size());
+		long total = 0;
+		for (final ProductReferenceTypeEnum referenceType : referenceTypes)
+		{
+			final List<PK> referencePks = getProductReferenceIndex().getReferencePks(product, referenceType);
+			referencePksByType.add(referencePks);
+			total += referencePks.size();
+		}
+
+		final long offset = (long) pageableData.getCurrentPage() * pageableData.getPageSize();
+		final List<PK> pagePks = cutPage(referencePksByType, offset, pageableData.getPageSize());
+		final List<ProductReferenceData> references = new ArrayList<>(pagePks.size());
+		for (final PK referencePk : pagePks)
+		{
+			references.add(convert(getModelService().get(referencePk), options));
+		}
+
+		final SearchPageData<ProductReferenceData> result = new SearchPageData<>();
+		result.setResults(references);
+		result.setPagination(createPagination(pageableData, total));
+		result.setSorts(Collections.emptyList());
+		return result;
+	}
+
+	protected List<PK> cutPage(final List<List<PK>> referencePksByType, final long offset, final int pageSize)
+	{
+		final List<PK> page = new ArrayList<>(pageSize);
+		long skip = offset;
+		for (final List<PK> referencePks : referencePksByType)
+		{
+			if (page.size() >= pageSize)
+			{
+				break;
+			}
+			if (skip >= referencePks.size())
+			{
+				skip -= referencePks.size();
+				continue;
+			}
+			final int from = (int) skip;
+			final int to = Math.min(referencePks.size(), from + pageSize - page.size());
+			page.addAll(referencePks.subList(from, to));
+			skip = 0;
+		}
+		return page;
+	}
+
+	protected ProductReferenceData convert(final ProductReferenceModel reference, final Collection<ProductOption> options)
+	{
+		final ProductReferenceData data = new ProductReferenceData();
+		data.setReferenceType(reference.getReferenceType());
+		data.setDescription(reference.getDescription());
+		data.setQuantity(reference.getQuantity());
+		data.setPreselected(reference.getPreselected());
+
+		final ProductModel target = reference.getTarget();
+		final ProductData targetData = getProductConverter().convert(target);
+		getProductConfiguredPopulator().populate(target, targetData, options);
+		data.setTarget(targetData);
+		return data;
+	}
+
+	protected PaginationData createPagination(final PageableData pageableData, final long total)
+	{
+		final PaginationData pagination = new PaginationData();
+		pagination.setCurrentPage(pageableData.getCurrentPage());
+		pagination.setPageSize(pageableData.getPageSize());
+		pagination.setTotalNumberOfResults(total);
+		pagination.setNumberOfPages((int) ((total + pageableData.getPageSize() - 1) / pageableData.getPageSize()));
+		return pagination;
+	}
+
+	protected ProductService getProductService()
+	{
+		return productService;
+	}
+
+	@Required
+	public void setProductService(final ProductService productService)
+	{
+		this.productService = productService;
+	}
+
+	protected ModelService getModelService()
+	{
+		return modelService;
+	}
+
+	@Required
+	public void setModelService(final ModelService modelService)
+	{
+		this.modelService = modelService;
+	}
+
+	protected ProductReferenceIndex getProductReferenceIndex()
+	{
+		return productReferenceIndex;
+	}
+
+	@Required
+	public void setProductReferenceIndex(final ProductReferenceIndex productReferenceIndex)
+	{
+		this.productReferenceIndex = productReferenceIndex;
+	}
+
+	protected Converter<ProductModel, ProductData> getProductConverter()
+	{
+		return productConverter;
+	}
+
+	@Required
+	public void setProductConverter(final Converter<ProductModel, ProductData> productConverter)
+	{
+		this.productConverter = productConverter;
+	}
+
+	protected ConfigurablePopulator<ProductModel, ProductData, ProductOption> getProductConfiguredPopulator()
+	{
+		return productConfiguredPopulator;
+	}
+
+	@Required
+	public void setProductConfiguredPopulator(
+			final ConfigurablePopulator<ProductModel, ProductData, ProductOption> productConfiguredPopulator)
+	{
+		this.productConfiguredPopulator = productConfiguredPopulator;
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.product.reference.impl;
+
+import de.hybris.platform.catalog.CatalogVersionService;
+import de.hybris.platform.catalog.ProductReferenceService;
+import de.hybris.platform.catalog.enums.ProductReferenceTypeEnum;
+import de.hybris.platform.catalog.model.CatalogVersionModel;
+import de.hybris.platform.catalog.model.ProductReferenceModel;
+import de.hybris.platform.core.PK;
+import de.hybris.platform.core.model.product.ProductModel;
+import de.hybris.platform.core.model.user.UserGroupModel;
+import de.hybris.platform.search.restriction.SearchRestrictionService;
+import de.hybris.platform.servicelayer.user.UserService;
+import de.hybris.platform.variants.model.VariantProductModel;
+import org.astra.training.webservices.cache.CacheGenerationService;
+import org.astra.training.webservices.product.reference.ProductReferenceIndex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Required;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+
+/**
+ * Default implementation of {@link ProductReferenceIndex} backed by a Guava cache. Like
+ * {@link de.hybris.platform.commerceservices.product.impl.DefaultCommerceProductReferenceService}, the references of a
+ * variant include those of its base products. Index entries are kept per restriction context: the session catalog
+ * versions, the user groups of the current user and whether search restrictions apply, so that references hidden from
+ * one customer are never served to another from the index.
+ * <p>
+ * Every index entry remembers the generations of the codes of its source products in the {@link #REGION} region of the
+ * {@link CacheGenerationService}; an entry built before the last change of a reference of one of them is rebuilt on
+ * the next lookup. As generations are invalidated on all cluster nodes, no node keeps serving an outdated index.
+ */
+public class DefaultProductReferenceIndex implements ProductReferenceIndex, InitializingBean
+{
+	private static final char KEY_SEPARATOR = '|';
+
+	private long maxEntries = 10000;
+	private ProductReferenceService productReferenceService;
+	private CatalogVersionService catalogVersionService;
+	private UserService userService;
+	private SearchRestrictionService searchRestrictionService;
+	private CacheGenerationService cacheGenerationService;
+
+	private Cache<String, IndexEntry> entries;
+
+	@Override
+	public void afterPropertiesSet()
+	{
+		entries = CacheBuilder.newBuilder().maximumSize(getMaxEntries()).build();
+	}
+
+	@Override
+	public List<PK> getReferencePks(final ProductModel source, final ProductReferenceTypeEnum referenceType)
+	{
+		final List<ProductModel> sources = resolveSources(source);
+		// read before building, a change during the build leaves the entry outdated and it is built again
+		final String generation = getGeneration(sources);
+		final String key = createKey(source.getPk(), referenceType);
+
+		final IndexEntry entry = entries.getIfPresent(key);
+		if (entry != null && entry.generation.equals(generation))
+		{
+			return entry.referencePks;
+		}
+
+		final List<PK> referencePks = loadReferencePks(sources, referenceType);
+		entries.put(key, new IndexEntry(generation, referencePks));
+		return referencePks;
+	}
+
+	/**
+	 * @return the product followed by its base products
+	 */
+	protected List<ProductModel> resolveSources(final ProductModel product)
+	{
+		final List<ProductModel> sources = new ArrayList<>(2);
+		ProductModel current = product;
+		while (current != null && !sources.contains(current))
+		{
+			sources.add(current);
+			current = current instanceof VariantProductModel ? ((VariantProductModel) current).getBaseProduct() : null;
+		}
+		return sources;
+	}
+
+	protected String getGeneration(final List<ProductModel> sources)
+	{
+		final StringBuilder generation = new StringBuilder();
+		for (final ProductModel product : sources)
+		{
+			generation.append(getCacheGenerationService().getGeneration(REGION, product.getCode())).append(KEY_SEPARATOR);
+		}
+		return generation.toString();
+	}
+
+	/**
+	 * Loads the references of all sources in order. A target referenced by the product itself is not repeated for a
+	 * base product.
+	 */
+	protected List<PK> loadReferencePks(final List<ProductModel> sources, final ProductReferenceTypeEnum referenceType)
+	{
+		final List<PK> referencePks = new ArrayList<>();
+		final Set<ProductModel> targets = new HashSet<>();
+		for (final ProductModel product : sources)
+		{
+			final Collection<ProductReferenceModel> references = getProductReferenceService()
+					.getProductReferencesForSourceProduct(product, referenceType, true);
+			if (references == null)
+			{
+				continue;
+			}
+			for (final ProductReferenceModel reference : references)
+			{
+				if (targets.add(reference.getTarget()))
+				{
+					referencePks.add(reference.getPk());
+				}
+			}
+		}
+		return referencePks.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(referencePks);
+	}
+
+	protected String createKey(final PK sourcePk, final ProductReferenceTypeEnum referenceType)
+	{
+		return sourcePk.getLongValueAsString() + KEY_SEPARATOR + referenceType.getCode() + KEY_SEPARATOR
+				+ createRestrictionContextKey();
+	}
+
+	protected String createRestrictionContextKey()
+	{
+		final String catalogVersions = getCatalogVersionService().getSessionCatalogVersions().stream()
+				.map(CatalogVersionModel::getPk).map(PK::getLongValueAsString).sorted().collect(Collectors.joining(","));
+		final Set<UserGroupModel> userGroups = getUserService().getAllUserGroupsForUser(getUserService().getCurrentUser());
+		return catalogVersions + KEY_SEPARATOR + userGroups.stream().map(UserGroupModel::getUid).sorted()
+				.collect(Collectors.joining(",")) + KEY_SEPARATOR + getSearchRestrictionService().isSearchRestrictionsEnabled();
+	}
+
+	protected long getMaxEntries()
+	{
+		return maxEntries;
+	}
+
+	public void setMaxEntries(final long maxEntries)
+	{
+		this.maxEntries = maxEntries;
+	}
+
+	protected ProductReferenceService getProductReferenceService()
+	{
+		return productReferenceService;
+	}
+
+	@Required
+	public void setProductReferenceService(final ProductReferenceService productReferenceService)
+	{
+		this.productReferenceService = productReferenceService;
+	}
+
+	protected CatalogVersionService getCatalogVersionService()
+	{
+		return catalogVersionService;
+	}
+
+	@Required
+	public void setCatalogVersionService(final CatalogVersionService catalogVersionService)
+	{
+		this.catalogVersionService = catalogVersionService;
+	}
+
+	protected UserService getUserService()
+	{
+		return userService;
+	}
+
+	@Required
+	public void setUserService(final UserService userService)
+	{
+		this.userService = userService;
+	}
+
+	protected SearchRestrictionService getSearchRestrictionService()
+	{
+		return searchRestrictionService;
+	}
+
+	@Required
+	public void setSearchRestrictionService(final SearchRestrictionService searchRestrictionService)
+	{
+		this.searchRestrictionService = searchRestrictionService;
+	}
+
+	protected CacheGenerationService getCacheGenerationService()
+	{
+		return cacheGenerationService;
+	}
+
+	@Required
+	public void setCacheGenerationService(final CacheGenerationService cacheGenerationService)
+	{
+		this.cacheGenerationService = cacheGenerationService;
+	}
+
+	protected static final class IndexEntry
+	{
+		private final String generation;
+		private final List<PK> referencePks;
+
+		protected IndexEntry(final String generation, final List<PK> referencePks)
+		{
+			this.generation = generation;
+			this.referencePks = referencePks;
+		}
+	}
+}
@@ -7,6 +7,9 @@ package org.astra.training.webservices.stock;
 import de.hybris.platform.commercefacades.product.data.StockData;
 import de.hybris.platform.servicelayer.exceptions.AmbiguousIdentifierException;
 import de.hybris.platform.servicelayer.exceptions.UnknownIdentifierException;
+import org.astra.training.webservices.stock.data.ProductStockDataList;
+
+import java.util.List;
 
 
 /**
@@ -60,4 +63,28 @@ public interface CommerceStockFacade
 	 */
 	StockData getStockDataForProductAndPointOfService(String productCode, String storeName)
 			throws UnknownIdentifierException, IllegalArgumentException, AmbiguousIdentifierException; //NOSONAR
+
+	/**
+	 * Returns stock data for several products at once. Without store names the stock of the base store of the given site
+	 * is returned for every product, otherwise the stock of every product in every given store. Stock levels of all
+	 * products are loaded with a single query, the products with another one, and the result follows the order of the
+	 * given product codes (and store names). Status and level are computed from the stock levels in the warehouses the
+	 * commerce stock service would select, with its strategies, and kept in a short lived snapshot cache.
+	 *
+	 * @param baseSiteId
+	 * 		Base site ID
+	 * @param productCodes
+	 * 		Product codes
+	 * @param storeNames
+	 * 		Store names, may be empty
+	 * @return {@link ProductStockDataList} with one entry per product (and store)
+	 * @throws UnknownIdentifierException
+	 * 		the unknown identifier exception when no base site, store or product with given id was found
+	 * @throws IllegalArgumentException
+	 * 		the illegal argument exception when base site id or product codes are null
+	 * @throws AmbiguousIdentifierException
+	 * 		the ambiguous identifier exception when there is more than one product with one of the given codes
+	 */
+	ProductStockDataList getStockDataForProducts(String baseSiteId, List<String> productCodes, List<String> storeNames)
+			throws UnknownIdentifierException, IllegalArgumentException, AmbiguousIdentifierException; //NOSONAR
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.stock;
+
+import de.hybris.platform.commercefacades.product.data.StockData;
+import de.hybris.platform.core.PK;
+
+import java.util.Collection;
+
+
+/**
+ * Short lived cache of computed stock data. Entries are keyed by product code and stock scope (a base store or a point
+ * of service) and are dropped as soon as one of the stock levels they were computed from changes.
+ */
+public interface StockSnapshotCache
+{
+	/**
+	 * Returns the cached stock data for the given product and scope.
+	 *
+	 * @param productCode
+	 * 		product code
+	 * @param scope
+	 * 		stock scope, e.g. the base store or point of service the stock was computed for
+	 * @return cached stock data or <tt>null</tt> when there is no valid entry
+	 */
+	StockData get(String productCode, String scope);
+
+	/**
+	 * Stores stock data for the given product and scope.
+	 *
+	 * @param productCode
+	 * 		product code
+	 * @param scope
+	 * 		stock scope
+	 * @param stockData
+	 * 		the computed stock data
+	 * @param stockLevelPks
+	 * 		primary keys of the stock levels the data was computed from
+	 */
+	void put(String productCode, String scope, StockData stockData, Collection<PK> stockLevelPks);
+
+	/**
+	 * Drops all cached entries of the given product.
+	 *
+	 * @param productCode
+	 * 		product code
+	 */
+	void invalidate(String productCode);
+}
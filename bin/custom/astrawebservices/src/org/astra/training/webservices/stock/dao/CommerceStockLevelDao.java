@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.stock.dao;
+
+import de.hybris.platform.core.model.product.ProductModel;
+import de.hybris.platform.ordersplitting.model.StockLevelModel;
+import de.hybris.platform.ordersplitting.model.WarehouseModel;
+
+import java.util.Collection;
+import java.util.List;
+
+
+/**
+ * Loads products and their stock levels for several products at once.
+ */
+public interface CommerceStockLevelDao
+{
+	/**
+	 * Returns the products with the given codes in the session catalog versions with a single query, the same products
+	 * {@link de.hybris.platform.product.ProductService#getProductForCode(String)} finds one by one.
+	 *
+	 * @param productCodes
+	 * 		codes of the products
+	 * @return products, in no particular order, several per code if a code is ambiguous
+	 */
+	List<ProductModel> findProducts(Collection<String> productCodes);
+
+	/**
+	 * Returns the stock levels of all given products in all given warehouses with a single query.
+	 *
+	 * @param productCodes
+	 * 		codes of the products
+	 * @param warehouses
+	 * 		warehouses to look into
+	 * @return stock levels, in no particular order
+	 */
+	List<StockLevelModel> findStockLevels(Collection<String> productCodes, Collection<WarehouseModel> warehouses);
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.stock.dao.impl;
+
+import de.hybris.platform.core.model.product.ProductModel;
+import de.hybris.platform.ordersplitting.model.StockLevelModel;
+import de.hybris.platform.ordersplitting.model.WarehouseModel;
+import de.hybris.platform.servicelayer.internal.dao.AbstractItemDao;
+import de.hybris.platform.servicelayer.search.FlexibleSearchQuery;
+import de.hybris.platform.servicelayer.search.SearchResult;
+import org.astra.training.webservices.stock.dao.CommerceStockLevelDao;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.collections.CollectionUtils;
+
+
+/**
+ * Default implementation of {@link CommerceStockLevelDao}.
+ */
+public class DefaultCommerceStockLevelDao extends AbstractItemDao implements CommerceStockLevelDao
+{
+	private static final String FIND_PRODUCTS = "SELECT {" + ProductModel.PK + "} FROM {" + ProductModel._TYPECODE
+			+ "} WHERE {" + ProductModel.CODE + "} IN (?productCodes)";
+	private static final String FIND_STOCK_LEVELS = "SELECT {" + StockLevelModel.PK + "} FROM {" + StockLevelModel._TYPECODE
+			+ "} WHERE {" + StockLevelModel.PRODUCTCODE + "} IN (?productCodes) AND {" + StockLevelModel.WAREHOUSE
+			+ "} IN (?warehouses)";
+
+	@Override
+	public List<ProductModel> findProducts(final Collection<String> productCodes)
+	{
+		if (CollectionUtils.isEmpty(productCodes))
+		{
+			return Collections.emptyList();
+		}
+
+		// like the product DAO, the query relies on the catalog version restriction of the session
+		final FlexibleSearchQuery searchQuery = new FlexibleSearchQuery(FIND_PRODUCTS);
+		searchQuery.addQueryParameter("productCodes", productCodes);
+
+		final SearchResult<ProductModel> result = getFlexibleSearchService().search(searchQuery);
+		return result.getResult();
+	}
+
+	@Override
+	public List<StockLevelModel> findStockLevels(final Collection<String> productCodes,
+			final Collection<WarehouseModel> warehouses)
+	{
+		if (CollectionUtils.isEmpty(productCodes) || CollectionUtils.isEmpty(warehouses))
+		{
+			return Collections.emptyList();
+		}
+
+		final FlexibleSearchQuery searchQuery = new FlexibleSearchQuery(FIND_STOCK_LEVELS);
+		searchQuery.addQueryParameter("productCodes", productCodes);
+		searchQuery.addQueryParameter("warehouses", warehouses);
+
+		final SearchResult<StockLevelModel> result = getFlexibleSearchService().search(searchQuery);
+		return result.getResult();
+	}
+}
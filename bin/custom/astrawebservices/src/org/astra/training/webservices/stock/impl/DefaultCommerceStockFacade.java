@@ -7,18 +7,41 @@ import de.hybris.platform.basecommerce.enums.StockLevelStatus;
 import de.hybris.platform.basecommerce.model.site.BaseSiteModel;
 import de.hybris.platform.commercefacades.product.data.StockData;
 import de.hybris.platform.commerceservices.stock.CommerceStockService;
+import de.hybris.platform.commerceservices.stock.strategies.CommerceAvailabilityCalculationStrategy;
+import de.hybris.platform.commerceservices.stock.strategies.WarehouseSelectionStrategy;
+import de.hybris.platform.core.PK;
 import de.hybris.platform.core.model.product.ProductModel;
+import de.hybris.platform.ordersplitting.model.StockLevelModel;
+import de.hybris.platform.ordersplitting.model.WarehouseModel;
 import de.hybris.platform.product.ProductService;
 import de.hybris.platform.servicelayer.exceptions.AmbiguousIdentifierException;
 import de.hybris.platform.servicelayer.exceptions.UnknownIdentifierException;
 import de.hybris.platform.servicelayer.util.ServicesUtil;
 import de.hybris.platform.site.BaseSiteService;
+import de.hybris.platform.stock.strategy.StockLevelStatusStrategy;
 import de.hybris.platform.storelocator.model.PointOfServiceModel;
 import de.hybris.platform.storelocator.pos.PointOfServiceService;
+import de.hybris.platform.store.BaseStoreModel;
 import de.hybris.platform.webservicescommons.util.YSanitizer;
 import org.astra.training.webservices.stock.CommerceStockFacade;
+import org.astra.training.webservices.stock.StockSnapshotCache;
+import org.astra.training.webservices.stock.dao.CommerceStockLevelDao;
+import org.astra.training.webservices.stock.data.ProductStockData;
+import org.astra.training.webservices.stock.data.ProductStockDataList;
 import org.astra.training.webservices.strategies.BaseStoreForSiteSelectorStrategy;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.commons.collections.CollectionUtils;
 import org.springframework.beans.factory.annotation.Required;
 
 
@@ -35,39 +58,27 @@ public class DefaultCommerceStockFacade implements CommerceStockFacade
 	private ProductService productService;
 	private PointOfServiceService pointOfServiceService;
 	private BaseStoreForSiteSelectorStrategy baseStoreForSiteSelectorStrategy;
+	private CommerceStockLevelDao commerceStockLevelDao;
+	private StockSnapshotCache stockSnapshotCache;
+	private WarehouseSelectionStrategy warehouseSelectionStrategy;
+	private StockLevelStatusStrategy stockLevelStatusStrategy;
+	private CommerceAvailabilityCalculationStrategy commerceStockLevelCalculationStrategy;
 
 	@Override
 	public boolean isStockSystemEnabled(final String baseSiteId) throws UnknownIdentifierException //NOSONAR
 	{
-		// it's not checked in the service layer (!) :
-		ServicesUtil.validateParameterNotNull(baseSiteId, "Parameter baseSiteId must not be null");
-		final BaseSiteModel baseSiteModel = getBaseSiteService().getBaseSiteForUID(baseSiteId);
-		if (baseSiteModel == null)
-		{
-			throw new UnknownIdentifierException("Base site with uid '" + YSanitizer.sanitize(baseSiteId) + "' not found!");
-		}
-
-		return getCommerceStockService().isStockSystemEnabled(getBaseStoreForSiteSelectorStrategy().getBaseStore(baseSiteModel));
+		return getCommerceStockService().isStockSystemEnabled(getBaseStoreForSiteId(baseSiteId));
 	}
 
 	@Override
 	public StockData getStockDataForProductAndBaseSite(final String productCode, final String baseSiteId)
 			throws UnknownIdentifierException, IllegalArgumentException, AmbiguousIdentifierException //NOSONAR
 	{
-		// it's not checked in the service layer (!) :
-		ServicesUtil.validateParameterNotNull(baseSiteId, "Parameter baseSiteId must not be null");
-		final BaseSiteModel baseSiteModel = getBaseSiteService().getBaseSiteForUID(baseSiteId);
-		if (baseSiteModel == null)
-		{
-			throw new UnknownIdentifierException("Base site with uid '" + YSanitizer.sanitize(baseSiteId) + "' not found!");
-		}
-
+		final BaseStoreModel baseStore = getBaseStoreForSiteId(baseSiteId);
 		final ProductModel productModel = getProductService().getProductForCode(productCode);
 
-		return createStockData(getCommerceStockService().getStockLevelStatusForProductAndBaseStore(productModel,
-				getBaseStoreForSiteSelectorStrategy().getBaseStore(baseSiteModel)), getCommerceStockService()
-				.getStockLevelForProductAndBaseStore(productModel,
-						getBaseStoreForSiteSelectorStrategy().getBaseStore(baseSiteModel)));
+		return createStockData(getCommerceStockService().getStockLevelStatusForProductAndBaseStore(productModel, baseStore),
+				getCommerceStockService().getStockLevelForProductAndBaseStore(productModel, baseStore));
 	}
 
 	@Override
@@ -82,6 +93,168 @@ public class DefaultCommerceStockFacade implements CommerceStockFacade
 				getCommerceStockService().getStockLevelForProductAndPointOfService(productModel, pointOfServiceModel));
 	}
 
+	@Override
+	public ProductStockDataList getStockDataForProducts(final String baseSiteId, final List<String> productCodes,
+			final List<String> storeNames)
+			throws UnknownIdentifierException, IllegalArgumentException, AmbiguousIdentifierException //NOSONAR
+	{
+		ServicesUtil.validateParameterNotNull(productCodes, "Parameter productCodes must not be null");
+		final List<StockScope> scopes = createStockScopes(getBaseStoreForSiteId(baseSiteId), storeNames);
+		final Set<String> codes = new LinkedHashSet<>(productCodes);
+
+		final Map<String, StockData> stockByKey = new HashMap<>();
+		final Set<String> missingCodes = new LinkedHashSet<>();
+		for (final String code : codes)
+		{
+			for (final StockScope scope : scopes)
+			{
+				final StockData cached = getStockSnapshotCache().get(code, scope.getKey());
+				if (cached != null)
+				{
+					stockByKey.put(createKey(code, scope), cached);
+				}
+				else
+				{
+					missingCodes.add(code);
+				}
+			}
+		}
+
+		if (!missingCodes.isEmpty())
+		{
+			stockByKey.putAll(loadStockData(findProducts(missingCodes), scopes));
+		}
+
+		final ProductStockDataList result = new ProductStockDataList();
+		final List<ProductStockData> productStocks = new ArrayList<>(codes.size() * scopes.size());
+		for (final String code : codes)
+		{
+			for (final StockScope scope : scopes)
+			{
+				final ProductStockData productStock = new ProductStockData();
+				productStock.setProductCode(code);
+				productStock.setStoreName(scope.getStoreName());
+				productStock.setStock(stockByKey.get(createKey(code, scope)));
+				productStocks.add(productStock);
+			}
+		}
+		result.setProductStocks(productStocks);
+		return result;
+	}
+
+	/**
+	 * Loads the products with one query. Unknown and ambiguous codes fail the request, like the single product lookup.
+	 */
+	protected List<ProductModel> findProducts(final Collection<String> productCodes)
+	{
+		final Map<String, List<ProductModel>> productsByCode = getCommerceStockLevelDao().findProducts(productCodes).stream()
+				.collect(Collectors.groupingBy(ProductModel::getCode));
+		final List<ProductModel> products = new ArrayList<>(productCodes.size());
+		for (final String code : productCodes)
+		{
+			final List<ProductModel> found = productsByCode.get(code);
+			if (found == null)
+			{
+				throw new UnknownIdentifierException("Product with code '" + YSanitizer.sanitize(code) + "' not found!");
+			}
+			if (found.size() > 1)
+			{
+				throw new AmbiguousIdentifierException(
+						"Product code '" + YSanitizer.sanitize(code) + "' is not unique, " + found.size() + " products found!");
+			}
+			products.add(found.get(0));
+		}
+		return products;
+	}
+
+	/**
+	 * Loads the stock levels of all given products in the warehouses of all scopes with one query and computes status
+	 * and level of every product in every scope from them, with the same strategies as the commerce stock service.
+	 */
+	protected Map<String, StockData> loadStockData(final Collection<ProductModel> products, final List<StockScope> scopes)
+	{
+		final Set<WarehouseModel> warehouses = scopes.stream().flatMap(scope -> scope.getWarehouses().stream())
+				.collect(Collectors.toSet());
+		final Set<String> productCodes = products.stream().map(ProductModel::getCode).collect(Collectors.toSet());
+		final Map<String, List<StockLevelModel>> stockLevelsByProduct = getCommerceStockLevelDao()
+				.findStockLevels(productCodes, warehouses).stream()
+				.collect(Collectors.groupingBy(StockLevelModel::getProductCode));
+
+		final Map<String, StockData> stockByKey = new HashMap<>();
+		for (final ProductModel product : products)
+		{
+			final List<StockLevelModel> productStockLevels = stockLevelsByProduct.getOrDefault(product.getCode(),
+					Collections.emptyList());
+			for (final StockScope scope : scopes)
+			{
+				final List<StockLevelModel> scopeStockLevels = productStockLevels.stream()
+						.filter(stockLevel -> scope.getWarehouses().contains(stockLevel.getWarehouse())).collect(Collectors.toList());
+				final StockData stockData = createStockData(getStockLevelStatus(scopeStockLevels),
+						getCommerceStockLevelCalculationStrategy().calculateAvailability(scopeStockLevels));
+				final List<PK> stockLevelPks = scopeStockLevels.stream().map(StockLevelModel::getPk).collect(Collectors.toList());
+				getStockSnapshotCache().put(product.getCode(), scope.getKey(), stockData, stockLevelPks);
+				stockByKey.put(createKey(product.getCode(), scope), stockData);
+			}
+		}
+		return stockByKey;
+	}
+
+	/**
+	 * Same rule as {@link de.hybris.platform.stock.StockService#getProductStatus}: the best status of any warehouse wins.
+	 */
+	protected StockLevelStatus getStockLevelStatus(final Collection<StockLevelModel> stockLevels)
+	{
+		StockLevelStatus result = StockLevelStatus.OUTOFSTOCK;
+		for (final StockLevelModel stockLevel : stockLevels)
+		{
+			final StockLevelStatus status = getStockLevelStatusStrategy().checkStatus(stockLevel);
+			if (StockLevelStatus.INSTOCK.equals(status))
+			{
+				return status;
+			}
+			if (StockLevelStatus.LOWSTOCK.equals(status))
+			{
+				result = status;
+			}
+		}
+		return result;
+	}
+
+	protected List<StockScope> createStockScopes(final BaseStoreModel baseStore, final List<String> storeNames)
+	{
+		if (CollectionUtils.isEmpty(storeNames))
+		{
+			// the warehouses the commerce stock service selects for the base store
+			return Collections.singletonList(new StockScope("store:" + baseStore.getUid(), null,
+					getWarehouseSelectionStrategy().getWarehousesForBaseStore(baseStore)));
+		}
+
+		final List<StockScope> scopes = new ArrayList<>(storeNames.size());
+		for (final String storeName : new LinkedHashSet<>(storeNames))
+		{
+			final PointOfServiceModel pointOfService = getPointOfServiceService().getPointOfServiceForName(storeName);
+			scopes.add(new StockScope("pos:" + storeName, pointOfService.getName(), pointOfService.getWarehouses()));
+		}
+		return scopes;
+	}
+
+	protected BaseStoreModel getBaseStoreForSiteId(final String baseSiteId)
+	{
+		// it's not checked in the service layer (!) :
+		ServicesUtil.validateParameterNotNull(baseSiteId, "Parameter baseSiteId must not be null");
+		final BaseSiteModel baseSiteModel = getBaseSiteService().getBaseSiteForUID(baseSiteId);
+		if (baseSiteModel == null)
+		{
+			throw new UnknownIdentifierException("Base site with uid '" + YSanitizer.sanitize(baseSiteId) + "' not found!");
+		}
+		return getBaseStoreForSiteSelectorStrategy().getBaseStore(baseSiteModel);
+	}
+
+	protected String createKey(final String productCode, final StockScope scope)
+	{
+		return productCode + '|' + scope.getKey();
+	}
+
 	/**
 	 * This method is used here instead of regular populator beacause {@link CommerceStockService} returns all values
 	 * separately.<br/>
@@ -101,6 +274,39 @@ public class DefaultCommerceStockFacade implements CommerceStockFacade
 		return stockData;
 	}
 
+	/**
+	 * Warehouses a stock is computed for, either those selected for a base store or those of a point of service. They
+	 * are resolved once per request.
+	 */
+	protected static class StockScope
+	{
+		private final String key;
+		private final String storeName;
+		private final Collection<WarehouseModel> warehouses;
+
+		public StockScope(final String key, final String storeName, final Collection<WarehouseModel> warehouses)
+		{
+			this.key = key;
+			this.storeName = storeName;
+			this.warehouses = warehouses == null ? Collections.emptySet() : new HashSet<>(warehouses);
+		}
+
+		public String getKey()
+		{
+			return key;
+		}
+
+		public String getStoreName()
+		{
+			return storeName;
+		}
+
+		public Collection<WarehouseModel> getWarehouses()
+		{
+			return warehouses;
+		}
+	}
+
 	public CommerceStockService getCommerceStockService()
 	{
 		return commerceStockService;
@@ -155,4 +361,60 @@ public class DefaultCommerceStockFacade implements CommerceStockFacade
 	{
 		this.pointOfServiceService = pointOfServiceService;
 	}
+
+	public CommerceStockLevelDao getCommerceStockLevelDao()
+	{
+		return commerceStockLevelDao;
+	}
+
+	@Required
+	public void setCommerceStockLevelDao(final CommerceStockLevelDao commerceStockLevelDao)
+	{
+		this.commerceStockLevelDao = commerceStockLevelDao;
+	}
+
+	public StockSnapshotCache getStockSnapshotCache()
+	{
+		return stockSnapshotCache;
+	}
+
+	@Required
+	public void setStockSnapshotCache(final StockSnapshotCache stockSnapshotCache)
+	{
+		this.stockSnapshotCache = stockSnapshotCache;
+	}
+
+	public WarehouseSelectionStrategy getWarehouseSelectionStrategy()
+	{
+		return warehouseSelectionStrategy;
+	}
+
+	@Required
+	public void setWarehouseSelectionStrategy(final WarehouseSelectionStrategy warehouseSelectionStrategy)
+	{
+		this.warehouseSelectionStrategy = warehouseSelectionStrategy;
+	}
+
+	public StockLevelStatusStrategy getStockLevelStatusStrategy()
+	{
+		return stockLevelStatusStrategy;
+	}
+
+	@Required
+	public void setStockLevelStatusStrategy(final StockLevelStatusStrategy stockLevelStatusStrategy)
+	{
+		this.stockLevelStatusStrategy = stockLevelStatusStrategy;
+	}
+
+	public CommerceAvailabilityCalculationStrategy getCommerceStockLevelCalculationStrategy()
+	{
+		return commerceStockLevelCalculationStrategy;
+	}
+
+	@Required
+	public void setCommerceStockLevelCalculationStrategy(
+			final CommerceAvailabilityCalculationStrategy commerceStockLevelCalculationStrategy)
+	{
+		this.commerceStockLevelCalculationStrategy = commerceStockLevelCalculationStrategy;
+	}
 }
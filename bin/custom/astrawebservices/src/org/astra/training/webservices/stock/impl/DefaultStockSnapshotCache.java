@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.stock.impl;
+
+import de.hybris.platform.commercefacades.product.data.StockData;
+import de.hybris.platform.core.PK;
+import de.hybris.platform.core.model.type.ComposedTypeModel;
+import de.hybris.platform.jalo.type.ComposedType;
+import de.hybris.platform.ordersplitting.model.StockLevelModel;
+import de.hybris.platform.servicelayer.exceptions.ModelLoadingException;
+import de.hybris.platform.servicelayer.model.ModelService;
+import de.hybris.platform.servicelayer.type.TypeService;
+import de.hybris.platform.tx.AfterSaveEvent;
+import de.hybris.platform.tx.AfterSaveListener;
+import org.astra.training.webservices.stock.StockSnapshotCache;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Required;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+
+/**
+ * Default implementation of {@link StockSnapshotCache} backed by Guava caches. Invalidation is driven by
+ * {@link AfterSaveEvent}s of stock levels. Those events are only delivered on the node that saved the stock level, so
+ * the time to live bounds how long other cluster nodes may serve outdated stock.
+ */
+public class DefaultStockSnapshotCache implements StockSnapshotCache, AfterSaveListener, InitializingBean
+{
+	private static final char KEY_SEPARATOR = '|';
+
+	private long timeToLiveSeconds = 10;
+	private long maxEntries = 10000;
+	private ModelService modelService;
+	private TypeService typeService;
+
+	private Cache<String, StockData> snapshots;
+	private Cache<PK, String> productCodesByStockLevel;
+	private volatile int stockLevelTypeCode = -1;
+
+	@Override
+	public void afterPropertiesSet()
+	{
+		snapshots = CacheBuilder.newBuilder().expireAfterWrite(getTimeToLiveSeconds(), TimeUnit.SECONDS)
+				.maximumSize(getMaxEntries()).build();
+		productCodesByStockLevel = CacheBuilder.newBuilder().expireAfterWrite(getTimeToLiveSeconds(), TimeUnit.SECONDS)
+				.maximumSize(getMaxEntries()).build();
+	}
+
+	@Override
+	public StockData get(final String productCode, final String scope)
+	{
+		return snapshots.getIfPresent(createKey(productCode, scope));
+	}
+
+	@Override
+	public void put(final String productCode, final String scope, final StockData stockData,
+			final Collection<PK> stockLevelPks)
+	{
+		for (final PK stockLevelPk : stockLevelPks)
+		{
+			productCodesByStockLevel.put(stockLevelPk, productCode);
+		}
+		snapshots.put(createKey(productCode, scope), stockData);
+	}
+
+	@Override
+	public void invalidate(final String productCode)
+	{
+		final String prefix = productCode + KEY_SEPARATOR;
+		snapshots.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+	}
+
+	@Override
+	public void afterSave(final Collection<AfterSaveEvent> events)
+	{
+		if (snapshots.size() == 0)
+		{
+			return;
+		}
+
+		for (final AfterSaveEvent event : events)
+		{
+			final PK pk = event.getPk();
+			final String productCode = productCodesByStockLevel.getIfPresent(pk);
+			if (productCode != null)
+			{
+				invalidate(productCode);
+			}
+			else if (event.getType() != AfterSaveEvent.REMOVE && pk.getTypeCode() == getStockLevelTypeCode())
+			{
+				final String loadedProductCode = loadProductCode(pk);
+				if (loadedProductCode != null)
+				{
+					invalidate(loadedProductCode);
+				}
+			}
+		}
+	}
+
+	protected String loadProductCode(final PK stockLevelPk)
+	{
+		try
+		{
+			final StockLevelModel stockLevel = getModelService().get(stockLevelPk);
+			return stockLevel.getProductCode();
+		}
+		catch (final ModelLoadingException e)
+		{
+			// removed in the meantime, nothing is cached for it
+			return null;
+		}
+	}
+
+	protected int getStockLevelTypeCode()
+	{
+		if (stockLevelTypeCode < 0)
+		{
+			final ComposedTypeModel type = getTypeService().getComposedTypeForCode(StockLevelModel._TYPECODE);
+			stockLevelTypeCode = ((ComposedType) getModelService().getSource(type)).getItemTypeCode();
+		}
+		return stockLevelTypeCode;
+	}
+
+	protected String createKey(final String productCode, final String scope)
+	{
+		return productCode + KEY_SEPARATOR + scope;
+	}
+
+	protected long getTimeToLiveSeconds()
+	{
+		return timeToLiveSeconds;
+	}
+
+	public void setTimeToLiveSeconds(final long timeToLiveSeconds)
+	{
+		this.timeToLiveSeconds = timeToLiveSeconds;
+	}
+
+	protected long getMaxEntries()
+	{
+		return maxEntries;
+	}
+
+	public void setMaxEntries(final long maxEntries)
+	{
+		this.maxEntries = maxEntries;
+	}
+
+	protected ModelService getModelService()
+	{
+		return modelService;
+	}
+
+	@Required
+	public void setModelService(final ModelService modelService)
+	{
+		this.modelService = modelService;
+	}
+
+	protected TypeService getTypeService()
+	{
+		return typeService;
+	}
+
+	@Required
+	public void setTypeService(final TypeService typeService)
+	{
+		this.typeService = typeService;
+	}
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.suggestion;
+
+import java.util.List;
+
+
+/**
+ * Answers product suggestions from in-memory prefix indexes of product names, manufacturer names and the words of
+ * product names, one index per base site, language, session catalog versions and user groups. Indexes are built in the background and replaced as a whole,
+ * so lookups never wait for a build.
+ */
+public interface ProductSuggestionIndexService
+{
+	/**
+	 * Returns suggestions for the current base site and session language.
+	 *
+	 * @param term
+	 * 		the prefix typed so far
+	 * @param max
+	 * 		maximum number of suggestions
+	 * @return suggestions, best first; an empty list if nothing matches or no index is available yet, in which case the
+	 * caller should ask the search backend
+	 */
+	List<String> getSuggestions(String term, int max);
+
+	/**
+	 * Marks all indexes as outdated. They keep answering until their replacements are built.
+	 */
+	void invalidateAll();
+}
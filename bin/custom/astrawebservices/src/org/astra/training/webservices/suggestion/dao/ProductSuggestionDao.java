@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.suggestion.dao;
+
+import de.hybris.platform.catalog.model.CatalogVersionModel;
+
+import java.util.Collection;
+import java.util.List;
+
+
+/**
+ * Reads the catalog data suggestion indexes are built from.
+ */
+public interface ProductSuggestionDao
+{
+	/**
+	 * Returns the name, in the session language, and the manufacturer name of all approved products of the given
+	 * catalog versions. Only the two values are selected, no product is loaded as a model.
+	 *
+	 * @param catalogVersions
+	 * 		catalog versions to read the products of
+	 * @return one row per product holding the name and the manufacturer name, either may be <tt>null</tt>
+	 */
+	List<List<String>> findProductNamesAndManufacturers(Collection<CatalogVersionModel> catalogVersions);
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.suggestion.dao.impl;
+
+import de.hybris.platform.catalog.enums.ArticleApprovalStatus;
+import de.hybris.platform.catalog.model.CatalogVersionModel;
+import de.hybris.platform.core.model.product.ProductModel;
+import de.hybris.platform.servicelayer.internal.dao.AbstractItemDao;
+import de.hybris.platform.servicelayer.search.FlexibleSearchQuery;
+import de.hybris.platform.servicelayer.search.SearchResult;
+import org.astra.training.webservices.suggestion.dao.ProductSuggestionDao;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Default implementation of {@link ProductSuggestionDao}.
+ */
+public class DefaultProductSuggestionDao extends AbstractItemDao implements ProductSuggestionDao
+{
+	private static final String FIND_NAMES = "SELECT {" + ProductModel.NAME + "}, {" + ProductModel.MANUFACTURERNAME
+			+ "} FROM {" + ProductModel._TYPECODE + "} WHERE {" + ProductModel.CATALOGVERSION + "} IN (?catalogVersions) AND {"
+			+ ProductModel.APPROVALSTATUS + "} = ?approvalStatus";
+
+	@Override
+	public List<List<String>> findProductNamesAndManufacturers(final Collection<CatalogVersionModel> catalogVersions)
+	{
+		if (catalogVersions == null || catalogVersions.isEmpty())
+		{
+			return Collections.emptyList();
+		}
+
+		final FlexibleSearchQuery searchQuery = new FlexibleSearchQuery(FIND_NAMES);
+		searchQuery.addQueryParameter("catalogVersions", catalogVersions);
+		searchQuery.addQueryParameter("approvalStatus", ArticleApprovalStatus.APPROVED);
+		searchQuery.setResultClassList(Arrays.asList(String.class, String.class));
+
+		final SearchResult<List<String>> result = getFlexibleSearchService().search(searchQuery);
+		return result.getResult();
+	}
+}
@@ -0,0 +1,363 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.suggestion.impl;
+
+import de.hybris.platform.basecommerce.model.site.BaseSiteModel;
+import de.hybris.platform.catalog.CatalogVersionService;
+import de.hybris.platform.catalog.model.CatalogVersionModel;
+import de.hybris.platform.core.PK;
+import de.hybris.platform.core.Registry;
+import de.hybris.platform.core.model.c2l.LanguageModel;
+import de.hybris.platform.core.model.user.UserGroupModel;
+import de.hybris.platform.core.model.user.UserModel;
+import de.hybris.platform.cronjob.enums.CronJobResult;
+import de.hybris.platform.servicelayer.event.events.AfterCronJobFinishedEvent;
+import de.hybris.platform.servicelayer.event.impl.AbstractEventListener;
+import de.hybris.platform.servicelayer.i18n.CommonI18NService;
+import de.hybris.platform.servicelayer.model.ModelService;
+import de.hybris.platform.servicelayer.session.Session;
+import de.hybris.platform.servicelayer.session.SessionService;
+import de.hybris.platform.servicelayer.user.UserService;
+import de.hybris.platform.site.BaseSiteService;
+import org.astra.training.webservices.suggestion.ProductSuggestionIndexService;
+import org.astra.training.webservices.suggestion.dao.ProductSuggestionDao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Required;
+
+
+/**
+ * Default implementation of {@link ProductSuggestionIndexService}. Indexes are kept per base site, language, session
+ * catalog versions and user groups of the current user. A missing or outdated index is built by a single background
+ * worker in a session of the calling user with the calling session's catalog versions, so the search restrictions in
+ * effect for the caller apply to the build and restricted products never reach customers of other user groups. The
+ * current index is swapped for the new one once it is complete. Indexes are outdated after <code>maxAgeMillis</code>
+ * and whenever a cron job of one of the <code>indexerCronJobTypes</code>, usually the Solr indexer, finished
+ * successfully on this node. The age limit bounds how long other cluster nodes serve suggestions of an older index.
+ */
+public class DefaultProductSuggestionIndexService extends AbstractEventListener<AfterCronJobFinishedEvent>
+		implements ProductSuggestionIndexService, DisposableBean
+{
+	private static final Logger LOG = Logger.getLogger(DefaultProductSuggestionIndexService.class);
+
+	private static final char KEY_SEPARATOR = '|';
+	private static final String WORD_SEPARATORS = " \t-/,;:()";
+
+	private long maxAgeMillis = 3600000L;
+	private int maxTerms = 200000;
+	private int minWordLength = 3;
+	private Set<String> indexerCronJobTypes = Collections.emptySet();
+	private ProductSuggestionDao productSuggestionDao;
+	private BaseSiteService baseSiteService;
+	private CommonI18NService commonI18NService;
+	private CatalogVersionService catalogVersionService;
+	private SessionService sessionService;
+	private UserService userService;
+	private ModelService modelService;
+
+	private final ConcurrentMap<String, SuggestionIndex> indexes = new ConcurrentHashMap<>();
+	private final Set<String> pendingBuilds = ConcurrentHashMap.newKeySet();
+	private final ExecutorService builder = Executors.newSingleThreadExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "SuggestionIndexBuilder");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private volatile long invalidatedAt;
+
+	@Override
+	public List<String> getSuggestions(final String term, final int max)
+	{
+		final BaseSiteModel site = getBaseSiteService().getCurrentBaseSite();
+		final LanguageModel language = getCommonI18NService().getCurrentLanguage();
+		if (site == null || language == null || StringUtils.isBlank(term))
+		{
+			return Collections.emptyList();
+		}
+
+		final List<PK> catalogVersionPks = getSessionCatalogVersionPks();
+		final UserModel user = getUserService().getCurrentUser();
+		final String key = createKey(site, language, catalogVersionPks, user);
+		final SuggestionIndex index = indexes.get(key);
+		if (index == null || isOutdated(index))
+		{
+			scheduleBuild(key, language, catalogVersionPks, user);
+		}
+		return index == null ? Collections.emptyList() : index.lookup(term, max);
+	}
+
+	@Override
+	public void invalidateAll()
+	{
+		invalidatedAt = System.currentTimeMillis();
+	}
+
+	@Override
+	protected void onEvent(final AfterCronJobFinishedEvent event)
+	{
+		if (CronJobResult.SUCCESS.equals(event.getResult()) && getIndexerCronJobTypes().contains(event.getCronJobType()))
+		{
+			LOG.info("Cron job " + event.getCronJob() + " finished, product suggestion indexes are rebuilt on next use");
+			invalidateAll();
+		}
+	}
+
+	protected boolean isOutdated(final SuggestionIndex index)
+	{
+		return index.getBuiltAt() <= invalidatedAt || System.currentTimeMillis() - index.getBuiltAt() > getMaxAgeMillis();
+	}
+
+	protected List<PK> getSessionCatalogVersionPks()
+	{
+		final List<PK> catalogVersionPks = new ArrayList<>();
+		for (final CatalogVersionModel catalogVersion : getCatalogVersionService().getSessionCatalogVersions())
+		{
+			catalogVersionPks.add(catalogVersion.getPk());
+		}
+		Collections.sort(catalogVersionPks);
+		return catalogVersionPks;
+	}
+
+	/**
+	 * Creates the key of the index for the given restriction context. Search restrictions are assigned to user groups,
+	 * so users of the same groups share an index.
+	 */
+	protected String createKey(final BaseSiteModel site, final LanguageModel language, final List<PK> catalogVersionPks,
+			final UserModel user)
+	{
+		final Set<UserGroupModel> userGroups = getUserService().getAllUserGroupsForUser(user);
+		return site.getUid() + KEY_SEPARATOR + language.getIsocode() + KEY_SEPARATOR + catalogVersionPks.stream()
+				.map(PK::getLongValueAsString).collect(Collectors.joining(",")) + KEY_SEPARATOR + userGroups.stream()
+				.map(UserGroupModel::getUid).sorted().collect(Collectors.joining(","));
+	}
+
+	/**
+	 * Queues a build of the index unless one is queued already. The user and catalog versions are taken from the calling
+	 * session, as the worker runs in a session of its own.
+	 */
+	protected void scheduleBuild(final String key, final LanguageModel language, final List<PK> catalogVersionPks,
+			final UserModel user)
+	{
+		if (!pendingBuilds.add(key))
+		{
+			return;
+		}
+
+		final String tenantId = Registry.getCurrentTenant().getTenantID();
+		final PK languagePk = language.getPk();
+		final PK userPk = user.getPk();
+
+		try
+		{
+			builder.execute(() -> {
+				try
+				{
+					indexes.put(key, buildInTenant(tenantId, userPk, languagePk, catalogVersionPks));
+				}
+				catch (final RuntimeException e)
+				{
+					LOG.error("Building the product suggestion index " + key + " failed", e);
+				}
+				finally
+				{
+					pendingBuilds.remove(key);
+				}
+			});
+		}
+		catch (final RejectedExecutionException e)
+		{
+			pendingBuilds.remove(key);
+			LOG.debug("Product suggestion index builder is shut down", e);
+		}
+	}
+
+	protected SuggestionIndex buildInTenant(final String tenantId, final PK userPk, final PK languagePk,
+			final List<PK> catalogVersionPks)
+	{
+		Registry.setCurrentTenant(Registry.getTenantByID(tenantId));
+		try
+		{
+			final Session session = getSessionService().createNewSession();
+			try
+			{
+				getUserService().setCurrentUser(getModelService().get(userPk));
+				getCommonI18NService().setCurrentLanguage(getModelService().get(languagePk));
+				final Collection<CatalogVersionModel> catalogVersions = new ArrayList<>(catalogVersionPks.size());
+				for (final PK catalogVersionPk : catalogVersionPks)
+				{
+					catalogVersions.add(getModelService().get(catalogVersionPk));
+				}
+				getCatalogVersionService().setSessionCatalogVersions(catalogVersions);
+				return buildIndex(catalogVersions);
+			}
+			finally
+			{
+				getSessionService().closeSession(session);
+			}
+		}
+		finally
+		{
+			Registry.unsetCurrentTenant();
+		}
+	}
+
+	protected SuggestionIndex buildIndex(final Collection<CatalogVersionModel> catalogVersions)
+	{
+		final long start = System.currentTimeMillis();
+		final SuggestionIndex.Builder indexBuilder = new SuggestionIndex.Builder(getMaxTerms());
+		for (final List<String> row : getProductSuggestionDao().findProductNamesAndManufacturers(catalogVersions))
+		{
+			final String name = row.get(0);
+			indexBuilder.add(name);
+			indexBuilder.add(row.get(1));
+			for (final String word : StringUtils.split(StringUtils.defaultString(name), WORD_SEPARATORS))
+			{
+				if (word.length() >= getMinWordLength())
+				{
+					indexBuilder.add(word);
+				}
+			}
+		}
+		final SuggestionIndex index = indexBuilder.build();
+		LOG.info("Built product suggestion index with " + index.size() + " terms in " + (System.currentTimeMillis() - start)
+				+ " ms");
+		return index;
+	}
+
+	@Override
+	public void destroy()
+	{
+		builder.shutdownNow();
+	}
+
+	protected long getMaxAgeMillis()
+	{
+		return maxAgeMillis;
+	}
+
+	public void setMaxAgeMillis(final long maxAgeMillis)
+	{
+		this.maxAgeMillis = maxAgeMillis;
+	}
+
+	protected int getMaxTerms()
+	{
+		return maxTerms;
+	}
+
+	public void setMaxTerms(final int maxTerms)
+	{
+		this.maxTerms = maxTerms;
+	}
+
+	protected int getMinWordLength()
+	{
+		return minWordLength;
+	}
+
+	public void setMinWordLength(final int minWordLength)
+	{
+		this.minWordLength = minWordLength;
+	}
+
+	protected Set<String> getIndexerCronJobTypes()
+	{
+		return indexerCronJobTypes;
+	}
+
+	public void setIndexerCronJobTypes(final Set<String> indexerCronJobTypes)
+	{
+		this.indexerCronJobTypes = indexerCronJobTypes;
+	}
+
+	protected ProductSuggestionDao getProductSuggestionDao()
+	{
+		return productSuggestionDao;
+	}
+
+	@Required
+	public void setProductSuggestionDao(final ProductSuggestionDao productSuggestionDao)
+	{
+		this.productSuggestionDao = productSuggestionDao;
+	}
+
+	protected BaseSiteService getBaseSiteService()
+	{
+		return baseSiteService;
+	}
+
+	@Required
+	public void setBaseSiteService(final BaseSiteService baseSiteService)
+	{
+		this.baseSiteService = baseSiteService;
+	}
+
+	protected CommonI18NService getCommonI18NService()
+	{
+		return commonI18NService;
+	}
+
+	@Required
+	public void setCommonI18NService(final CommonI18NService commonI18NService)
+	{
+		this.commonI18NService = commonI18NService;
+	}
+
+	protected CatalogVersionService getCatalogVersionService()
+	{
+		return catalogVersionService;
+	}
+
+	@Required
+	public void setCatalogVersionService(final CatalogVersionService catalogVersionService)
+	{
+		this.catalogVersionService = catalogVersionService;
+	}
+
+	protected SessionService getSessionService()
+	{
+		return sessionService;
+	}
+
+	@Required
+	public void setSessionService(final SessionService sessionService)
+	{
+		this.sessionService = sessionService;
+	}
+
+	protected UserService getUserService()
+	{
+		return userService;
+	}
+
+	@Required
+	public void setUserService(final UserService userService)
+	{
+		this.userService = userService;
+	}
+
+	protected ModelService getModelService()
+	{
+		return modelService;
+	}
+
+	@Required
+	public void setModelService(final ModelService modelService)
+	{
+		this.modelService = modelService;
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.suggestion.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.apache.commons.lang.StringUtils;
+
+
+/**
+ * Immutable prefix index of suggestion terms. Terms are kept in arrays sorted by their normalized form, so all terms
+ * starting with a prefix form one contiguous range found by two binary searches. Within the range the terms with the
+ * highest weight win; ties are broken alphabetically.
+ */
+public final class SuggestionIndex
+{
+	private static final char RANGE_END = Character.MAX_VALUE;
+
+	private final String[] keys;
+	private final String[] terms;
+	private final int[] weights;
+	private final long builtAt;
+
+	private SuggestionIndex(final String[] keys, final String[] terms, final int[] weights, final long builtAt)
+	{
+		this.keys = keys;
+		this.terms = terms;
+		this.weights = weights;
+		this.builtAt = builtAt;
+	}
+
+	/**
+	 * Returns at most <code>max</code> terms starting with the given prefix, best first.
+	 */
+	public List<String> lookup(final String prefix, final int max)
+	{
+		final String key = normalize(prefix);
+		if (key.isEmpty() || max <= 0)
+		{
+			return Collections.emptyList();
+		}
+
+		final int from = lowerBound(key);
+		final int to = lowerBound(key + RANGE_END);
+		if (from >= to)
+		{
+			return Collections.emptyList();
+		}
+
+		final PriorityQueue<Integer> best = new PriorityQueue<>(max + 1, (left, right) -> compare(right, left));
+		for (int i = from; i < to; i++)
+		{
+			best.add(Integer.valueOf(i));
+			if (best.size() > max)
+			{
+				best.poll();
+			}
+		}
+
+		final List<Integer> positions = new ArrayList<>(best);
+		positions.sort(this::compare);
+		final List<String> result = new ArrayList<>(positions.size());
+		for (final Integer position : positions)
+		{
+			result.add(terms[position.intValue()]);
+		}
+		return result;
+	}
+
+	/**
+	 * Orders better terms first: higher weight, then the sorted position of the key.
+	 */
+	protected int compare(final Integer left, final Integer right)
+	{
+		final int byWeight = Integer.compare(weights[right.intValue()], weights[left.intValue()]);
+		return byWeight != 0 ? byWeight : Integer.compare(left.intValue(), right.intValue());
+	}
+
+	protected int lowerBound(final String key)
+	{
+		final int position = Arrays.binarySearch(keys, key);
+		return position >= 0 ? position : -position - 1;
+	}
+
+	public int size()
+	{
+		return keys.length;
+	}
+
+	public long getBuiltAt()
+	{
+		return builtAt;
+	}
+
+	static String normalize(final String term)
+	{
+		return StringUtils.normalizeSpace(StringUtils.defaultString(term)).toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Collects terms for a {@link SuggestionIndex}. Adding a term again raises its weight; the first spelling added is
+	 * the one suggested.
+	 */
+	public static class Builder
+	{
+		private final Map<String, Entry> entries = new HashMap<>();
+		private final int maxTerms;
+
+		public Builder(final int maxTerms)
+		{
+			this.maxTerms = maxTerms;
+		}
+
+		public Builder add(final String term)
+		{
+			final String key = normalize(term);
+			if (key.isEmpty())
+			{
+				return this;
+			}
+			final Entry entry = entries.get(key);
+			if (entry != null)
+			{
+				entry.weight++;
+			}
+			else if (entries.size() < maxTerms)
+			{
+				entries.put(key, new Entry(StringUtils.normalizeSpace(term)));
+			}
+			return this;
+		}
+
+		public SuggestionIndex build()
+		{
+			final String[] keys = entries.keySet().toArray(new String[entries.size()]);
+			Arrays.sort(keys);
+			final String[] terms = new String[keys.length];
+			final int[] weights = new int[keys.length];
+			for (int i = 0; i < keys.length; i++)
+			{
+				final Entry entry = entries.get(keys[i]);
+				terms[i] = entry.term;
+				weights[i] = entry.weight;
+			}
+			return new SuggestionIndex(keys, terms, weights, System.currentTimeMillis());
+		}
+	}
+
+	private static final class Entry
+	{
+		private final String term;
+		private int weight = 1;
+
+		private Entry(final String term)
+		{
+			this.term = term;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cache.impl;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.servicelayer.event.EventService;
+import org.astra.training.webservices.cache.event.CacheInvalidationEvent;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.verify;
+
+
+@UnitTest
+public class DefaultCacheGenerationServiceTest
+{
+	private static final String REGION = "product";
+	private static final String PRODUCT = "product1";
+	private static final String OTHER_PRODUCT = "product2";
+
+	private DefaultCacheGenerationService service;
+	@Mock
+	private EventService eventService;
+
+	@Before
+	public void setUp()
+	{
+		MockitoAnnotations.initMocks(this);
+		service = new DefaultCacheGenerationService();
+		service.setEventService(eventService);
+		// the event service delivers cluster aware events to the publishing node as well
+		willAnswer(invocation -> {
+			service.onEvent((CacheInvalidationEvent) invocation.getArguments()[0]);
+			return null;
+		}).given(eventService).publishEvent(any(CacheInvalidationEvent.class));
+	}
+
+	@Test
+	public void shouldOnlyChangeGenerationOfInvalidatedEntity()
+	{
+		final long product = service.getGeneration(REGION, PRODUCT);
+		final long otherProduct = service.getGeneration(REGION, OTHER_PRODUCT);
+		final long region = service.getGeneration(REGION);
+
+		service.invalidate(REGION, Collections.singletonList(PRODUCT));
+
+		Assert.assertNotEquals(product, service.getGeneration(REGION, PRODUCT));
+		Assert.assertEquals(otherProduct, service.getGeneration(REGION, OTHER_PRODUCT));
+		Assert.assertNotEquals(region, service.getGeneration(REGION));
+		verify(eventService).publishEvent(any(CacheInvalidationEvent.class));
+	}
+
+	@Test
+	public void shouldChangeAllGenerationsWhenRegionIsInvalidated()
+	{
+		service.invalidate(REGION, Collections.singletonList(PRODUCT));
+		final long product = service.getGeneration(REGION, PRODUCT);
+		final long otherProduct = service.getGeneration(REGION, OTHER_PRODUCT);
+
+		service.invalidateAll(REGION);
+
+		Assert.assertNotEquals(product, service.getGeneration(REGION, PRODUCT));
+		Assert.assertNotEquals(otherProduct, service.getGeneration(REGION, OTHER_PRODUCT));
+		Assert.assertEquals(0L, service.getGeneration("promotion"));
+	}
+
+	@Test
+	public void shouldApplyInvalidationFromOtherNode()
+	{
+		final long product = service.getGeneration(REGION, PRODUCT);
+
+		service.onEvent(new CacheInvalidationEvent(REGION, Collections.singletonList(PRODUCT)));
+
+		Assert.assertNotEquals(product, service.getGeneration(REGION, PRODUCT));
+	}
+
+	@Test
+	public void shouldNeverReuseGenerationOfEvictedEntity()
+	{
+		service.setMaxTrackedKeys(1);
+		service.invalidate(REGION, Collections.singletonList(PRODUCT));
+		final long product = service.getGeneration(REGION, PRODUCT);
+
+		service.invalidate(REGION, Arrays.asList(OTHER_PRODUCT, "product3"));
+
+		Assert.assertTrue(service.getGeneration(REGION, PRODUCT) >= product);
+	}
+}
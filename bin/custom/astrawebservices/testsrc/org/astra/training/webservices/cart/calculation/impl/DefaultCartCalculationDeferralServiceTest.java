@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cart.calculation.impl;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.commerceservices.order.CommerceCartCalculationStrategy;
+import de.hybris.platform.commerceservices.order.CommerceCartModificationException;
+import de.hybris.platform.commerceservices.service.data.CommerceCartParameter;
+import de.hybris.platform.core.model.order.CartModel;
+import de.hybris.platform.order.CartService;
+import de.hybris.platform.servicelayer.model.ModelService;
+import de.hybris.platform.servicelayer.session.SessionService;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.astra.training.webservices.cart.calculation.CartCalculationDeferralService.CALCULATION_DEFERRED_SESSION_ATTRIBUTE;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+
+@UnitTest
+public class DefaultCartCalculationDeferralServiceTest
+{
+	private final Map<String, Object> sessionAttributes = new HashMap<>();
+
+	private DefaultCartCalculationDeferralService service;
+	@Mock
+	private SessionService sessionService;
+	@Mock
+	private CartService cartService;
+	@Mock
+	private ModelService modelService;
+	@Mock
+	private CommerceCartCalculationStrategy commerceCartCalculationStrategy;
+	@Mock
+	private CartModel cart;
+
+	@Before
+	public void setUp()
+	{
+		MockitoAnnotations.initMocks(this);
+		doAnswer(invocation -> sessionAttributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1]))
+				.when(sessionService).setAttribute(anyString(), any());
+		doAnswer(invocation -> sessionAttributes.remove(invocation.getArguments()[0])).when(sessionService)
+				.removeAttribute(anyString());
+		given(sessionService.getAttribute(anyString()))
+				.willAnswer(invocation -> sessionAttributes.get(invocation.getArguments()[0]));
+		given(Boolean.valueOf(cartService.hasSessionCart())).willReturn(Boolean.TRUE);
+		given(cartService.getSessionCart()).willReturn(cart);
+
+		service = new DefaultCartCalculationDeferralService();
+		service.setSessionService(sessionService);
+		service.setCartService(cartService);
+		service.setModelService(modelService);
+		service.setCommerceCartCalculationStrategy(commerceCartCalculationStrategy);
+	}
+
+	@Test
+	public void shouldDeferCalculationWhileModificationRuns() throws CommerceCartModificationException
+	{
+		final Boolean deferred = service.executeWithSingleCalculation(() -> Boolean.valueOf(service.isCalculationDeferred()));
+
+		Assert.assertTrue(deferred.booleanValue());
+		Assert.assertFalse(service.isCalculationDeferred());
+	}
+
+	@Test
+	public void shouldRecalculateSessionCartOnceForNestedModifications() throws CommerceCartModificationException
+	{
+		service.executeWithSingleCalculation(() -> service.executeWithSingleCalculation(() -> "nested"));
+
+		final ArgumentCaptor<CommerceCartParameter> parameter = ArgumentCaptor.forClass(CommerceCartParameter.class);
+		verify(commerceCartCalculationStrategy, times(1)).recalculateCart(parameter.capture());
+		Assert.assertSame(cart, parameter.getValue().getCart());
+		Assert.assertTrue(parameter.getValue().isEnableHooks());
+	}
+
+	@Test
+	public void shouldRecalculateAndResumeCalculationWhenModificationFails()
+	{
+		try
+		{
+			service.executeWithSingleCalculation(() -> {
+				throw new CommerceCartModificationException("failed");
+			});
+			Assert.fail("Exception expected");
+		}
+		catch (final CommerceCartModificationException e)
+		{
+			Assert.assertFalse(sessionAttributes.containsKey(CALCULATION_DEFERRED_SESSION_ATTRIBUTE));
+			verify(commerceCartCalculationStrategy).recalculateCart(any(CommerceCartParameter.class));
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cart.purge.impl;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.basecommerce.model.site.BaseSiteModel;
+import de.hybris.platform.core.PK;
+import de.hybris.platform.core.model.user.UserModel;
+import de.hybris.platform.servicelayer.search.FlexibleSearchQuery;
+import de.hybris.platform.servicelayer.search.FlexibleSearchService;
+import de.hybris.platform.servicelayer.search.SearchResult;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.verify;
+
+
+@UnitTest
+public class DefaultOldCartPurgeDaoTest
+{
+	private static final Date CUTOFF = new Date(1000L);
+
+	private DefaultOldCartPurgeDao dao;
+	@Mock
+	private FlexibleSearchService flexibleSearchService;
+	@Mock
+	private SearchResult<Object> searchResult;
+	@Mock
+	private BaseSiteModel site;
+	@Mock
+	private UserModel anonymousUser;
+
+	@Before
+	public void setUp()
+	{
+		MockitoAnnotations.initMocks(this);
+		given(flexibleSearchService.search(any(FlexibleSearchQuery.class))).willReturn(searchResult);
+		given(searchResult.getResult()).willReturn(Collections.emptyList());
+
+		dao = new DefaultOldCartPurgeDao();
+		dao.setFlexibleSearchService(flexibleSearchService);
+	}
+
+	@Test
+	public void shouldFindUnsavedCartsOfSiteModifiedBeforeCutoff()
+	{
+		final FlexibleSearchQuery query = findCartPks(null, null);
+
+		Assert.assertTrue(query.getQuery().contains("{modifiedtime} <= ?modifiedBefore"));
+		Assert.assertTrue(query.getQuery().contains("{site} = ?site"));
+		Assert.assertTrue(query.getQuery().contains("{saveTime} IS NULL"));
+		Assert.assertFalse(query.getQuery().contains("?user"));
+		Assert.assertFalse(query.getQuery().contains("?lastPk"));
+		Assert.assertTrue(query.getQuery().endsWith("ORDER BY {pk} ASC"));
+		Assert.assertEquals(CUTOFF, query.getQueryParameters().get("modifiedBefore"));
+		Assert.assertEquals(site, query.getQueryParameters().get("site"));
+		Assert.assertEquals(500, query.getCount());
+	}
+
+	@Test
+	public void shouldRestrictToUserAndContinueAfterLastPk()
+	{
+		final FlexibleSearchQuery query = findCartPks(anonymousUser, PK.fromLong(42L));
+
+		Assert.assertTrue(query.getQuery().contains("{user} = ?user"));
+		Assert.assertTrue(query.getQuery().contains("{pk} > ?lastPk"));
+		Assert.assertEquals(anonymousUser, query.getQueryParameters().get("user"));
+		Assert.assertEquals(PK.fromLong(42L), query.getQueryParameters().get("lastPk"));
+	}
+
+	@Test
+	public void shouldCountWithSameConditions()
+	{
+		given(searchResult.getResult()).willReturn(Collections.singletonList(Long.valueOf(7L)));
+
+		Assert.assertEquals(7L, dao.countCartsForRemoval(site, CUTOFF, anonymousUser));
+
+		final ArgumentCaptor<FlexibleSearchQuery> captor = ArgumentCaptor.forClass(FlexibleSearchQuery.class);
+		verify(flexibleSearchService).search(captor.capture());
+		Assert.assertTrue(captor.getValue().getQuery().startsWith("SELECT COUNT({pk})"));
+		Assert.assertTrue(captor.getValue().getQuery().contains("{modifiedtime} <= ?modifiedBefore"));
+		Assert.assertTrue(captor.getValue().getQuery().contains("{user} = ?user"));
+	}
+
+	@Test
+	public void shouldLoadBatchOfCartsInOneQuery()
+	{
+		dao.findCartsByPks(Arrays.asList(PK.fromLong(1L), PK.fromLong(2L)));
+
+		final ArgumentCaptor<FlexibleSearchQuery> captor = ArgumentCaptor.forClass(FlexibleSearchQuery.class);
+		verify(flexibleSearchService).search(captor.capture());
+		Assert.assertTrue(captor.getValue().getQuery().contains("{pk} IN (?carts)"));
+		Assert.assertEquals(Arrays.asList(PK.fromLong(1L), PK.fromLong(2L)),
+				captor.getValue().getQueryParameters().get("carts"));
+	}
+
+	protected FlexibleSearchQuery findCartPks(final UserModel user, final PK lastPk)
+	{
+		dao.findCartPksForRemoval(site, CUTOFF, user, lastPk, 500);
+
+		final ArgumentCaptor<FlexibleSearchQuery> captor = ArgumentCaptor.forClass(FlexibleSearchQuery.class);
+		verify(flexibleSearchService).search(captor.capture());
+		return captor.getValue();
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cart.purge.impl;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.basecommerce.model.site.BaseSiteModel;
+import de.hybris.platform.core.PK;
+import de.hybris.platform.core.model.ItemModel;
+import de.hybris.platform.core.model.order.CartModel;
+import de.hybris.platform.core.model.user.AddressModel;
+import de.hybris.platform.core.model.user.UserModel;
+import de.hybris.platform.servicelayer.model.ModelService;
+import org.astra.training.webservices.cart.purge.OldCartPurgeDao;
+import org.astra.training.webservices.cart.purge.data.OldCartPurgeResultData;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+
+@UnitTest
+public class DefaultOldCartPurgeEngineTest
+{
+	private static final Date CART_CUTOFF = new Date(1000L);
+	private static final Date ANONYMOUS_CART_CUTOFF = new Date(2000L);
+	private static final List<PK> FIRST_BATCH = Arrays.asList(PK.fromLong(1L), PK.fromLong(2L));
+	private static final List<PK> SECOND_BATCH = Arrays.asList(PK.fromLong(3L), PK.fromLong(4L));
+	private static final List<PK> LAST_BATCH = Collections.singletonList(PK.fromLong(5L));
+	private static final List<PK> DEPENDENTS = Collections.singletonList(PK.fromLong(11L));
+
+	private DefaultOldCartPurgeEngine engine;
+	@Mock
+	private OldCartPurgeDao oldCartPurgeDao;
+	@Mock
+	private ModelService modelService;
+	@Mock
+	private PlatformTransactionManager transactionManager;
+	@Mock
+	private BaseSiteModel site;
+	@Mock
+	private UserModel anonymousUser;
+	@Mock
+	private CartModel firstCart;
+	@Mock
+	private CartModel secondCart;
+	@Mock
+	private CartModel lastCart;
+	@Mock
+	private AddressModel deliveryAddress;
+
+	@Before
+	public void setUp()
+	{
+		MockitoAnnotations.initMocks(this);
+		given(site.getUid()).willReturn("electronics");
+		given(oldCartPurgeDao.countCartsForRemoval(site, CART_CUTOFF, null)).willReturn(Long.valueOf(5L));
+		given(oldCartPurgeDao.findCartPksForRemoval(site, CART_CUTOFF, null, null, 2)).willReturn(FIRST_BATCH);
+		given(oldCartPurgeDao.findCartPksForRemoval(site, CART_CUTOFF, null, PK.fromLong(2L), 2)).willReturn(SECOND_BATCH);
+		given(oldCartPurgeDao.findCartPksForRemoval(site, CART_CUTOFF, null, PK.fromLong(4L), 2)).willReturn(LAST_BATCH);
+		given(oldCartPurgeDao.findCartsByPks(FIRST_BATCH)).willReturn(Collections.singletonList(firstCart));
+		given(oldCartPurgeDao.findCartsByPks(SECOND_BATCH)).willReturn(Collections.singletonList(secondCart));
+		given(oldCartPurgeDao.findCartsByPks(LAST_BATCH)).willReturn(Collections.singletonList(lastCart));
+		given(oldCartPurgeDao.findDependentPksForCarts(FIRST_BATCH)).willReturn(DEPENDENTS);
+		given(modelService.get(PK.fromLong(11L))).willReturn(deliveryAddress);
+
+		engine = new DefaultOldCartPurgeEngine();
+		engine.setOldCartPurgeDao(oldCartPurgeDao);
+		engine.setModelService(modelService);
+		engine.setTransactionManager(transactionManager);
+	}
+
+	@Test
+	public void shouldRemoveCartsInBatchesPagedByPk()
+	{
+		final OldCartPurgeResultData result = engine.purgeSite(site, anonymousUser, CART_CUTOFF, ANONYMOUS_CART_CUTOFF, 2,
+				new AtomicBoolean());
+
+		Assert.assertEquals(5L, result.getRemovedCarts());
+		Assert.assertEquals(0L, result.getRemainingCarts());
+		Assert.assertFalse(result.isAborted());
+		// the model service removes entries and everything else part of the carts
+		verify(modelService).removeAll(Arrays.<ItemModel> asList(deliveryAddress, firstCart));
+		verify(modelService).removeAll(Collections.<ItemModel> singletonList(secondCart));
+		verify(modelService).removeAll(Collections.<ItemModel> singletonList(lastCart));
+		verify(transactionManager, times(3)).commit(any());
+	}
+
+	@Test
+	public void shouldApplyCutoffPerUserScope()
+	{
+		engine.purgeSite(site, anonymousUser, CART_CUTOFF, ANONYMOUS_CART_CUTOFF, 2, new AtomicBoolean());
+
+		verify(oldCartPurgeDao).countCartsForRemoval(site, CART_CUTOFF, null);
+		verify(oldCartPurgeDao).countCartsForRemoval(site, ANONYMOUS_CART_CUTOFF, anonymousUser);
+		verify(oldCartPurgeDao, never()).findCartPksForRemoval(any(BaseSiteModel.class), eq(CART_CUTOFF), eq(anonymousUser),
+				any(PK.class), anyInt());
+		verify(oldCartPurgeDao, never()).findCartPksForRemoval(any(BaseSiteModel.class), eq(ANONYMOUS_CART_CUTOFF),
+				(UserModel) isNull(), any(PK.class), anyInt());
+	}
+
+	@Test
+	public void shouldStopBetweenBatchesWhenAborted()
+	{
+		final AtomicBoolean aborted = new AtomicBoolean();
+		given(oldCartPurgeDao.findCartsByPks(FIRST_BATCH)).willAnswer(invocation -> {
+			aborted.set(true);
+			return Collections.singletonList(firstCart);
+		});
+
+		final OldCartPurgeResultData result = engine.purgeSite(site, anonymousUser, CART_CUTOFF, ANONYMOUS_CART_CUTOFF, 2,
+				aborted);
+
+		Assert.assertEquals(2L, result.getRemovedCarts());
+		Assert.assertEquals(3L, result.getRemainingCarts());
+		Assert.assertTrue(result.isAborted());
+		verify(oldCartPurgeDao, never()).findCartsByPks(SECOND_BATCH);
+	}
+
+	@Test
+	public void shouldRollBackFailedBatch()
+	{
+		doThrow(new IllegalStateException("deadlock")).when(modelService)
+				.removeAll(Arrays.<ItemModel> asList(deliveryAddress, firstCart));
+
+		try
+		{
+			engine.purgeSite(site, anonymousUser, CART_CUTOFF, ANONYMOUS_CART_CUTOFF, 2, new AtomicBoolean());
+			Assert.fail("Expected the failed batch to end the removal");
+		}
+		catch (final IllegalStateException e)
+		{
+			verify(transactionManager).rollback(any());
+			verify(transactionManager, never()).commit(any());
+			verify(modelService).detachAll();
+			verify(oldCartPurgeDao, never()).findCartPksForRemoval(site, CART_CUTOFF, null, PK.fromLong(2L), 2);
+		}
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.catalog.impl;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.basecommerce.model.site.BaseSiteModel;
+import de.hybris.platform.commercefacades.catalog.CatalogFacade;
+import de.hybris.platform.commercefacades.catalog.CatalogOption;
+import de.hybris.platform.commercefacades.catalog.PageOption;
+import de.hybris.platform.commercefacades.catalog.data.CatalogVersionData;
+import de.hybris.platform.commercefacades.catalog.data.CategoryHierarchyData;
+import de.hybris.platform.core.model.c2l.LanguageModel;
+import de.hybris.platform.core.model.user.UserModel;
+import de.hybris.platform.servicelayer.i18n.CommonI18NService;
+import de.hybris.platform.servicelayer.user.UserService;
+import de.hybris.platform.site.BaseSiteService;
+import org.astra.training.webservices.cache.CacheGenerationService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+
+@UnitTest
+public class DefaultCatalogHierarchyFacadeTest
+{
+	private static final String CATALOG = "electronicsProductCatalog";
+	private static final String VERSION = "Online";
+	private static final int ROOTS = 10;
+	private static final int BRANCHING = 10;
+	private static final int CATEGORIES = 10000;
+
+	private static final Set<CatalogOption> ROOT_OPTIONS = EnumSet.of(CatalogOption.BASIC, CatalogOption.CATEGORIES);
+	private static final Set<CatalogOption> HIERARCHY_OPTIONS = EnumSet
+			.of(CatalogOption.BASIC, CatalogOption.CATEGORIES, CatalogOption.SUBCATEGORIES);
+
+	private DefaultCatalogHierarchyFacade facade;
+	@Mock
+	private CatalogFacade catalogFacade;
+	@Mock
+	private CacheGenerationService cacheGenerationService;
+	@Mock
+	private BaseSiteService baseSiteService;
+	@Mock
+	private CommonI18NService commonI18NService;
+	@Mock
+	private UserService userService;
+	@Mock
+	private BaseSiteModel site;
+	@Mock
+	private LanguageModel language;
+	@Mock
+	private UserModel user;
+
+	@Before
+	public void setUp()
+	{
+		MockitoAnnotations.initMocks(this);
+		given(site.getUid()).willReturn("electronics");
+		given(language.getIsocode()).willReturn("en");
+		given(baseSiteService.getCurrentBaseSite()).willReturn(site);
+		given(commonI18NService.getCurrentLanguage()).willReturn(language);
+		given(userService.getCurrentUser()).willReturn(user);
+		given(userService.getAllUserGroupsForUser(user)).willReturn(Collections.emptySet());
+
+		given(catalogFacade.getProductCatalogVersionForTheCurrentSite(CATALOG, VERSION, HIERARCHY_OPTIONS))
+				.willAnswer(invocation -> createVersion(true));
+		given(catalogFacade.getProductCatalogVersionForTheCurrentSite(CATALOG, VERSION, ROOT_OPTIONS))
+				.willAnswer(invocation -> createVersion(false));
+
+		facade = new DefaultCatalogHierarchyFacade();
+		facade.setCatalogFacade(catalogFacade);
+		facade.setCacheGenerationService(cacheGenerationService);
+		facade.setBaseSiteService(baseSiteService);
+		facade.setCommonI18NService(commonI18NService);
+		facade.setUserService(userService);
+		facade.afterPropertiesSet();
+	}
+
+	@Test
+	public void shouldServeGeneratedTreeFromSingleSnapshot()
+	{
+		for (int i = 0; i < 3; i++)
+		{
+			final CatalogVersionData version = facade.getProductCatalogVersionForTheCurrentSite(CATALOG, VERSION);
+			Assert.assertEquals(ROOTS, version.getCategoriesHierarchyData().size());
+			Assert.assertEquals(CATEGORIES, count(version.getCategoriesHierarchyData()));
+		}
+		verify(catalogFacade, times(1)).getProductCatalogVersionForTheCurrentSite(CATALOG, VERSION, HIERARCHY_OPTIONS);
+	}
+
+	@Test
+	public void shouldRebuildSnapshotAfterCategoryChange()
+	{
+		facade.getProductCatalogVersionForTheCurrentSite(CATALOG, VERSION);
+		given(Long.valueOf(cacheGenerationService.getGeneration(DefaultCatalogHierarchyFacade.CATEGORY_REGION)))
+				.willReturn(Long.valueOf(1L));
+		facade.getProductCatalogVersionForTheCurrentSite(CATALOG, VERSION);
+
+		verify(catalogFacade, times(2)).getProductCatalogVersionForTheCurrentSite(CATALOG, VERSION, HIERARCHY_OPTIONS);
+	}
+
+	@Test
+	public void shouldServeSubtreeOfNestedCategory()
+	{
+		// category 15 is a child of root 0, its children are 160 to 169, which have children 1610 and following
+		given(catalogFacade.getCategoryById(eq(CATALOG), eq(VERSION), eq("c15"), any(PageOption.class),
+				eq(EnumSet.of(CatalogOption.BASIC)))).willReturn(createCategory(15));
+
+		final CategoryHierarchyData category = facade.getCategoryById(CATALOG, VERSION, "c15");
+
+		Assert.assertEquals("c15", category.getId());
+		Assert.assertEquals(BRANCHING, category.getSubcategories().size());
+		Assert.assertEquals("c160", category.getSubcategories().get(0).getId());
+		Assert.assertEquals("c1610", category.getSubcategories().get(0).getSubcategories().get(0).getId());
+		Assert.assertEquals(1 + BRANCHING + BRANCHING * BRANCHING, count(Collections.singletonList(category)));
+	}
+
+	@Test
+	public void shouldFallBackForCategoryOutsideHierarchy()
+	{
+		final CategoryHierarchyData orphan = createCategory(CATEGORIES);
+		given(catalogFacade.getCategoryById(eq(CATALOG), eq(VERSION), eq(orphan.getId()), any(PageOption.class),
+				eq(EnumSet.of(CatalogOption.BASIC)))).willReturn(orphan);
+		given(catalogFacade.getCategoryById(eq(CATALOG), eq(VERSION), eq(orphan.getId()), any(PageOption.class),
+				eq(HIERARCHY_OPTIONS))).willReturn(orphan);
+
+		Assert.assertSame(orphan, facade.getCategoryById(CATALOG, VERSION, orphan.getId()));
+	}
+
+	/**
+	 * Creates a catalog version with {@link #ROOTS} root categories. Category <code>i</code> has the children
+	 * <code>ROOTS + i * BRANCHING</code> and following, up to {@link #CATEGORIES} categories in total.
+	 */
+	protected CatalogVersionData createVersion(final boolean withSubcategories)
+	{
+		final List<CategoryHierarchyData> categories = new ArrayList<>(CATEGORIES);
+		for (int i = 0; i < CATEGORIES; i++)
+		{
+			final CategoryHierarchyData category = createCategory(i);
+			categories.add(category);
+			if (withSubcategories && i >= ROOTS)
+			{
+				categories.get((i - ROOTS) / BRANCHING).getSubcategories().add(category);
+			}
+		}
+
+		final CatalogVersionData version = new CatalogVersionData();
+		version.setId(VERSION);
+		version.setCategoriesHierarchyData(new ArrayList<>(categories.subList(0, ROOTS)));
+		return version;
+	}
+
+	protected CategoryHierarchyData createCategory(final int index)
+	{
+		final CategoryHierarchyData category = new CategoryHierarchyData();
+		category.setId("c" + index);
+		category.setName("Category " + index);
+		category.setUrl("/categories/c" + index);
+		category.setSubcategories(new ArrayList<>());
+		return category;
+	}
+
+	protected int count(final Iterable<CategoryHierarchyData> categories)
+	{
+		int count = 0;
+		for (final CategoryHierarchyData category : categories)
+		{
+			count += 1 + count(category.getSubcategories());
+		}
+		return count;
+	}
+}
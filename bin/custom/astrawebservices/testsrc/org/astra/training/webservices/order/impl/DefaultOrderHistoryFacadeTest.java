@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.order.impl;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.commercefacades.order.data.OrderHistoriesData;
+import de.hybris.platform.commercefacades.product.PriceDataFactory;
+import de.hybris.platform.commercefacades.product.data.PriceData;
+import de.hybris.platform.commercefacades.product.data.PriceDataType;
+import de.hybris.platform.core.enums.OrderStatus;
+import de.hybris.platform.core.model.user.UserModel;
+import de.hybris.platform.servicelayer.user.UserService;
+import de.hybris.platform.store.BaseStoreModel;
+import de.hybris.platform.store.services.BaseStoreService;
+import org.astra.training.webservices.cache.CacheGenerationService;
+import org.astra.training.webservices.order.OrderHistoryCursor;
+import org.astra.training.webservices.order.OrderHistoryRow;
+import org.astra.training.webservices.order.dao.OrderHistoryDao;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+
+
+@UnitTest
+public class DefaultOrderHistoryFacadeTest
+{
+	private static final long NOW = 1_600_000_000_000L;
+
+	private DefaultOrderHistoryFacade facade;
+	@Mock
+	private OrderHistoryDao orderHistoryDao;
+	@Mock
+	private UserService userService;
+	@Mock
+	private BaseStoreService baseStoreService;
+	@Mock
+	private PriceDataFactory priceDataFactory;
+	@Mock
+	private CacheGenerationService cacheGenerationService;
+	@Mock
+	private UserModel user;
+	@Mock
+	private BaseStoreModel store;
+
+	@Before
+	public void setUp()
+	{
+		MockitoAnnotations.initMocks(this);
+		given(user.getUid()).willReturn("customer@astra.org");
+		given(userService.getCurrentUser()).willReturn(user);
+		given(baseStoreService.getCurrentBaseStore()).willReturn(store);
+		given(priceDataFactory.create(any(PriceDataType.class), any(BigDecimal.class), anyString())).willAnswer(invocation -> {
+			final PriceData price = new PriceData();
+			price.setValue((BigDecimal) invocation.getArguments()[1]);
+			price.setCurrencyIso((String) invocation.getArguments()[2]);
+			return price;
+		});
+
+		facade = new DefaultOrderHistoryFacade();
+		facade.setMaxPageSize(50);
+		facade.setOrderHistoryDao(orderHistoryDao);
+		facade.setUserService(userService);
+		facade.setBaseStoreService(baseStoreService);
+		facade.setPriceDataFactory(priceDataFactory);
+		facade.setCacheGenerationService(cacheGenerationService);
+	}
+
+	@Test
+	public void shouldRoundTripCursor()
+	{
+		final OrderHistoryCursor cursor = new OrderHistoryCursor(new Date(NOW), 8796093087789L);
+
+		final OrderHistoryCursor decoded = OrderHistoryCursor.decode(cursor.encode());
+
+		Assert.assertEquals(cursor, decoded);
+		Assert.assertEquals(NOW, decoded.getDate().getTime());
+		Assert.assertEquals(8796093087789L, decoded.getPk());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectInvalidCursor()
+	{
+		facade.getOrderHistory(Collections.emptySet(), "not a cursor", 10);
+	}
+
+	@Test
+	public void shouldReturnNextCursorOfLastOrderOnlyIfThereAreMoreOrders()
+	{
+		given(orderHistoryDao.findOrderHistoryRows(eq(user), eq(store), anyCollection(), any(), eq(4))).willReturn(rows(4));
+
+		final OrderHistoriesData page = facade.getOrderHistory(Collections.emptySet(), "", 3);
+
+		Assert.assertEquals(3, page.getOrders().size());
+		Assert.assertEquals(3, page.getPagination().getPageSize());
+		Assert.assertEquals(new OrderHistoryCursor(new Date(NOW - 2), 2L), OrderHistoryCursor.decode(page.getNextCursor()));
+
+		final OrderHistoryCursor after = OrderHistoryCursor.decode(page.getNextCursor());
+		given(orderHistoryDao.findOrderHistoryRows(eq(user), eq(store), anyCollection(), eq(after), eq(4)))
+				.willReturn(rows(1));
+
+		final OrderHistoriesData lastPage = facade.getOrderHistory(Collections.emptySet(), page.getNextCursor(), 3);
+
+		Assert.assertEquals(1, lastPage.getOrders().size());
+		Assert.assertNull(lastPage.getNextCursor());
+	}
+
+	@Test
+	public void shouldCapPageSize()
+	{
+		facade.getOrderHistory(Collections.emptySet(), null, 1000);
+
+		verify(orderHistoryDao).findOrderHistoryRows(eq(user), eq(store), anyCollection(), any(), eq(51));
+	}
+
+	@Test
+	public void shouldConvertRowsLikeOrderHistoryPopulator()
+	{
+		final List<OrderHistoryRow> rows = new ArrayList<>();
+		rows.add(new OrderHistoryRow(2L, "00001002", "guid-2", new Date(NOW), "COMPLETED", "Completed",
+				Double.valueOf(100d), Double.valueOf(19d), true, "USD"));
+		rows.add(new OrderHistoryRow(1L, "00001001", "guid-1", new Date(NOW), null, null, Double.valueOf(100d),
+				Double.valueOf(19d), false, "USD"));
+		given(orderHistoryDao.findOrderHistoryRows(eq(user), eq(store), anyCollection(), any(), eq(11))).willReturn(rows);
+
+		final OrderHistoriesData page = facade.getOrderHistory(Collections.emptySet(), null, 10);
+
+		Assert.assertEquals("00001002", page.getOrders().get(0).getCode());
+		Assert.assertEquals("guid-2", page.getOrders().get(0).getGuid());
+		Assert.assertEquals(OrderStatus.COMPLETED, page.getOrders().get(0).getStatus());
+		Assert.assertEquals("Completed", page.getOrders().get(0).getStatusDisplay());
+		Assert.assertEquals(0, BigDecimal.valueOf(119d).compareTo(page.getOrders().get(0).getTotal().getValue()));
+		Assert.assertNull(page.getOrders().get(1).getStatus());
+		Assert.assertNull(page.getOrders().get(1).getStatusDisplay());
+		Assert.assertEquals(0, BigDecimal.valueOf(100d).compareTo(page.getOrders().get(1).getTotal().getValue()));
+	}
+
+	@Test
+	public void shouldChangeStampWithGenerationOfUser()
+	{
+		given(Long.valueOf(cacheGenerationService.getGeneration(DefaultOrderHistoryFacade.ORDER_REGION, "customer@astra.org")))
+				.willReturn(Long.valueOf(1L), Long.valueOf(2L));
+
+		final String first = facade.getOrderHistoryStamp();
+		final String second = facade.getOrderHistoryStamp();
+
+		Assert.assertNotEquals(first, second);
+		Assert.assertTrue(first.startsWith("customer@astra.org:"));
+	}
+
+	protected List<OrderHistoryRow> rows(final int count)
+	{
+		final List<OrderHistoryRow> rows = new ArrayList<>();
+		for (int i = 0; i < count; i++)
+		{
+			rows.add(new OrderHistoryRow(count - i, "0000100" + i, "guid-" + i, new Date(NOW - i), "COMPLETED", "Completed",
+					Double.valueOf(10d), Double.valueOf(1d), false, "USD"));
+		}
+		return rows;
+	}
+}
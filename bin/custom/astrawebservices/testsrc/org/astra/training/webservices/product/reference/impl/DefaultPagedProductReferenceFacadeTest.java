@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.product.reference.impl;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.catalog.CatalogVersionService;
+import de.hybris.platform.catalog.ProductReferenceService;
+import de.hybris.platform.catalog.enums.ProductReferenceTypeEnum;
+import de.hybris.platform.catalog.model.CatalogVersionModel;
+import de.hybris.platform.catalog.model.ProductReferenceModel;
+import de.hybris.platform.commercefacades.product.ProductOption;
+import de.hybris.platform.commercefacades.product.data.ProductData;
+import de.hybris.platform.commercefacades.product.data.ProductReferenceData;
+import de.hybris.platform.commerceservices.search.pagedata.PageableData;
+import de.hybris.platform.commerceservices.search.pagedata.SearchPageData;
+import de.hybris.platform.converters.ConfigurablePopulator;
+import de.hybris.platform.core.PK;
+import de.hybris.platform.core.model.product.ProductModel;
+import de.hybris.platform.core.model.user.UserGroupModel;
+import de.hybris.platform.core.model.user.UserModel;
+import de.hybris.platform.product.ProductService;
+import de.hybris.platform.search.restriction.SearchRestrictionService;
+import de.hybris.platform.servicelayer.dto.converter.Converter;
+import de.hybris.platform.servicelayer.model.ModelService;
+import de.hybris.platform.servicelayer.user.UserService;
+import de.hybris.platform.variants.model.VariantProductModel;
+import org.astra.training.webservices.cache.CacheGenerationService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+
+@UnitTest
+public class DefaultPagedProductReferenceFacadeTest
+{
+	private static final String PRODUCT_CODE = "product";
+	private static final String VARIANT_CODE = "variant";
+
+	private DefaultPagedProductReferenceFacade facade;
+	private DefaultProductReferenceIndex index;
+	@Mock
+	private ProductService productService;
+	@Mock
+	private ModelService modelService;
+	@Mock
+	private ProductReferenceService productReferenceService;
+	@Mock
+	private CatalogVersionService catalogVersionService;
+	@Mock
+	private UserService userService;
+	@Mock
+	private SearchRestrictionService searchRestrictionService;
+	@Mock
+	private CacheGenerationService cacheGenerationService;
+	@Mock
+	private Converter<ProductModel, ProductData> productConverter;
+	@Mock
+	private ConfigurablePopulator<ProductModel, ProductData, ProductOption> productConfiguredPopulator;
+	@Mock
+	private ProductModel product;
+	@Mock
+	private CatalogVersionModel catalogVersion;
+	@Mock
+	private UserModel user;
+	@Mock
+	private UserGroupModel customerGroup;
+
+	@Before
+	public void setUp()
+	{
+		MockitoAnnotations.initMocks(this);
+		given(product.getCode()).willReturn(PRODUCT_CODE);
+		given(product.getPk()).willReturn(PK.fromLong(1L));
+		given(productService.getProductForCode(PRODUCT_CODE)).willReturn(product);
+		given(productConverter.convert(any(ProductModel.class))).willReturn(new ProductData());
+		given(catalogVersion.getPk()).willReturn(PK.fromLong(10L));
+		given(catalogVersionService.getSessionCatalogVersions()).willReturn(Collections.singleton(catalogVersion));
+		given(userService.getCurrentUser()).willReturn(user);
+		given(customerGroup.getUid()).willReturn("customergroup");
+		given(userService.getAllUserGroupsForUser(user)).willReturn(Collections.singleton(customerGroup));
+		given(Boolean.valueOf(searchRestrictionService.isSearchRestrictionsEnabled())).willReturn(Boolean.TRUE);
+
+		index = new DefaultProductReferenceIndex();
+		index.setProductReferenceService(productReferenceService);
+		index.setCatalogVersionService(catalogVersionService);
+		index.setUserService(userService);
+		index.setSearchRestrictionService(searchRestrictionService);
+		index.setCacheGenerationService(cacheGenerationService);
+		index.afterPropertiesSet();
+
+		facade = new DefaultPagedProductReferenceFacade();
+		facade.setProductService(productService);
+		facade.setModelService(modelService);
+		facade.setProductReferenceIndex(index);
+		facade.setProductConverter(productConverter);
+		facade.setProductConfiguredPopulator(productConfiguredPopulator);
+	}
+
+	@Test
+	public void shouldConvertOnlyReferencesOfRequestedPageAcrossTypes()
+	{
+		givenReferences(ProductReferenceTypeEnum.ACCESSORIES, 100L, 3);
+		givenReferences(ProductReferenceTypeEnum.SIMILAR, 200L, 3);
+
+		final SearchPageData<ProductReferenceData> page = facade.getProductReferencesForCode(PRODUCT_CODE,
+				Arrays.asList(ProductReferenceTypeEnum.ACCESSORIES, ProductReferenceTypeEnum.SIMILAR),
+				Collections.singleton(ProductOption.BASIC), createPageable(1, 4));
+
+		Assert.assertEquals(2, page.getResults().size());
+		Assert.assertEquals(ProductReferenceTypeEnum.SIMILAR, page.getResults().get(0).getReferenceType());
+		Assert.assertEquals(6L, page.getPagination().getTotalNumberOfResults());
+		Assert.assertEquals(2, page.getPagination().getNumberOfPages());
+		verify(productConverter, times(2)).convert(any(ProductModel.class));
+	}
+
+	@Test
+	public void shouldReuseIndexUntilReferencesOfProductChange()
+	{
+		givenReferences(ProductReferenceTypeEnum.ACCESSORIES, 100L, 2);
+		given(Long.valueOf(cacheGenerationService.getGeneration(DefaultProductReferenceIndex.REGION, PRODUCT_CODE)))
+				.willReturn(Long.valueOf(1L), Long.valueOf(1L), Long.valueOf(2L));
+
+		index.getReferencePks(product, ProductReferenceTypeEnum.ACCESSORIES);
+		index.getReferencePks(product, ProductReferenceTypeEnum.ACCESSORIES);
+		verify(productReferenceService, times(1)).getProductReferencesForSourceProduct(product,
+				ProductReferenceTypeEnum.ACCESSORIES, true);
+
+		index.getReferencePks(product, ProductReferenceTypeEnum.ACCESSORIES);
+		verify(productReferenceService, times(2)).getProductReferencesForSourceProduct(eq(product),
+				eq(ProductReferenceTypeEnum.ACCESSORIES), eq(true));
+	}
+
+	@Test
+	public void shouldKeepIndexPerUserGroups()
+	{
+		givenReferences(ProductReferenceTypeEnum.ACCESSORIES, 100L, 2);
+
+		index.getReferencePks(product, ProductReferenceTypeEnum.ACCESSORIES);
+		final UserGroupModel b2bGroup = mock(UserGroupModel.class);
+		given(b2bGroup.getUid()).willReturn("b2bcustomergroup");
+		given(userService.getAllUserGroupsForUser(user)).willReturn(Collections.singleton(b2bGroup));
+		index.getReferencePks(product, ProductReferenceTypeEnum.ACCESSORIES);
+
+		verify(productReferenceService, times(2)).getProductReferencesForSourceProduct(product,
+				ProductReferenceTypeEnum.ACCESSORIES, true);
+	}
+
+	@Test
+	public void shouldAddReferencesOfBaseProductToVariant()
+	{
+		final VariantProductModel variant = mock(VariantProductModel.class);
+		given(variant.getCode()).willReturn(VARIANT_CODE);
+		given(variant.getPk()).willReturn(PK.fromLong(2L));
+		given(variant.getBaseProduct()).willReturn(product);
+		final List<ProductReferenceModel> baseReferences = givenReferences(ProductReferenceTypeEnum.ACCESSORIES, 100L, 2);
+		final ProductReferenceModel variantReference = mock(ProductReferenceModel.class);
+		given(variantReference.getPk()).willReturn(PK.fromLong(300L));
+		given(variantReference.getTarget()).willReturn(baseReferences.get(1).getTarget());
+		given(productReferenceService.getProductReferencesForSourceProduct(variant, ProductReferenceTypeEnum.ACCESSORIES, true))
+				.willReturn(Collections.singletonList(variantReference));
+
+		final List<PK> referencePks = index.getReferencePks(variant, ProductReferenceTypeEnum.ACCESSORIES);
+
+		Assert.assertEquals(Arrays.asList(PK.fromLong(300L), PK.fromLong(100L)), referencePks);
+		verify(cacheGenerationService).getGeneration(DefaultProductReferenceIndex.REGION, PRODUCT_CODE);
+		verify(cacheGenerationService).getGeneration(DefaultProductReferenceIndex.REGION, VARIANT_CODE);
+	}
+
+	protected List<ProductReferenceModel> givenReferences(final ProductReferenceTypeEnum referenceType, final long firstPk,
+			final int count)
+	{
+		final List<ProductReferenceModel> references = new ArrayList<>();
+		for (int i = 0; i < count; i++)
+		{
+			final PK pk = PK.fromLong(firstPk + i);
+			final ProductReferenceModel reference = mock(ProductReferenceModel.class);
+			given(reference.getPk()).willReturn(pk);
+			given(reference.getReferenceType()).willReturn(referenceType);
+			given(reference.getTarget()).willReturn(mock(ProductModel.class));
+			given(modelService.get(pk)).willReturn(reference);
+			references.add(reference);
+		}
+		given(productReferenceService.getProductReferencesForSourceProduct(product, referenceType, true))
+				.willReturn(references);
+		return references;
+	}
+
+	protected PageableData createPageable(final int currentPage, final int pageSize)
+	{
+		final PageableData pageable = new PageableData();
+		pageable.setCurrentPage(currentPage);
+		pageable.setPageSize(pageSize);
+		return pageable;
+	}
+}
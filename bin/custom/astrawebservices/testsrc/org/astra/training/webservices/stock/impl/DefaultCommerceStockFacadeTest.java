@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.stock.impl;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.basecommerce.enums.StockLevelStatus;
+import de.hybris.platform.basecommerce.model.site.BaseSiteModel;
+import de.hybris.platform.commerceservices.stock.CommerceStockService;
+import de.hybris.platform.commerceservices.stock.strategies.CommerceAvailabilityCalculationStrategy;
+import de.hybris.platform.commerceservices.stock.strategies.WarehouseSelectionStrategy;
+import de.hybris.platform.core.model.product.ProductModel;
+import de.hybris.platform.ordersplitting.model.StockLevelModel;
+import de.hybris.platform.ordersplitting.model.WarehouseModel;
+import de.hybris.platform.product.ProductService;
+import de.hybris.platform.servicelayer.exceptions.AmbiguousIdentifierException;
+import de.hybris.platform.servicelayer.exceptions.UnknownIdentifierException;
+import de.hybris.platform.site.BaseSiteService;
+import de.hybris.platform.stock.strategy.StockLevelStatusStrategy;
+import de.hybris.platform.store.BaseStoreModel;
+import org.astra.training.webservices.stock.dao.CommerceStockLevelDao;
+import org.astra.training.webservices.stock.data.ProductStockDataList;
+import org.astra.training.webservices.strategies.BaseStoreForSiteSelectorStrategy;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+
+@UnitTest
+public class DefaultCommerceStockFacadeTest
+{
+	private static final String SITE_ID = "electronics";
+	private static final String PRODUCT_CODE = "1382080";
+	private static final String OTHER_PRODUCT_CODE = "1382081";
+	private static final String UNKNOWN_PRODUCT_CODE = "unknown";
+
+	private DefaultCommerceStockFacade facade;
+	@Mock
+	private BaseSiteService baseSiteService;
+	@Mock
+	private BaseStoreForSiteSelectorStrategy baseStoreForSiteSelectorStrategy;
+	@Mock
+	private ProductService productService;
+	@Mock
+	private CommerceStockService commerceStockService;
+	@Mock
+	private CommerceStockLevelDao commerceStockLevelDao;
+	@Mock
+	private WarehouseSelectionStrategy warehouseSelectionStrategy;
+	@Mock
+	private StockLevelStatusStrategy stockLevelStatusStrategy;
+	@Mock
+	private CommerceAvailabilityCalculationStrategy commerceStockLevelCalculationStrategy;
+	@Mock
+	private BaseSiteModel baseSite;
+	@Mock
+	private BaseStoreModel baseStore;
+	@Mock
+	private WarehouseModel warehouse;
+	@Mock
+	private WarehouseModel otherWarehouse;
+	@Mock
+	private ProductModel product;
+	@Mock
+	private ProductModel otherProduct;
+	@Mock
+	private StockLevelModel stockLevel;
+	@Mock
+	private StockLevelModel otherWarehouseStockLevel;
+
+	@Before
+	public void setUp()
+	{
+		MockitoAnnotations.initMocks(this);
+		given(baseSiteService.getBaseSiteForUID(SITE_ID)).willReturn(baseSite);
+		given(baseStoreForSiteSelectorStrategy.getBaseStore(baseSite)).willReturn(baseStore);
+		given(baseStore.getUid()).willReturn(SITE_ID);
+		given(warehouseSelectionStrategy.getWarehousesForBaseStore(baseStore)).willReturn(Collections.singletonList(warehouse));
+		given(product.getCode()).willReturn(PRODUCT_CODE);
+		given(otherProduct.getCode()).willReturn(OTHER_PRODUCT_CODE);
+		given(commerceStockLevelDao.findProducts(anyCollection())).willReturn(Arrays.asList(product, otherProduct));
+		given(stockLevel.getProductCode()).willReturn(PRODUCT_CODE);
+		given(stockLevel.getWarehouse()).willReturn(warehouse);
+		given(otherWarehouseStockLevel.getProductCode()).willReturn(PRODUCT_CODE);
+		given(otherWarehouseStockLevel.getWarehouse()).willReturn(otherWarehouse);
+		given(commerceStockLevelDao.findStockLevels(anyCollection(), anyCollection()))
+				.willReturn(Arrays.asList(stockLevel, otherWarehouseStockLevel));
+		given(stockLevelStatusStrategy.checkStatus(stockLevel)).willReturn(StockLevelStatus.LOWSTOCK);
+		given(commerceStockLevelCalculationStrategy.calculateAvailability(Collections.singletonList(stockLevel)))
+				.willReturn(Long.valueOf(3L));
+		given(commerceStockLevelCalculationStrategy.calculateAvailability(Collections.emptyList()))
+				.willReturn(Long.valueOf(0L));
+
+		final DefaultStockSnapshotCache stockSnapshotCache = new DefaultStockSnapshotCache();
+		stockSnapshotCache.afterPropertiesSet();
+
+		facade = new DefaultCommerceStockFacade();
+		facade.setBaseSiteService(baseSiteService);
+		facade.setBaseStoreForSiteSelectorStrategy(baseStoreForSiteSelectorStrategy);
+		facade.setProductService(productService);
+		facade.setCommerceStockService(commerceStockService);
+		facade.setCommerceStockLevelDao(commerceStockLevelDao);
+		facade.setStockSnapshotCache(stockSnapshotCache);
+		facade.setWarehouseSelectionStrategy(warehouseSelectionStrategy);
+		facade.setStockLevelStatusStrategy(stockLevelStatusStrategy);
+		facade.setCommerceStockLevelCalculationStrategy(commerceStockLevelCalculationStrategy);
+	}
+
+	@Test
+	public void shouldComputeStockFromBatchedQueriesOnce()
+	{
+		facade.getStockDataForProducts(SITE_ID, Arrays.asList(PRODUCT_CODE, OTHER_PRODUCT_CODE), null);
+		final ProductStockDataList result = facade.getStockDataForProducts(SITE_ID,
+				Arrays.asList(PRODUCT_CODE, OTHER_PRODUCT_CODE), null);
+
+		Assert.assertEquals(2, result.getProductStocks().size());
+		Assert.assertEquals(PRODUCT_CODE, result.getProductStocks().get(0).getProductCode());
+		// only the stock level of the warehouse selected for the base store counts
+		Assert.assertEquals(StockLevelStatus.LOWSTOCK, result.getProductStocks().get(0).getStock().getStockLevelStatus());
+		Assert.assertEquals(Long.valueOf(3L), result.getProductStocks().get(0).getStock().getStockLevel());
+		Assert.assertEquals(StockLevelStatus.OUTOFSTOCK, result.getProductStocks().get(1).getStock().getStockLevelStatus());
+		Assert.assertEquals(Long.valueOf(0L), result.getProductStocks().get(1).getStock().getStockLevel());
+		verify(commerceStockLevelDao, times(1)).findProducts(anyCollection());
+		verify(commerceStockLevelDao, times(1)).findStockLevels(anyCollection(), anyCollection());
+		verify(warehouseSelectionStrategy, times(1)).getWarehousesForBaseStore(baseStore);
+		verifyZeroInteractions(productService, commerceStockService);
+	}
+
+	@Test(expected = UnknownIdentifierException.class)
+	public void shouldRejectUnknownProductCode()
+	{
+		try
+		{
+			facade.getStockDataForProducts(SITE_ID, Arrays.asList(PRODUCT_CODE, UNKNOWN_PRODUCT_CODE), null);
+		}
+		finally
+		{
+			verify(commerceStockLevelDao, never()).findStockLevels(any(), any());
+		}
+	}
+
+	@Test(expected = AmbiguousIdentifierException.class)
+	public void shouldRejectAmbiguousProductCode()
+	{
+		final ProductModel sameCodeProduct = mock(ProductModel.class);
+		given(sameCodeProduct.getCode()).willReturn(PRODUCT_CODE);
+		given(commerceStockLevelDao.findProducts(anyCollection())).willReturn(Arrays.asList(product, sameCodeProduct));
+
+		facade.getStockDataForProducts(SITE_ID, Collections.singletonList(PRODUCT_CODE), null);
+	}
+}
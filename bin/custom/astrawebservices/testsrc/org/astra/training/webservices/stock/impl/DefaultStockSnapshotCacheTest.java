@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.stock.impl;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.basecommerce.enums.StockLevelStatus;
+import de.hybris.platform.commercefacades.product.data.StockData;
+import de.hybris.platform.core.PK;
+import de.hybris.platform.tx.AfterSaveEvent;
+
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+
+@UnitTest
+public class DefaultStockSnapshotCacheTest
+{
+	private static final String PRODUCT_CODE = "product1";
+	private static final String OTHER_PRODUCT_CODE = "product2";
+	private static final String STORE_SCOPE = "store:electronics";
+	private static final String POS_SCOPE = "pos:Nakano";
+	private static final PK STOCK_LEVEL_PK = PK.fromLong(1234L);
+
+	private DefaultStockSnapshotCache cache;
+	private StockData stockData;
+
+	@Before
+	public void setUp()
+	{
+		cache = new DefaultStockSnapshotCache();
+		cache.afterPropertiesSet();
+
+		stockData = new StockData();
+		stockData.setStockLevelStatus(StockLevelStatus.INSTOCK);
+		stockData.setStockLevel(Long.valueOf(7));
+	}
+
+	@Test
+	public void shouldReturnCachedStockForProductAndScope()
+	{
+		cache.put(PRODUCT_CODE, STORE_SCOPE, stockData, Collections.singletonList(STOCK_LEVEL_PK));
+
+		Assert.assertSame(stockData, cache.get(PRODUCT_CODE, STORE_SCOPE));
+		Assert.assertNull(cache.get(PRODUCT_CODE, POS_SCOPE));
+		Assert.assertNull(cache.get(OTHER_PRODUCT_CODE, STORE_SCOPE));
+	}
+
+	@Test
+	public void shouldInvalidateAllScopesOfProduct()
+	{
+		cache.put(PRODUCT_CODE, STORE_SCOPE, stockData, Collections.emptyList());
+		cache.put(PRODUCT_CODE, POS_SCOPE, stockData, Collections.emptyList());
+		cache.put(OTHER_PRODUCT_CODE, STORE_SCOPE, stockData, Collections.emptyList());
+
+		cache.invalidate(PRODUCT_CODE);
+
+		Assert.assertNull(cache.get(PRODUCT_CODE, STORE_SCOPE));
+		Assert.assertNull(cache.get(PRODUCT_CODE, POS_SCOPE));
+		Assert.assertSame(stockData, cache.get(OTHER_PRODUCT_CODE, STORE_SCOPE));
+	}
+
+	@Test
+	public void shouldInvalidateProductWhenKnownStockLevelIsSaved()
+	{
+		cache.put(PRODUCT_CODE, STORE_SCOPE, stockData, Collections.singletonList(STOCK_LEVEL_PK));
+		cache.put(OTHER_PRODUCT_CODE, STORE_SCOPE, stockData, Collections.emptyList());
+
+		cache.afterSave(Collections.singletonList(new AfterSaveEvent(STOCK_LEVEL_PK, AfterSaveEvent.UPDATE)));
+
+		Assert.assertNull(cache.get(PRODUCT_CODE, STORE_SCOPE));
+		Assert.assertSame(stockData, cache.get(OTHER_PRODUCT_CODE, STORE_SCOPE));
+	}
+
+	@Test
+	public void shouldInvalidateProductWhenKnownStockLevelIsRemoved()
+	{
+		cache.put(PRODUCT_CODE, STORE_SCOPE, stockData, Collections.singletonList(STOCK_LEVEL_PK));
+
+		cache.afterSave(Collections.singletonList(new AfterSaveEvent(STOCK_LEVEL_PK, AfterSaveEvent.REMOVE)));
+
+		Assert.assertNull(cache.get(PRODUCT_CODE, STORE_SCOPE));
+	}
+}
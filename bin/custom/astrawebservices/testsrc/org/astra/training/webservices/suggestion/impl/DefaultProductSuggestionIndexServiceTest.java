@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.suggestion.impl;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.basecommerce.model.site.BaseSiteModel;
+import de.hybris.platform.core.PK;
+import de.hybris.platform.core.model.c2l.LanguageModel;
+import de.hybris.platform.core.model.user.UserGroupModel;
+import de.hybris.platform.core.model.user.UserModel;
+import de.hybris.platform.servicelayer.user.UserService;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.mockito.BDDMockito.given;
+
+
+@UnitTest
+public class DefaultProductSuggestionIndexServiceTest
+{
+	private static final List<PK> CATALOG_VERSIONS = Arrays.asList(PK.fromLong(1L), PK.fromLong(2L));
+
+	private DefaultProductSuggestionIndexService service;
+	@Mock
+	private UserService userService;
+	@Mock
+	private BaseSiteModel site;
+	@Mock
+	private LanguageModel language;
+	@Mock
+	private UserModel customer;
+	@Mock
+	private UserModel b2bCustomer;
+	@Mock
+	private UserModel otherCustomer;
+
+	@Before
+	public void setUp()
+	{
+		MockitoAnnotations.initMocks(this);
+		given(site.getUid()).willReturn("electronics");
+		given(language.getIsocode()).willReturn("en");
+		given(userService.getAllUserGroupsForUser(customer)).willReturn(Collections.singleton(group("customergroup")));
+		given(userService.getAllUserGroupsForUser(otherCustomer)).willReturn(Collections.singleton(group("customergroup")));
+		given(userService.getAllUserGroupsForUser(b2bCustomer)).willReturn(Collections.singleton(group("b2bcustomergroup")));
+
+		service = new DefaultProductSuggestionIndexService();
+		service.setUserService(userService);
+	}
+
+	@Test
+	public void shouldShareIndexBetweenUsersOfSameGroups()
+	{
+		Assert.assertEquals(service.createKey(site, language, CATALOG_VERSIONS, customer),
+				service.createKey(site, language, CATALOG_VERSIONS, otherCustomer));
+	}
+
+	@Test
+	public void shouldSeparateIndexesByUserGroupsAndCatalogVersions()
+	{
+		final String key = service.createKey(site, language, CATALOG_VERSIONS, customer);
+
+		Assert.assertNotEquals(key, service.createKey(site, language, CATALOG_VERSIONS, b2bCustomer));
+		Assert.assertNotEquals(key,
+				service.createKey(site, language, Collections.singletonList(PK.fromLong(1L)), customer));
+	}
+
+	protected UserGroupModel group(final String uid)
+	{
+		final UserGroupModel group = new UserGroupModel();
+		group.setUid(uid);
+		return group;
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.suggestion.impl;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+@UnitTest
+public class SuggestionIndexTest
+{
+	@Test
+	public void shouldReturnTermsWithPrefixByWeight()
+	{
+		final SuggestionIndex index = new SuggestionIndex.Builder(100).add("Camera").add("Camcorder").add("Canon").add("Camera")
+				.add("Cable").add("Battery").build();
+
+		Assert.assertEquals(Arrays.asList("Camera", "Camcorder"), index.lookup("cam", 10));
+		Assert.assertEquals(Arrays.asList("Camera", "Cable"), index.lookup("CA", 2));
+		Assert.assertEquals(Collections.emptyList(), index.lookup("dslr", 10));
+	}
+
+	@Test
+	public void shouldNormalizeCaseAndWhitespace()
+	{
+		final SuggestionIndex index = new SuggestionIndex.Builder(100).add("  Digital   Camera ").build();
+
+		Assert.assertEquals(Collections.singletonList("Digital Camera"), index.lookup("digital c", 5));
+		Assert.assertEquals(Collections.emptyList(), index.lookup("   ", 5));
+	}
+
+	@Test
+	public void shouldStopAddingNewTermsAtLimit()
+	{
+		final SuggestionIndex index = new SuggestionIndex.Builder(2).add("alpha").add("beta").add("gamma").add("alpha")
+				.build();
+
+		Assert.assertEquals(2, index.size());
+		Assert.assertEquals(Collections.emptyList(), index.lookup("gamma", 5));
+	}
+}
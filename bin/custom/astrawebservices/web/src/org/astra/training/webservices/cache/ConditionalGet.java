@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cache;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Marks GET endpoints whose responses get an entity tag and are answered with <code>304 Not Modified</code> when the
+ * client already holds the current version. The tag is built from the version stamps of the declared data and the
+ * request, see {@link ConditionalGetHandlerInterceptor}. An annotation on a method replaces the one on its class.
+ */
+@Target({ ElementType.TYPE, ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ConditionalGet
+{
+	/**
+	 * Composed types the response is built from.
+	 */
+	String[] types() default {};
+
+	/**
+	 * Name of the path variable holding the code of the product the response is built from, if any.
+	 */
+	String productCodeVariable() default "";
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cache;
+
+import de.hybris.platform.core.model.c2l.CurrencyModel;
+import de.hybris.platform.core.model.c2l.LanguageModel;
+import de.hybris.platform.servicelayer.i18n.CommonI18NService;
+import de.hybris.platform.servicelayer.user.UserService;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import com.google.common.hash.Hashing;
+
+
+/**
+ * Computes strong entity tags for endpoints annotated with {@link ConditionalGet} and answers requests whose
+ * <code>If-None-Match</code> header holds the current tag with <code>304 Not Modified</code>, before the controller
+ * runs. Otherwise the tag is kept in the {@link #ETAG_ATTRIBUTE} request attribute and
+ * {@link ConditionalGetResponseBodyAdvice} adds it to successful responses only. The tag covers the version stamps of
+ * the data, the request URI and query string, which includes the fields parameter, the accepted media types, the
+ * session language and currency and the current user, whose user groups may select other prices.
+ * <p>
+ * The interceptor runs before the method security of the controller. Endpoints annotated with {@link Secured} are
+ * therefore only tagged when the current authentication holds one of the required roles; otherwise the request
+ * proceeds untagged and method security rejects it.
+ */
+public class ConditionalGetHandlerInterceptor extends HandlerInterceptorAdapter
+{
+	/**
+	 * Request attribute holding the entity tag of the current response.
+	 */
+	public static final String ETAG_ATTRIBUTE = ConditionalGetHandlerInterceptor.class.getName() + ".etag";
+
+	private static final Logger LOG = Logger.getLogger(ConditionalGetHandlerInterceptor.class);
+
+	private static final String GET = "GET";
+	private static final String WEAK_PREFIX = "W/";
+	private static final String ANY = "*";
+	private static final char SEPARATOR = '|';
+
+	private VersionStampService versionStampService;
+	private CommonI18NService commonI18NService;
+	private UserService userService;
+
+	@Override
+	public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response, final Object handler)
+	{
+		if (!GET.equals(request.getMethod()) || !(handler instanceof HandlerMethod))
+		{
+			return true;
+		}
+		final ConditionalGet conditionalGet = findAnnotation((HandlerMethod) handler);
+		if (conditionalGet == null || !isAccessGranted((HandlerMethod) handler))
+		{
+			return true;
+		}
+
+		final String etag;
+		try
+		{
+			etag = createETag(request, conditionalGet);
+		}
+		catch (final RuntimeException e)
+		{
+			// serve the response without a tag rather than failing the request
+			LOG.warn("Could not compute entity tag for " + request.getRequestURI(), e);
+			return true;
+		}
+
+		if (isNotModified(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag))
+		{
+			response.setHeader(HttpHeaders.ETAG, etag);
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return false;
+		}
+		request.setAttribute(ETAG_ATTRIBUTE, etag);
+		return true;
+	}
+
+	protected ConditionalGet findAnnotation(final HandlerMethod handlerMethod)
+	{
+		final ConditionalGet methodAnnotation = handlerMethod.getMethodAnnotation(ConditionalGet.class);
+		return methodAnnotation != null ?
+				methodAnnotation :
+				AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getBeanType(), ConditionalGet.class);
+	}
+
+	/**
+	 * Checks the roles of a {@link Secured} annotation of the handler method, or else of its class, the way the role
+	 * voter of method security does.
+	 */
+	protected boolean isAccessGranted(final HandlerMethod handlerMethod)
+	{
+		final Secured methodAnnotation = handlerMethod.getMethodAnnotation(Secured.class);
+		final Secured secured = methodAnnotation != null ?
+				methodAnnotation :
+				AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getBeanType(), Secured.class);
+		if (secured == null)
+		{
+			return true;
+		}
+		final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		if (authentication == null)
+		{
+			return false;
+		}
+		final Set<String> authorities = AuthorityUtils.authorityListToSet(authentication.getAuthorities());
+		for (final String role : secured.value())
+		{
+			if (authorities.contains(role))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	protected String createETag(final HttpServletRequest request, final ConditionalGet conditionalGet)
+	{
+		final StringBuilder key = new StringBuilder();
+		if (conditionalGet.types().length > 0)
+		{
+			key.append(getVersionStampService().getTypeStamp(conditionalGet.types()));
+		}
+		if (StringUtils.isNotEmpty(conditionalGet.productCodeVariable()))
+		{
+			final String productCode = getPathVariable(request, conditionalGet.productCodeVariable());
+			if (productCode != null)
+			{
+				key.append(getVersionStampService().getProductStamp(productCode));
+			}
+		}
+
+		final LanguageModel language = getCommonI18NService().getCurrentLanguage();
+		final CurrencyModel currency = getCommonI18NService().getCurrentCurrency();
+		key.append(SEPARATOR).append(request.getRequestURI()).append('?').append(StringUtils.defaultString(request.getQueryString()))
+				.append(SEPARATOR).append(StringUtils.defaultString(request.getHeader(HttpHeaders.ACCEPT)))
+				.append(SEPARATOR).append(language == null ? null : language.getIsocode())
+				.append(SEPARATOR).append(currency == null ? null : currency.getIsocode())
+				.append(SEPARATOR).append(getUserService().getCurrentUser().getUid());
+
+		return '"' + Hashing.murmur3_128().hashString(key, StandardCharsets.UTF_8).toString() + '"';
+	}
+
+	protected String getPathVariable(final HttpServletRequest request, final String name)
+	{
+		final Object variables = request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+		return variables instanceof Map ? (String) ((Map<?, ?>) variables).get(name) : null;
+	}
+
+	/**
+	 * Compares the tags of an <code>If-None-Match</code> header with the current tag. As for any GET request, weak
+	 * comparison applies.
+	 */
+	protected boolean isNotModified(final String ifNoneMatch, final String etag)
+	{
+		if (StringUtils.isBlank(ifNoneMatch))
+		{
+			return false;
+		}
+		for (final String candidate : StringUtils.split(ifNoneMatch, ','))
+		{
+			final String tag = StringUtils.removeStart(candidate.trim(), WEAK_PREFIX);
+			if (ANY.equals(tag) || etag.equals(tag))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	protected VersionStampService getVersionStampService()
+	{
+		return versionStampService;
+	}
+
+	@Required
+	public void setVersionStampService(final VersionStampService versionStampService)
+	{
+		this.versionStampService = versionStampService;
+	}
+
+	protected CommonI18NService getCommonI18NService()
+	{
+		return commonI18NService;
+	}
+
+	@Required
+	public void setCommonI18NService(final CommonI18NService commonI18NService)
+	{
+		this.commonI18NService = commonI18NService;
+	}
+
+	protected UserService getUserService()
+	{
+		return userService;
+	}
+
+	@Required
+	public void setUserService(final UserService userService)
+	{
+		this.userService = userService;
+	}
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cache;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+
+/**
+ * Adds the entity tag computed by {@link ConditionalGetHandlerInterceptor} to the response right before its body is
+ * written. Error responses never get the tag, so a client cannot revalidate an error against a later success.
+ */
+@ControllerAdvice
+public class ConditionalGetResponseBodyAdvice implements ResponseBodyAdvice<Object>
+{
+	@Override
+	public boolean supports(final MethodParameter returnType, final Class<? extends HttpMessageConverter<?>> converterType)
+	{
+		return true;
+	}
+
+	@Override
+	public Object beforeBodyWrite(final Object body, final MethodParameter returnType, final MediaType selectedContentType,
+			final Class<? extends HttpMessageConverter<?>> selectedConverterType, final ServerHttpRequest request,
+			final ServerHttpResponse response)
+	{
+		if (request instanceof ServletServerHttpRequest && response instanceof ServletServerHttpResponse)
+		{
+			final Object etag = ((ServletServerHttpRequest) request).getServletRequest()
+					.getAttribute(ConditionalGetHandlerInterceptor.ETAG_ATTRIBUTE);
+			final int status = ((ServletServerHttpResponse) response).getServletResponse().getStatus();
+			if (etag instanceof String && HttpStatus.Series.valueOf(status) == HttpStatus.Series.SUCCESSFUL)
+			{
+				response.getHeaders().set(HttpHeaders.ETAG, (String) etag);
+			}
+		}
+		return body;
+	}
+}
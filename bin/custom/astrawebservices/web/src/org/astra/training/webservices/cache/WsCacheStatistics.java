@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cache;
+
+import de.hybris.platform.core.Registry;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.export.naming.SelfNaming;
+
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.statistics.StatisticsGateway;
+
+
+/**
+ * Exposes hit, miss and eviction counts of the OCC cache regions over JMX, one MBean per tenant.
+ */
+@ManagedResource(description = "Statistics of the OCC cache regions")
+public class WsCacheStatistics implements SelfNaming
+{
+	private CacheManager cacheManager;
+
+	@ManagedAttribute(description = "Names of all cache regions")
+	public String[] getRegionNames()
+	{
+		return getCacheManager().getCacheNames();
+	}
+
+	@ManagedOperation(description = "Number of cache hits of a region")
+	public long getHitCount(final String region)
+	{
+		final StatisticsGateway statistics = getStatistics(region);
+		return statistics == null ? 0 : statistics.cacheHitCount();
+	}
+
+	@ManagedOperation(description = "Number of cache misses of a region")
+	public long getMissCount(final String region)
+	{
+		final StatisticsGateway statistics = getStatistics(region);
+		return statistics == null ? 0 : statistics.cacheMissCount();
+	}
+
+	@ManagedOperation(description = "Number of entries evicted from a region")
+	public long getEvictionCount(final String region)
+	{
+		final StatisticsGateway statistics = getStatistics(region);
+		return statistics == null ? 0 : statistics.cacheEvictedCount();
+	}
+
+	@ManagedOperation(description = "Ratio of hits to all lookups of a region")
+	public double getHitRatio(final String region)
+	{
+		final long hits = getHitCount(region);
+		final long lookups = hits + getMissCount(region);
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	@ManagedAttribute(description = "Hits, misses, evictions and size of all cache regions")
+	public String getSummary()
+	{
+		final StringBuilder summary = new StringBuilder();
+		for (final String region : getRegionNames())
+		{
+			final StatisticsGateway statistics = getStatistics(region);
+			if (statistics != null)
+			{
+				summary.append(region).append(": hits=").append(statistics.cacheHitCount()).append(", misses=")
+						.append(statistics.cacheMissCount()).append(", evictions=").append(statistics.cacheEvictedCount())
+						.append(", size=").append(statistics.getSize()).append('\n');
+			}
+		}
+		return summary.toString();
+	}
+
+	protected StatisticsGateway getStatistics(final String region)
+	{
+		final Ehcache cache = getCacheManager().getEhcache(region);
+		return cache == null ? null : cache.getStatistics();
+	}
+
+	@Override
+	public ObjectName getObjectName() throws MalformedObjectNameException
+	{
+		return new ObjectName(
+				"astrawebservices:type=CacheStatistics,tenant=" + ObjectName.quote(Registry.getCurrentTenant().getTenantID()));
+	}
+
+	protected CacheManager getCacheManager()
+	{
+		return cacheManager;
+	}
+
+	@Required
+	public void setCacheManager(final CacheManager cacheManager)
+	{
+		this.cacheManager = cacheManager;
+	}
+}
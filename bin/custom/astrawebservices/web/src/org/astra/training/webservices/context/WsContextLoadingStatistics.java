@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.context;
+
+import de.hybris.platform.core.Registry;
+import org.astra.training.webservices.context.impl.ContextLoadingStatistics;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.export.naming.SelfNaming;
+
+
+/**
+ * Time spent on loading the base site, language and currency of the requests, recorded by the context information
+ * loaders of all API versions and exposed over JMX, one MBean per tenant.
+ */
+@ManagedResource(description = "Statistics of the per request context loading")
+public class WsContextLoadingStatistics implements SelfNaming
+{
+	private final ContextLoadingStatistics site = new ContextLoadingStatistics();
+	private final ContextLoadingStatistics language = new ContextLoadingStatistics();
+	private final ContextLoadingStatistics currency = new ContextLoadingStatistics();
+
+	public ContextLoadingStatistics getSite()
+	{
+		return site;
+	}
+
+	public ContextLoadingStatistics getLanguage()
+	{
+		return language;
+	}
+
+	public ContextLoadingStatistics getCurrency()
+	{
+		return currency;
+	}
+
+	@ManagedAttribute(description = "Number of base site loadings")
+	public long getSiteCount()
+	{
+		return site.getCount();
+	}
+
+	@ManagedAttribute(description = "Average time of loading the base site in microseconds")
+	public long getAverageSiteMicros()
+	{
+		return site.getAverageMicros();
+	}
+
+	@ManagedAttribute(description = "Maximum time of loading the base site in microseconds")
+	public long getMaxSiteMicros()
+	{
+		return site.getMaxMicros();
+	}
+
+	@ManagedAttribute(description = "Number of language loadings")
+	public long getLanguageCount()
+	{
+		return language.getCount();
+	}
+
+	@ManagedAttribute(description = "Average time of loading the language in microseconds")
+	public long getAverageLanguageMicros()
+	{
+		return language.getAverageMicros();
+	}
+
+	@ManagedAttribute(description = "Maximum time of loading the language in microseconds")
+	public long getMaxLanguageMicros()
+	{
+		return language.getMaxMicros();
+	}
+
+	@ManagedAttribute(description = "Number of currency loadings, including cart recalculations")
+	public long getCurrencyCount()
+	{
+		return currency.getCount();
+	}
+
+	@ManagedAttribute(description = "Average time of loading the currency, including cart recalculations, in microseconds")
+	public long getAverageCurrencyMicros()
+	{
+		return currency.getAverageMicros();
+	}
+
+	@ManagedAttribute(description = "Maximum time of loading the currency, including cart recalculations, in microseconds")
+	public long getMaxCurrencyMicros()
+	{
+		return currency.getMaxMicros();
+	}
+
+	@Override
+	public ObjectName getObjectName() throws MalformedObjectNameException
+	{
+		return new ObjectName("astrawebservices:type=ContextLoadingStatistics,tenant="
+				+ ObjectName.quote(Registry.getCurrentTenant().getTenantID()));
+	}
+}
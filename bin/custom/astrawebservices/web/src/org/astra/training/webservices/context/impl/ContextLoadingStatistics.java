@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.context.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Thread safe running statistics of the time spent on one kind of context loading.
+ */
+public class ContextLoadingStatistics
+{
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	public void record(final long nanos)
+	{
+		count.increment();
+		totalNanos.add(nanos);
+		maxNanos.accumulateAndGet(nanos, Math::max);
+	}
+
+	public long getCount()
+	{
+		return count.sum();
+	}
+
+	public long getTotalMicros()
+	{
+		return TimeUnit.NANOSECONDS.toMicros(totalNanos.sum());
+	}
+
+	public long getMaxMicros()
+	{
+		return TimeUnit.NANOSECONDS.toMicros(maxNanos.get());
+	}
+
+	public long getAverageMicros()
+	{
+		final long calls = getCount();
+		return calls == 0 ? 0 : getTotalMicros() / calls;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "count=" + getCount() + ", avg=" + getAverageMicros() + "us, max=" + getMaxMicros() + "us";
+	}
+}
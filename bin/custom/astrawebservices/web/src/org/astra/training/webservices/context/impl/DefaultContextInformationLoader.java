@@ -22,8 +22,10 @@ import de.hybris.platform.site.BaseSiteService;
 import de.hybris.platform.store.BaseStoreModel;
 import de.hybris.platform.store.services.BaseStoreService;
 import de.hybris.platform.webservicescommons.util.YSanitizer;
+import org.astra.training.webservices.cache.ItemTypeGenerationService;
 import org.astra.training.webservices.constants.YcommercewebservicesConstants;
 import org.astra.training.webservices.context.ContextInformationLoader;
+import org.astra.training.webservices.context.WsContextLoadingStatistics;
 // <v1-api>
 import org.astra.training.webservices.exceptions.InvalidResourceException;
 // </v1-api>
@@ -33,25 +35,34 @@ import org.astra.training.webservices.exceptions.UnsupportedLanguageException;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.servlet.http.HttpServletRequest;
 
+import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Required;
 
 
 /**
- * Default context information loader
+ * Default context information loader. The languages and currencies supported by a base store are kept in a
+ * {@link SiteContextSnapshot} per store, which is rebuilt once a base site, base store, language or currency changes.
+ * The time spent on loading each part of the context is recorded in the {@link WsContextLoadingStatistics}.
  */
 public class DefaultContextInformationLoader implements ContextInformationLoader
 {
 	private static final String[] urlSplitters = { "/v1/", "/v2/" };
+	private static final String[] SNAPSHOT_TYPES = { BaseSiteModel._TYPECODE, BaseStoreModel._TYPECODE,
+			LanguageModel._TYPECODE, CurrencyModel._TYPECODE };
 
 	private static final Logger LOG = Logger.getLogger(DefaultContextInformationLoader.class);
 
+	private final ConcurrentMap<String, SiteContextSnapshot> snapshots = new ConcurrentHashMap<>();
+	private volatile SpecialUrlCharacters specialUrlCharacters;
+
 	private BaseSiteService baseSiteService;
 	private ActivateBaseSiteInSessionStrategy activateBaseSiteInSessionStrategy;
 	private ConfigurationService configurationService;
@@ -61,9 +72,25 @@ public class DefaultContextInformationLoader implements ContextInformationLoader
 	private BaseStoreService baseStoreService;
 	private CartService cartService;
 	private CalculationService calculationService;
+	private ItemTypeGenerationService itemTypeGenerationService;
+	private WsContextLoadingStatistics contextLoadingStatistics;
+	private long snapshotMaxAgeMillis = 300000L;
 
 	@Override
 	public LanguageModel setLanguageFromRequest(final HttpServletRequest request) throws UnsupportedLanguageException
+	{
+		final long start = System.nanoTime();
+		try
+		{
+			return doSetLanguageFromRequest(request);
+		}
+		finally
+		{
+			recordLoadingTime(getLanguageStatistics(), "language", start);
+		}
+	}
+
+	protected LanguageModel doSetLanguageFromRequest(final HttpServletRequest request) throws UnsupportedLanguageException
 	{
 		final String languageString = request.getParameter(YcommercewebservicesConstants.HTTP_REQUEST_PARAM_LANGUAGE);
 		LanguageModel languageToSet = null;
@@ -89,14 +116,14 @@ public class DefaultContextInformationLoader implements ContextInformationLoader
 
 		if (currentBaseStore != null)
 		{
-			final Collection<LanguageModel> storeLanguages = getStoresLanguages(currentBaseStore);
+			final SiteContextSnapshot snapshot = getSiteContextSnapshot(currentBaseStore);
 
-			if (storeLanguages.isEmpty())
+			if (!snapshot.hasLanguages())
 			{
 				throw new UnsupportedLanguageException("Current base store supports no languages!");
 			}
 
-			if (!storeLanguages.contains(languageToSet))
+			if (!snapshot.supportsLanguage(languageToSet))
 			{
 				throw new UnsupportedLanguageException(languageToSet);
 			}
@@ -125,9 +152,48 @@ public class DefaultContextInformationLoader implements ContextInformationLoader
 		return currentBaseStore.getLanguages() == null ? Collections.<LanguageModel>emptySet() : currentBaseStore.getLanguages();
 	}
 
+	/**
+	 * Returns the snapshot of the given store, building a new one if there is none yet or the cached one is outdated.
+	 * Currencies are resolved through {@link CommerceCommonI18NService#getAllCurrencies()}, so the store has to be the
+	 * current one.
+	 */
+	protected SiteContextSnapshot getSiteContextSnapshot(final BaseStoreModel currentBaseStore)
+	{
+		final long generation = getItemTypeGenerationService().getGeneration(SNAPSHOT_TYPES);
+		final long now = System.currentTimeMillis();
+		final SiteContextSnapshot cached = snapshots.get(currentBaseStore.getUid());
+		if (cached != null && cached.isValid(generation, now, getSnapshotMaxAgeMillis()))
+		{
+			return cached;
+		}
+
+		final SiteContextSnapshot snapshot = new SiteContextSnapshot(generation, now, getStoresLanguages(currentBaseStore),
+				getCommerceCommonI18NService().getAllCurrencies());
+		snapshots.put(currentBaseStore.getUid(), snapshot);
+		if (LOG.isDebugEnabled())
+		{
+			LOG.debug("Context snapshot of base store " + currentBaseStore.getUid() + " rebuilt for generation " + generation);
+		}
+		return snapshot;
+	}
+
 	@Override
 	public CurrencyModel setCurrencyFromRequest(final HttpServletRequest request)
 			throws UnsupportedCurrencyException, RecalculationException
+	{
+		final long start = System.nanoTime();
+		try
+		{
+			return doSetCurrencyFromRequest(request);
+		}
+		finally
+		{
+			recordLoadingTime(getCurrencyStatistics(), "currency", start);
+		}
+	}
+
+	protected CurrencyModel doSetCurrencyFromRequest(final HttpServletRequest request)
+			throws UnsupportedCurrencyException, RecalculationException
 	{
 		final String currencyString = request.getParameter(YcommercewebservicesConstants.HTTP_REQUEST_PARAM_CURRENCY);
 		CurrencyModel currencyToSet = null;
@@ -153,14 +219,14 @@ public class DefaultContextInformationLoader implements ContextInformationLoader
 
 		if (currentBaseStore != null)
 		{
-			final List<CurrencyModel> storeCurrencies = getCommerceCommonI18NService().getAllCurrencies();
+			final SiteContextSnapshot snapshot = getSiteContextSnapshot(currentBaseStore);
 
-			if (storeCurrencies.isEmpty())
+			if (!snapshot.hasCurrencies())
 			{
 				throw new UnsupportedCurrencyException("Current base store supports no currencies!");
 			}
 
-			if (!storeCurrencies.contains(currencyToSet))
+			if (!snapshot.supportsCurrency(currencyToSet))
 			{
 				throw new UnsupportedCurrencyException(currencyToSet);
 			}
@@ -168,8 +234,12 @@ public class DefaultContextInformationLoader implements ContextInformationLoader
 
 		if (currencyToSet != null && !currencyToSet.equals(getCommerceCommonI18NService().getCurrentCurrency()))
 		{
+			final boolean recalculationRequired = isCartRecalculationRequired(currencyToSet);
 			getCommerceCommonI18NService().setCurrentCurrency(currencyToSet);
-			recalculateCart(currencyString);
+			if (recalculationRequired)
+			{
+				recalculateCart(currencyString);
+			}
 			if (LOG.isDebugEnabled())
 			{
 				LOG.debug(currencyToSet + " set as current currency");
@@ -179,6 +249,21 @@ public class DefaultContextInformationLoader implements ContextInformationLoader
 		return currencyToSet;
 	}
 
+	/**
+	 * Checks whether the session cart has to be recalculated after switching to the given currency. Carts without
+	 * entries and carts already priced in that currency are left alone. Evaluated before the switch, as the session cart
+	 * may follow the session currency.
+	 */
+	protected boolean isCartRecalculationRequired(final CurrencyModel currencyToSet)
+	{
+		if (!getCartService().hasSessionCart())
+		{
+			return false;
+		}
+		final CartModel cart = getCartService().getSessionCart();
+		return cart != null && CollectionUtils.isNotEmpty(cart.getEntries()) && !currencyToSet.equals(cart.getCurrency());
+	}
+
 	/**
 	 * Recalculates cart when currency has changed
 	 */
@@ -228,6 +313,19 @@ public class DefaultContextInformationLoader implements ContextInformationLoader
 	 */
 	@Override
 	public BaseSiteModel initializeSiteFromRequest(final HttpServletRequest request) throws InvalidResourceException
+	{
+		final long start = System.nanoTime();
+		try
+		{
+			return doInitializeSiteFromRequest(request);
+		}
+		finally
+		{
+			recordLoadingTime(getSiteStatistics(), "base site", start);
+		}
+	}
+
+	protected BaseSiteModel doInitializeSiteFromRequest(final HttpServletRequest request) throws InvalidResourceException
 	{
 		final String requestURL = request.getRequestURL().toString();
 		final String requestMapping = getRequestMapping(requestURL);
@@ -274,9 +372,8 @@ public class DefaultContextInformationLoader implements ContextInformationLoader
 			rootContextIndex = queryString.indexOf(rootContext);
 			if (rootContextIndex != -1)
 			{
-				String result = queryString.substring(rootContextIndex);
-				result = result.replaceAll(rootContext, "");
-				return result;
+				// the splitters contain no regular expression characters, so a plain replace gives the same result
+				return StringUtils.replace(queryString.substring(rootContextIndex), rootContext, "");
 			}
 		}
 
@@ -316,12 +413,22 @@ public class DefaultContextInformationLoader implements ContextInformationLoader
 		return result;
 	}
 
+	/**
+	 * Returns the configured special characters. The configuration is still read on every call so that changes take
+	 * effect immediately, but it is only split again once the value changes.
+	 */
 	protected String[] getSpecialUrlCharacters()
 	{
 		final String configurationString = getConfigurationService().getConfiguration()
 				.getString(YcommercewebservicesConstants.URL_SPECIAL_CHARACTERS_PROPERTY,
 						YcommercewebservicesConstants.DEFAULT_URL_SPECIAL_CHARACTERS);
-		return configurationString.split(",");
+		SpecialUrlCharacters current = specialUrlCharacters;
+		if (current == null || !current.source.equals(configurationString))
+		{
+			current = new SpecialUrlCharacters(configurationString);
+			specialUrlCharacters = current;
+		}
+		return current.characters.clone();
 	}
 
 	protected void setCurrentBaseSite(final BaseSiteModel baseSiteModel)
@@ -343,7 +450,32 @@ public class DefaultContextInformationLoader implements ContextInformationLoader
 	}
 
 	// </v1-api>
- 
+
+	protected void recordLoadingTime(final ContextLoadingStatistics statistics, final String context, final long start)
+	{
+		final long duration = System.nanoTime() - start;
+		statistics.record(duration);
+		if (LOG.isDebugEnabled())
+		{
+			LOG.debug("Loading " + context + " context took " + duration / 1000 + "us (" + statistics + ")");
+		}
+	}
+
+	public ContextLoadingStatistics getSiteStatistics()
+	{
+		return getContextLoadingStatistics().getSite();
+	}
+
+	public ContextLoadingStatistics getLanguageStatistics()
+	{
+		return getContextLoadingStatistics().getLanguage();
+	}
+
+	public ContextLoadingStatistics getCurrencyStatistics()
+	{
+		return getContextLoadingStatistics().getCurrency();
+	}
+
 	public ConfigurationService getConfigurationService()
 	{
 		return configurationService;
@@ -442,4 +574,48 @@ public class DefaultContextInformationLoader implements ContextInformationLoader
 	{
 		this.calculationService = calculationService;
 	}
+
+	public ItemTypeGenerationService getItemTypeGenerationService()
+	{
+		return itemTypeGenerationService;
+	}
+
+	@Required
+	public void setItemTypeGenerationService(final ItemTypeGenerationService itemTypeGenerationService)
+	{
+		this.itemTypeGenerationService = itemTypeGenerationService;
+	}
+
+	public WsContextLoadingStatistics getContextLoadingStatistics()
+	{
+		return contextLoadingStatistics;
+	}
+
+	@Required
+	public void setContextLoadingStatistics(final WsContextLoadingStatistics contextLoadingStatistics)
+	{
+		this.contextLoadingStatistics = contextLoadingStatistics;
+	}
+
+	public long getSnapshotMaxAgeMillis()
+	{
+		return snapshotMaxAgeMillis;
+	}
+
+	public void setSnapshotMaxAgeMillis(final long snapshotMaxAgeMillis)
+	{
+		this.snapshotMaxAgeMillis = snapshotMaxAgeMillis;
+	}
+
+	private static final class SpecialUrlCharacters
+	{
+		private final String source;
+		private final String[] characters;
+
+		private SpecialUrlCharacters(final String source)
+		{
+			this.source = source;
+			this.characters = source.split(",");
+		}
+	}
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.context.impl;
+
+import de.hybris.platform.core.PK;
+import de.hybris.platform.core.model.ItemModel;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+
+/**
+ * Immutable view of the languages and currencies supported by one base store. A snapshot stays valid until the
+ * generation of the underlying items moves on or it reaches its maximum age.
+ */
+public class SiteContextSnapshot
+{
+	private final long generation;
+	private final long createdAt;
+	private final Set<PK> languages;
+	private final Set<PK> currencies;
+
+	public SiteContextSnapshot(final long generation, final long createdAt, final Collection<? extends ItemModel> languages,
+			final Collection<? extends ItemModel> currencies)
+	{
+		this.generation = generation;
+		this.createdAt = createdAt;
+		this.languages = toPks(languages);
+		this.currencies = toPks(currencies);
+	}
+
+	private static Set<PK> toPks(final Collection<? extends ItemModel> items)
+	{
+		final Set<PK> pks = new HashSet<>(items.size());
+		for (final ItemModel item : items)
+		{
+			pks.add(item.getPk());
+		}
+		return Collections.unmodifiableSet(pks);
+	}
+
+	public boolean isValid(final long currentGeneration, final long now, final long maxAgeMillis)
+	{
+		return generation == currentGeneration && now - createdAt < maxAgeMillis;
+	}
+
+	public boolean hasLanguages()
+	{
+		return !languages.isEmpty();
+	}
+
+	public boolean supportsLanguage(final ItemModel language)
+	{
+		return language != null && languages.contains(language.getPk());
+	}
+
+	public boolean hasCurrencies()
+	{
+		return !currencies.isEmpty();
+	}
+
+	public boolean supportsCurrency(final ItemModel currency)
+	{
+		return currency != null && currencies.contains(currency.getPk());
+	}
+}
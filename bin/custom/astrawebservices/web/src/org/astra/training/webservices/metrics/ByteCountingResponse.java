@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.metrics;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+
+/**
+ * Response counting the bytes of its body on their way to the wrapped response. The body is not buffered.
+ */
+public class ByteCountingResponse extends HttpServletResponseWrapper
+{
+	private long bytes;
+	private ServletOutputStream outputStream;
+	private PrintWriter writer;
+
+	public ByteCountingResponse(final HttpServletResponse response)
+	{
+		super(response);
+	}
+
+	public long getBytes()
+	{
+		if (writer != null)
+		{
+			writer.flush();
+		}
+		return bytes;
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() throws IOException
+	{
+		if (outputStream == null)
+		{
+			final ServletOutputStream target = super.getOutputStream();
+			outputStream = new ServletOutputStream()
+			{
+				@Override
+				public void write(final int b) throws IOException
+				{
+					target.write(b);
+					bytes++;
+				}
+
+				@Override
+				public void write(final byte[] buffer, final int offset, final int length) throws IOException
+				{
+					target.write(buffer, offset, length);
+					bytes += length;
+				}
+
+				@Override
+				public void flush() throws IOException
+				{
+					target.flush();
+				}
+
+				@Override
+				public void close() throws IOException
+				{
+					target.close();
+				}
+
+				@Override
+				public boolean isReady()
+				{
+					return target.isReady();
+				}
+
+				@Override
+				public void setWriteListener(final WriteListener writeListener)
+				{
+					target.setWriteListener(writeListener);
+				}
+			};
+		}
+		return outputStream;
+	}
+
+	@Override
+	public PrintWriter getWriter() throws IOException
+	{
+		if (writer == null)
+		{
+			writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+		}
+		return writer;
+	}
+
+	@Override
+	public void flushBuffer() throws IOException
+	{
+		if (writer != null)
+		{
+			writer.flush();
+		}
+		super.flushBuffer();
+	}
+
+	@Override
+	public void resetBuffer()
+	{
+		super.resetBuffer();
+		bytes = 0;
+	}
+
+	@Override
+	public void reset()
+	{
+		super.reset();
+		bytes = 0;
+	}
+}
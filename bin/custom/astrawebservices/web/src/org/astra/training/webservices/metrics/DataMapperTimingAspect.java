@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.metrics;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+
+
+/**
+ * Adds the time spent in the data mapper to the {@link RequestTiming} of the request processed by the current thread.
+ */
+public class DataMapperTimingAspect
+{
+	public Object measureMapping(final ProceedingJoinPoint joinPoint) throws Throwable
+	{
+		final RequestTiming timing = RequestTiming.current();
+		if (timing == null)
+		{
+			return joinPoint.proceed();
+		}
+
+		timing.mappingStarted(System.nanoTime());
+		try
+		{
+			return joinPoint.proceed();
+		}
+		finally
+		{
+			timing.mappingCompleted(System.nanoTime());
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Latencies and response sizes of one endpoint answering with one status. Latencies are kept in microseconds, sizes in
+ * bytes.
+ */
+public class EndpointMetrics
+{
+	private final String endpoint;
+	private final int status;
+	private final LogLinearHistogram total = new LogLinearHistogram();
+	private final LogLinearHistogram filters = new LogLinearHistogram();
+	private final LogLinearHistogram handler = new LogLinearHistogram();
+	private final LogLinearHistogram mapping = new LogLinearHistogram();
+	private final LogLinearHistogram serialization = new LogLinearHistogram();
+	private final LogLinearHistogram responseSize = new LogLinearHistogram();
+
+	public EndpointMetrics(final String endpoint, final int status)
+	{
+		this.endpoint = endpoint;
+		this.status = status;
+	}
+
+	public void record(final RequestTiming timing, final long totalNanos, final long responseBytes)
+	{
+		total.record(toMicros(totalNanos));
+		filters.record(toMicros(timing.getFilterNanos(timing.getStart() + totalNanos)));
+		handler.record(toMicros(timing.getHandlerNanos()));
+		mapping.record(toMicros(timing.getMappingNanos()));
+		serialization.record(toMicros(timing.getSerializationNanos()));
+		responseSize.record(responseBytes);
+	}
+
+	protected static long toMicros(final long nanos)
+	{
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+
+	/**
+	 * Appends a line with the count, the mean, the 50th, 90th and 99th percentile and the maximum of every histogram.
+	 */
+	public void appendSummary(final StringBuilder summary)
+	{
+		summary.append(endpoint).append(' ').append(status).append(": count=").append(total.getCount());
+		appendHistogram(summary, "totalMicros", total);
+		appendHistogram(summary, "filterMicros", filters);
+		appendHistogram(summary, "handlerMicros", handler);
+		appendHistogram(summary, "mappingMicros", mapping);
+		appendHistogram(summary, "serializationMicros", serialization);
+		appendHistogram(summary, "responseBytes", responseSize);
+		summary.append('\n');
+	}
+
+	protected void appendHistogram(final StringBuilder summary, final String name, final LogLinearHistogram histogram)
+	{
+		summary.append(", ").append(name).append("={mean=").append(Math.round(histogram.getMean())).append(", p50=")
+				.append(histogram.getValueAtPercentile(50)).append(", p90=").append(histogram.getValueAtPercentile(90))
+				.append(", p99=").append(histogram.getValueAtPercentile(99)).append(", max=").append(histogram.getMax())
+				.append('}');
+	}
+
+	public void reset()
+	{
+		total.reset();
+		filters.reset();
+		handler.reset();
+		mapping.reset();
+		serialization.reset();
+		responseSize.reset();
+	}
+
+	public String getEndpoint()
+	{
+		return endpoint;
+	}
+
+	public int getStatus()
+	{
+		return status;
+	}
+
+	public LogLinearHistogram getTotal()
+	{
+		return total;
+	}
+
+	public LogLinearHistogram getFilters()
+	{
+		return filters;
+	}
+
+	public LogLinearHistogram getHandler()
+	{
+		return handler;
+	}
+
+	public LogLinearHistogram getMapping()
+	{
+		return mapping;
+	}
+
+	public LogLinearHistogram getSerialization()
+	{
+		return serialization;
+	}
+
+	public LogLinearHistogram getResponseSize()
+	{
+		return responseSize;
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.metrics;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+
+/**
+ * Filter measuring every request from entering to leaving the filter chain, and counting the bytes of the response
+ * body. It starts the {@link RequestTiming} of the request, which the handler interceptor, the response body advice and
+ * the data mapper aspect complete, and hands it to {@link WsEndpointMetrics} at the end. It is meant to be the first
+ * filter of the chain.
+ */
+public class EndpointMetricsFilter extends OncePerRequestFilter
+{
+	private static final Logger LOG = Logger.getLogger(EndpointMetricsFilter.class);
+
+	private WsEndpointMetrics wsEndpointMetrics;
+	private boolean enabled = true;
+
+	@Override
+	protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
+			final FilterChain filterChain) throws ServletException, IOException
+	{
+		if (!isEnabled())
+		{
+			filterChain.doFilter(request, response);
+			return;
+		}
+
+		final RequestTiming timing = new RequestTiming(System.nanoTime());
+		final ByteCountingResponse countingResponse = new ByteCountingResponse(response);
+		request.setAttribute(RequestTiming.ATTRIBUTE, timing);
+		RequestTiming.bind(timing);
+		boolean failed = true;
+		try
+		{
+			filterChain.doFilter(request, countingResponse);
+			failed = false;
+		}
+		finally
+		{
+			RequestTiming.bind(null);
+			request.removeAttribute(RequestTiming.ATTRIBUTE);
+			// exceptions leaving the chain are turned into an internal server error by the container
+			record(request, countingResponse, timing, failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR
+					: countingResponse.getStatus());
+		}
+	}
+
+	protected void record(final HttpServletRequest request, final ByteCountingResponse response, final RequestTiming timing,
+			final int status)
+	{
+		try
+		{
+			getWsEndpointMetrics().record(request, timing, status, System.nanoTime() - timing.getStart(), response.getBytes());
+		}
+		catch (final RuntimeException e)
+		{
+			LOG.warn("Could not record the metrics of " + WsEndpointMetrics.getPathPattern(request), e);
+		}
+	}
+
+	protected WsEndpointMetrics getWsEndpointMetrics()
+	{
+		return wsEndpointMetrics;
+	}
+
+	@Required
+	public void setWsEndpointMetrics(final WsEndpointMetrics wsEndpointMetrics)
+	{
+		this.wsEndpointMetrics = wsEndpointMetrics;
+	}
+
+	protected boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	public void setEnabled(final boolean enabled)
+	{
+		this.enabled = enabled;
+	}
+}
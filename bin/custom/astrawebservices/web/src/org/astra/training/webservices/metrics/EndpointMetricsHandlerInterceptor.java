@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.metrics;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+
+/**
+ * Marks start and end of the handler in the {@link RequestTiming} of the request. Responses written from the return
+ * value of a handler method are written before {@link #postHandle}, so the end of the handler includes writing the
+ * body.
+ */
+public class EndpointMetricsHandlerInterceptor extends HandlerInterceptorAdapter
+{
+	@Override
+	public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response, final Object handler)
+	{
+		final RequestTiming timing = RequestTiming.of(request);
+		if (timing != null)
+		{
+			timing.handlerStarted(handler, System.nanoTime());
+		}
+		return true;
+	}
+
+	@Override
+	public void postHandle(final HttpServletRequest request, final HttpServletResponse response, final Object handler,
+			final ModelAndView modelAndView)
+	{
+		complete(request, handler);
+	}
+
+	@Override
+	public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response, final Object handler,
+			final Exception ex)
+	{
+		complete(request, handler);
+	}
+
+	protected void complete(final HttpServletRequest request, final Object handler)
+	{
+		final RequestTiming timing = RequestTiming.of(request);
+		if (timing != null)
+		{
+			timing.handlerCompleted(handler, System.nanoTime());
+		}
+	}
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.metrics;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+
+/**
+ * Marks the start of writing the response body in the {@link RequestTiming} of the request. It is called after the
+ * handler method has returned and before the message converter writes the returned DTO.
+ */
+@ControllerAdvice
+public class EndpointMetricsResponseBodyAdvice implements ResponseBodyAdvice<Object>
+{
+	@Override
+	public boolean supports(final MethodParameter returnType, final Class<? extends HttpMessageConverter<?>> converterType)
+	{
+		return true;
+	}
+
+	@Override
+	public Object beforeBodyWrite(final Object body, final MethodParameter returnType, final MediaType selectedContentType,
+			final Class<? extends HttpMessageConverter<?>> selectedConverterType, final ServerHttpRequest request,
+			final ServerHttpResponse response)
+	{
+		if (request instanceof ServletServerHttpRequest)
+		{
+			final RequestTiming timing = RequestTiming.of(((ServletServerHttpRequest) request).getServletRequest());
+			if (timing != null)
+			{
+				timing.bodyWriteStarted(System.nanoTime());
+			}
+		}
+		return body;
+	}
+}
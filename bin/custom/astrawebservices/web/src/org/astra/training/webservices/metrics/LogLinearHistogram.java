@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Histogram of non-negative values with buckets growing with the value, in the manner of HdrHistogram: values below 32
+ * are counted exactly, larger values in 16 buckets per power of two, so that a bucket is never wider than 1/16 of its
+ * values. Recording is lock free and allocation free, so histograms can be updated on every request.
+ */
+public class LogLinearHistogram
+{
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int LINEAR_LIMIT = 2 * SUB_BUCKET_COUNT;
+	private static final int MAX_EXPONENT = 36;
+	private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+	private static final int BUCKET_COUNT = LINEAR_LIMIT + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a value. Negative values are recorded as 0, values of 2^37 and more as 2^37 - 1.
+	 */
+	public void record(final long value)
+	{
+		final long bounded = Math.min(Math.max(value, 0L), MAX_VALUE);
+		counts.incrementAndGet(indexOf(bounded));
+		count.increment();
+		sum.add(bounded);
+		max.accumulateAndGet(bounded, Math::max);
+	}
+
+	public long getCount()
+	{
+		return count.sum();
+	}
+
+	public long getMax()
+	{
+		return max.get();
+	}
+
+	public double getMean()
+	{
+		final long total = getCount();
+		return total == 0 ? 0 : (double) sum.sum() / total;
+	}
+
+	/**
+	 * Returns the highest value of the bucket holding the given percentile of the recorded values, but at most the
+	 * largest recorded value.
+	 *
+	 * @param percentile
+	 * 		between 0 and 100
+	 */
+	public long getValueAtPercentile(final double percentile)
+	{
+		final long total = getCount();
+		if (total == 0)
+		{
+			return 0L;
+		}
+		final long rank = Math.max(1L, (long) Math.ceil(Math.min(percentile, 100d) / 100d * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++)
+		{
+			seen += counts.get(i);
+			if (seen >= rank)
+			{
+				return Math.min(highestValueOf(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	public void reset()
+	{
+		for (int i = 0; i < BUCKET_COUNT; i++)
+		{
+			counts.set(i, 0L);
+		}
+		count.reset();
+		sum.reset();
+		max.set(0L);
+	}
+
+	protected static int indexOf(final long value)
+	{
+		if (value < LINEAR_LIMIT)
+		{
+			return (int) value;
+		}
+		final int exponent = 63 - Long.numberOfLeadingZeros(value);
+		final int shift = exponent - SUB_BUCKET_BITS;
+		return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT
+				+ (int) ((value >>> shift) - SUB_BUCKET_COUNT);
+	}
+
+	protected static long highestValueOf(final int index)
+	{
+		if (index < LINEAR_LIMIT)
+		{
+			return index;
+		}
+		final int exponent = (index - LINEAR_LIMIT) / SUB_BUCKET_COUNT + SUB_BUCKET_BITS + 1;
+		final int shift = exponent - SUB_BUCKET_BITS;
+		final long top = (index - LINEAR_LIMIT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+		return ((top + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.metrics;
+
+import javax.servlet.ServletRequest;
+
+import java.lang.reflect.Method;
+
+import org.springframework.web.method.HandlerMethod;
+
+
+/**
+ * Timestamps of one request, collected by the {@link EndpointMetricsFilter}, the
+ * {@link EndpointMetricsHandlerInterceptor}, the {@link EndpointMetricsResponseBodyAdvice} and the
+ * {@link DataMapperTimingAspect}. The request is split into the time spent in the filters, in the handler method (the
+ * facades and the controller logic), in mapping data objects to DTOs and in writing the response body.
+ * <p>
+ * A timing belongs to the thread processing its request and is not thread safe.
+ */
+public class RequestTiming
+{
+	public static final String ATTRIBUTE = RequestTiming.class.getName();
+
+	private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<>();
+
+	private final long start;
+	private Object handler;
+	private String endpoint;
+	private long handlerStart;
+	private long bodyWriteStart;
+	private long handlerEnd;
+	private long mappingNanos;
+	private int mappingDepth;
+	private long mappingStart;
+
+	public RequestTiming(final long start)
+	{
+		this.start = start;
+	}
+
+	/**
+	 * Returns the timing of the request processed by the current thread, if it is measured.
+	 */
+	public static RequestTiming current()
+	{
+		return CURRENT.get();
+	}
+
+	public static RequestTiming of(final ServletRequest request)
+	{
+		final Object timing = request.getAttribute(ATTRIBUTE);
+		return timing instanceof RequestTiming ? (RequestTiming) timing : null;
+	}
+
+	protected static void bind(final RequestTiming timing)
+	{
+		if (timing == null)
+		{
+			CURRENT.remove();
+		}
+		else
+		{
+			CURRENT.set(timing);
+		}
+	}
+
+	/**
+	 * Marks the start of the handler. Only the first handler of a request is measured, so that forwards and error
+	 * dispatches do not replace it.
+	 */
+	public void handlerStarted(final Object handler, final long now)
+	{
+		if (this.handler == null)
+		{
+			this.handler = handler;
+			this.endpoint = endpointOf(handler);
+			this.handlerStart = now;
+		}
+	}
+
+	public void bodyWriteStarted(final long now)
+	{
+		if (handler != null && handlerEnd == 0 && bodyWriteStart == 0)
+		{
+			bodyWriteStart = now;
+		}
+	}
+
+	public void handlerCompleted(final Object handler, final long now)
+	{
+		if (handler == this.handler && handlerEnd == 0)
+		{
+			handlerEnd = now;
+		}
+	}
+
+	public void mappingStarted(final long now)
+	{
+		if (mappingDepth++ == 0)
+		{
+			mappingStart = now;
+		}
+	}
+
+	public void mappingCompleted(final long now)
+	{
+		if (--mappingDepth == 0)
+		{
+			mappingNanos += now - mappingStart;
+		}
+	}
+
+	protected static String endpointOf(final Object handler)
+	{
+		if (handler instanceof HandlerMethod)
+		{
+			final Method method = ((HandlerMethod) handler).getMethod();
+			return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+		}
+		return handler.getClass().getSimpleName();
+	}
+
+	public long getStart()
+	{
+		return start;
+	}
+
+	/**
+	 * Returns the endpoint, as controller and method name, or <code>null</code> if no handler was found.
+	 */
+	public String getEndpoint()
+	{
+		return endpoint;
+	}
+
+	/**
+	 * Returns the nanoseconds spent in the handler method before the response body was written, without mapping.
+	 */
+	public long getHandlerNanos()
+	{
+		if (handler == null)
+		{
+			return 0L;
+		}
+		final long end = bodyWriteStart != 0 ? bodyWriteStart : handlerEnd;
+		return end == 0 ? 0L : Math.max(0L, end - handlerStart - mappingNanos);
+	}
+
+	public long getMappingNanos()
+	{
+		return mappingNanos;
+	}
+
+	/**
+	 * Returns the nanoseconds spent writing the response body returned by the handler method.
+	 */
+	public long getSerializationNanos()
+	{
+		return bodyWriteStart == 0 || handlerEnd == 0 ? 0L : handlerEnd - bodyWriteStart;
+	}
+
+	/**
+	 * Returns the nanoseconds spent outside of the handler, mostly in the filters.
+	 */
+	public long getFilterNanos(final long end)
+	{
+		if (handler == null || handlerEnd == 0)
+		{
+			return end - start;
+		}
+		return Math.max(0L, end - start - (handlerEnd - handlerStart));
+	}
+}
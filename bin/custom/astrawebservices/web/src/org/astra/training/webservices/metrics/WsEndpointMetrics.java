@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.metrics;
+
+import de.hybris.platform.core.Registry;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.servlet.http.HttpServletRequest;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.export.naming.SelfNaming;
+import org.springframework.web.servlet.HandlerMapping;
+
+
+/**
+ * Latency histograms of the endpoints of the API, per handler method and status, exposed over JMX, one MBean per
+ * tenant. Requests slower than the threshold are counted, and every n-th of them is logged and kept with its timings.
+ * Requests are described by the matched path pattern, never by their URI, which may carry user ids, cart ids or emails.
+ */
+@ManagedResource(description = "Latencies and response sizes of the API endpoints")
+public class WsEndpointMetrics implements SelfNaming
+{
+	private static final Logger LOG = Logger.getLogger(WsEndpointMetrics.class);
+
+	protected static final String UNMATCHED = "unmatched";
+	protected static final String OTHER = "other";
+
+	private final ConcurrentMap<String, EndpointMetrics> metrics = new ConcurrentHashMap<>();
+	private final AtomicLong slowRequests = new AtomicLong();
+	private final Deque<String> slowRequestSamples = new ArrayDeque<>();
+
+	private volatile long slowThresholdMillis = 1000L;
+	private volatile int slowSampleRate = 1;
+	private int keptSlowRequests = 50;
+	private int maxEndpoints = 1000;
+
+	/**
+	 * Records a finished request.
+	 *
+	 * @param request
+	 * 		the request
+	 * @param timing
+	 * 		timestamps of the request
+	 * @param status
+	 * 		status of the response
+	 * @param totalNanos
+	 * 		time from entering to leaving the filter chain
+	 * @param responseBytes
+	 * 		bytes of the response body
+	 */
+	public void record(final HttpServletRequest request, final RequestTiming timing, final int status, final long totalNanos,
+			final long responseBytes)
+	{
+		getMetrics(timing.getEndpoint() == null ? UNMATCHED : timing.getEndpoint(), status).record(timing, totalNanos,
+				responseBytes);
+
+		if (totalNanos >= TimeUnit.MILLISECONDS.toNanos(getSlowThresholdMillis()))
+		{
+			if (slowRequests.incrementAndGet() % Math.max(1, getSlowSampleRate()) == 0)
+			{
+				sampleSlowRequest(request, timing, status, totalNanos, responseBytes);
+			}
+		}
+	}
+
+	protected EndpointMetrics getMetrics(final String endpoint, final int status)
+	{
+		final String key = endpoint + ' ' + status;
+		final EndpointMetrics existing = metrics.get(key);
+		if (existing != null)
+		{
+			return existing;
+		}
+		if (metrics.size() >= getMaxEndpoints())
+		{
+			return metrics.computeIfAbsent(OTHER + ' ' + status, k -> new EndpointMetrics(OTHER, status));
+		}
+		return metrics.computeIfAbsent(key, k -> new EndpointMetrics(endpoint, status));
+	}
+
+	protected void sampleSlowRequest(final HttpServletRequest request, final RequestTiming timing, final int status,
+			final long totalNanos, final long responseBytes)
+	{
+		final String sample = Instant.now() + " " + request.getMethod() + " " + getPathPattern(request) + " -> " + status
+				+ " endpoint=" + timing.getEndpoint() + ", totalMicros=" + EndpointMetrics.toMicros(totalNanos)
+				+ ", filterMicros=" + EndpointMetrics.toMicros(timing.getFilterNanos(timing.getStart() + totalNanos))
+				+ ", handlerMicros=" + EndpointMetrics.toMicros(timing.getHandlerNanos()) + ", mappingMicros="
+				+ EndpointMetrics.toMicros(timing.getMappingNanos()) + ", serializationMicros="
+				+ EndpointMetrics.toMicros(timing.getSerializationNanos()) + ", responseBytes=" + responseBytes + ", thread="
+				+ Thread.currentThread().getName();
+		LOG.warn("Slow request: " + sample);
+		synchronized (slowRequestSamples)
+		{
+			slowRequestSamples.addFirst(sample);
+			while (slowRequestSamples.size() > Math.max(0, getKeptSlowRequests()))
+			{
+				slowRequestSamples.removeLast();
+			}
+		}
+	}
+
+	/**
+	 * Returns the path pattern the request was mapped with, like <code>/{baseSiteId}/users/{userId}/carts</code>.
+	 */
+	protected static String getPathPattern(final HttpServletRequest request)
+	{
+		final Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+		return pattern == null ? UNMATCHED : pattern.toString();
+	}
+
+	/**
+	 * Returns the metrics of all endpoints, ordered by endpoint and status.
+	 */
+	public List<EndpointMetrics> getEndpointMetrics()
+	{
+		final List<EndpointMetrics> result = new ArrayList<>(metrics.values());
+		result.sort(Comparator.comparing(EndpointMetrics::getEndpoint).thenComparingInt(EndpointMetrics::getStatus));
+		return result;
+	}
+
+	@ManagedAttribute(description = "Number of endpoint and status combinations with metrics")
+	public int getEndpointCount()
+	{
+		return metrics.size();
+	}
+
+	@ManagedAttribute(description = "Number of measured requests")
+	public long getRequestCount()
+	{
+		return metrics.values().stream().mapToLong(endpoint -> endpoint.getTotal().getCount()).sum();
+	}
+
+	@ManagedAttribute(description = "Number of requests slower than the threshold")
+	public long getSlowRequestCount()
+	{
+		return slowRequests.get();
+	}
+
+	@ManagedAttribute(description = "Count, mean, percentiles and maximum of the latencies and response sizes per endpoint and status")
+	public String getSummary()
+	{
+		final StringBuilder summary = new StringBuilder();
+		getEndpointMetrics().forEach(endpoint -> endpoint.appendSummary(summary));
+		return summary.toString();
+	}
+
+	@ManagedAttribute(description = "Sampled requests slower than the threshold, latest first")
+	public String[] getSlowRequestSamples()
+	{
+		synchronized (slowRequestSamples)
+		{
+			return slowRequestSamples.toArray(new String[slowRequestSamples.size()]);
+		}
+	}
+
+	@ManagedOperation(description = "Clears all histograms and samples")
+	public void reset()
+	{
+		metrics.clear();
+		slowRequests.set(0L);
+		synchronized (slowRequestSamples)
+		{
+			slowRequestSamples.clear();
+		}
+	}
+
+	@Override
+	public ObjectName getObjectName() throws MalformedObjectNameException
+	{
+		return new ObjectName(
+				"astrawebservices:type=EndpointMetrics,tenant=" + ObjectName.quote(Registry.getCurrentTenant().getTenantID()));
+	}
+
+	@ManagedAttribute(description = "Latency in milliseconds above which requests are counted as slow")
+	public long getSlowThresholdMillis()
+	{
+		return slowThresholdMillis;
+	}
+
+	@ManagedAttribute(description = "Latency in milliseconds above which requests are counted as slow")
+	public void setSlowThresholdMillis(final long slowThresholdMillis)
+	{
+		this.slowThresholdMillis = slowThresholdMillis;
+	}
+
+	@ManagedAttribute(description = "Only every n-th slow request is logged and kept")
+	public int getSlowSampleRate()
+	{
+		return slowSampleRate;
+	}
+
+	@ManagedAttribute(description = "Only every n-th slow request is logged and kept")
+	public void setSlowSampleRate(final int slowSampleRate)
+	{
+		this.slowSampleRate = slowSampleRate;
+	}
+
+	protected int getKeptSlowRequests()
+	{
+		return keptSlowRequests;
+	}
+
+	public void setKeptSlowRequests(final int keptSlowRequests)
+	{
+		this.keptSlowRequests = keptSlowRequests;
+	}
+
+	protected int getMaxEndpoints()
+	{
+		return maxEndpoints;
+	}
+
+	public void setMaxEndpoints(final int maxEndpoints)
+	{
+		this.maxEndpoints = maxEndpoints;
+	}
+}
@@ -0,0 +1,659 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.request.batch;
+
+import de.hybris.platform.core.PK;
+import de.hybris.platform.core.Registry;
+import de.hybris.platform.core.Tenant;
+import de.hybris.platform.core.model.ItemModel;
+import de.hybris.platform.core.model.user.UserModel;
+import de.hybris.platform.servicelayer.model.ModelService;
+import de.hybris.platform.servicelayer.session.Session;
+import de.hybris.platform.servicelayer.session.SessionService;
+import de.hybris.platform.servicelayer.user.UserService;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.context.i18n.LocaleContext;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.ServletContextAware;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerAdapter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.ModelAndView;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+
+/**
+ * Dispatches the sub-requests of a batch request to their handlers the way the dispatcher servlet would, through the
+ * handler mapping with its interceptors, the handler adapter and the exception resolvers, but without passing the
+ * filter chain again. The site, user, cart, language and currency resolved by the filters for the batch request apply
+ * to all sub-requests.
+ * <p>
+ * Writing sub-requests run one after the other on the request thread, in the declared order. Consecutive reading
+ * sub-requests in between run in parallel, each in a copy of the session of the batch request, so a read always sees
+ * the outcome of all writes declared before it. Models held by the session, like the session cart, are loaded again
+ * in every copy, so parallel sub-requests never share a model instance.
+ * <p>
+ * As sub-requests do not pass the filter chain, their query parameters are sanitized by the <code>xssFilter</code>,
+ * the same filter the web application applies to the batch request.
+ */
+public class BatchRequestDispatcher implements InitializingBean, DisposableBean, ServletContextAware
+{
+	private static final Logger LOG = Logger.getLogger(BatchRequestDispatcher.class);
+
+	private static final String[] RESPONSE_HEADERS = { HttpHeaders.ETAG, HttpHeaders.LOCATION, HttpHeaders.CACHE_CONTROL,
+			"X-Total-Count" };
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private int threads = 8;
+	private HandlerMapping handlerMapping;
+	private HandlerAdapter handlerAdapter;
+	private HandlerExceptionResolver handlerExceptionResolver;
+	private SessionService sessionService;
+	private UserService userService;
+	private ModelService modelService;
+	private WsBatchStatistics wsBatchStatistics;
+	private Filter xssFilter;
+	private ServletContext servletContext;
+
+	private ExecutorService executor;
+
+	@Override
+	public void afterPropertiesSet() throws ServletException
+	{
+		if (getThreads() > 1)
+		{
+			executor = Executors.newFixedThreadPool(getThreads(), createThreadFactory());
+		}
+		if (getXssFilter() != null)
+		{
+			getXssFilter().init(createFilterConfig());
+		}
+	}
+
+	@Override
+	public void destroy()
+	{
+		if (executor != null)
+		{
+			executor.shutdownNow();
+		}
+		if (getXssFilter() != null)
+		{
+			getXssFilter().destroy();
+		}
+	}
+
+	@Override
+	public void setServletContext(final ServletContext servletContext)
+	{
+		this.servletContext = servletContext;
+	}
+
+	/**
+	 * Dispatches all sub-requests and returns their outcomes in the declared order.
+	 *
+	 * @param request
+	 * 		the batch request, after all filters
+	 * @param response
+	 * 		the batch response, which the sub-requests do not write to
+	 * @param items
+	 * 		sub-requests
+	 * @return outcome of each sub-request
+	 */
+	public List<BatchResponseItem> dispatch(final HttpServletRequest request, final HttpServletResponse response,
+			final List<BatchRequestItem> items)
+	{
+		final long start = System.nanoTime();
+		final BatchResponseItem[] results = new BatchResponseItem[items.size()];
+
+		int next = 0;
+		while (next < items.size())
+		{
+			int end = next + 1;
+			if (items.get(next).isReadOnly())
+			{
+				while (end < items.size() && items.get(end).isReadOnly())
+				{
+					end++;
+				}
+			}
+			if (end - next > 1 && executor != null)
+			{
+				executeInParallel(request, response, items, next, end, results);
+			}
+			else
+			{
+				for (int i = next; i < end; i++)
+				{
+					results[i] = execute(new BatchSubRequest(request, items.get(i)), response, items.get(i));
+				}
+			}
+			next = end;
+		}
+
+		recordStatistics(results, System.nanoTime() - start);
+		return Arrays.asList(results);
+	}
+
+	protected void executeInParallel(final HttpServletRequest request, final HttpServletResponse response,
+			final List<BatchRequestItem> items, final int from, final int to, final BatchResponseItem[] results)
+	{
+		// captured here, as the session may have been changed by previous writes
+		final Tenant tenant = Registry.getCurrentTenantNoFallback();
+		final Map<String, Object> sessionAttributes = captureSessionAttributes();
+		final PK userPk = getUserService().getCurrentUser().getPk();
+		final SecurityContext securityContext = SecurityContextHolder.getContext();
+		final LocaleContext localeContext = LocaleContextHolder.getLocaleContext();
+
+		final List<Future<BatchResponseItem>> futures = new ArrayList<>(to - from);
+		for (int i = from; i < to; i++)
+		{
+			final BatchRequestItem item = items.get(i);
+			final BatchSubRequest subRequest = new BatchSubRequest(request, item);
+			futures.add(executor.submit(() -> executeInSessionCopy(tenant, sessionAttributes, userPk, securityContext,
+					localeContext, () -> execute(subRequest, response, item))));
+		}
+
+		for (int i = from; i < to; i++)
+		{
+			results[i] = await(futures.get(i - from), items.get(i));
+		}
+	}
+
+	protected BatchResponseItem await(final Future<BatchResponseItem> future, final BatchRequestItem item)
+	{
+		try
+		{
+			return future.get();
+		}
+		catch (final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			future.cancel(true);
+			return createErrorItem(item.getId(), HttpServletResponse.SC_SERVICE_UNAVAILABLE, "InterruptedError",
+					"Batch request was interrupted");
+		}
+		catch (final ExecutionException e)
+		{
+			LOG.warn("Sub-request " + item.getMethod() + " " + item.getPath() + " failed", e.getCause());
+			return createErrorItem(item.getId(), HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "InternalServerError",
+					"Sub-request failed");
+		}
+	}
+
+	/**
+	 * Copies the attributes of the current session. Saved models, alone or in collections, are replaced by references to
+	 * them, see {@link #restoreSessionAttributes(Session, Map)}.
+	 */
+	protected Map<String, Object> captureSessionAttributes()
+	{
+		final Map<String, Object> attributes = new HashMap<>();
+		getSessionService().getAllAttributes().forEach((name, value) -> {
+			if (value != null)
+			{
+				attributes.put(name, toSessionValue(value));
+			}
+		});
+		return attributes;
+	}
+
+	protected Object toSessionValue(final Object value)
+	{
+		if (value instanceof ItemModel && ((ItemModel) value).getPk() != null)
+		{
+			return new ModelReference(Collections.singletonList(((ItemModel) value).getPk()), null);
+		}
+		if (value instanceof Collection && !((Collection<?>) value).isEmpty())
+		{
+			final List<PK> pks = new ArrayList<>(((Collection<?>) value).size());
+			for (final Object element : (Collection<?>) value)
+			{
+				if (!(element instanceof ItemModel) || ((ItemModel) element).getPk() == null)
+				{
+					return value;
+				}
+				pks.add(((ItemModel) element).getPk());
+			}
+			return new ModelReference(pks, value instanceof Set ? Set.class : List.class);
+		}
+		return value;
+	}
+
+	/**
+	 * Sets the captured attributes in the given session, loading every referenced model again so that the session
+	 * holds model instances of its own.
+	 */
+	protected void restoreSessionAttributes(final Session session, final Map<String, Object> attributes)
+	{
+		attributes.forEach((name, value) -> session.setAttribute(name, fromSessionValue(value)));
+	}
+
+	protected Object fromSessionValue(final Object value)
+	{
+		if (!(value instanceof ModelReference))
+		{
+			return value;
+		}
+		final ModelReference reference = (ModelReference) value;
+		final List<Object> models = new ArrayList<>(reference.pks.size());
+		for (final PK pk : reference.pks)
+		{
+			models.add(getModelService().get(pk));
+		}
+		if (reference.collectionType == null)
+		{
+			return models.get(0);
+		}
+		return reference.collectionType == Set.class ? new LinkedHashSet<>(models) : models;
+	}
+
+	/**
+	 * Runs a sub-request on a worker thread in a new session holding the attributes of the session of the batch request.
+	 */
+	protected <T> T executeInSessionCopy(final Tenant tenant, final Map<String, Object> sessionAttributes, final PK userPk,
+			final SecurityContext securityContext, final LocaleContext localeContext, final Callable<T> body) throws Exception
+	{
+		Registry.setCurrentTenant(tenant);
+		try
+		{
+			final Session session = getSessionService().createNewSession();
+			try
+			{
+				restoreSessionAttributes(session, sessionAttributes);
+				getUserService().setCurrentUser(getModelService().<UserModel> get(userPk));
+				SecurityContextHolder.setContext(securityContext);
+				LocaleContextHolder.setLocaleContext(localeContext);
+				return body.call();
+			}
+			finally
+			{
+				LocaleContextHolder.resetLocaleContext();
+				SecurityContextHolder.clearContext();
+				getSessionService().closeSession(session);
+			}
+		}
+		finally
+		{
+			Registry.unsetCurrentTenant();
+		}
+	}
+
+	protected BatchResponseItem execute(final BatchSubRequest request, final HttpServletResponse batchResponse,
+			final BatchRequestItem item)
+	{
+		final long start = System.nanoTime();
+		final BatchSubResponse response = new BatchSubResponse(batchResponse);
+		final RequestAttributes previousAttributes = RequestContextHolder.getRequestAttributes();
+		try
+		{
+			final HttpServletRequest sanitizedRequest = sanitize(request, response);
+			if (sanitizedRequest != null)
+			{
+				RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(sanitizedRequest, response));
+				handle(sanitizedRequest, response);
+			}
+		}
+		catch (final IOException | ServletException e)
+		{
+			LOG.warn("Sanitizing sub-request " + item.getMethod() + " " + item.getPath() + " failed", e);
+			response.reset();
+			writeError(response, HttpServletResponse.SC_BAD_REQUEST, "ValidationError", "Invalid request");
+		}
+		finally
+		{
+			if (previousAttributes == null)
+			{
+				RequestContextHolder.resetRequestAttributes();
+			}
+			else
+			{
+				RequestContextHolder.setRequestAttributes(previousAttributes);
+			}
+		}
+		return new BatchResponseItem(item.getId(), response.getStatus(), response.getHeaders(RESPONSE_HEADERS),
+				response.getContentType(), response.getBody(), System.nanoTime() - start);
+	}
+
+	/**
+	 * Passes the sub-request through the <code>xssFilter</code> and returns the request it hands on, or
+	 * <code>null</code> if the filter rejected the sub-request and answered it itself.
+	 */
+	protected HttpServletRequest sanitize(final BatchSubRequest request, final BatchSubResponse response)
+			throws IOException, ServletException
+	{
+		if (getXssFilter() == null)
+		{
+			return request;
+		}
+		final AtomicReference<ServletRequest> sanitized = new AtomicReference<>();
+		getXssFilter().doFilter(request, response, (filteredRequest, filteredResponse) -> sanitized.set(filteredRequest));
+		return (HttpServletRequest) sanitized.get();
+	}
+
+	protected FilterConfig createFilterConfig()
+	{
+		return new FilterConfig()
+		{
+			@Override
+			public String getFilterName()
+			{
+				return "XSSFilter";
+			}
+
+			@Override
+			public ServletContext getServletContext()
+			{
+				return servletContext;
+			}
+
+			@Override
+			public String getInitParameter(final String name)
+			{
+				return null;
+			}
+
+			@Override
+			public Enumeration<String> getInitParameterNames()
+			{
+				return Collections.emptyEnumeration();
+			}
+		};
+	}
+
+	/**
+	 * Looks up the handler of the sub-request and runs it together with the interceptors of the handler mapping, as the
+	 * dispatcher servlet does.
+	 */
+	protected void handle(final HttpServletRequest request, final BatchSubResponse response)
+	{
+		HandlerExecutionChain chain = null;
+		HandlerInterceptor[] interceptors = null;
+		int preHandled = -1;
+		Exception failure = null;
+		try
+		{
+			chain = getHandlerMapping().getHandler(request);
+			if (chain == null)
+			{
+				writeError(response, HttpServletResponse.SC_NOT_FOUND, "UnknownResourceError",
+						"No endpoint found for " + request.getMethod() + " " + request.getPathInfo());
+				return;
+			}
+
+			interceptors = chain.getInterceptors();
+			if (interceptors != null)
+			{
+				for (int i = 0; i < interceptors.length; i++)
+				{
+					if (!interceptors[i].preHandle(request, response, chain.getHandler()))
+					{
+						return;
+					}
+					preHandled = i;
+				}
+			}
+
+			final ModelAndView modelAndView = getHandlerAdapter().handle(request, response, chain.getHandler());
+			if (interceptors != null)
+			{
+				for (int i = interceptors.length - 1; i >= 0; i--)
+				{
+					interceptors[i].postHandle(request, response, chain.getHandler(), modelAndView);
+				}
+			}
+		}
+		catch (final Exception e)
+		{
+			failure = e;
+			resolveException(request, response, chain, e);
+		}
+		finally
+		{
+			for (int i = preHandled; i >= 0; i--)
+			{
+				try
+				{
+					interceptors[i].afterCompletion(request, response, chain.getHandler(), failure);
+				}
+				catch (final Exception e)
+				{
+					LOG.error("Interceptor afterCompletion failed", e);
+				}
+			}
+		}
+	}
+
+	protected void resolveException(final HttpServletRequest request, final BatchSubResponse response,
+			final HandlerExecutionChain chain, final Exception exception)
+	{
+		final ModelAndView modelAndView = getHandlerExceptionResolver()
+				.resolveException(request, response, chain == null ? null : chain.getHandler(), exception);
+		if (modelAndView == null)
+		{
+			LOG.warn("Unresolved exception in sub-request " + request.getMethod() + " " + request.getPathInfo(), exception);
+			response.reset();
+			writeError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "InternalServerError", "Sub-request failed");
+		}
+	}
+
+	protected void writeError(final BatchSubResponse response, final int status, final String type, final String message)
+	{
+		response.setStatus(status);
+		response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+		final byte[] body = createErrorBody(type, message);
+		try
+		{
+			response.getOutputStream().write(body, 0, body.length);
+		}
+		catch (final IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Creates the outcome of a sub-request that was not dispatched, with an error body in the format of the error
+	 * responses of the API.
+	 */
+	public BatchResponseItem createErrorItem(final String id, final int status, final String type, final String message)
+	{
+		return new BatchResponseItem(id, status, Collections.emptyMap(), MediaType.APPLICATION_JSON_UTF8_VALUE,
+				createErrorBody(type, message), 0L);
+	}
+
+	protected byte[] createErrorBody(final String type, final String message)
+	{
+		final ObjectNode errors = MAPPER.createObjectNode();
+		errors.putArray("errors").addObject().put("type", type).put("message", message);
+		try
+		{
+			return MAPPER.writeValueAsBytes(errors);
+		}
+		catch (final JsonProcessingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	protected void recordStatistics(final BatchResponseItem[] results, final long nanos)
+	{
+		int failed = 0;
+		long subRequestNanos = 0;
+		for (final BatchResponseItem result : results)
+		{
+			if (result.getStatus() >= HttpServletResponse.SC_BAD_REQUEST)
+			{
+				failed++;
+			}
+			subRequestNanos += result.getDurationNanos();
+		}
+		getWsBatchStatistics().recordBatch(results.length, failed, nanos, subRequestNanos);
+	}
+
+	protected ThreadFactory createThreadFactory()
+	{
+		final AtomicInteger counter = new AtomicInteger();
+		return runnable -> {
+			final Thread thread = new Thread(runnable, "OccBatch-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	protected int getThreads()
+	{
+		return threads;
+	}
+
+	public void setThreads(final int threads)
+	{
+		this.threads = threads;
+	}
+
+	protected HandlerMapping getHandlerMapping()
+	{
+		return handlerMapping;
+	}
+
+	@Required
+	public void setHandlerMapping(final HandlerMapping handlerMapping)
+	{
+		this.handlerMapping = handlerMapping;
+	}
+
+	protected HandlerAdapter getHandlerAdapter()
+	{
+		return handlerAdapter;
+	}
+
+	@Required
+	public void setHandlerAdapter(final HandlerAdapter handlerAdapter)
+	{
+		this.handlerAdapter = handlerAdapter;
+	}
+
+	protected HandlerExceptionResolver getHandlerExceptionResolver()
+	{
+		return handlerExceptionResolver;
+	}
+
+	@Required
+	public void setHandlerExceptionResolver(final HandlerExceptionResolver handlerExceptionResolver)
+	{
+		this.handlerExceptionResolver = handlerExceptionResolver;
+	}
+
+	protected SessionService getSessionService()
+	{
+		return sessionService;
+	}
+
+	@Required
+	public void setSessionService(final SessionService sessionService)
+	{
+		this.sessionService = sessionService;
+	}
+
+	protected UserService getUserService()
+	{
+		return userService;
+	}
+
+	@Required
+	public void setUserService(final UserService userService)
+	{
+		this.userService = userService;
+	}
+
+	protected ModelService getModelService()
+	{
+		return modelService;
+	}
+
+	@Required
+	public void setModelService(final ModelService modelService)
+	{
+		this.modelService = modelService;
+	}
+
+	protected Filter getXssFilter()
+	{
+		return xssFilter;
+	}
+
+	public void setXssFilter(final Filter xssFilter)
+	{
+		this.xssFilter = xssFilter;
+	}
+
+	protected WsBatchStatistics getWsBatchStatistics()
+	{
+		return wsBatchStatistics;
+	}
+
+	@Required
+	public void setWsBatchStatistics(final WsBatchStatistics wsBatchStatistics)
+	{
+		this.wsBatchStatistics = wsBatchStatistics;
+	}
+
+	/**
+	 * Session value standing for one saved model or a collection of saved models.
+	 */
+	protected static final class ModelReference
+	{
+		private final List<PK> pks;
+		private final Class<?> collectionType;
+
+		protected ModelReference(final List<PK> pks, final Class<?> collectionType)
+		{
+			this.pks = pks;
+			this.collectionType = collectionType;
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.request.batch;
+
+import org.apache.commons.lang.StringUtils;
+
+
+/**
+ * One sub-request of a batch request. The url is relative to the API root, e.g.
+ * <code>/electronics/users/current/carts/current?fields=FULL</code>, and the body, if any, is JSON.
+ */
+public class BatchRequestItem
+{
+	private static final String GET = "GET";
+	private static final String HEAD = "HEAD";
+
+	private final String id;
+	private final String method;
+	private final String path;
+	private final String queryString;
+	private final String body;
+
+	public BatchRequestItem(final String id, final String method, final String url, final String body)
+	{
+		this.id = id;
+		this.method = StringUtils.upperCase(method);
+		this.path = StringUtils.substringBefore(url, "?");
+		this.queryString = url.contains("?") ? StringUtils.substringAfter(url, "?") : null;
+		this.body = body;
+	}
+
+	public String getId()
+	{
+		return id;
+	}
+
+	public String getMethod()
+	{
+		return method;
+	}
+
+	public String getPath()
+	{
+		return path;
+	}
+
+	public String getQueryString()
+	{
+		return queryString;
+	}
+
+	public String getBody()
+	{
+		return body;
+	}
+
+	/**
+	 * Returns whether the sub-request only reads, so that it may run in parallel with other reading sub-requests.
+	 */
+	public boolean isReadOnly()
+	{
+		return GET.equals(method) || HEAD.equals(method);
+	}
+}
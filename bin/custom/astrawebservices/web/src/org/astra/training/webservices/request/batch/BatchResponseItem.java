@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.request.batch;
+
+import java.util.Collections;
+import java.util.Map;
+
+
+/**
+ * Outcome of one sub-request of a batch request: its status, the headers relevant to clients and the body.
+ */
+public class BatchResponseItem
+{
+	private final String id;
+	private final int status;
+	private final Map<String, String> headers;
+	private final String contentType;
+	private final byte[] body;
+	private final long durationNanos;
+
+	public BatchResponseItem(final String id, final int status, final Map<String, String> headers, final String contentType,
+			final byte[] body, final long durationNanos)
+	{
+		this.id = id;
+		this.status = status;
+		this.headers = headers == null ? Collections.emptyMap() : Collections.unmodifiableMap(headers);
+		this.contentType = contentType;
+		this.body = body;
+		this.durationNanos = durationNanos;
+	}
+
+	public String getId()
+	{
+		return id;
+	}
+
+	public int getStatus()
+	{
+		return status;
+	}
+
+	public Map<String, String> getHeaders()
+	{
+		return headers;
+	}
+
+	public String getContentType()
+	{
+		return contentType;
+	}
+
+	public byte[] getBody()
+	{
+		return body;
+	}
+
+	public long getDurationNanos()
+	{
+		return durationNanos;
+	}
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.request.batch;
+
+import org.astra.training.webservices.metrics.RequestTiming;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.UrlPathHelper;
+
+
+/**
+ * Request of a single sub-request of a batch. Method, path, query parameters and body are taken from the
+ * {@link BatchRequestItem}, everything else from the batch request. Sub-requests always accept and send JSON.
+ * <p>
+ * Request attributes are kept per sub-request, so that sub-requests running in parallel do not see each other's
+ * matched paths and path variables. The attributes of the batch request are copied, except those describing how the
+ * batch request itself was mapped and measured.
+ */
+public class BatchSubRequest extends HttpServletRequestWrapper
+{
+	private static final String[] MAPPING_ATTRIBUTE_PREFIXES = { HandlerMapping.class.getName(),
+			UrlPathHelper.class.getName(), "org.springframework.web.util.ServletRequestPathUtils", RequestTiming.ATTRIBUTE };
+
+	private final BatchRequestItem item;
+	private final byte[] body;
+	private final Map<String, String[]> parameters;
+	private final Map<String, Object> attributes = new HashMap<>();
+
+	public BatchSubRequest(final HttpServletRequest request, final BatchRequestItem item)
+	{
+		super(request);
+		this.item = item;
+		this.body = item.getBody() == null ? new byte[0] : item.getBody().getBytes(StandardCharsets.UTF_8);
+		this.parameters = parseQueryString(item.getQueryString());
+
+		final Enumeration<String> names = request.getAttributeNames();
+		while (names.hasMoreElements())
+		{
+			final String name = names.nextElement();
+			if (!StringUtils.startsWithAny(name, MAPPING_ATTRIBUTE_PREFIXES))
+			{
+				attributes.put(name, request.getAttribute(name));
+			}
+		}
+	}
+
+	protected static Map<String, String[]> parseQueryString(final String queryString)
+	{
+		if (StringUtils.isEmpty(queryString))
+		{
+			return Collections.emptyMap();
+		}
+
+		final Map<String, List<String>> values = new LinkedHashMap<>();
+		for (final String pair : StringUtils.split(queryString, '&'))
+		{
+			final String name = decode(StringUtils.substringBefore(pair, "="));
+			final String value = pair.contains("=") ? decode(StringUtils.substringAfter(pair, "=")) : "";
+			values.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+		}
+
+		final Map<String, String[]> parameters = new LinkedHashMap<>();
+		values.forEach((name, list) -> parameters.put(name, list.toArray(new String[list.size()])));
+		return Collections.unmodifiableMap(parameters);
+	}
+
+	protected static String decode(final String value)
+	{
+		try
+		{
+			return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+		}
+		catch (final UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public String getMethod()
+	{
+		return item.getMethod();
+	}
+
+	@Override
+	public String getPathInfo()
+	{
+		return item.getPath();
+	}
+
+	@Override
+	public String getPathTranslated()
+	{
+		return null;
+	}
+
+	@Override
+	public String getRequestURI()
+	{
+		return getContextPath() + getServletPath() + item.getPath();
+	}
+
+	@Override
+	public StringBuffer getRequestURL()
+	{
+		final StringBuffer url = new StringBuffer();
+		url.append(getScheme()).append("://").append(getServerName()).append(':').append(getServerPort())
+				.append(getRequestURI());
+		return url;
+	}
+
+	@Override
+	public String getQueryString()
+	{
+		return item.getQueryString();
+	}
+
+	@Override
+	public String getParameter(final String name)
+	{
+		final String[] values = parameters.get(name);
+		return values == null ? null : values[0];
+	}
+
+	@Override
+	public Map<String, String[]> getParameterMap()
+	{
+		return parameters;
+	}
+
+	@Override
+	public Enumeration<String> getParameterNames()
+	{
+		return Collections.enumeration(parameters.keySet());
+	}
+
+	@Override
+	public String[] getParameterValues(final String name)
+	{
+		return parameters.get(name);
+	}
+
+	@Override
+	public String getHeader(final String name)
+	{
+		if (HttpHeaders.ACCEPT.equalsIgnoreCase(name))
+		{
+			return MediaType.APPLICATION_JSON_VALUE;
+		}
+		if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name))
+		{
+			return getContentType();
+		}
+		if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name))
+		{
+			return body.length == 0 ? null : String.valueOf(body.length);
+		}
+		if (HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name) || HttpHeaders.IF_MODIFIED_SINCE.equalsIgnoreCase(name))
+		{
+			// conditions of the batch request do not apply to its sub-requests
+			return null;
+		}
+		return super.getHeader(name);
+	}
+
+	@Override
+	public Enumeration<String> getHeaders(final String name)
+	{
+		final String value = getHeader(name);
+		if (HttpHeaders.ACCEPT.equalsIgnoreCase(name) || HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name)
+				|| HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) || HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name)
+				|| HttpHeaders.IF_MODIFIED_SINCE.equalsIgnoreCase(name))
+		{
+			return value == null ? Collections.emptyEnumeration() : Collections.enumeration(Collections.singletonList(value));
+		}
+		return super.getHeaders(name);
+	}
+
+	@Override
+	public long getDateHeader(final String name)
+	{
+		return HttpHeaders.IF_MODIFIED_SINCE.equalsIgnoreCase(name) ? -1L : super.getDateHeader(name);
+	}
+
+	@Override
+	public String getContentType()
+	{
+		return body.length == 0 ? null : MediaType.APPLICATION_JSON_UTF8_VALUE;
+	}
+
+	@Override
+	public String getCharacterEncoding()
+	{
+		return StandardCharsets.UTF_8.name();
+	}
+
+	@Override
+	public int getContentLength()
+	{
+		return body.length;
+	}
+
+	@Override
+	public long getContentLengthLong()
+	{
+		return body.length;
+	}
+
+	@Override
+	public ServletInputStream getInputStream()
+	{
+		final ByteArrayInputStream input = new ByteArrayInputStream(body);
+		return new ServletInputStream()
+		{
+			@Override
+			public int read()
+			{
+				return input.read();
+			}
+
+			@Override
+			public int read(final byte[] buffer, final int offset, final int length)
+			{
+				return input.read(buffer, offset, length);
+			}
+
+			@Override
+			public boolean isFinished()
+			{
+				return input.available() == 0;
+			}
+
+			@Override
+			public boolean isReady()
+			{
+				return true;
+			}
+
+			@Override
+			public void setReadListener(final ReadListener readListener)
+			{
+				throw new UnsupportedOperationException("Sub-requests are read synchronously");
+			}
+		};
+	}
+
+	@Override
+	public BufferedReader getReader()
+	{
+		return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public Object getAttribute(final String name)
+	{
+		return attributes.get(name);
+	}
+
+	@Override
+	public Enumeration<String> getAttributeNames()
+	{
+		return Collections.enumeration(new ArrayList<>(attributes.keySet()));
+	}
+
+	@Override
+	public void setAttribute(final String name, final Object value)
+	{
+		if (value == null)
+		{
+			attributes.remove(name);
+		}
+		else
+		{
+			attributes.put(name, value);
+		}
+	}
+
+	@Override
+	public void removeAttribute(final String name)
+	{
+		attributes.remove(name);
+	}
+}
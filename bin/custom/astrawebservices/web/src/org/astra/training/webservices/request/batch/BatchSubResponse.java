@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.request.batch;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.http.HttpHeaders;
+
+
+/**
+ * Response of a single sub-request of a batch. Status, headers and body are buffered and never reach the batch
+ * response, which is written once all sub-requests are done. Cookies are dropped.
+ */
+public class BatchSubResponse extends HttpServletResponseWrapper
+{
+	private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+	private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+	private int status = SC_OK;
+	private String contentType;
+	private String characterEncoding = StandardCharsets.UTF_8.name();
+	private ServletOutputStream outputStream;
+	private PrintWriter writer;
+
+	public BatchSubResponse(final HttpServletResponse response)
+	{
+		super(response);
+	}
+
+	/**
+	 * Returns the buffered body.
+	 */
+	public byte[] getBody()
+	{
+		if (writer != null)
+		{
+			writer.flush();
+		}
+		return body.toByteArray();
+	}
+
+	/**
+	 * Returns the first values of the given headers that were set, in the order of the names.
+	 */
+	public Map<String, String> getHeaders(final String... names)
+	{
+		final Map<String, String> result = new LinkedHashMap<>();
+		for (final String name : names)
+		{
+			final String value = getHeader(name);
+			if (value != null)
+			{
+				result.put(name, value);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream()
+	{
+		if (outputStream == null)
+		{
+			outputStream = new ServletOutputStream()
+			{
+				@Override
+				public void write(final int b)
+				{
+					body.write(b);
+				}
+
+				@Override
+				public void write(final byte[] bytes, final int offset, final int length)
+				{
+					body.write(bytes, offset, length);
+				}
+
+				@Override
+				public boolean isReady()
+				{
+					return true;
+				}
+
+				@Override
+				public void setWriteListener(final WriteListener writeListener)
+				{
+					throw new UnsupportedOperationException("Sub-responses are written synchronously");
+				}
+			};
+		}
+		return outputStream;
+	}
+
+	@Override
+	public PrintWriter getWriter()
+	{
+		if (writer == null)
+		{
+			writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), StandardCharsets.UTF_8));
+		}
+		return writer;
+	}
+
+	@Override
+	public void setStatus(final int status)
+	{
+		this.status = status;
+	}
+
+	@Override
+	@SuppressWarnings("deprecation")
+	public void setStatus(final int status, final String message)
+	{
+		this.status = status;
+	}
+
+	@Override
+	public void sendError(final int status)
+	{
+		this.status = status;
+	}
+
+	@Override
+	public void sendError(final int status, final String message)
+	{
+		this.status = status;
+	}
+
+	@Override
+	public void sendRedirect(final String location)
+	{
+		this.status = SC_FOUND;
+		setHeader(HttpHeaders.LOCATION, location);
+	}
+
+	@Override
+	public int getStatus()
+	{
+		return status;
+	}
+
+	@Override
+	public void setHeader(final String name, final String value)
+	{
+		final List<String> values = new ArrayList<>(1);
+		values.add(value);
+		headers.put(name, values);
+		if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name))
+		{
+			contentType = value;
+		}
+	}
+
+	@Override
+	public void addHeader(final String name, final String value)
+	{
+		headers.computeIfAbsent(name, key -> new ArrayList<>(1)).add(value);
+		if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name))
+		{
+			contentType = value;
+		}
+	}
+
+	@Override
+	public void setIntHeader(final String name, final int value)
+	{
+		setHeader(name, String.valueOf(value));
+	}
+
+	@Override
+	public void addIntHeader(final String name, final int value)
+	{
+		addHeader(name, String.valueOf(value));
+	}
+
+	@Override
+	public void setDateHeader(final String name, final long date)
+	{
+		setHeader(name, String.valueOf(date));
+	}
+
+	@Override
+	public void addDateHeader(final String name, final long date)
+	{
+		addHeader(name, String.valueOf(date));
+	}
+
+	@Override
+	public boolean containsHeader(final String name)
+	{
+		return headers.containsKey(name);
+	}
+
+	@Override
+	public String getHeader(final String name)
+	{
+		final List<String> values = headers.get(name);
+		return values == null || values.isEmpty() ? null : values.get(0);
+	}
+
+	@Override
+	public Collection<String> getHeaders(final String name)
+	{
+		final List<String> values = headers.get(name);
+		return values == null ? Collections.emptyList() : Collections.unmodifiableList(values);
+	}
+
+	@Override
+	public Collection<String> getHeaderNames()
+	{
+		return Collections.unmodifiableSet(headers.keySet());
+	}
+
+	@Override
+	public void setContentType(final String contentType)
+	{
+		this.contentType = contentType;
+	}
+
+	@Override
+	public String getContentType()
+	{
+		return contentType;
+	}
+
+	@Override
+	public void setCharacterEncoding(final String characterEncoding)
+	{
+		this.characterEncoding = characterEncoding;
+	}
+
+	@Override
+	public String getCharacterEncoding()
+	{
+		return characterEncoding;
+	}
+
+	@Override
+	public void setContentLength(final int length)
+	{
+		// the length of the buffered body is known
+	}
+
+	@Override
+	public void setContentLengthLong(final long length)
+	{
+		// the length of the buffered body is known
+	}
+
+	@Override
+	public void setLocale(final Locale locale)
+	{
+		// sub-responses have no locale of their own
+	}
+
+	@Override
+	public void addCookie(final Cookie cookie)
+	{
+		// sub-responses cannot set cookies
+	}
+
+	@Override
+	public void setBufferSize(final int size)
+	{
+		// the whole body is buffered
+	}
+
+	@Override
+	public void flushBuffer()
+	{
+		if (writer != null)
+		{
+			writer.flush();
+		}
+	}
+
+	@Override
+	public boolean isCommitted()
+	{
+		return false;
+	}
+
+	@Override
+	public void reset()
+	{
+		resetBuffer();
+		headers.clear();
+		status = SC_OK;
+		contentType = null;
+	}
+
+	@Override
+	public void resetBuffer()
+	{
+		if (writer != null)
+		{
+			writer.flush();
+		}
+		body.reset();
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.request.batch;
+
+import de.hybris.platform.core.Registry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.export.naming.SelfNaming;
+
+
+/**
+ * Counts batch requests and their sub-requests and exposes them over JMX, one MBean per tenant. Each sub-request beyond
+ * the first saves a pass through the filter chain. The latency of a batch is compared with the sum of the latencies of
+ * its sub-requests, which is what running them one after the other would have taken without the filter chains.
+ */
+@ManagedResource(description = "Statistics of the batch requests")
+public class WsBatchStatistics implements SelfNaming
+{
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder subRequests = new LongAdder();
+	private final LongAdder failedSubRequests = new LongAdder();
+	private final LongAdder batchNanos = new LongAdder();
+	private final LongAdder subRequestNanos = new LongAdder();
+	private final AtomicLong maxBatchNanos = new AtomicLong();
+
+	public void recordBatch(final int subRequestCount, final int failedCount, final long nanos,
+			final long sumOfSubRequestNanos)
+	{
+		batches.increment();
+		subRequests.add(subRequestCount);
+		failedSubRequests.add(failedCount);
+		batchNanos.add(nanos);
+		subRequestNanos.add(sumOfSubRequestNanos);
+		maxBatchNanos.accumulateAndGet(nanos, Math::max);
+	}
+
+	@ManagedAttribute(description = "Number of batch requests")
+	public long getBatchCount()
+	{
+		return batches.sum();
+	}
+
+	@ManagedAttribute(description = "Number of sub-requests of all batch requests")
+	public long getSubRequestCount()
+	{
+		return subRequests.sum();
+	}
+
+	@ManagedAttribute(description = "Number of sub-requests answered with a status of 400 or above")
+	public long getFailedSubRequestCount()
+	{
+		return failedSubRequests.sum();
+	}
+
+	@ManagedAttribute(description = "Number of passes through the filter chain saved by batching")
+	public long getSavedFilterChainPasses()
+	{
+		return Math.max(0L, getSubRequestCount() - getBatchCount());
+	}
+
+	@ManagedAttribute(description = "Average number of sub-requests per batch request")
+	public double getAverageBatchSize()
+	{
+		final long count = getBatchCount();
+		return count == 0 ? 0 : (double) getSubRequestCount() / count;
+	}
+
+	@ManagedAttribute(description = "Average latency of batch requests, without the filter chain, in microseconds")
+	public double getAverageBatchMicros()
+	{
+		final long count = getBatchCount();
+		return count == 0 ? 0 : batchNanos.sum() / 1000d / count;
+	}
+
+	@ManagedAttribute(description = "Maximum latency of batch requests, without the filter chain, in microseconds")
+	public long getMaxBatchMicros()
+	{
+		return TimeUnit.NANOSECONDS.toMicros(maxBatchNanos.get());
+	}
+
+	@ManagedAttribute(description = "Average sum of the sub-request latencies per batch request in microseconds")
+	public double getAverageSequentialMicros()
+	{
+		final long count = getBatchCount();
+		return count == 0 ? 0 : subRequestNanos.sum() / 1000d / count;
+	}
+
+	@ManagedAttribute(description = "Sum of the sub-request latencies divided by the batch latencies")
+	public double getParallelSpeedup()
+	{
+		final long nanos = batchNanos.sum();
+		return nanos == 0 ? 0 : (double) subRequestNanos.sum() / nanos;
+	}
+
+	@Override
+	public ObjectName getObjectName() throws MalformedObjectNameException
+	{
+		return new ObjectName(
+				"astrawebservices:type=BatchStatistics,tenant=" + ObjectName.quote(Registry.getCurrentTenant().getTenantID()));
+	}
+}
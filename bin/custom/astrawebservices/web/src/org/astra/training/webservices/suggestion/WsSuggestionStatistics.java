@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.suggestion;
+
+import de.hybris.platform.core.Registry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.export.naming.SelfNaming;
+
+
+/**
+ * Counts product suggestion requests answered from the local suggestion index (hits) and by the search backend
+ * (misses), together with their latencies, and exposes them over JMX, one MBean per tenant.
+ */
+@ManagedResource(description = "Statistics of the product suggestions")
+public class WsSuggestionStatistics implements SelfNaming
+{
+	private final Timer hits = new Timer();
+	private final Timer misses = new Timer();
+
+	public void recordHit(final long nanos)
+	{
+		hits.record(nanos);
+	}
+
+	public void recordMiss(final long nanos)
+	{
+		misses.record(nanos);
+	}
+
+	@ManagedAttribute(description = "Number of requests answered from the local index")
+	public long getHitCount()
+	{
+		return hits.count.sum();
+	}
+
+	@ManagedAttribute(description = "Number of requests answered by the search backend")
+	public long getMissCount()
+	{
+		return misses.count.sum();
+	}
+
+	@ManagedAttribute(description = "Ratio of hits to all requests")
+	public double getHitRatio()
+	{
+		final long hitCount = getHitCount();
+		final long requests = hitCount + getMissCount();
+		return requests == 0 ? 0 : (double) hitCount / requests;
+	}
+
+	@ManagedAttribute(description = "Average latency of hits in microseconds")
+	public double getAverageHitMicros()
+	{
+		return hits.averageMicros();
+	}
+
+	@ManagedAttribute(description = "Maximum latency of hits in microseconds")
+	public long getMaxHitMicros()
+	{
+		return TimeUnit.NANOSECONDS.toMicros(hits.maxNanos.get());
+	}
+
+	@ManagedAttribute(description = "Average latency of misses, including the search backend, in microseconds")
+	public double getAverageMissMicros()
+	{
+		return misses.averageMicros();
+	}
+
+	@ManagedAttribute(description = "Maximum latency of misses, including the search backend, in microseconds")
+	public long getMaxMissMicros()
+	{
+		return TimeUnit.NANOSECONDS.toMicros(misses.maxNanos.get());
+	}
+
+	@Override
+	public ObjectName getObjectName() throws MalformedObjectNameException
+	{
+		return new ObjectName(
+				"astrawebservices:type=SuggestionStatistics,tenant=" + ObjectName.quote(Registry.getCurrentTenant().getTenantID()));
+	}
+
+	private static final class Timer
+	{
+		private final LongAdder count = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+
+		private void record(final long nanos)
+		{
+			count.increment();
+			totalNanos.add(nanos);
+			maxNanos.accumulateAndGet(nanos, Math::max);
+		}
+
+		private double averageMicros()
+		{
+			final long requests = count.sum();
+			return requests == 0 ? 0 : totalNanos.sum() / 1000d / requests;
+		}
+	}
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.v2.controller;
+
+import de.hybris.platform.commercewebservicescommons.errors.exceptions.RequestParameterException;
+import de.hybris.platform.servicelayer.config.ConfigurationService;
+import de.hybris.platform.webservicescommons.cache.CacheControl;
+import de.hybris.platform.webservicescommons.cache.CacheControlDirective;
+import de.hybris.platform.webservicescommons.swagger.ApiBaseSiteIdAndUserIdParam;
+import de.hybris.platform.webservicescommons.swagger.ApiBaseSiteIdUserIdAndCartIdParam;
+import org.astra.training.webservices.request.batch.BatchRequestDispatcher;
+import org.astra.training.webservices.request.batch.BatchRequestItem;
+import org.astra.training.webservices.request.batch.BatchResponseItem;
+import org.astra.training.webservices.request.batch.BatchSubRequest;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.util.UrlPathHelper;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+
+
+@Controller
+@RequestMapping(value = "/{baseSiteId}/users/{userId}")
+@CacheControl(directive = CacheControlDirective.NO_CACHE)
+@Api(tags = "Batch")
+public class BatchController extends BaseController
+{
+	private static final Logger LOG = LoggerFactory.getLogger(BatchController.class);
+
+	private static final String MAX_REQUESTS = "astrawebservices.batch.maxrequests";
+	private static final int DEFAULT_MAX_REQUESTS = 20;
+	private static final String REQUESTS = "requests";
+	private static final String VALIDATION_ERROR = "ValidationError";
+	private static final Pattern CONTEXT_PATTERN = Pattern
+			.compile("^/([^/]+)(?:/(?:users|orgUsers)/([^/]+)(?:/carts/([^/]+))?)?(?:/.*)?$");
+	private static final Pattern ENCODED_SEPARATOR_PATTERN = Pattern.compile("%2f|%5c|\\\\", Pattern.CASE_INSENSITIVE);
+	private static final Pattern DOT_SEGMENT_PATTERN = Pattern.compile("(^|/)\\.{1,2}(/|$)");
+	private static final UrlPathHelper URL_PATH_HELPER = new UrlPathHelper();
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	@Resource(name = "batchRequestDispatcher")
+	private BatchRequestDispatcher batchRequestDispatcher;
+	@Resource(name = "configurationService")
+	private ConfigurationService configurationService;
+
+	@PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+	@ApiOperation(nickname = "executeBatch", value = "Executes several requests at once.", notes =
+			"Executes a list of requests of the given user in one round trip. The site, user, language and currency of the "
+					+ "batch request apply to all requests, so every request must address the same site and user. Requests "
+					+ "changing data are executed in the given order; reading requests in between may be executed in "
+					+ "parallel. The body lists the requests, each with an id, a method, a url relative to the API root including the "
+					+ "query string, and an optional JSON body. Returns one response per request, in the given order, each with "
+					+ "its own status, headers and body.")
+	@ApiBaseSiteIdAndUserIdParam
+	public void executeBatch(@PathVariable final String baseSiteId, @PathVariable final String userId,
+			final HttpServletRequest request, final HttpServletResponse response) throws IOException
+	{
+		execute(baseSiteId, userId, null, request, response);
+	}
+
+	@PostMapping(value = "/carts/{cartId}/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+	@ApiOperation(nickname = "executeCartBatch", value = "Executes several requests on a cart at once.", notes =
+			"Works like the batch of the user, and additionally allows requests on the given cart, for example adding "
+					+ "entries, setting the delivery address and reading the cart in one round trip.")
+	@ApiBaseSiteIdUserIdAndCartIdParam
+	public void executeCartBatch(@PathVariable final String baseSiteId, @PathVariable final String userId,
+			@PathVariable final String cartId,
+			final HttpServletRequest request, final HttpServletResponse response) throws IOException
+	{
+		execute(baseSiteId, userId, cartId, request, response);
+	}
+
+	protected void execute(final String baseSiteId, final String userId, final String cartId,
+			final HttpServletRequest request, final HttpServletResponse response) throws IOException
+	{
+		final JsonNode requests = readRequests(request);
+		final int maxRequests = configurationService.getConfiguration().getInt(MAX_REQUESTS, DEFAULT_MAX_REQUESTS);
+		if (requests.size() == 0 || requests.size() > maxRequests)
+		{
+			throw new RequestParameterException("Between 1 and " + maxRequests + " requests are allowed",
+					RequestParameterException.INVALID, REQUESTS);
+		}
+		LOG.debug("executeBatch: {} requests", requests.size());
+
+		final BatchResponseItem[] results = new BatchResponseItem[requests.size()];
+		final List<BatchRequestItem> items = new ArrayList<>(requests.size());
+		final List<Integer> positions = new ArrayList<>(requests.size());
+		for (int i = 0; i < requests.size(); i++)
+		{
+			final JsonNode node = requests.get(i);
+			final String id = node.path("id").asText(String.valueOf(i));
+			final String error = validateRequest(node, baseSiteId, userId, cartId, request);
+			if (error == null)
+			{
+				final JsonNode body = node.get("body");
+				items.add(new BatchRequestItem(id, node.path("method").asText().toUpperCase(), node.path("url").asText(),
+						body == null || body.isNull() ? null : body.toString()));
+				positions.add(i);
+			}
+			else
+			{
+				results[i] = batchRequestDispatcher.createErrorItem(id, HttpServletResponse.SC_BAD_REQUEST, VALIDATION_ERROR,
+						error);
+			}
+		}
+
+		if (!items.isEmpty())
+		{
+			final List<BatchResponseItem> dispatched = batchRequestDispatcher.dispatch(request, response, items);
+			for (int i = 0; i < dispatched.size(); i++)
+			{
+				results[positions.get(i)] = dispatched.get(i);
+			}
+		}
+		writeResponses(response, results);
+	}
+
+	protected JsonNode readRequests(final HttpServletRequest request) throws IOException
+	{
+		final JsonNode root;
+		try
+		{
+			root = MAPPER.readTree(request.getInputStream());
+		}
+		catch (final JsonProcessingException e)
+		{
+			LOG.debug("Invalid batch request body", e);
+			throw new RequestParameterException(INVALID_REQUEST_BODY_ERROR_MESSAGE, RequestParameterException.INVALID, REQUESTS);
+		}
+		if (root == null || !root.path(REQUESTS).isArray())
+		{
+			throw new RequestParameterException(INVALID_REQUEST_BODY_ERROR_MESSAGE, RequestParameterException.MISSING, REQUESTS);
+		}
+		return root.get(REQUESTS);
+	}
+
+	/**
+	 * Checks that a request can be executed in the context of the batch request: the filters have resolved site, user
+	 * and cart for the batch request only, so every request has to address the same ones. The checks apply to the
+	 * decoded path the handler mapping looks up, not to the url as sent, and urls with encoded separators or dot segments
+	 * are rejected.
+	 *
+	 * @return the reason why the request is rejected, or <code>null</code> if it is valid
+	 */
+	protected String validateRequest(final JsonNode node, final String baseSiteId, final String userId, final String cartId,
+			final HttpServletRequest request)
+	{
+		final String method = node.path("method").asText();
+		if (HttpMethod.resolve(method.toUpperCase()) == null)
+		{
+			return "Unknown method '" + sanitize(method) + "'";
+		}
+
+		final String url = node.path("url").asText();
+		final String rawPath = StringUtils.substringBefore(url, "?");
+		if (!rawPath.startsWith("/") || ENCODED_SEPARATOR_PATTERN.matcher(rawPath).find())
+		{
+			return "Invalid url '" + sanitize(url) + "'";
+		}
+		final String path = URL_PATH_HELPER
+				.getLookupPathForRequest(new BatchSubRequest(request, new BatchRequestItem(null, method, url, null)));
+		final Matcher matcher = CONTEXT_PATTERN.matcher(path);
+		if (!matcher.matches() || DOT_SEGMENT_PATTERN.matcher(path).find())
+		{
+			return "Invalid url '" + sanitize(url) + "'";
+		}
+		if (StringUtils.removeEnd(path, "/").endsWith("/batch"))
+		{
+			return "Batch requests cannot be nested";
+		}
+		if (!baseSiteId.equals(matcher.group(1)))
+		{
+			return "Requests must address the base site " + sanitize(baseSiteId);
+		}
+		if (matcher.group(2) != null && !userId.equals(matcher.group(2)))
+		{
+			return "Requests must address the user " + sanitize(userId);
+		}
+		if (matcher.group(3) != null && !matcher.group(3).equals(cartId))
+		{
+			return cartId == null ? "Requests on carts need a batch on the cart" : "Requests must address the cart " + sanitize(cartId);
+		}
+
+		final JsonNode body = node.get("body");
+		if (body != null && !body.isNull() && !body.isContainerNode())
+		{
+			return "The body must be a JSON object or array";
+		}
+		return null;
+	}
+
+	protected void writeResponses(final HttpServletResponse response, final BatchResponseItem[] results) throws IOException
+	{
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+		try (final JsonGenerator generator = MAPPER.getFactory().createGenerator(response.getOutputStream()))
+		{
+			generator.writeStartObject();
+			generator.writeArrayFieldStart("responses");
+			for (final BatchResponseItem result : results)
+			{
+				generator.writeStartObject();
+				generator.writeStringField("id", result.getId());
+				generator.writeNumberField("status", result.getStatus());
+				generator.writeObjectFieldStart("headers");
+				for (final Map.Entry<String, String> header : result.getHeaders().entrySet())
+				{
+					generator.writeStringField(header.getKey(), header.getValue());
+				}
+				generator.writeEndObject();
+				writeBody(generator, result);
+				generator.writeEndObject();
+			}
+			generator.writeEndArray();
+			generator.writeEndObject();
+		}
+	}
+
+	protected void writeBody(final JsonGenerator generator, final BatchResponseItem result) throws IOException
+	{
+		final byte[] body = result.getBody();
+		if (body == null || body.length == 0)
+		{
+			return;
+		}
+		generator.writeFieldName("body");
+		final String content = new String(body, StandardCharsets.UTF_8);
+		if (StringUtils.containsIgnoreCase(result.getContentType(), "json"))
+		{
+			generator.writeRawValue(content);
+		}
+		else
+		{
+			generator.writeString(content);
+		}
+	}
+}
@@ -3,27 +3,38 @@
  */
 package org.astra.training.webservices.v2.controller;
 
+import de.hybris.platform.commercefacades.order.CartFacade;
 import de.hybris.platform.commercefacades.order.data.CartData;
 import de.hybris.platform.commercefacades.order.data.CartModificationData;
+import de.hybris.platform.commercefacades.order.data.CartModificationDataList;
 import de.hybris.platform.commercefacades.order.data.OrderEntryData;
 import de.hybris.platform.commercefacades.storelocator.data.PointOfServiceData;
 import de.hybris.platform.commerceservices.order.CommerceCartModificationException;
 import de.hybris.platform.commercewebservicescommons.annotation.SiteChannelRestriction;
+import de.hybris.platform.commercewebservicescommons.dto.order.CartModificationListWsDTO;
 import de.hybris.platform.commercewebservicescommons.dto.order.CartModificationWsDTO;
 import de.hybris.platform.commercewebservicescommons.dto.order.OrderEntryListWsDTO;
 import de.hybris.platform.commercewebservicescommons.dto.order.OrderEntryWsDTO;
 import de.hybris.platform.commercewebservicescommons.errors.exceptions.CartEntryException;
+import de.hybris.platform.commercewebservicescommons.errors.exceptions.RequestParameterException;
+import de.hybris.platform.servicelayer.config.ConfigurationService;
 import de.hybris.platform.webservicescommons.cache.CacheControl;
 import de.hybris.platform.webservicescommons.cache.CacheControlDirective;
 import de.hybris.platform.webservicescommons.errors.exceptions.WebserviceValidationException;
 import de.hybris.platform.webservicescommons.swagger.ApiBaseSiteIdUserIdAndCartIdParam;
 import de.hybris.platform.webservicescommons.swagger.ApiFieldsParam;
+import org.astra.training.webservices.cart.calculation.CartCalculationDeferralService;
 import org.astra.training.webservices.order.data.OrderEntryDataList;
+import org.astra.training.webservices.order.dto.CartEntryOperationListWsDTO;
+import org.astra.training.webservices.order.dto.CartEntryOperationType;
+import org.astra.training.webservices.order.dto.CartEntryOperationWsDTO;
 import org.astra.training.webservices.validator.StockPOSValidator;
 import org.astra.training.webservices.validator.StockValidator;
 
 import javax.annotation.Resource;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Predicate;
 
 import org.apache.commons.collections4.CollectionUtils;
@@ -62,6 +73,9 @@ public class CartEntriesController extends BaseCommerceController
 	private static final Logger LOG = LoggerFactory.getLogger(CartEntriesController.class);
 
 	private static final long DEFAULT_PRODUCT_QUANTITY = 1;
+	private static final String BULK_MAX_OPERATIONS = "astrawebservices.cart.bulk.maxoperations";
+	private static final int DEFAULT_BULK_MAX_OPERATIONS = 100;
+	private static final String OPERATIONS = "operations";
 
 	@Resource(name = "orderEntryCreateValidator")
 	private Validator orderEntryCreateValidator;
@@ -73,6 +87,12 @@ public class CartEntriesController extends BaseCommerceController
 	private StockValidator stockValidator;
 	@Resource(name = "stockPOSValidator")
 	private StockPOSValidator stockPOSValidator;
+	@Resource(name = "cartCalculationDeferralService")
+	private CartCalculationDeferralService cartCalculationDeferralService;
+	@Resource(name = "bulkCommerceWebServicesCartFacade")
+	private CartFacade bulkCartFacade;
+	@Resource(name = "configurationService")
+	private ConfigurationService configurationService;
 
 	protected static CartModificationData mergeCartModificationData(final CartModificationData cmd1,
 			final CartModificationData cmd2)
@@ -259,8 +279,164 @@ public class CartEntriesController extends BaseCommerceController
 		getCartFacade().updateCartEntry(entryNumber, 0);
 	}
 
+	@PostMapping(value = "/{cartId}/entries/bulk", consumes = { MediaType.APPLICATION_JSON_VALUE,
+			MediaType.APPLICATION_XML_VALUE })
+	@ResponseBody
+	@SiteChannelRestriction(allowedSiteChannelsProperty = API_COMPATIBILITY_B2C_CHANNELS)
+	@ApiOperation(nickname = "modifyCartEntries", value = "Adds, updates and removes several cart entries.", notes =
+			"Applies a list of add, update and remove operations to the cart in the given order and recalculates the cart "
+					+ "once at the end. Entry numbers refer to the cart as left by the previous operations, exactly as for "
+					+ "the equivalent sequence of single entry calls. Returns one cart modification per operation. The "
+					+ "operations are not applied atomically: when an operation fails, the operations before it stay applied, "
+					+ "the cart is recalculated and the error of the failing operation is returned. Read the cart to find out "
+					+ "which changes were applied.")
+	@ApiBaseSiteIdUserIdAndCartIdParam
+	public CartModificationListWsDTO modifyCartEntries(@PathVariable final String baseSiteId,
+			@ApiParam(value = "List of operations. Each operation has a type (ADD, UPDATE or REMOVE), the entry number for UPDATE and REMOVE, and the entry details (product.code, quantity, deliveryPointOfService.name) for ADD and UPDATE.\n\nThe DTO is in XML or .json format.", required = true) @RequestBody final CartEntryOperationListWsDTO operationList,
+			@ApiFieldsParam @RequestParam(defaultValue = DEFAULT_FIELD_SET) final String fields)
+			throws CommerceCartModificationException
+	{
+		final List<CartEntryOperationWsDTO> operations = new ArrayList<>(
+				CollectionUtils.emptyIfNull(operationList.getOperations()));
+		final int maxOperations = configurationService.getConfiguration().getInt(BULK_MAX_OPERATIONS,
+				DEFAULT_BULK_MAX_OPERATIONS);
+		if (operations.isEmpty() || operations.size() > maxOperations)
+		{
+			throw new RequestParameterException("Between 1 and " + maxOperations + " operations are allowed",
+					RequestParameterException.INVALID, OPERATIONS);
+		}
+		operations.forEach(this::validateOperation);
+		LOG.debug("modifyCartEntries: {} operations", operations.size());
+
+		final List<CartModificationData> modifications = cartCalculationDeferralService
+				.executeWithSingleCalculation(() -> applyOperations(baseSiteId, operations));
+
+		final CartModificationDataList cartModificationDataList = new CartModificationDataList();
+		cartModificationDataList.setCartModificationList(refreshEntries(getSessionCart(), modifications));
+		return getDataMapper().map(cartModificationDataList, CartModificationListWsDTO.class, fields);
+	}
+
+	/**
+	 * Uses the bulk cart facade while the calculation of the session cart is deferred. Only its strategies skip the
+	 * calculation, so the calculation of every other cart modification is left as it is.
+	 */
+	@Override
+	protected CartFacade getCartFacade()
+	{
+		return cartCalculationDeferralService.isCalculationDeferred() ? bulkCartFacade : super.getCartFacade();
+	}
+
+	/**
+	 * Checks the shape of an operation before any of them is applied. Checks that depend on the cart, like the
+	 * existence of an entry or the stock, are done while the operations are applied.
+	 */
+	protected void validateOperation(final CartEntryOperationWsDTO operation)
+	{
+		if (operation == null || operation.getType() == null)
+		{
+			throw new RequestParameterException("Every operation needs a type", RequestParameterException.MISSING, OPERATIONS);
+		}
+		if (operation.getType() != CartEntryOperationType.ADD && operation.getEntryNumber() == null)
+		{
+			throw new RequestParameterException(operation.getType() + " operations need an entry number",
+					RequestParameterException.MISSING, OPERATIONS);
+		}
+		if (operation.getType() == CartEntryOperationType.ADD)
+		{
+			if (operation.getEntry() == null)
+			{
+				throw new RequestParameterException("ADD operations need an entry", RequestParameterException.MISSING, OPERATIONS);
+			}
+			if (operation.getEntry().getQuantity() == null)
+			{
+				operation.getEntry().setQuantity(DEFAULT_PRODUCT_QUANTITY);
+			}
+			validate(operation.getEntry(), ENTRY, orderEntryCreateValidator);
+		}
+		else if (operation.getType() == CartEntryOperationType.UPDATE && operation.getEntry() == null)
+		{
+			throw new RequestParameterException("UPDATE operations need an entry", RequestParameterException.MISSING,
+					OPERATIONS);
+		}
+	}
+
+	/**
+	 * Applies the operations in the given order. The first failing operation ends the loop; the operations applied
+	 * before it are kept and the caller recalculates the cart.
+	 */
+	protected List<CartModificationData> applyOperations(final String baseSiteId,
+			final List<CartEntryOperationWsDTO> operations) throws CommerceCartModificationException
+	{
+		final List<CartModificationData> modifications = new ArrayList<>(operations.size());
+		for (final CartEntryOperationWsDTO operation : operations)
+		{
+			modifications.add(applyOperation(baseSiteId, operation));
+		}
+		return modifications;
+	}
+
+	protected CartModificationData applyOperation(final String baseSiteId, final CartEntryOperationWsDTO operation)
+			throws CommerceCartModificationException
+	{
+		final OrderEntryWsDTO entry = operation.getEntry();
+		final String pickupStore = entry == null || entry.getDeliveryPointOfService() == null ?
+				null :
+				entry.getDeliveryPointOfService().getName();
+
+		if (operation.getType() == CartEntryOperationType.ADD)
+		{
+			return addCartEntryData(baseSiteId, entry.getProduct().getCode(), entry.getQuantity(), pickupStore);
+		}
+
+		final long entryNumber = operation.getEntryNumber().longValue();
+		final CartData cart = getSessionCart();
+		final OrderEntryData orderEntry = getCartEntryForNumber(cart, entryNumber);
+		if (operation.getType() == CartEntryOperationType.REMOVE)
+		{
+			return getCartFacade().updateCartEntry(entryNumber, 0);
+		}
+
+		validateProductCode(orderEntry, entry);
+		if (entry.getQuantity() == null)
+		{
+			entry.setQuantity(orderEntry.getQuantity());
+		}
+		validate(entry, ENTRY, orderEntryUpdateValidator);
+		return updateCartEntryData(baseSiteId, cart, orderEntry, entry.getQuantity(), pickupStore, false);
+	}
+
+	/**
+	 * Replaces the entries of the modifications by the entries of the recalculated cart, so that prices and totals are
+	 * those after the single calculation. Removed entries are left as they are. Entries are matched by product and pickup store because removals renumber the
+	 * entries of the cart.
+	 */
+	protected List<CartModificationData> refreshEntries(final CartData cart, final List<CartModificationData> modifications)
+	{
+		for (final CartModificationData modification : modifications)
+		{
+			final OrderEntryData entry = modification.getEntry();
+			if (entry != null && entry.getProduct() != null && modification.getQuantity() > 0 && cart.getEntries() != null)
+			{
+				final String pickupStore =
+						entry.getDeliveryPointOfService() == null ? null : entry.getDeliveryPointOfService().getName();
+				final OrderEntryData calculatedEntry = getCartEntry(cart, entry.getProduct().getCode(), pickupStore);
+				if (calculatedEntry != null)
+				{
+					modification.setEntry(calculatedEntry);
+				}
+			}
+		}
+		return modifications;
+	}
+
 	protected CartModificationWsDTO addCartEntryInternal(final String baseSiteId, final String code, final long qty,
 			final String pickupStore, final String fields) throws CommerceCartModificationException
+	{
+		return getDataMapper().map(addCartEntryData(baseSiteId, code, qty, pickupStore), CartModificationWsDTO.class, fields);
+	}
+
+	protected CartModificationData addCartEntryData(final String baseSiteId, final String code, final long qty,
+			final String pickupStore) throws CommerceCartModificationException
 	{
 		final CartModificationData cartModificationData;
 		if (StringUtils.isNotEmpty(pickupStore))
@@ -273,12 +449,20 @@ public class CartEntriesController extends BaseCommerceController
 			stockValidator.validate(baseSiteId, code, null);
 			cartModificationData = getCartFacade().addToCart(code, qty);
 		}
-		return getDataMapper().map(cartModificationData, CartModificationWsDTO.class, fields);
+		return cartModificationData;
 	}
 
 	protected CartModificationWsDTO updateCartEntryInternal(final String baseSiteId, final CartData cart,
 			final OrderEntryData orderEntry, final Long qty, final String pickupStore, final String fields, final boolean putMode)
 			throws CommerceCartModificationException
+	{
+		return getDataMapper().map(updateCartEntryData(baseSiteId, cart, orderEntry, qty, pickupStore, putMode),
+				CartModificationWsDTO.class, fields);
+	}
+
+	protected CartModificationData updateCartEntryData(final String baseSiteId, final CartData cart,
+			final OrderEntryData orderEntry, final Long qty, final String pickupStore, final boolean putMode)
+			throws CommerceCartModificationException
 	{
 		final long entryNumber = orderEntry.getEntryNumber().longValue();
 		final String productCode = orderEntry.getProduct().getCode();
@@ -310,7 +494,6 @@ public class CartEntriesController extends BaseCommerceController
 			cartModificationData2 = getCartFacade().updateCartEntry(entryNumber, qty);
 		}
 
-		return getDataMapper()
-				.map(mergeCartModificationData(cartModificationData1, cartModificationData2), CartModificationWsDTO.class, fields);
+		return mergeCartModificationData(cartModificationData1, cartModificationData2);
 	}
 }
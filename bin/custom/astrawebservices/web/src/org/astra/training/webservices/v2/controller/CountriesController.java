@@ -12,6 +12,7 @@ import de.hybris.platform.webservicescommons.cache.CacheControl;
 import de.hybris.platform.webservicescommons.cache.CacheControlDirective;
 import de.hybris.platform.webservicescommons.swagger.ApiBaseSiteIdParam;
 import de.hybris.platform.webservicescommons.swagger.ApiFieldsParam;
+import org.astra.training.webservices.cache.ConditionalGet;
 import org.astra.training.webservices.user.data.CountryDataList;
 import org.astra.training.webservices.user.data.RegionDataList;
 
@@ -39,6 +40,7 @@ import io.swagger.annotations.ApiParam;
 @Controller
 @RequestMapping(value = "/{baseSiteId}/countries")
 @CacheControl(directive = CacheControlDirective.PRIVATE, maxAge = 120)
+@ConditionalGet(types = { "Country", "Region", "BaseStore" })
 @Api(tags = "Countries")
 public class CountriesController extends BaseCommerceController
 {
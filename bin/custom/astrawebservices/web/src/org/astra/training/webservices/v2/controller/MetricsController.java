@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.v2.controller;
+
+import de.hybris.platform.webservicescommons.cache.CacheControl;
+import de.hybris.platform.webservicescommons.cache.CacheControlDirective;
+import org.astra.training.webservices.metrics.WsEndpointMetrics;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.http.MediaType;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import io.swagger.annotations.ApiOperation;
+
+
+/**
+ * Serves the endpoint metrics as plain text to trusted clients, for monitoring agents and for looking at them without a
+ * JMX console.
+ */
+@Controller
+@RequestMapping(value = "/monitoring")
+@CacheControl(directive = CacheControlDirective.NO_CACHE)
+public class MetricsController extends BaseController
+{
+	@Resource(name = "wsEndpointMetrics")
+	private WsEndpointMetrics wsEndpointMetrics;
+
+	@Secured("ROLE_TRUSTED_CLIENT")
+	@GetMapping(value = "/endpoints", produces = MediaType.TEXT_PLAIN_VALUE)
+	@ApiOperation(hidden = true, value = "Get the latencies and response sizes of the endpoints.", notes = "Returns one line per endpoint and status, followed by the sampled slow requests. Only available to trusted clients.")
+	public void getEndpointMetrics(final HttpServletResponse response) throws IOException
+	{
+		response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		final PrintWriter writer = response.getWriter();
+		writer.print(wsEndpointMetrics.getSummary());
+		writer.println();
+		writer.println("slow requests: " + wsEndpointMetrics.getSlowRequestCount() + ", threshold ms: "
+				+ wsEndpointMetrics.getSlowThresholdMillis());
+		for (final String sample : wsEndpointMetrics.getSlowRequestSamples())
+		{
+			writer.println(sample);
+		}
+		writer.flush();
+	}
+}
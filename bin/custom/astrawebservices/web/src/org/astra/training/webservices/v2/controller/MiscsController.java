@@ -15,6 +15,7 @@ import de.hybris.platform.webservicescommons.cache.CacheControl;
 import de.hybris.platform.webservicescommons.cache.CacheControlDirective;
 import de.hybris.platform.webservicescommons.swagger.ApiBaseSiteIdParam;
 import de.hybris.platform.webservicescommons.swagger.ApiFieldsParam;
+import org.astra.training.webservices.cache.ConditionalGet;
 import org.astra.training.webservices.order.data.CardTypeDataList;
 import org.astra.training.webservices.storesession.data.CurrencyDataList;
 import org.astra.training.webservices.storesession.data.LanguageDataList;
@@ -39,6 +40,7 @@ import io.swagger.annotations.ApiOperation;
  */
 @Controller
 @CacheControl(directive = CacheControlDirective.PUBLIC, maxAge = 1800)
+@ConditionalGet(types = { "BaseSite", "BaseStore", "Language", "Currency", "Country", "Title" })
 @Api(tags = "Miscs")
 public class MiscsController extends BaseController
 {
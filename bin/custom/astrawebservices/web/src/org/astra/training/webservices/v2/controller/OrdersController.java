@@ -36,6 +36,7 @@ import javax.ws.rs.core.MediaType;
 
 import java.util.List;
 
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cache.annotation.Cacheable;
@@ -135,17 +136,23 @@ public class OrdersController extends BaseCommerceController
 	@CacheControl(directive = CacheControlDirective.PUBLIC, maxAge = 120)
 	@RequestMapping(value = "/users/{userId}/orders", method = RequestMethod.GET)
 	@ResponseBody
-	@ApiOperation(nickname = "getUserOrderHistory", value = "Get order history for user.", notes = "Returns order history data for all orders placed by a specified user for a specified base store. The response can display the results across multiple pages, if required.")
+	@ApiOperation(nickname = "getUserOrderHistory", value = "Get order history for user.", notes = "Returns order history data for all orders placed by a specified user for a specified base store. The response can display the results across multiple pages, if required. When a cursor is given, even an empty one, the latest orders come first, the orders are not counted and the response holds the cursor of the next page unless it is the last one; currentPage and sort are ignored then.")
 	@ApiBaseSiteIdAndUserIdParam
 	public OrderHistoryListWsDTO getUserOrderHistory(
 			@ApiParam(value = "Filters only certain order statuses. For example, statuses=CANCELLED,CHECKED_VALID would only return orders with status CANCELLED or CHECKED_VALID.") @RequestParam(required = false) final String statuses,
 			@ApiParam(value = "The current result page requested.") @RequestParam(defaultValue = DEFAULT_CURRENT_PAGE) final int currentPage,
 			@ApiParam(value = "The number of results returned per page.") @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) final int pageSize,
 			@ApiParam(value = "Sorting method applied to the return results.") @RequestParam(required = false) final String sort,
+			@ApiParam(value = "Cursor of the page requested, as returned in nextCursor with the previous page. Empty for the first page.") @RequestParam(required = false) final String cursor,
 			@ApiFieldsParam @RequestParam(defaultValue = DEFAULT_FIELD_SET) final String fields, final HttpServletResponse response)
 	{
 		validateStatusesEnumValue(statuses);
 
+		if (cursor != null)
+		{
+			return ordersHelper.searchOrderHistory(statuses, cursor, pageSize, addNextCursorField(fields));
+		}
+
 		final OrderHistoryListWsDTO orderHistoryList = ordersHelper
 				.searchOrderHistory(statuses, currentPage, pageSize, sort, addPaginationField(fields));
 
@@ -155,6 +162,12 @@ public class OrdersController extends BaseCommerceController
 	}
 
 
+	protected String addNextCursorField(final String fields)
+	{
+		return StringUtils.isNotBlank(fields) ? fields + ",nextCursor" : "nextCursor";
+	}
+
+
 	@Secured({ "ROLE_CUSTOMERGROUP", "ROLE_TRUSTED_CLIENT", "ROLE_CUSTOMERMANAGERGROUP" })
 	@RequestMapping(value = "/users/{userId}/orders", method = RequestMethod.HEAD)
 	@ResponseBody
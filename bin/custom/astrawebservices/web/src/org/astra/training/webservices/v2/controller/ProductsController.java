@@ -20,6 +20,7 @@ import de.hybris.platform.commercefacades.storefinder.StoreFinderStockFacade;
 import de.hybris.platform.commercefacades.storefinder.data.StoreFinderStockSearchPageData;
 import de.hybris.platform.commerceservices.search.facetdata.ProductSearchPageData;
 import de.hybris.platform.commerceservices.search.pagedata.PageableData;
+import de.hybris.platform.commerceservices.search.pagedata.SearchPageData;
 import de.hybris.platform.commerceservices.store.data.GeoPoint;
 import de.hybris.platform.commercewebservicescommons.dto.product.ProductReferenceListWsDTO;
 import de.hybris.platform.commercewebservicescommons.dto.product.ProductWsDTO;
@@ -33,17 +34,24 @@ import de.hybris.platform.commercewebservicescommons.dto.store.StoreFinderStockS
 import de.hybris.platform.commercewebservicescommons.errors.exceptions.RequestParameterException;
 import de.hybris.platform.commercewebservicescommons.errors.exceptions.StockSystemException;
 import de.hybris.platform.converters.Populator;
+import de.hybris.platform.servicelayer.config.ConfigurationService;
 import de.hybris.platform.webservicescommons.cache.CacheControl;
 import de.hybris.platform.webservicescommons.cache.CacheControlDirective;
 import de.hybris.platform.webservicescommons.swagger.ApiBaseSiteIdParam;
 import de.hybris.platform.webservicescommons.swagger.ApiFieldsParam;
+import org.astra.training.webservices.cache.ConditionalGet;
 import org.astra.training.webservices.formatters.WsDateFormatter;
 import org.astra.training.webservices.product.data.ReviewDataList;
 import org.astra.training.webservices.product.data.SuggestionDataList;
+import org.astra.training.webservices.product.reference.PagedProductReferenceFacade;
 import org.astra.training.webservices.queues.data.ProductExpressUpdateElementData;
 import org.astra.training.webservices.queues.data.ProductExpressUpdateElementDataList;
 import org.astra.training.webservices.queues.impl.ProductExpressUpdateQueue;
 import org.astra.training.webservices.stock.CommerceStockFacade;
+import org.astra.training.webservices.stock.data.ProductStockDataList;
+import org.astra.training.webservices.stock.dto.ProductStockListWsDTO;
+import org.astra.training.webservices.suggestion.ProductSuggestionIndexService;
+import org.astra.training.webservices.suggestion.WsSuggestionStatistics;
 import org.astra.training.webservices.v2.helper.ProductsHelper;
 import org.astra.training.webservices.validator.PointOfServiceValidator;
 
@@ -101,10 +109,13 @@ import io.swagger.annotations.Authorization;
 public class ProductsController extends BaseController
 {
 	private static final EnumSet<ProductOption> PRODUCT_OPTIONS_SET = EnumSet.allOf(ProductOption.class);
-	private static final String MAX_INTEGER = "2147483647";
 	private static final int CATALOG_ID_POS = 0;
 	private static final int CATALOG_VERSION_POS = 1;
 	private static final String COMMA_SEPARATOR = ",";
+	private static final String STOCK_BATCH_MAX_PRODUCTS = "astrawebservices.stock.batch.maxproducts";
+	private static final int DEFAULT_STOCK_BATCH_MAX_PRODUCTS = 50;
+	private static final String REFERENCES_MAX_PAGE_SIZE = "astrawebservices.product.references.pagesize.max";
+	private static final int DEFAULT_REFERENCES_MAX_PAGE_SIZE = 100;
 	private static final Logger LOG = LoggerFactory.getLogger(ProductsController.class);
 
 	@Resource(name = "storeFinderStockFacade")
@@ -131,6 +142,14 @@ public class ProductsController extends BaseController
 	private CatalogFacade catalogFacade;
 	@Resource(name = "productsHelper")
 	private ProductsHelper productsHelper;
+	@Resource(name = "configurationService")
+	private ConfigurationService configurationService;
+	@Resource(name = "pagedProductReferenceFacade")
+	private PagedProductReferenceFacade pagedProductReferenceFacade;
+	@Resource(name = "productSuggestionIndexService")
+	private ProductSuggestionIndexService productSuggestionIndexService;
+	@Resource(name = "wsSuggestionStatistics")
+	private WsSuggestionStatistics wsSuggestionStatistics;
 
 	@RequestMapping(value = "/search", method = RequestMethod.GET)
 	@ResponseBody
@@ -169,8 +188,10 @@ public class ProductsController extends BaseController
 
 	@RequestMapping(value = "/{productCode}", method = RequestMethod.GET)
 	@CacheControl(directive = CacheControlDirective.PRIVATE, maxAge = 120)
-	@Cacheable(value = "productCache", key = "T(de.hybris.platform.commercewebservicescommons.cache.CommerceCacheKeyGenerator).generateKey(true,true,#productCode,#fields)")
+	@Cacheable(value = "productCache", key = "T(de.hybris.platform.commercewebservicescommons.cache.CommerceCacheKeyGenerator).generateKey(true,true,#productCode,#fields,@cacheGenerationService.getGeneration('product',#productCode))")
 	@ResponseBody
+	@ConditionalGet(productCodeVariable = "productCode", types = { "AbstractPromotion", "PromotionGroup",
+			"AbstractPromotionRestriction", "Category", "CategoryCategoryRelation" })
 	@ApiOperation(nickname = "getProduct", value = "Get product details.", notes = "Returns details of a single product according to a product code.")
 	@ApiBaseSiteIdParam
 	public ProductWsDTO getProduct(@ApiParam(value = "Product identifier", required = true) @PathVariable final String productCode,
@@ -182,6 +203,39 @@ public class ProductsController extends BaseController
 	}
 
 
+	// only requests listing product codes are batch lookups, /stock alone stays the product with code "stock"
+	@RequestMapping(value = "/stock", method = RequestMethod.GET, params = "productCodes")
+	@ResponseBody
+	@ApiOperation(nickname = "getProductsStock", value = "Get the stock levels of several products.", notes =
+			"Returns the stock levels of several products at once. Without store names the stock of the base store is "
+					+ "returned for every product, otherwise the stock of every product in every given store.")
+	public ProductStockListWsDTO getProductsStock(
+			@ApiParam(value = "Base site identifier", required = true) @PathVariable final String baseSiteId,
+			@ApiParam(value = "Comma-separated list of product identifiers", required = true) @RequestParam final List<String> productCodes,
+			@ApiParam(value = "Comma-separated list of store identifiers") @RequestParam(required = false) final List<String> storeNames,
+			@ApiFieldsParam @RequestParam(defaultValue = DEFAULT_FIELD_SET) final String fields)
+	{
+		final int maxProducts = configurationService.getConfiguration().getInt(STOCK_BATCH_MAX_PRODUCTS,
+				DEFAULT_STOCK_BATCH_MAX_PRODUCTS);
+		if (productCodes.isEmpty() || productCodes.size() > maxProducts)
+		{
+			throw new RequestParameterException("Between 1 and " + maxProducts + " product codes are allowed",
+					RequestParameterException.INVALID, "productCodes");
+		}
+		if (storeNames != null)
+		{
+			storeNames.forEach(storeName -> validate(storeName, "storeName", pointOfServiceValidator));
+		}
+		if (!commerceStockFacade.isStockSystemEnabled(baseSiteId))
+		{
+			throw new StockSystemException("Stock system is not enabled on this site", StockSystemException.NOT_ENABLED, baseSiteId);
+		}
+		final ProductStockDataList stockDataList = commerceStockFacade.getStockDataForProducts(baseSiteId, productCodes,
+				storeNames);
+		return getDataMapper().map(stockDataList, ProductStockListWsDTO.class, fields);
+	}
+
+
 	@RequestMapping(value = "/{productCode}/stock/{storeName}", method = RequestMethod.GET)
 	@ResponseBody
 	@ApiOperation(nickname = "getStoreProductStock", value = "Get a product's stock level for a store", notes = "Returns a product's stock level for a particular store (in other words, for a particular point of sale).")
@@ -329,25 +383,40 @@ public class ProductsController extends BaseController
 
 	@RequestMapping(value = "/{productCode}/references", method = RequestMethod.GET)
 	@ResponseBody
-	@ApiOperation(nickname = "getProductReferences", value = "Get a product reference", notes = "Returns references for a product with a given product code. Reference type specifies which references to return.")
+	@ApiOperation(nickname = "getProductReferences", value = "Get a product reference", notes = "Returns references for a product with a given product code. Reference type specifies which references to return. "
+			+ "References are returned page by page, the total number of references is returned in the X-Total-Count header.")
 	@ApiBaseSiteIdParam
 	public ProductReferenceListWsDTO getProductReferences(
 			@ApiParam(value = "Product identifier", required = true) @PathVariable final String productCode,
-			@ApiParam(value = "Maximum size of returned results.") @RequestParam(required = false, defaultValue = MAX_INTEGER) final int pageSize,
+			@ApiParam(value = "Maximum size of returned results. Limited by the configured maximum page size, which is also the default.") @RequestParam(required = false) final Integer pageSize,
+			@ApiParam(value = "The current result page requested.") @RequestParam(defaultValue = DEFAULT_CURRENT_PAGE) final int currentPage,
 			@ApiParam(value = "Comma-separated list of reference types according to enum ProductReferenceTypeEnum. If not specified, all types of product references will be used.") @RequestParam(required = false) final String referenceType,
-			@ApiFieldsParam @RequestParam(defaultValue = DEFAULT_FIELD_SET) final String fields)
+			@ApiFieldsParam @RequestParam(defaultValue = DEFAULT_FIELD_SET) final String fields, final HttpServletResponse response)
 	{
-		final List<ProductOption> opts = Lists.newArrayList(PRODUCT_OPTIONS_SET);
+		final int maxPageSize = configurationService.getConfiguration().getInt(REFERENCES_MAX_PAGE_SIZE,
+				DEFAULT_REFERENCES_MAX_PAGE_SIZE);
+		if (pageSize != null && pageSize.intValue() <= 0)
+		{
+			throw new RequestParameterException("Page size must be positive", RequestParameterException.INVALID, "pageSize");
+		}
+		if (currentPage < 0)
+		{
+			throw new RequestParameterException("Current page must not be negative", RequestParameterException.INVALID,
+					"currentPage");
+		}
+		final int effectivePageSize = pageSize == null ? maxPageSize : Math.min(pageSize.intValue(), maxPageSize);
 
 		final List<ProductReferenceTypeEnum> productReferenceTypeList = StringUtils.isNotEmpty(referenceType) ?
 				getProductReferenceTypeEnums(referenceType) :
 				List.of(ProductReferenceTypeEnum.values());
 
-		final List<ProductReferenceData> productReferences = productFacade
-				.getProductReferencesForCode(productCode, productReferenceTypeList, opts, Integer.valueOf(pageSize));
+		final SearchPageData<ProductReferenceData> productReferences = pagedProductReferenceFacade
+				.getProductReferencesForCode(productCode, productReferenceTypeList, PRODUCT_OPTIONS_SET,
+						createPageableData(currentPage, effectivePageSize, null));
 		final ProductReferencesData productReferencesData = new ProductReferencesData();
-		productReferencesData.setReferences(productReferences);
+		productReferencesData.setReferences(productReferences.getResults());
 
+		setTotalCountHeader(response, productReferences.getPagination());
 		return getDataMapper().map(productReferencesData, ProductReferenceListWsDTO.class, fields);
 	}
 
@@ -380,7 +449,8 @@ public class ProductsController extends BaseController
 
 	@RequestMapping(value = "/suggestions", method = RequestMethod.GET)
 	@ResponseBody
-	@ApiOperation(nickname = "getSuggestions", value = "Get a list of available suggestions", notes = "Returns a list of all available suggestions related to a given term and limits the results to a specific value of the max parameter.")
+	@ApiOperation(nickname = "getSuggestions", value = "Get a list of available suggestions", notes = "Returns a list of all available suggestions related to a given term and limits the results to a specific value of the max parameter. "
+			+ "Suggestions are taken from the product names and manufacturers of the site, the search backend is asked only if none of them matches.")
 	@ApiBaseSiteIdParam
 	public SuggestionListWsDTO getSuggestions(@ApiParam(value = "Specified term", required = true) @RequestParam final String term,
 			@ApiParam(value = "Specifies the limit of results.") @RequestParam(defaultValue = "10") final int max,
@@ -389,17 +459,33 @@ public class ProductsController extends BaseController
 		final List<SuggestionData> suggestions = new ArrayList<>();
 		final SuggestionDataList suggestionDataList = new SuggestionDataList();
 
-		List<AutocompleteSuggestionData> autoSuggestions = productSearchFacade.getAutocompleteSuggestions(term);
-		if (max < autoSuggestions.size())
+		final long start = System.nanoTime();
+		final List<String> indexedSuggestions = productSuggestionIndexService.getSuggestions(term, max);
+		if (!indexedSuggestions.isEmpty())
 		{
-			autoSuggestions = autoSuggestions.subList(0, max);
+			for (final String indexedSuggestion : indexedSuggestions)
+			{
+				final SuggestionData suggestionData = new SuggestionData();
+				suggestionData.setValue(indexedSuggestion);
+				suggestions.add(suggestionData);
+			}
+			wsSuggestionStatistics.recordHit(System.nanoTime() - start);
 		}
-
-		for (final AutocompleteSuggestionData autoSuggestion : autoSuggestions)
+		else
 		{
-			final SuggestionData suggestionData = new SuggestionData();
-			suggestionData.setValue(autoSuggestion.getTerm());
-			suggestions.add(suggestionData);
+			List<AutocompleteSuggestionData> autoSuggestions = productSearchFacade.getAutocompleteSuggestions(term);
+			if (max < autoSuggestions.size())
+			{
+				autoSuggestions = autoSuggestions.subList(0, max);
+			}
+
+			for (final AutocompleteSuggestionData autoSuggestion : autoSuggestions)
+			{
+				final SuggestionData suggestionData = new SuggestionData();
+				suggestionData.setValue(autoSuggestion.getTerm());
+				suggestions.add(suggestionData);
+			}
+			wsSuggestionStatistics.recordMiss(System.nanoTime() - start);
 		}
 		suggestionDataList.setSuggestions(suggestions);
 
@@ -57,7 +57,7 @@ public class PromotionsController extends BaseController
 	@Secured("ROLE_TRUSTED_CLIENT")
 	@RequestMapping(method = RequestMethod.GET)
 	@ResponseBody
-	@Cacheable(value = "promotionCache", key = "T(de.hybris.platform.commercewebservicescommons.cache.CommerceCacheKeyGenerator).generateKey(false,true,'getPromotions',#type,#promotionGroup,#fields)")
+	@Cacheable(value = "promotionCache", key = "T(de.hybris.platform.commercewebservicescommons.cache.CommerceCacheKeyGenerator).generateKey(false,true,'getPromotions',#type,#promotionGroup,#fields,@cacheGenerationService.getGeneration('promotion'))")
 	@ApiOperation(nickname = "getPromotions", value = "Get a list of promotions.", notes =
 			"Returns promotions defined for a current base site. Requests pertaining to promotions have been developed "
 					+ "for the previous version of promotions and vouchers and therefore some of them are currently not compatible with the new promotion engine.", authorizations = {
@@ -78,7 +78,7 @@ public class PromotionsController extends BaseController
 
 	@Secured("ROLE_TRUSTED_CLIENT")
 	@RequestMapping(value = "/{code}", method = RequestMethod.GET)
-	@Cacheable(value = "promotionCache", key = "T(de.hybris.platform.commercewebservicescommons.cache.CommerceCacheKeyGenerator).generateKey(false,true,'getPromotions',#code,#fields)")
+	@Cacheable(value = "promotionCache", key = "T(de.hybris.platform.commercewebservicescommons.cache.CommerceCacheKeyGenerator).generateKey(false,true,'getPromotions',#code,#fields,@cacheGenerationService.getGeneration('promotion'))")
 	@ResponseBody
 	@ApiOperation(nickname = "getPromotion", value = "Get a promotion based on code", notes =
 			"Returns details of a single promotion specified by a promotion code. Requests pertaining to "
@@ -16,6 +16,7 @@ import de.hybris.platform.webservicescommons.cache.CacheControl;
 import de.hybris.platform.webservicescommons.cache.CacheControlDirective;
 import de.hybris.platform.webservicescommons.swagger.ApiBaseSiteIdParam;
 import de.hybris.platform.webservicescommons.swagger.ApiFieldsParam;
+import org.astra.training.webservices.cache.ConditionalGet;
 import org.astra.training.webservices.store.data.StoreCountListData;
 import org.astra.training.webservices.v2.helper.StoresHelper;
 
@@ -36,6 +37,7 @@ import io.swagger.annotations.ApiParam;
 
 @Controller
 @CacheControl(directive = CacheControlDirective.PUBLIC, maxAge = 1800)
+@ConditionalGet(types = { "PointOfService", "OpeningSchedule", "OpeningDay", "BaseStore" })
 @RequestMapping(value = "/{baseSiteId}/stores")
 @Api(tags = "Stores")
 public class StoresController extends BaseController
@@ -5,6 +5,8 @@ package org.astra.training.webservices.v2.filter;
 
 import javax.servlet.http.HttpServletRequest;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -13,13 +15,17 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 
 /**
- * Abstract matching filter that helps parsing urls.
+ * Abstract matching filter that helps parsing urls. Regular expressions are compiled once and reused for every request;
+ * requests of the common <code>/{baseSiteId}/users/{userId}/carts/{cartId}</code> shape can be served from the shared
+ * {@link UrlPathSegments} instead.
  */
 public abstract class AbstractUrlMatchingFilter extends OncePerRequestFilter
 {
 
 	public static final String BASE_SITES_ENDPOINT_PATH = "/basesites";
 
+	private final Map<String, Pattern> patterns = new ConcurrentHashMap<>();
+
 	protected boolean matchesUrl(final HttpServletRequest request, final String regexp)
 	{
 		final Matcher matcher = getMatcher(request, regexp);
@@ -63,9 +69,17 @@ public abstract class AbstractUrlMatchingFilter extends OncePerRequestFilter
 
 	protected Matcher getMatcher(final HttpServletRequest request, final String regexp)
 	{
-		final Pattern pattern = Pattern.compile(regexp);
-		final String path = getPath(request);
-		return pattern.matcher(path);
+		return getPattern(regexp).matcher(getPath(request));
+	}
+
+	protected Pattern getPattern(final String regexp)
+	{
+		return patterns.computeIfAbsent(regexp, Pattern::compile);
+	}
+
+	protected UrlPathSegments getPathSegments(final HttpServletRequest request)
+	{
+		return UrlPathSegments.forRequest(request);
 	}
 
 	protected String getPath(final HttpServletRequest request)
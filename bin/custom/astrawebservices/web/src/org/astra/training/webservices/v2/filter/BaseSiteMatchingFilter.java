@@ -33,7 +33,7 @@ public class BaseSiteMatchingFilter extends AbstractUrlMatchingFilter
 	protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
 			final FilterChain filterChain) throws ServletException, IOException
 	{
-		final String baseSiteID = getBaseSiteValue(request, regexp);
+		final String baseSiteID = getBaseSiteId(request);
 
 		if (baseSiteID != null)
 		{
@@ -58,6 +58,22 @@ public class BaseSiteMatchingFilter extends AbstractUrlMatchingFilter
 		filterChain.doFilter(request, response);
 	}
 
+	protected String getBaseSiteId(final HttpServletRequest request)
+	{
+		if (UrlPathSegments.BASE_SITE_REGEXP.equals(regexp))
+		{
+			return BASE_SITES_ENDPOINT_PATH.equals(getPath(request)) ? null : getPathSegments(request).getBaseSiteId();
+		}
+		return getBaseSiteValue(request, regexp);
+	}
+
+	@Override
+	protected void initFilterBean() throws ServletException
+	{
+		super.initFilterBean();
+		getPattern(regexp);
+	}
+
 	protected String getRegexp()
 	{
 		return regexp;
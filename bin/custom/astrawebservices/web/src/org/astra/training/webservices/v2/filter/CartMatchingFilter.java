@@ -29,15 +29,31 @@ public class CartMatchingFilter extends AbstractUrlMatchingFilter
 	protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
 			final FilterChain filterChain) throws ServletException, IOException
 	{
-		if (matchesUrl(request, regexp))
+		final String cartId = getCartId(request);
+		if (cartId != null)
 		{
-			final String cartId = getValue(request, regexp);
 			cartLoaderStrategy.loadCart(cartId, shouldCartBeRefreshed(request));
 		}
 
 		filterChain.doFilter(request, response);
 	}
 
+	protected String getCartId(final HttpServletRequest request)
+	{
+		if (UrlPathSegments.CART_REGEXP.equals(regexp))
+		{
+			return getPathSegments(request).getCartId();
+		}
+		return getValue(request, regexp);
+	}
+
+	@Override
+	protected void initFilterBean() throws ServletException
+	{
+		super.initFilterBean();
+		getPattern(regexp);
+	}
+
 	protected boolean shouldCartBeRefreshed(final HttpServletRequest request)
 	{
 		final String refreshParam = request.getParameter(REFRESH_CART_PARAM);
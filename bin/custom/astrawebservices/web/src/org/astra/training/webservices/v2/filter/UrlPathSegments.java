@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.v2.filter;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.lang3.StringUtils;
+
+
+/**
+ * Path values of the common <code>/{baseSiteId}/users/{userId}/carts/{cartId}</code> request shape, extracted without
+ * regular expressions. The result is parsed once per request and shared by {@link BaseSiteMatchingFilter},
+ * {@link UserMatchingFilter} and {@link CartMatchingFilter} through a request attribute. Each value is exactly what the
+ * corresponding default regular expression would extract.
+ */
+public final class UrlPathSegments
+{
+	/**
+	 * Default base site expression of {@link BaseSiteMatchingFilter}, answered by {@link #getBaseSiteId()}.
+	 */
+	public static final String BASE_SITE_REGEXP = "^/(?!(swagger)|(.*api-docs)|(csrf)|(webjars)|(monitoring))([^/]+)";
+	/**
+	 * Default user expression of {@link UserMatchingFilter}, answered by {@link #getUserId()}.
+	 */
+	public static final String USER_REGEXP = "^/[^/]+/(?:users|orgUsers)/([^/]+)";
+	/**
+	 * Default cart expression of {@link CartMatchingFilter}, answered by {@link #getCartId()}.
+	 */
+	public static final String CART_REGEXP = "^/[^/]+/(?:users|orgUsers)/[^/]+/carts/([^/]+)";
+
+	private static final String REQUEST_ATTRIBUTE = UrlPathSegments.class.getName();
+	private static final int MAX_SEGMENTS = 5;
+	private static final String[] EXCLUDED_BASE_SITE_PREFIXES = { "swagger", "csrf", "webjars", "monitoring" };
+	private static final String API_DOCS = "api-docs";
+
+	private final String baseSiteId;
+	private final String userId;
+	private final String cartId;
+
+	private UrlPathSegments(final String baseSiteId, final String userId, final String cartId)
+	{
+		this.baseSiteId = baseSiteId;
+		this.userId = userId;
+		this.cartId = cartId;
+	}
+
+	/**
+	 * Returns the path segments of the given request, parsing the path info on first access only.
+	 *
+	 * @param request
+	 * 		the current request
+	 * @return the parsed path segments
+	 */
+	public static UrlPathSegments forRequest(final HttpServletRequest request)
+	{
+		final Object cached = request.getAttribute(REQUEST_ATTRIBUTE);
+		if (cached instanceof UrlPathSegments)
+		{
+			return (UrlPathSegments) cached;
+		}
+
+		final UrlPathSegments segments = parse(StringUtils.defaultString(request.getPathInfo()));
+		request.setAttribute(REQUEST_ATTRIBUTE, segments);
+		return segments;
+	}
+
+	/**
+	 * Parses the given path.
+	 *
+	 * @param path
+	 * 		path info of a request
+	 * @return the parsed path segments
+	 */
+	public static UrlPathSegments parse(final String path)
+	{
+		if (path.isEmpty() || path.charAt(0) != '/')
+		{
+			return new UrlPathSegments(null, null, null);
+		}
+
+		final String[] segments = new String[MAX_SEGMENTS];
+		final int count = split(path, segments);
+
+		final String site = count > 0 && !segments[0].isEmpty() && !isExcludedFromBaseSite(path) ? segments[0] : null;
+		final boolean usersPath = count > 2 && !segments[0].isEmpty() && isUsersSegment(segments[1])
+				&& !segments[2].isEmpty();
+		final String user = usersPath ? segments[2] : null;
+		final String cart = usersPath && count > 4 && "carts".equals(segments[3]) && !segments[4].isEmpty() ? segments[4] : null;
+		return new UrlPathSegments(site, user, cart);
+	}
+
+	/**
+	 * Splits the path (starting with a slash) into at most {@link #MAX_SEGMENTS} leading segments.
+	 */
+	private static int split(final String path, final String[] segments)
+	{
+		int count = 0;
+		int start = 1;
+		while (count < segments.length && start <= path.length())
+		{
+			final int end = path.indexOf('/', start);
+			if (end < 0)
+			{
+				segments[count++] = path.substring(start);
+				break;
+			}
+			segments[count++] = path.substring(start, end);
+			start = end + 1;
+		}
+		return count;
+	}
+
+	private static boolean isExcludedFromBaseSite(final String path)
+	{
+		for (final String prefix : EXCLUDED_BASE_SITE_PREFIXES)
+		{
+			if (path.startsWith(prefix, 1))
+			{
+				return true;
+			}
+		}
+		return path.indexOf(API_DOCS, 1) >= 0;
+	}
+
+	private static boolean isUsersSegment(final String segment)
+	{
+		return "users".equals(segment) || "orgUsers".equals(segment);
+	}
+
+	public String getBaseSiteId()
+	{
+		return baseSiteId;
+	}
+
+	public String getUserId()
+	{
+		return userId;
+	}
+
+	public String getCartId()
+	{
+		return cartId;
+	}
+}
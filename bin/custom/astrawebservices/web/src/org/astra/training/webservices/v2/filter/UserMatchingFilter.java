@@ -109,7 +109,9 @@ public class UserMatchingFilter extends AbstractUrlMatchingFilter
 	protected String getUserIdFromRequest(final HttpServletRequest request, final Authentication auth)
 	{
 		// try to get the userId from the request path
-		String userID = getValue(request, regexp);
+		String userID = UrlPathSegments.USER_REGEXP.equals(regexp) ?
+				getPathSegments(request).getUserId() :
+				getValue(request, regexp);
 
 		// if the userId was not in the path, try to find the custom http header for the userId,
 		// but only if a customer manager emulates a customer
@@ -171,6 +173,13 @@ public class UserMatchingFilter extends AbstractUrlMatchingFilter
 		return Optional.empty();
 	}
 
+	@Override
+	protected void initFilterBean() throws ServletException
+	{
+		super.initFilterBean();
+		getPattern(regexp);
+	}
+
 	protected Authentication getAuth()
 	{
 		return SecurityContextHolder.getContext().getAuthentication();
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.v2.helper;
+
+import de.hybris.platform.commercefacades.catalog.data.CatalogData;
+import de.hybris.platform.commercefacades.catalog.data.CatalogVersionData;
+import de.hybris.platform.commercefacades.catalog.data.CatalogsData;
+import de.hybris.platform.commercefacades.catalog.data.CategoryHierarchyData;
+import de.hybris.platform.commercewebservicescommons.dto.catalog.CatalogListWsDTO;
+import de.hybris.platform.commercewebservicescommons.dto.catalog.CatalogVersionWsDTO;
+import de.hybris.platform.commercewebservicescommons.dto.catalog.CatalogWsDTO;
+import de.hybris.platform.commercewebservicescommons.dto.catalog.CategoryHierarchyWsDTO;
+import de.hybris.platform.webservicescommons.mapping.DataMapper;
+import de.hybris.platform.webservicescommons.mapping.FieldSetBuilder;
+import de.hybris.platform.webservicescommons.mapping.impl.FieldSetBuilderContext;
+import org.astra.training.webservices.catalog.CatalogHierarchyFacade;
+
+import javax.annotation.Resource;
+
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Maps catalogs and category hierarchies. The mapped DTOs are cached per field set; keys carry the hierarchy stamp of
+ * the {@link CatalogHierarchyFacade}, so changed hierarchies are mapped again.
+ */
+@Component
+public class CatalogsHelper extends AbstractHelper
+{
+	@Resource(name = "catalogHierarchyFacade")
+	private CatalogHierarchyFacade catalogHierarchyFacade;
+	@Resource(name = "fieldSetBuilder")
+	private FieldSetBuilder fieldSetBuilder;
+
+	@Cacheable(value = "catalogCache", key = "T(de.hybris.platform.commercewebservicescommons.cache.CommerceCacheKeyGenerator).generateKey(false,false,'catalogs',#fields,@catalogHierarchyFacade.getHierarchyStamp())")
+	public CatalogListWsDTO getCatalogs(final String fields)
+	{
+		final List<CatalogData> catalogDataList = catalogHierarchyFacade.getAllProductCatalogsForCurrentSite();
+		final CatalogsData catalogsData = new CatalogsData();
+		catalogsData.setCatalogs(catalogDataList);
+
+		final FieldSetBuilderContext context = new FieldSetBuilderContext();
+		context.setRecurrencyLevel(countRecurrecyLevel(catalogDataList));
+		final Set<String> fieldSet = fieldSetBuilder
+				.createFieldSet(CatalogListWsDTO.class, DataMapper.FIELD_PREFIX, fields, context);
+
+		return getDataMapper().map(catalogsData, CatalogListWsDTO.class, fieldSet);
+	}
+
+	@Cacheable(value = "catalogCache", key = "T(de.hybris.platform.commercewebservicescommons.cache.CommerceCacheKeyGenerator).generateKey(false,false,'catalog',#catalogId,#fields,@catalogHierarchyFacade.getHierarchyStamp())")
+	public CatalogWsDTO getCatalog(final String catalogId, final String fields)
+	{
+		final CatalogData catalogData = catalogHierarchyFacade.getProductCatalogForCurrentSite(catalogId);
+
+		final FieldSetBuilderContext context = new FieldSetBuilderContext();
+		context.setRecurrencyLevel(countRecurrencyForCatalogData(catalogData));
+		final Set<String> fieldSet = fieldSetBuilder.createFieldSet(CatalogWsDTO.class, DataMapper.FIELD_PREFIX, fields, context);
+
+		return getDataMapper().map(catalogData, CatalogWsDTO.class, fieldSet);
+	}
+
+	@Cacheable(value = "catalogCache", key = "T(de.hybris.platform.commercewebservicescommons.cache.CommerceCacheKeyGenerator).generateKey(false,false,'catalogVersion',#catalogId,#catalogVersionId,#fields,@catalogHierarchyFacade.getHierarchyStamp())")
+	public CatalogVersionWsDTO getCatalogVersion(final String catalogId, final String catalogVersionId, final String fields)
+	{
+		final CatalogVersionData catalogVersionData = catalogHierarchyFacade
+				.getProductCatalogVersionForTheCurrentSite(catalogId, catalogVersionId);
+
+		final FieldSetBuilderContext context = new FieldSetBuilderContext();
+		context.setRecurrencyLevel(countRecurrencyForCatalogVersionData(catalogVersionData));
+		final Set<String> fieldSet = fieldSetBuilder
+				.createFieldSet(CatalogVersionWsDTO.class, DataMapper.FIELD_PREFIX, fields, context);
+
+		return getDataMapper().map(catalogVersionData, CatalogVersionWsDTO.class, fieldSet);
+	}
+
+	@Cacheable(value = "catalogCache", key = "T(de.hybris.platform.commercewebservicescommons.cache.CommerceCacheKeyGenerator).generateKey(false,false,'category',#catalogId,#catalogVersionId,#categoryId,#fields,@catalogHierarchyFacade.getHierarchyStamp())")
+	public CategoryHierarchyWsDTO getCategory(final String catalogId, final String catalogVersionId, final String categoryId,
+			final String fields)
+	{
+		final CategoryHierarchyData categoryHierarchyData = catalogHierarchyFacade
+				.getCategoryById(catalogId, catalogVersionId, categoryId);
+
+		final FieldSetBuilderContext context = new FieldSetBuilderContext();
+		context.setRecurrencyLevel(countRecurrencyForCategoryHierarchyData(1, categoryHierarchyData));
+		final Set<String> fieldSet = fieldSetBuilder
+				.createFieldSet(CategoryHierarchyWsDTO.class, DataMapper.FIELD_PREFIX, fields, context);
+
+		return getDataMapper().map(categoryHierarchyData, CategoryHierarchyWsDTO.class, fieldSet);
+	}
+
+	protected int countRecurrecyLevel(final List<CatalogData> catalogDataList)
+	{
+		int recurrencyLevel = 1;
+		int value;
+		for (final CatalogData catalog : catalogDataList)
+		{
+			value = countRecurrencyForCatalogData(catalog);
+			if (value > recurrencyLevel)
+			{
+				recurrencyLevel = value;
+			}
+		}
+		return recurrencyLevel;
+	}
+
+	protected int countRecurrencyForCatalogData(final CatalogData catalog)
+	{
+		int retValue = 1;
+		int value;
+		for (final CatalogVersionData version : catalog.getCatalogVersions())
+		{
+			value = countRecurrencyForCatalogVersionData(version);
+			if (value > retValue)
+			{
+				retValue = value;
+			}
+		}
+		return retValue;
+	}
+
+	protected int countRecurrencyForCatalogVersionData(final CatalogVersionData catalogVersion)
+	{
+		int retValue = 1;
+		int value;
+		for (final CategoryHierarchyData hierarchy : catalogVersion.getCategoriesHierarchyData())
+		{
+			value = countRecurrencyForCategoryHierarchyData(1, hierarchy);
+			if (value > retValue)
+			{
+				retValue = value;
+			}
+		}
+		return retValue;
+	}
+
+	protected int countRecurrencyForCategoryHierarchyData(final int currentValue, final CategoryHierarchyData hierarchy)
+	{
+		int calculatedValue = currentValue + 1;
+		int subcategoryRecurrencyValue;
+		for (final CategoryHierarchyData subcategory : hierarchy.getSubcategories())
+		{
+			subcategoryRecurrencyValue = countRecurrencyForCategoryHierarchyData(calculatedValue, subcategory);
+			if (subcategoryRecurrencyValue > calculatedValue)
+			{
+				calculatedValue = subcategoryRecurrencyValue;
+			}
+		}
+		return calculatedValue;
+	}
+}
@@ -9,10 +9,14 @@ import de.hybris.platform.commercefacades.order.data.OrderHistoryData;
 import de.hybris.platform.commerceservices.search.pagedata.PageableData;
 import de.hybris.platform.commerceservices.search.pagedata.SearchPageData;
 import de.hybris.platform.commercewebservicescommons.dto.order.OrderHistoryListWsDTO;
+import de.hybris.platform.commercewebservicescommons.errors.exceptions.RequestParameterException;
 import de.hybris.platform.core.enums.OrderStatus;
+import de.hybris.platform.webservicescommons.util.YSanitizer;
+import org.astra.training.webservices.order.OrderHistoryFacade;
 
 import javax.annotation.Resource;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -27,8 +31,10 @@ public class OrdersHelper extends AbstractHelper
 {
 	@Resource(name = "orderFacade")
 	private OrderFacade orderFacade;
+	@Resource(name = "orderHistoryFacade")
+	private OrderHistoryFacade orderHistoryFacade;
 
-	@Cacheable(value = "orderCache", key = "T(de.hybris.platform.commercewebservicescommons.cache.CommerceCacheKeyGenerator).generateKey(true,true,'DTO',#statuses,#currentPage,#pageSize,#sort,#fields)")
+	@Cacheable(value = "orderCache", key = "T(de.hybris.platform.commercewebservicescommons.cache.CommerceCacheKeyGenerator).generateKey(true,true,'DTO',#statuses,#currentPage,#pageSize,#sort,#fields,@orderHistoryFacade.getOrderHistoryStamp())")
 	public OrderHistoryListWsDTO searchOrderHistory(final String statuses, final int currentPage, final int pageSize,
 			final String sort, final String fields)
 	{
@@ -36,7 +42,7 @@ public class OrdersHelper extends AbstractHelper
 		return getDataMapper().map(orderHistoriesData, OrderHistoryListWsDTO.class, fields);
 	}
 
-	@Cacheable(value = "orderCache", key = "T(de.hybris.platform.commercewebservicescommons.cache.CommerceCacheKeyGenerator).generateKey(true,true,'Data',#statuses,#currentPage,#pageSize,#sort)")
+	@Cacheable(value = "orderCache", key = "T(de.hybris.platform.commercewebservicescommons.cache.CommerceCacheKeyGenerator).generateKey(true,true,'Data',#statuses,#currentPage,#pageSize,#sort,@orderHistoryFacade.getOrderHistoryStamp())")
 	public OrderHistoriesData searchOrderHistory(final String statuses, final int currentPage, final int pageSize,
 			final String sort)
 	{
@@ -56,6 +62,29 @@ public class OrdersHelper extends AbstractHelper
 		return orderHistoriesData;
 	}
 
+	/**
+	 * Returns a page of the order history starting after the given cursor, without counting the orders. The page holds the
+	 * cursor of the next page unless it is the last one.
+	 */
+	@Cacheable(value = "orderCache", key = "T(de.hybris.platform.commercewebservicescommons.cache.CommerceCacheKeyGenerator).generateKey(true,true,'Keyset',#statuses,#cursor,#pageSize,#fields,@orderHistoryFacade.getOrderHistoryStamp())")
+	public OrderHistoryListWsDTO searchOrderHistory(final String statuses, final String cursor, final int pageSize,
+			final String fields)
+	{
+		final Set<OrderStatus> statusSet = statuses == null ? Collections.emptySet() : extractOrderStatuses(statuses);
+
+		final OrderHistoriesData orderHistoriesData;
+		try
+		{
+			orderHistoriesData = orderHistoryFacade.getOrderHistory(statusSet, cursor, pageSize);
+		}
+		catch (final IllegalArgumentException e)
+		{
+			throw new RequestParameterException("Cursor [" + YSanitizer.sanitize(cursor) + "] is not valid", RequestParameterException.INVALID,
+					"cursor");
+		}
+		return getDataMapper().map(orderHistoriesData, OrderHistoryListWsDTO.class, fields);
+	}
+
 	protected Set<OrderStatus> extractOrderStatuses(final String statuses)
 	{
 		final String[] statusesStrings = statuses.split(ENUM_VALUES_SEPARATOR);
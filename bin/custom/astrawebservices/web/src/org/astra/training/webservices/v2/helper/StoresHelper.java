@@ -26,7 +26,7 @@ public class StoresHelper extends AbstractHelper
 	@Resource(name = "storeFinderFacade")
 	private StoreFinderFacade storeFinderFacade;
 
-	@Cacheable(value = "storeCache", key = "T(de.hybris.platform.commercewebservicescommons.cache.CommerceCacheKeyGenerator).generateKey(false,false,'DTO',#query,#latitude,#longitude,#currentPage,#pageSize,#sort,#radius,#accuracy,#fields)")
+	@Cacheable(value = "storeCache", key = "T(de.hybris.platform.commercewebservicescommons.cache.CommerceCacheKeyGenerator).generateKey(false,false,'DTO',#query,#latitude,#longitude,#currentPage,#pageSize,#sort,#radius,#accuracy,#fields,@cacheGenerationService.getGeneration('store'))")
 	public StoreFinderSearchPageWsDTO locationSearch(final String query, final Double latitude, final Double longitude, //NOSONAR
 			final int currentPage, final int pageSize, final String sort, final double radius, final double accuracy,
 			final String fields)
@@ -36,7 +36,7 @@ public class StoresHelper extends AbstractHelper
 		return getDataMapper().map(result, StoreFinderSearchPageWsDTO.class, fields);
 	}
 
-	@Cacheable(value = "storeCache", key = "T(de.hybris.platform.commercewebservicescommons.cache.CommerceCacheKeyGenerator).generateKey(false,false,'Data',#query,#latitude,#longitude,#currentPage,#pageSize,#sort,#radius,#accuracy)")
+	@Cacheable(value = "storeCache", key = "T(de.hybris.platform.commercewebservicescommons.cache.CommerceCacheKeyGenerator).generateKey(false,false,'Data',#query,#latitude,#longitude,#currentPage,#pageSize,#sort,#radius,#accuracy,@cacheGenerationService.getGeneration('store'))")
 	public StoreFinderSearchPageData<PointOfServiceData> locationSearch(final String query, final Double latitude, //NOSONAR
 			final Double longitude, final int currentPage, final int pageSize, final String sort, final double radius,
 			final double accuracy)
@@ -68,7 +68,7 @@ public class StoresHelper extends AbstractHelper
 		return result;
 	}
 
-	@Cacheable(value = "storeCache", key = "T(de.hybris.platform.commercewebservicescommons.cache.CommerceCacheKeyGenerator).generateKey(false,false,'storeDetails',#storeId,#fields)")
+	@Cacheable(value = "storeCache", key = "T(de.hybris.platform.commercewebservicescommons.cache.CommerceCacheKeyGenerator).generateKey(false,false,'storeDetails',#storeId,#fields,@cacheGenerationService.getGeneration('store'))")
 	public PointOfServiceWsDTO locationDetails(final String storeId, final String fields)
 	{
 		final PointOfServiceData pointOfServiceData = storeFinderFacade.getPointOfServiceForName(storeId);
@@ -19,6 +19,7 @@ public class JsonXStreamMarshallerFactory extends XmlXStreamMarshallerFactory
 	public void afterPropertiesSet() throws Exception
 	{
 		jsonMarshallerInstance = getObjectInternal();
+		warmUpMarshaller(jsonMarshallerInstance);
 	}
 
 	@Override
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.xstream;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.mapper.Mapper;
+
+
+/**
+ * Fills the lazily built metadata caches of a configured {@link XStream} instance: class aliases, converter lookups
+ * and the field dictionary of the reflection provider. Starting from the given types, all types reachable through
+ * their fields are visited. The caches are thread safe, so a warmed instance is shared by all requests instead of
+ * every first request per type paying for the reflection.
+ */
+public class XStreamMetadataWarmer
+{
+	private static final Logger LOG = Logger.getLogger(XStreamMetadataWarmer.class);
+
+	/**
+	 * Warms up the given instance.
+	 *
+	 * @param xStream
+	 * 		fully configured instance
+	 * @param types
+	 * 		types to start from
+	 * @return number of visited types
+	 */
+	public int warmUp(final XStream xStream, final Collection<Class<?>> types)
+	{
+		final Set<Class<?>> visited = new HashSet<>();
+		final Deque<Class<?>> pending = new ArrayDeque<>(types);
+		while (!pending.isEmpty())
+		{
+			final Class<?> type = pending.pop();
+			if (visited.add(type))
+			{
+				warmUpType(xStream, type, pending);
+			}
+		}
+		return visited.size();
+	}
+
+	protected void warmUpType(final XStream xStream, final Class<?> type, final Deque<Class<?>> pending)
+	{
+		final Mapper mapper = xStream.getMapper();
+		mapper.serializedClass(type);
+		try
+		{
+			xStream.getConverterLookup().lookupConverterForType(type);
+		}
+		catch (final RuntimeException e)
+		{
+			// resolved again, and reported, when an instance is actually marshalled
+			LOG.debug("No converter for " + type.getName(), e);
+		}
+
+		if (!isBean(type))
+		{
+			return;
+		}
+
+		// builds the field dictionary of the type and all its superclasses
+		xStream.getReflectionProvider().getFieldOrNull(type, "");
+		for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass())
+		{
+			for (final Field field : current.getDeclaredFields())
+			{
+				if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers()))
+				{
+					mapper.serializedMember(current, field.getName());
+					addReferencedTypes(field.getGenericType(), pending);
+				}
+			}
+		}
+	}
+
+	protected void addReferencedTypes(final Type type, final Deque<Class<?>> pending)
+	{
+		if (type instanceof Class)
+		{
+			final Class<?> clazz = (Class<?>) type;
+			pending.push(clazz.isArray() ? clazz.getComponentType() : clazz);
+		}
+		else if (type instanceof ParameterizedType)
+		{
+			// the raw type selects the collection or map converter, the arguments are the element types
+			final ParameterizedType parameterizedType = (ParameterizedType) type;
+			addReferencedTypes(parameterizedType.getRawType(), pending);
+			for (final Type argument : parameterizedType.getActualTypeArguments())
+			{
+				addReferencedTypes(argument, pending);
+			}
+		}
+	}
+
+	protected boolean isBean(final Class<?> type)
+	{
+		return !type.isPrimitive() && !type.isArray() && !type.isEnum() && !type.isInterface()
+				&& !type.getName().startsWith("java.") && !type.getName().startsWith("javax.");
+	}
+}
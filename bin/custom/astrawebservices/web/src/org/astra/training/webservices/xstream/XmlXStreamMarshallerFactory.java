@@ -13,6 +13,7 @@ import de.hybris.platform.commercefacades.xstream.conv.TypeConverterMapping;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -55,11 +56,59 @@ public class XmlXStreamMarshallerFactory implements FactoryBean, ApplicationCont
 
 	private List<Class<?>> excludeClasses = new ArrayList<>();
 
+	private boolean warmUp;
+
 	@Override
 	public void afterPropertiesSet() throws Exception
 	{
 		xmlMarshallerInstance = getObjectInternal();
 		configureXmlMarshaller(xmlMarshallerInstance);
+		warmUpMarshaller(xmlMarshallerInstance);
+	}
+
+	/**
+	 * Builds the metadata of all registered types and the types reachable from them at startup, if enabled.
+	 */
+	protected void warmUpMarshaller(final XStreamMarshaller marshaller)
+	{
+		if (!isWarmUp())
+		{
+			return;
+		}
+		final long start = System.currentTimeMillis();
+		final int types = new XStreamMetadataWarmer().warmUp(marshaller.getXStream(), getRegisteredTypes());
+		LOG.info("Warmed up " + getClass().getSimpleName() + " marshaller for " + types + " types in "
+				+ (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/**
+	 * Returns all types with an alias, converter, omitted field or implicit collection registered.
+	 */
+	protected Collection<Class<?>> getRegisteredTypes()
+	{
+		final Collection<Class<?>> types = new LinkedHashSet<>();
+		for (final TypeAliasMapping mapping : BeanFactoryUtils.beansOfTypeIncludingAncestors(ctx, TypeAliasMapping.class)
+				.values())
+		{
+			types.add(mapping.getAliasedClass());
+		}
+		for (final TypeConverterMapping mapping : BeanFactoryUtils
+				.beansOfTypeIncludingAncestors(ctx, TypeConverterMapping.class).values())
+		{
+			types.add(mapping.getAliasedClass());
+		}
+		for (final AttributeOmitMapping mapping : BeanFactoryUtils
+				.beansOfTypeIncludingAncestors(ctx, AttributeOmitMapping.class).values())
+		{
+			types.add(mapping.getAliasedClass());
+		}
+		for (final ImplicitCollection mapping : BeanFactoryUtils.beansOfTypeIncludingAncestors(ctx, ImplicitCollection.class)
+				.values())
+		{
+			types.add(mapping.getOwnerType());
+		}
+		types.remove(null);
+		return types;
 	}
 
 	@Override
@@ -311,4 +360,14 @@ public class XmlXStreamMarshallerFactory implements FactoryBean, ApplicationCont
 		this.excludeClasses = excludeClasses;
 	}
 
+	public boolean isWarmUp()
+	{
+		return warmUp;
+	}
+
+	public void setWarmUp(final boolean warmUp)
+	{
+		this.warmUp = warmUp;
+	}
+
 }
@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.cache;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.core.model.c2l.CurrencyModel;
+import de.hybris.platform.core.model.c2l.LanguageModel;
+import de.hybris.platform.core.model.user.UserModel;
+import de.hybris.platform.servicelayer.i18n.CommonI18NService;
+import de.hybris.platform.servicelayer.user.UserService;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+
+@UnitTest
+public class ConditionalGetHandlerInterceptorTest
+{
+	private static final String URI = "/astrawebservices/v2/electronics/products/1234";
+
+	@Mock
+	private VersionStampService versionStampService;
+	@Mock
+	private CommonI18NService commonI18NService;
+	@Mock
+	private UserService userService;
+	@Mock
+	private HttpServletRequest request;
+	@Mock
+	private LanguageModel language;
+	@Mock
+	private CurrencyModel currency;
+	@Mock
+	private UserModel user;
+
+	private ConditionalGetHandlerInterceptor interceptor;
+	private HandlerMethod productHandler;
+
+	@Before
+	public void setUp() throws NoSuchMethodException
+	{
+		MockitoAnnotations.initMocks(this);
+		interceptor = new ConditionalGetHandlerInterceptor();
+		interceptor.setVersionStampService(versionStampService);
+		interceptor.setCommonI18NService(commonI18NService);
+		interceptor.setUserService(userService);
+
+		productHandler = new HandlerMethod(new SampleController(), "getProduct");
+
+		given(request.getMethod()).willReturn("GET");
+		given(request.getRequestURI()).willReturn(URI);
+		given(request.getQueryString()).willReturn("fields=FULL");
+		given(request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE))
+				.willReturn(Collections.singletonMap("productCode", "1234"));
+		given(versionStampService.getProductStamp("1234")).willReturn("p1");
+		given(versionStampService.getTypeStamp(any(String[].class))).willReturn("t1");
+		given(language.getIsocode()).willReturn("en");
+		given(currency.getIsocode()).willReturn("USD");
+		given(user.getUid()).willReturn("anonymous");
+		given(commonI18NService.getCurrentLanguage()).willReturn(language);
+		given(commonI18NService.getCurrentCurrency()).willReturn(currency);
+		given(userService.getCurrentUser()).willReturn(user);
+	}
+
+	@After
+	public void tearDown()
+	{
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	public void shouldKeepETagForResponseAndProceedWithoutIfNoneMatch() throws Exception
+	{
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertTrue(interceptor.preHandle(request, response, productHandler));
+		assertNull(response.getHeader(HttpHeaders.ETAG));
+		assertNotNull(currentETag());
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+	}
+
+	@Test
+	public void shouldAddETagToSuccessfulResponsesOnly()
+	{
+		final ConditionalGetResponseBodyAdvice advice = new ConditionalGetResponseBodyAdvice();
+		final MockHttpServletRequest servletRequest = new MockHttpServletRequest();
+		servletRequest.setAttribute(ConditionalGetHandlerInterceptor.ETAG_ATTRIBUTE, "\"tag\"");
+
+		final MockHttpServletResponse success = new MockHttpServletResponse();
+		writeBody(advice, servletRequest, success);
+		assertEquals("\"tag\"", success.getHeader(HttpHeaders.ETAG));
+
+		final MockHttpServletResponse notFound = new MockHttpServletResponse();
+		notFound.setStatus(HttpServletResponse.SC_NOT_FOUND);
+		writeBody(advice, servletRequest, notFound);
+		assertNull(notFound.getHeader(HttpHeaders.ETAG));
+	}
+
+	@Test
+	public void shouldAnswerNotModifiedForMatchingTag() throws Exception
+	{
+		final String etag = currentETag();
+		given(request.getHeader(HttpHeaders.IF_NONE_MATCH)).willReturn("\"other\", W/" + etag);
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertFalse(interceptor.preHandle(request, response, productHandler));
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+		assertEquals(etag, response.getHeader(HttpHeaders.ETAG));
+	}
+
+	@Test
+	public void shouldProceedWhenProductChanged() throws Exception
+	{
+		final String etag = currentETag();
+		given(versionStampService.getProductStamp("1234")).willReturn("p2");
+		given(request.getHeader(HttpHeaders.IF_NONE_MATCH)).willReturn(etag);
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertTrue(interceptor.preHandle(request, response, productHandler));
+		assertNotEquals(etag, currentETag());
+	}
+
+	@Test
+	public void shouldVaryTagByCurrency() throws Exception
+	{
+		final String etag = currentETag();
+		given(currency.getIsocode()).willReturn("EUR");
+
+		assertNotEquals(etag, currentETag());
+	}
+
+	@Test
+	public void shouldUseClassLevelTypes() throws Exception
+	{
+		final HandlerMethod handler = new HandlerMethod(new SampleController(), "getTitles");
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertTrue(interceptor.preHandle(request, response, handler));
+		verify(request).setAttribute(eq(ConditionalGetHandlerInterceptor.ETAG_ATTRIBUTE), any(String.class));
+		verify(versionStampService).getTypeStamp("Title");
+		verify(versionStampService, never()).getProductStamp(any(String.class));
+	}
+
+	@Test
+	public void shouldIgnoreOtherMethods() throws Exception
+	{
+		given(request.getMethod()).willReturn("POST");
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertTrue(interceptor.preHandle(request, response, productHandler));
+		assertNull(response.getHeader(HttpHeaders.ETAG));
+		verify(request, never()).setAttribute(any(String.class), any());
+	}
+
+	@Test
+	public void shouldProceedWithoutTagWhenStampFails() throws Exception
+	{
+		given(versionStampService.getProductStamp("1234")).willThrow(new IllegalStateException("database unavailable"));
+		given(request.getHeader(HttpHeaders.IF_NONE_MATCH)).willReturn("*");
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertTrue(interceptor.preHandle(request, response, productHandler));
+		assertNull(response.getHeader(HttpHeaders.ETAG));
+		verify(request, never()).setAttribute(any(String.class), any());
+	}
+
+	@Test
+	public void shouldLeaveSecuredEndpointsToMethodSecurityWithoutRequiredRole() throws Exception
+	{
+		final HandlerMethod handler = new HandlerMethod(new SampleController(), "getUserProduct");
+		given(request.getHeader(HttpHeaders.IF_NONE_MATCH)).willReturn("*");
+		SecurityContextHolder.getContext()
+				.setAuthentication(new TestingAuthenticationToken("anonymous", null, "ROLE_ANONYMOUS"));
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertTrue(interceptor.preHandle(request, response, handler));
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		assertNull(response.getHeader(HttpHeaders.ETAG));
+		verify(request, never()).setAttribute(any(String.class), any());
+		verify(versionStampService, never()).getProductStamp(any(String.class));
+	}
+
+	@Test
+	public void shouldAnswerNotModifiedForSecuredEndpointWithRequiredRole() throws Exception
+	{
+		final HandlerMethod handler = new HandlerMethod(new SampleController(), "getUserProduct");
+		given(request.getHeader(HttpHeaders.IF_NONE_MATCH)).willReturn("*");
+		SecurityContextHolder.getContext()
+				.setAuthentication(new TestingAuthenticationToken("customer", null, "ROLE_CUSTOMERGROUP"));
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertFalse(interceptor.preHandle(request, response, handler));
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+	}
+
+	/**
+	 * Runs the interceptor for the product handler and returns the tag it computed.
+	 */
+	protected String currentETag() throws Exception
+	{
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+		if (!interceptor.preHandle(request, response, productHandler))
+		{
+			return response.getHeader(HttpHeaders.ETAG);
+		}
+		final ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+		verify(request, atLeastOnce())
+				.setAttribute(eq(ConditionalGetHandlerInterceptor.ETAG_ATTRIBUTE), captor.capture());
+		return (String) captor.getValue();
+	}
+
+	protected void writeBody(final ConditionalGetResponseBodyAdvice advice, final MockHttpServletRequest servletRequest,
+			final MockHttpServletResponse servletResponse)
+	{
+		final ServletServerHttpResponse response = new ServletServerHttpResponse(servletResponse);
+		advice.beforeBodyWrite("body", null, null, null, new ServletServerHttpRequest(servletRequest), response);
+		response.flush();
+	}
+
+	@ConditionalGet(types = "Title")
+	public static class SampleController
+	{
+		@ConditionalGet(productCodeVariable = "productCode")
+		public String getProduct()
+		{
+			return "product";
+		}
+
+		public String getTitles()
+		{
+			return "titles";
+		}
+
+		@Secured("ROLE_CUSTOMERGROUP")
+		@ConditionalGet(productCodeVariable = "productCode")
+		public String getUserProduct()
+		{
+			return "product";
+		}
+	}
+}
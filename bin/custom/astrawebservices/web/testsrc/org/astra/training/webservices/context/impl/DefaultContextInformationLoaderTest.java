@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.context.impl;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.commerceservices.i18n.CommerceCommonI18NService;
+import de.hybris.platform.core.PK;
+import de.hybris.platform.core.model.c2l.CurrencyModel;
+import de.hybris.platform.core.model.order.AbstractOrderEntryModel;
+import de.hybris.platform.core.model.order.CartModel;
+import de.hybris.platform.order.CalculationService;
+import de.hybris.platform.order.CartService;
+import de.hybris.platform.servicelayer.i18n.CommonI18NService;
+import de.hybris.platform.store.BaseStoreModel;
+import de.hybris.platform.store.services.BaseStoreService;
+import org.astra.training.webservices.constants.YcommercewebservicesConstants;
+import org.astra.training.webservices.context.WsContextLoadingStatistics;
+
+import javax.servlet.http.HttpServletRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+
+@UnitTest
+public class DefaultContextInformationLoaderTest
+{
+	private static final String EUR = "EUR";
+	private static final String USD = "USD";
+
+	private DefaultContextInformationLoader loader;
+	@Mock
+	private HttpServletRequest request;
+	@Mock
+	private CommonI18NService commonI18NService;
+	@Mock
+	private CommerceCommonI18NService commerceCommonI18NService;
+	@Mock
+	private BaseStoreService baseStoreService;
+	@Mock
+	private CartService cartService;
+	@Mock
+	private CalculationService calculationService;
+	@Mock
+	private BaseStoreModel baseStore;
+	@Mock
+	private CartModel cart;
+
+	private CurrencyModel euro;
+	private CurrencyModel dollar;
+	private long generation;
+
+	@Before
+	public void setUp()
+	{
+		MockitoAnnotations.initMocks(this);
+		loader = new DefaultContextInformationLoader();
+		loader.setCommonI18NService(commonI18NService);
+		loader.setCommerceCommonI18NService(commerceCommonI18NService);
+		loader.setBaseStoreService(baseStoreService);
+		loader.setCartService(cartService);
+		loader.setCalculationService(calculationService);
+		loader.setItemTypeGenerationService(typeCodes -> generation);
+		loader.setContextLoadingStatistics(new WsContextLoadingStatistics());
+
+		euro = createCurrency(1L);
+		dollar = createCurrency(2L);
+		given(commonI18NService.getCurrency(EUR)).willReturn(euro);
+		given(commonI18NService.getCurrency(USD)).willReturn(dollar);
+		given(commerceCommonI18NService.getAllCurrencies()).willReturn(Arrays.asList(euro, dollar));
+		given(commerceCommonI18NService.getCurrentCurrency()).willReturn(euro);
+		given(baseStoreService.getCurrentBaseStore()).willReturn(baseStore);
+		given(baseStore.getUid()).willReturn("electronics");
+		given(cartService.hasSessionCart()).willReturn(Boolean.TRUE);
+		given(cartService.getSessionCart()).willReturn(cart);
+		given(cart.getCurrency()).willReturn(euro);
+		given(cart.getEntries()).willReturn(Collections.singletonList(mock(AbstractOrderEntryModel.class)));
+		given(request.getParameter(YcommercewebservicesConstants.HTTP_REQUEST_PARAM_CURRENCY)).willReturn(USD);
+	}
+
+	private CurrencyModel createCurrency(final long pk)
+	{
+		final CurrencyModel currency = mock(CurrencyModel.class);
+		given(currency.getPk()).willReturn(PK.fromLong(pk));
+		return currency;
+	}
+
+	@Test
+	public void shouldRecalculateCartWithEntriesInOtherCurrency() throws Exception
+	{
+		Assert.assertSame(dollar, loader.setCurrencyFromRequest(request));
+
+		verify(commerceCommonI18NService).setCurrentCurrency(dollar);
+		verify(calculationService).recalculate(cart);
+	}
+
+	@Test
+	public void shouldNotRecalculateEmptyCart() throws Exception
+	{
+		given(cart.getEntries()).willReturn(Collections.emptyList());
+
+		loader.setCurrencyFromRequest(request);
+
+		verify(commerceCommonI18NService).setCurrentCurrency(dollar);
+		verify(calculationService, never()).recalculate(any(CartModel.class));
+	}
+
+	@Test
+	public void shouldNotRecalculateCartAlreadyInTargetCurrency() throws Exception
+	{
+		given(cart.getCurrency()).willReturn(dollar);
+
+		loader.setCurrencyFromRequest(request);
+
+		verify(commerceCommonI18NService).setCurrentCurrency(dollar);
+		verify(calculationService, never()).recalculate(any(CartModel.class));
+	}
+
+	@Test
+	public void shouldReuseSnapshotUntilGenerationChanges() throws Exception
+	{
+		loader.setCurrencyFromRequest(request);
+		loader.setCurrencyFromRequest(request);
+		verify(commerceCommonI18NService, times(1)).getAllCurrencies();
+
+		generation++;
+		loader.setCurrencyFromRequest(request);
+		verify(commerceCommonI18NService, times(2)).getAllCurrencies();
+		Assert.assertEquals(3, loader.getCurrencyStatistics().getCount());
+		Assert.assertEquals(3, loader.getContextLoadingStatistics().getCurrencyCount());
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.metrics;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+@UnitTest
+public class WsEndpointMetricsTest
+{
+	private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private WsEndpointMetrics metrics;
+	private MockHttpServletRequest request;
+	private HandlerMethod handler;
+
+	@Before
+	public void setUp() throws NoSuchMethodException
+	{
+		metrics = new WsEndpointMetrics();
+		metrics.setSlowThresholdMillis(100L);
+		metrics.setSlowSampleRate(2);
+		metrics.setKeptSlowRequests(2);
+		request = new MockHttpServletRequest("GET", "/astrawebservices/v2/electronics/products/1234");
+		request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/{baseSiteId}/products/{productCode}");
+		handler = new HandlerMethod(new SampleController(), "getProduct");
+	}
+
+	@Test
+	public void shouldKeepPercentilesWithinBucketPrecision()
+	{
+		final LogLinearHistogram histogram = new LogLinearHistogram();
+		for (long value = 1; value <= 100_000; value++)
+		{
+			histogram.record(value);
+		}
+
+		assertEquals(100_000L, histogram.getCount());
+		assertEquals(50_000.5d, histogram.getMean(), 0.001d);
+		assertEquals(100_000L, histogram.getMax());
+		assertWithin(50_000L, histogram.getValueAtPercentile(50));
+		assertWithin(99_000L, histogram.getValueAtPercentile(99));
+		assertEquals(100_000L, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void shouldSplitRequestIntoPhases()
+	{
+		final RequestTiming timing = new RequestTiming(0L);
+		timing.handlerStarted(handler, 2 * MILLI);
+		timing.mappingStarted(3 * MILLI);
+		timing.mappingStarted(4 * MILLI);
+		timing.mappingCompleted(5 * MILLI);
+		timing.mappingCompleted(6 * MILLI);
+		timing.bodyWriteStarted(8 * MILLI);
+		timing.handlerCompleted(new Object(), 9 * MILLI);
+		timing.handlerCompleted(handler, 10 * MILLI);
+
+		metrics.record(request, timing, 200, 11 * MILLI, 512L);
+
+		final List<EndpointMetrics> endpoints = metrics.getEndpointMetrics();
+		assertEquals(1, endpoints.size());
+		final EndpointMetrics endpoint = endpoints.get(0);
+		assertEquals("SampleController.getProduct", endpoint.getEndpoint());
+		assertEquals(200, endpoint.getStatus());
+		assertEquals(11_000L, endpoint.getTotal().getMax());
+		assertEquals(3_000L, endpoint.getFilters().getMax());
+		assertEquals(3_000L, endpoint.getHandler().getMax());
+		assertEquals(3_000L, endpoint.getMapping().getMax());
+		assertEquals(2_000L, endpoint.getSerialization().getMax());
+		assertEquals(512L, endpoint.getResponseSize().getMax());
+	}
+
+	@Test
+	public void shouldKeepEndpointsAndStatusesApart()
+	{
+		metrics.record(request, started(), 200, MILLI, 10L);
+		metrics.record(request, started(), 200, MILLI, 10L);
+		metrics.record(request, started(), 404, MILLI, 10L);
+		metrics.record(request, new RequestTiming(0L), 404, MILLI, 10L);
+
+		final List<EndpointMetrics> endpoints = metrics.getEndpointMetrics();
+		assertEquals(3, endpoints.size());
+		assertEquals(2L, endpoints.get(0).getTotal().getCount());
+		assertEquals(404, endpoints.get(1).getStatus());
+		assertEquals(WsEndpointMetrics.UNMATCHED, endpoints.get(2).getEndpoint());
+		assertEquals(4L, metrics.getRequestCount());
+		assertTrue(metrics.getSummary().startsWith("SampleController.getProduct 200: count=2"));
+	}
+
+	@Test
+	public void shouldSampleEveryNthSlowRequest()
+	{
+		for (int i = 0; i < 7; i++)
+		{
+			metrics.record(request, started(), 200, 150 * MILLI, 10L);
+		}
+		metrics.record(request, started(), 200, 99 * MILLI, 10L);
+
+		assertEquals(7L, metrics.getSlowRequestCount());
+		final String[] samples = metrics.getSlowRequestSamples();
+		assertEquals(2, samples.length);
+		assertTrue(samples[0].contains("GET /{baseSiteId}/products/{productCode} -> 200"));
+		assertFalse(samples[0].contains("1234"));
+		assertTrue(samples[0].contains("totalMicros=150000"));
+
+		metrics.reset();
+		assertEquals(0L, metrics.getSlowRequestCount());
+		assertEquals(0, metrics.getSlowRequestSamples().length);
+		assertEquals(0, metrics.getEndpointCount());
+	}
+
+	protected RequestTiming started()
+	{
+		final RequestTiming timing = new RequestTiming(0L);
+		timing.handlerStarted(handler, 0L);
+		return timing;
+	}
+
+	protected static void assertWithin(final long expected, final long actual)
+	{
+		assertTrue("expected about " + expected + " but was " + actual,
+				actual >= expected && actual <= expected + expected / 16);
+	}
+
+	protected static class SampleController
+	{
+		public String getProduct()
+		{
+			return "product";
+		}
+	}
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.request.batch;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.core.PK;
+import de.hybris.platform.core.Tenant;
+import de.hybris.platform.core.model.order.CartModel;
+import de.hybris.platform.core.model.user.UserModel;
+import de.hybris.platform.servicelayer.model.ModelService;
+import de.hybris.platform.servicelayer.session.Session;
+import de.hybris.platform.servicelayer.session.SessionService;
+import de.hybris.platform.servicelayer.user.UserService;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.i18n.LocaleContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.web.servlet.HandlerAdapter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+
+@UnitTest
+public class BatchRequestDispatcherTest
+{
+	private static final Object HANDLER = new Object();
+
+	@Mock
+	private HandlerMapping handlerMapping;
+	@Mock
+	private HandlerAdapter handlerAdapter;
+	@Mock
+	private HandlerExceptionResolver handlerExceptionResolver;
+	@Mock
+	private WsBatchStatistics wsBatchStatistics;
+	@Mock
+	private SessionService sessionService;
+	@Mock
+	private UserService userService;
+	@Mock
+	private ModelService modelService;
+	@Mock
+	private Filter xssFilter;
+	@Mock
+	private UserModel user;
+	@Mock
+	private CartModel sessionCart;
+
+	private BatchRequestDispatcher dispatcher;
+	private MockHttpServletRequest request;
+	private MockHttpServletResponse response;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		MockitoAnnotations.initMocks(this);
+		dispatcher = configure(new BatchRequestDispatcher(), 1);
+
+		request = new MockHttpServletRequest("POST", "/astrawebservices/v2/electronics/users/current/carts/00001/batch");
+		request.setContextPath("/astrawebservices");
+		request.setServletPath("/v2");
+		request.setPathInfo("/electronics/users/current/carts/00001/batch");
+		request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, "batch variables");
+		request.setAttribute("siteContext", "electronics");
+		response = new MockHttpServletResponse();
+
+		given(handlerMapping.getHandler(any(HttpServletRequest.class))).willReturn(new HandlerExecutionChain(HANDLER));
+		given(handlerAdapter.handle(any(HttpServletRequest.class), any(HttpServletResponse.class), eq(HANDLER)))
+				.willAnswer(invocation -> {
+					final HttpServletRequest subRequest = (HttpServletRequest) invocation.getArguments()[0];
+					final HttpServletResponse subResponse = (HttpServletResponse) invocation.getArguments()[1];
+					subRequest.setAttribute("handled", Boolean.TRUE);
+					subResponse.setStatus("POST".equals(subRequest.getMethod()) ? HttpServletResponse.SC_CREATED
+							: HttpServletResponse.SC_OK);
+					subResponse.setContentType("application/json");
+					subResponse.setHeader(HttpHeaders.ETAG, "W/\"1\"");
+					subResponse.setHeader(HttpHeaders.SET_COOKIE, "x=y");
+					subResponse.getWriter().write("{\"path\":\"" + subRequest.getPathInfo() + "\",\"fields\":\""
+							+ subRequest.getParameter("fields") + "\",\"site\":\"" + subRequest.getAttribute("siteContext") + "\"}");
+					return null;
+				});
+	}
+
+	@After
+	public void tearDown()
+	{
+		dispatcher.destroy();
+	}
+
+	protected BatchRequestDispatcher configure(final BatchRequestDispatcher batchRequestDispatcher, final int threads)
+			throws Exception
+	{
+		batchRequestDispatcher.setThreads(threads);
+		batchRequestDispatcher.setHandlerMapping(handlerMapping);
+		batchRequestDispatcher.setHandlerAdapter(handlerAdapter);
+		batchRequestDispatcher.setHandlerExceptionResolver(handlerExceptionResolver);
+		batchRequestDispatcher.setSessionService(sessionService);
+		batchRequestDispatcher.setUserService(userService);
+		batchRequestDispatcher.setModelService(modelService);
+		batchRequestDispatcher.setWsBatchStatistics(wsBatchStatistics);
+		batchRequestDispatcher.afterPropertiesSet();
+		return batchRequestDispatcher;
+	}
+
+	@Test
+	public void shouldDispatchSubRequestsInDeclaredOrder()
+	{
+		final List<BatchResponseItem> results = dispatcher.dispatch(request, response,
+				Arrays.asList(new BatchRequestItem("add", "POST", "/electronics/users/current/carts/00001/entries", "{}"),
+						new BatchRequestItem("cart", "GET", "/electronics/users/current/carts/00001?fields=FULL", null)));
+
+		assertEquals(2, results.size());
+		assertEquals("add", results.get(0).getId());
+		assertEquals(HttpServletResponse.SC_CREATED, results.get(0).getStatus());
+		assertEquals("cart", results.get(1).getId());
+		assertEquals(HttpServletResponse.SC_OK, results.get(1).getStatus());
+		assertEquals("{\"path\":\"/electronics/users/current/carts/00001\",\"fields\":\"FULL\",\"site\":\"electronics\"}",
+				new String(results.get(1).getBody(), StandardCharsets.UTF_8));
+		assertEquals("W/\"1\"", results.get(1).getHeaders().get(HttpHeaders.ETAG));
+		assertNull(results.get(1).getHeaders().get(HttpHeaders.SET_COOKIE));
+		verify(wsBatchStatistics).recordBatch(eq(2), eq(0), anyLong(), anyLong());
+	}
+
+	@Test
+	public void shouldKeepRequestAttributesPerSubRequest() throws Exception
+	{
+		given(handlerAdapter.handle(any(HttpServletRequest.class), any(HttpServletResponse.class), eq(HANDLER)))
+				.willAnswer(invocation -> {
+					final HttpServletRequest subRequest = (HttpServletRequest) invocation.getArguments()[0];
+					assertNull(subRequest.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE));
+					assertNull(subRequest.getAttribute("handled"));
+					subRequest.setAttribute("handled", Boolean.TRUE);
+					return null;
+				});
+
+		dispatcher.dispatch(request, response,
+				Arrays.asList(new BatchRequestItem("1", "GET", "/electronics/products/1", null),
+						new BatchRequestItem("2", "GET", "/electronics/products/2", null)));
+
+		assertNull(request.getAttribute("handled"));
+		assertEquals("batch variables", request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE));
+		assertEquals(0, response.getContentAsByteArray().length);
+	}
+
+	@Test
+	public void shouldAnswerNotFoundWithoutHandler() throws Exception
+	{
+		given(handlerMapping.getHandler(any(HttpServletRequest.class))).willReturn(null);
+
+		final List<BatchResponseItem> results = dispatcher.dispatch(request, response,
+				Arrays.asList(new BatchRequestItem("1", "GET", "/electronics/unknown", null)));
+
+		assertEquals(HttpServletResponse.SC_NOT_FOUND, results.get(0).getStatus());
+		assertTrue(new String(results.get(0).getBody(), StandardCharsets.UTF_8).contains("UnknownResourceError"));
+		verify(wsBatchStatistics).recordBatch(eq(1), eq(1), anyLong(), anyLong());
+	}
+
+	@Test
+	public void shouldAnswerInternalErrorForUnresolvedException() throws Exception
+	{
+		given(handlerAdapter.handle(any(HttpServletRequest.class), any(HttpServletResponse.class), eq(HANDLER)))
+				.willThrow(new IllegalStateException("failure"));
+
+		final List<BatchResponseItem> results = dispatcher.dispatch(request, response,
+				Arrays.asList(new BatchRequestItem("1", "DELETE", "/electronics/users/current/carts/00001/entries/0", null),
+						new BatchRequestItem("2", "GET", "/electronics/users/current/carts/00001", null)));
+
+		assertEquals(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, results.get(0).getStatus());
+		assertEquals(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, results.get(1).getStatus());
+		verify(handlerExceptionResolver, times(2)).resolveException(any(HttpServletRequest.class), any(HttpServletResponse.class),
+				eq(HANDLER), any(IllegalStateException.class));
+		verify(wsBatchStatistics).recordBatch(eq(2), eq(2), anyLong(), anyLong());
+	}
+
+	@Test
+	public void shouldCreateErrorItemInErrorFormat()
+	{
+		final BatchResponseItem item = dispatcher.createErrorItem("x", HttpServletResponse.SC_BAD_REQUEST, "ValidationError",
+				"Invalid url");
+
+		assertEquals(HttpServletResponse.SC_BAD_REQUEST, item.getStatus());
+		assertEquals("{\"errors\":[{\"type\":\"ValidationError\",\"message\":\"Invalid url\"}]}",
+				new String(item.getBody(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void shouldRunReadingSubRequestsInParallelWithOwnSessionModels() throws Exception
+	{
+		given(sessionCart.getPk()).willReturn(PK.fromLong(1L));
+		given(user.getPk()).willReturn(PK.fromLong(2L));
+		given(sessionService.getAllAttributes()).willReturn(Collections.singletonMap("cart", sessionCart));
+		given(userService.getCurrentUser()).willReturn(user);
+		given(modelService.get(PK.fromLong(1L))).willAnswer(invocation -> Mockito.mock(CartModel.class));
+
+		final List<Object> workerCarts = new CopyOnWriteArrayList<>();
+		final Set<String> workerThreads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+		dispatcher.destroy();
+		dispatcher = configure(new BatchRequestDispatcher()
+		{
+			@Override
+			protected <T> T executeInSessionCopy(final Tenant tenant, final Map<String, Object> sessionAttributes,
+					final PK userPk, final SecurityContext securityContext, final LocaleContext localeContext,
+					final Callable<T> body) throws Exception
+			{
+				final Session session = Mockito.mock(Session.class);
+				restoreSessionAttributes(session, sessionAttributes);
+				final ArgumentCaptor<Object> cart = ArgumentCaptor.forClass(Object.class);
+				verify(session).setAttribute(eq("cart"), cart.capture());
+				workerCarts.add(cart.getValue());
+				workerThreads.add(Thread.currentThread().getName());
+				return body.call();
+			}
+		}, 2);
+
+		final List<BatchResponseItem> results = dispatcher.dispatch(request, response,
+				Arrays.asList(new BatchRequestItem("1", "GET", "/electronics/users/current/carts/00001", null),
+						new BatchRequestItem("2", "GET", "/electronics/users/current/carts/00001/entries", null)));
+
+		assertEquals(HttpServletResponse.SC_OK, results.get(0).getStatus());
+		assertEquals(HttpServletResponse.SC_OK, results.get(1).getStatus());
+		assertTrue(new String(results.get(1).getBody(), StandardCharsets.UTF_8).contains("/carts/00001/entries"));
+		assertEquals(2, workerCarts.size());
+		assertNotSame(sessionCart, workerCarts.get(0));
+		assertNotSame(sessionCart, workerCarts.get(1));
+		assertNotSame(workerCarts.get(0), workerCarts.get(1));
+		assertFalse(workerThreads.contains(Thread.currentThread().getName()));
+		verify(modelService, times(2)).get(PK.fromLong(1L));
+	}
+
+	@Test
+	public void shouldPassSubRequestsThroughXssFilter() throws Exception
+	{
+		doAnswer(invocation -> {
+			final HttpServletRequest subRequest = (HttpServletRequest) invocation.getArguments()[0];
+			((FilterChain) invocation.getArguments()[2]).doFilter(new HttpServletRequestWrapper(subRequest)
+			{
+				@Override
+				public String getParameter(final String name)
+				{
+					return "sanitized";
+				}
+			}, (HttpServletResponse) invocation.getArguments()[1]);
+			return null;
+		}).when(xssFilter).doFilter(any(), any(), any());
+		dispatcher.setXssFilter(xssFilter);
+
+		final List<BatchResponseItem> results = dispatcher.dispatch(request, response,
+				Arrays.asList(new BatchRequestItem("cart", "GET", "/electronics/users/current/carts/00001?fields=<script>", null)));
+
+		assertTrue(new String(results.get(0).getBody(), StandardCharsets.UTF_8).contains("\"fields\":\"sanitized\""));
+	}
+
+	@Test
+	public void shouldAnswerSubRequestRejectedByXssFilter() throws Exception
+	{
+		doAnswer(invocation -> {
+			((HttpServletResponse) invocation.getArguments()[1]).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+			return null;
+		}).when(xssFilter).doFilter(any(), any(), any());
+		dispatcher.setXssFilter(xssFilter);
+
+		final List<BatchResponseItem> results = dispatcher.dispatch(request, response,
+				Arrays.asList(new BatchRequestItem("cart", "GET", "/electronics/users/current/carts/00001?fields=<script>", null)));
+
+		assertEquals(HttpServletResponse.SC_BAD_REQUEST, results.get(0).getStatus());
+		verify(handlerAdapter, never()).handle(any(HttpServletRequest.class), any(HttpServletResponse.class), any());
+	}
+}
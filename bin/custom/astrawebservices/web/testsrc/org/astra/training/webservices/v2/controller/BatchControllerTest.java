@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2021 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.v2.controller;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.servicelayer.config.ConfigurationService;
+import org.astra.training.webservices.request.batch.BatchRequestDispatcher;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Unit test for {@link BatchController}
+ */
+@UnitTest
+@RunWith(MockitoJUnitRunner.class)
+public class BatchControllerTest
+{
+	private static final String BASE_SITE = "electronics";
+	private static final String USER_ID = "current";
+	private static final String CART_ID = "00001";
+
+	@Mock
+	private BatchRequestDispatcher batchRequestDispatcher;
+	@Mock
+	private ConfigurationService configurationService;
+	@InjectMocks
+	private BatchController controller;
+
+	private MockHttpServletRequest request;
+
+	@Before
+	public void setUp()
+	{
+		request = new MockHttpServletRequest("POST", "/astrawebservices/v2/electronics/users/current/carts/00001/batch");
+		request.setContextPath("/astrawebservices");
+		request.setServletPath("/v2");
+		request.setPathInfo("/electronics/users/current/carts/00001/batch");
+	}
+
+	@Test
+	public void testValidRequest()
+	{
+		assertThat(validate("GET", "/electronics/users/current/carts/00001?fields=FULL")).isNull();
+		assertThat(validate("GET", "/electronics/products/1382080")).isNull();
+		assertThat(validate("POST", "/electronics/users/current/carts/00001/entries")).isNull();
+	}
+
+	@Test
+	public void testRejectOtherSiteUserAndCart()
+	{
+		assertThat(validate("GET", "/apparel-uk/products/1382080")).startsWith("Requests must address the base site");
+		assertThat(validate("GET", "/electronics/users/anonymous/carts/00001")).startsWith("Requests must address the user");
+		assertThat(validate("GET", "/electronics/users/current/carts/00002")).startsWith("Requests must address the cart");
+	}
+
+	@Test
+	public void testRejectUrlsBypassingContextCheckWhenDecoded()
+	{
+		// both resolve to /electronics/users/anonymous/carts/00002 in the handler mapping
+		assertThat(validate("GET", "/electronics//users/anonymous/carts/00002")).startsWith("Requests must address the user");
+		assertThat(validate("GET", "/electronics/%75sers/anonymous/carts/00002")).startsWith("Requests must address the user");
+		assertThat(validate("GET", "/electronics/users/current/%63arts/00002")).startsWith("Requests must address the cart");
+	}
+
+	@Test
+	public void testRejectEncodedSeparatorsAndDotSegments()
+	{
+		assertThat(validate("GET", "/electronics/products/..%2fusers/anonymous")).startsWith("Invalid url");
+		assertThat(validate("GET", "/electronics/products/..%5Cusers/anonymous")).startsWith("Invalid url");
+		assertThat(validate("GET", "/electronics/products\\..\\users/anonymous")).startsWith("Invalid url");
+		assertThat(validate("GET", "/electronics/products/../users/anonymous")).startsWith("Invalid url");
+		assertThat(validate("GET", "/electronics/products/%2e%2e/users/anonymous")).startsWith("Invalid url");
+		assertThat(validate("GET", "/electronics/users/current/carts/00001/.")).startsWith("Invalid url");
+		assertThat(validate("GET", "electronics/products/1382080")).startsWith("Invalid url");
+	}
+
+	@Test
+	public void testRejectNestedBatch()
+	{
+		assertThat(validate("POST", "/electronics/users/current/carts/00001/batch")).isEqualTo("Batch requests cannot be nested");
+		assertThat(validate("POST", "/electronics/users/current/%62atch/")).isEqualTo("Batch requests cannot be nested");
+	}
+
+	@Test
+	public void testRejectUnknownMethodAndScalarBody()
+	{
+		assertThat(validate("FETCH", "/electronics/products/1382080")).startsWith("Unknown method");
+
+		final ObjectNode node = node("POST", "/electronics/users/current/carts/00001/entries");
+		node.put("body", "text");
+		assertThat(controller.validateRequest(node, BASE_SITE, USER_ID, CART_ID, request))
+				.isEqualTo("The body must be a JSON object or array");
+	}
+
+	protected String validate(final String method, final String url)
+	{
+		return controller.validateRequest(node(method, url), BASE_SITE, USER_ID, CART_ID, request);
+	}
+
+	protected ObjectNode node(final String method, final String url)
+	{
+		final ObjectNode node = JsonNodeFactory.instance.objectNode();
+		node.put("method", method);
+		node.put("url", url);
+		return node;
+	}
+}
@@ -4,27 +4,49 @@
 package org.astra.training.webservices.v2.controller;
 
 import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.commercefacades.order.CartFacade;
 import de.hybris.platform.commercefacades.order.data.CartData;
+import de.hybris.platform.commercefacades.order.data.CartModificationData;
 import de.hybris.platform.commercefacades.order.data.OrderEntryData;
 import de.hybris.platform.commercefacades.product.data.ProductData;
 import de.hybris.platform.commercefacades.storelocator.data.PointOfServiceData;
+import de.hybris.platform.commerceservices.order.CommerceCartModificationException;
 import de.hybris.platform.commercewebservicescommons.dto.order.OrderEntryWsDTO;
 import de.hybris.platform.commercewebservicescommons.dto.product.ProductWsDTO;
 import de.hybris.platform.commercewebservicescommons.errors.exceptions.CartEntryException;
+import de.hybris.platform.servicelayer.config.ConfigurationService;
 import de.hybris.platform.webservicescommons.errors.exceptions.WebserviceValidationException;
-
+import de.hybris.platform.webservicescommons.mapping.DataMapper;
+import org.astra.training.webservices.cart.calculation.CartCalculationDeferralService;
+import org.astra.training.webservices.order.dto.CartEntryOperationListWsDTO;
+import org.astra.training.webservices.order.dto.CartEntryOperationType;
+import org.astra.training.webservices.order.dto.CartEntryOperationWsDTO;
+import org.astra.training.webservices.validator.StockValidator;
+
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.commons.configuration.Configuration;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.validation.Validator;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertThrows;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -42,6 +64,9 @@ public class CartEntriesControllerTest
 	private static final String PICKUP_STORE = "TestStore";
 	private static final String UNKNOWN_PRODUCT_CODE = "UnknownProduct";
 	private static final String UNKNOWN_PICKUP_STORE = "UnknownStore";
+	private static final String BASE_SITE = "electronics";
+	private static final String OTHER_PRODUCT_CODE = "67890";
+	private static final String FIELDS = "DEFAULT";
 
 	@Mock
 	private PointOfServiceData pointOfService;
@@ -55,6 +80,24 @@ public class CartEntriesControllerTest
 	private OrderEntryWsDTO cartEntryWsDTO;
 	@Mock
 	private ProductWsDTO productWsDTO;
+	@Mock
+	private CartFacade cartFacade;
+	@Mock
+	private CartFacade bulkCartFacade;
+	@Mock
+	private CartCalculationDeferralService cartCalculationDeferralService;
+	@Mock
+	private ConfigurationService configurationService;
+	@Mock
+	private Configuration configuration;
+	@Mock
+	private Validator orderEntryCreateValidator;
+	@Mock
+	private StockValidator stockValidator;
+	@Mock
+	private DataMapper dataMapper;
+	@InjectMocks
+	private CartEntriesController controller;
 
 	protected static void assertCorrectException(final CartEntryException actualException)
 	{
@@ -213,4 +256,86 @@ public class CartEntriesControllerTest
 		assertThrows(WebserviceValidationException.class,
 				() -> CartEntriesController.validateProductCode(cartEntry, cartEntryWsDTO));
 	}
+
+	@Test
+	public void testModifyCartEntriesUsesBulkFacadeWithSingleCalculation() throws CommerceCartModificationException
+	{
+		givenBulkOperationsAllowed();
+		given(bulkCartFacade.addToCart(anyString(), anyLong())).willReturn(new CartModificationData());
+		given(cartFacade.getSessionCart()).willReturn(cart);
+
+		controller.modifyCartEntries(BASE_SITE, operations(PRODUCT_CODE, OTHER_PRODUCT_CODE), FIELDS);
+
+		verify(cartCalculationDeferralService).executeWithSingleCalculation(any());
+		verify(bulkCartFacade).addToCart(PRODUCT_CODE, 1L);
+		verify(bulkCartFacade).addToCart(OTHER_PRODUCT_CODE, 1L);
+		verify(cartFacade, never()).addToCart(anyString(), anyLong());
+	}
+
+	@Test
+	public void testModifyCartEntriesKeepsOperationsBeforeFailingOne() throws CommerceCartModificationException
+	{
+		givenBulkOperationsAllowed();
+		given(bulkCartFacade.addToCart(PRODUCT_CODE, 1L)).willReturn(new CartModificationData());
+		given(bulkCartFacade.addToCart(OTHER_PRODUCT_CODE, 1L)).willThrow(new CommerceCartModificationException("failed"));
+
+		assertThrows(CommerceCartModificationException.class,
+				() -> controller.modifyCartEntries(BASE_SITE, operations(PRODUCT_CODE, OTHER_PRODUCT_CODE, PRODUCT_CODE), FIELDS));
+
+		// the first operation stays applied, the operation after the failing one is never applied
+		verify(bulkCartFacade).addToCart(PRODUCT_CODE, 1L);
+		verify(bulkCartFacade).addToCart(OTHER_PRODUCT_CODE, 1L);
+		verify(cartCalculationDeferralService).executeWithSingleCalculation(any());
+	}
+
+	@Test
+	public void testSingleEntryCallsUseDefaultFacade() throws CommerceCartModificationException
+	{
+		given(cartFacade.addToCart(PRODUCT_CODE, 1L)).willReturn(new CartModificationData());
+
+		controller.addCartEntryData(BASE_SITE, PRODUCT_CODE, 1L, null);
+
+		verify(cartFacade).addToCart(PRODUCT_CODE, 1L);
+		verify(bulkCartFacade, never()).addToCart(anyString(), anyLong());
+	}
+
+	protected void givenBulkOperationsAllowed() throws CommerceCartModificationException
+	{
+		final AtomicBoolean deferred = new AtomicBoolean();
+		given(configurationService.getConfiguration()).willReturn(configuration);
+		given(configuration.getInt(anyString(), anyInt())).willReturn(100);
+		given(Boolean.valueOf(cartCalculationDeferralService.isCalculationDeferred()))
+				.willAnswer(invocation -> Boolean.valueOf(deferred.get()));
+		given(cartCalculationDeferralService.executeWithSingleCalculation(any())).willAnswer(invocation -> {
+			deferred.set(true);
+			try
+			{
+				return ((CartCalculationDeferralService.CartModification<?>) invocation.getArguments()[0]).execute();
+			}
+			finally
+			{
+				deferred.set(false);
+			}
+		});
+	}
+
+	protected CartEntryOperationListWsDTO operations(final String... productCodes)
+	{
+		final List<CartEntryOperationWsDTO> operations = new ArrayList<>();
+		for (final String productCode : productCodes)
+		{
+			final ProductWsDTO operationProduct = new ProductWsDTO();
+			operationProduct.setCode(productCode);
+			final OrderEntryWsDTO entry = new OrderEntryWsDTO();
+			entry.setProduct(operationProduct);
+			entry.setQuantity(Long.valueOf(1L));
+			final CartEntryOperationWsDTO operation = new CartEntryOperationWsDTO();
+			operation.setType(CartEntryOperationType.ADD);
+			operation.setEntry(entry);
+			operations.add(operation);
+		}
+		final CartEntryOperationListWsDTO operationList = new CartEntryOperationListWsDTO();
+		operationList.setOperations(operations);
+		return operationList;
+	}
 }
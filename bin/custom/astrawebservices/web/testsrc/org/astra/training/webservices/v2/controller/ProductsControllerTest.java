@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2021 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.v2.controller;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+import de.hybris.platform.commercefacades.product.data.ProductData;
+import de.hybris.platform.commercefacades.search.ProductSearchFacade;
+import de.hybris.platform.commercefacades.search.data.AutocompleteSuggestionData;
+import de.hybris.platform.commercewebservicescommons.dto.product.SuggestionListWsDTO;
+import de.hybris.platform.webservicescommons.mapping.DataMapper;
+import org.astra.training.webservices.product.data.SuggestionDataList;
+import org.astra.training.webservices.suggestion.ProductSuggestionIndexService;
+import org.astra.training.webservices.suggestion.WsSuggestionStatistics;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+
+/**
+ * Unit test for {@link ProductsController}
+ */
+@UnitTest
+@RunWith(MockitoJUnitRunner.class)
+public class ProductsControllerTest
+{
+	private static final String TERM = "cam";
+	private static final String FIELDS = "DEFAULT";
+
+	@Mock
+	private ProductSuggestionIndexService productSuggestionIndexService;
+	@Mock
+	private ProductSearchFacade<ProductData> productSearchFacade;
+	@Mock
+	private WsSuggestionStatistics wsSuggestionStatistics;
+	@Mock
+	private DataMapper dataMapper;
+	@InjectMocks
+	private ProductsController controller;
+
+	@Test
+	public void testGetSuggestionsFromIndex()
+	{
+		given(productSuggestionIndexService.getSuggestions(TERM, 2)).willReturn(Arrays.asList("Camera", "Camcorder"));
+
+		controller.getSuggestions(TERM, 2, FIELDS);
+
+		assertThat(mappedSuggestions()).containsExactly("Camera", "Camcorder");
+		verify(productSearchFacade, never()).getAutocompleteSuggestions(anyString());
+		verify(wsSuggestionStatistics).recordHit(anyLong());
+	}
+
+	@Test
+	public void testGetSuggestionsFallsBackToSearchWhenIndexHasNoMatch()
+	{
+		given(productSuggestionIndexService.getSuggestions(TERM, 1)).willReturn(Collections.emptyList());
+		given(productSearchFacade.getAutocompleteSuggestions(TERM))
+				.willReturn(Arrays.asList(createAutocompleteSuggestion("canon"), createAutocompleteSuggestion("camera")));
+
+		controller.getSuggestions(TERM, 1, FIELDS);
+
+		assertThat(mappedSuggestions()).containsExactly("canon");
+		verify(wsSuggestionStatistics).recordMiss(anyLong());
+	}
+
+	protected Object[] mappedSuggestions()
+	{
+		final ArgumentCaptor<SuggestionDataList> captor = ArgumentCaptor.forClass(SuggestionDataList.class);
+		verify(dataMapper).map(captor.capture(), eq(SuggestionListWsDTO.class), eq(FIELDS));
+		return captor.getValue().getSuggestions().stream().map(suggestion -> suggestion.getValue()).toArray();
+	}
+
+	protected AutocompleteSuggestionData createAutocompleteSuggestion(final String term)
+	{
+		final AutocompleteSuggestionData suggestion = new AutocompleteSuggestionData();
+		suggestion.setTerm(term);
+		return suggestion;
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.v2.filter;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+
+import javax.servlet.http.HttpServletRequest;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+
+/**
+ * Test suite for {@link UrlPathSegments}. Every value must be the same the default regular expressions extract.
+ */
+@UnitTest
+public class UrlPathSegmentsTest
+{
+	private static final String[] PATHS = { "", "/", "//", "/wsTest", "/wsTest/", "/wsTest/products/123",
+			"/wsTest/users", "/wsTest/users/", "/wsTest/users/current", "/wsTest/users/current/",
+			"/wsTest/orgUsers/demo@customer.com/addresses", "/wsTest/users/anonymous/carts",
+			"/wsTest/users/anonymous/carts/", "/wsTest/users/anonymous/carts/6d868385adf11f729b6e30acd2c44195ccd6e882",
+			"/wsTest/users/current/carts/00000001/entries/0", "/wsTest/customers/current/carts/00000001",
+			"//users/current/carts/00000001", "/wsTest//current/carts/00000001", "/swagger-ui.html", "/v2/api-docs",
+			"/wsTest/some/api-docs", "/csrf", "/webjars/springfox/x.js", "/monitoring/endpoints", "/monitoringsite/products", "/basesites", "/users/current/carts/1" };
+
+	@Test
+	public void shouldExtractSameBaseSiteAsRegexp()
+	{
+		final Pattern pattern = Pattern.compile(UrlPathSegments.BASE_SITE_REGEXP);
+		for (final String path : PATHS)
+		{
+			final Matcher matcher = pattern.matcher(path);
+			final String expected = matcher.find() ? matcher.group().substring(1) : null;
+			Assert.assertEquals(path, expected, UrlPathSegments.parse(path).getBaseSiteId());
+		}
+	}
+
+	@Test
+	public void shouldExtractSameUserAsRegexp()
+	{
+		assertSameAsRegexp(UrlPathSegments.USER_REGEXP, true);
+	}
+
+	@Test
+	public void shouldExtractSameCartAsRegexp()
+	{
+		assertSameAsRegexp(UrlPathSegments.CART_REGEXP, false);
+	}
+
+	@Test
+	public void shouldParseRequestOnlyOnce()
+	{
+		final HttpServletRequest request = mock(HttpServletRequest.class);
+		final UrlPathSegments segments = UrlPathSegments.parse("/wsTest/users/current/carts/00000001");
+		given(request.getAttribute(UrlPathSegments.class.getName())).willReturn(segments);
+
+		Assert.assertSame(segments, UrlPathSegments.forRequest(request));
+		verify(request, never()).getPathInfo();
+	}
+
+	protected void assertSameAsRegexp(final String regexp, final boolean user)
+	{
+		final Pattern pattern = Pattern.compile(regexp);
+		for (final String path : PATHS)
+		{
+			final Matcher matcher = pattern.matcher(path);
+			final String expected = matcher.find() ? matcher.group(1) : null;
+			final UrlPathSegments segments = UrlPathSegments.parse(path);
+			Assert.assertEquals(path, expected, user ? segments.getUserId() : segments.getCartId());
+		}
+	}
+}
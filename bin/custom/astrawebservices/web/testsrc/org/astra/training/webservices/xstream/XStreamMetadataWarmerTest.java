@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020 SAP SE or an SAP affiliate company. All rights reserved.
+ */
+package org.astra.training.webservices.xstream;
+
+import de.hybris.bootstrap.annotations.UnitTest;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.thoughtworks.xstream.XStream;
+
+
+@UnitTest
+public class XStreamMetadataWarmerTest
+{
+	@Test
+	public void shouldVisitTypesReachableThroughFields()
+	{
+		final XStream xStream = new XmlXStreamFactory().getObjectInternal();
+		xStream.alias("parent", Parent.class);
+
+		final int visited = new XStreamMetadataWarmer().warmUp(xStream, Collections.singletonList(Parent.class));
+
+		// Parent, String, List, Child and int; the array component is Child again
+		Assert.assertEquals(5, visited);
+		Assert.assertTrue(xStream.toXML(new Parent("a")).contains("<name>a</name>"));
+	}
+
+	@Test
+	public void shouldIgnoreTypesWithoutConverter()
+	{
+		final XStream xStream = new XmlXStreamFactory().getObjectInternal();
+
+		Assert.assertEquals(1, new XStreamMetadataWarmer().warmUp(xStream, Collections.singletonList(Runnable.class)));
+	}
+
+	private static class Parent
+	{
+		private static final String IGNORED = "ignored";
+		private final String name;
+		private List<Child> children;
+		private Child[] moreChildren;
+		private int count;
+
+		Parent(final String name)
+		{
+			this.name = name;
+		}
+	}
+
+	private static class Child
+	{
+		private String value;
+	}
+}